@@ -0,0 +1,75 @@
+package com.chebot.stock_manager.benchmark;
+
+import com.chebot.stock_manager.StockManagerApplication;
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contexto de Spring sobre un archivo SQLite temporal con 'filas' productos sintéticos.
+ * Cada benchmark la crea en su @Setup y la cierra (borrando el archivo) en su @TearDown.
+ */
+final class BaseDeDatosSembrada implements AutoCloseable {
+
+    private static final int TAMANO_LOTE = 5000;
+    private static final String[] PALABRAS = {"Proyector", "Notebook", "Cable", "Teclado", "Mouse", "Monitor",
+            "Parlante", "Router", "Impresora", "Tablet", "Cargador", "Auriculares"};
+
+    private final Path carpeta;
+    private final ConfigurableApplicationContext contexto;
+
+    BaseDeDatosSembrada(int filas) throws IOException {
+        carpeta = Files.createTempDirectory("stock-benchmark");
+        Path archivo = carpeta.resolve("stock.db");
+
+        // 1. Arranca la aplicación (sin interfaz) sobre la DB vacía: Hibernate crea las tablas.
+        // Como argumentos de línea de comandos, para que tengan prioridad sobre application.properties
+        contexto = new SpringApplicationBuilder(StockManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:sqlite:" + archivo + "?journal_mode=WAL&synchronous=FULL&busy_timeout=5000",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+
+        // 2. Siembra por lotes con JDBC (el índice de texto se completa con sus triggers)
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        List<Object[]> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 1; i <= filas; i++) {
+            lote.add(new Object[]{
+                    String.format("REF-%07d", i),
+                    PALABRAS[i % PALABRAS.length] + " modelo " + (i % 997),
+                    i % 50,
+                    Producto.ESTADOS.get(i % Producto.ESTADOS.size())});
+            if (lote.size() == TAMANO_LOTE || i == filas) {
+                jdbcTemplate.batchUpdate("INSERT INTO productos (referencia, descripcion, cantidad, estado) VALUES (?, ?, ?, ?)", lote);
+                lote.clear();
+            }
+        }
+
+        // 3. El catálogo en memoria se cargó vacío al arrancar
+        contexto.getBean(CatalogoEnMemoria.class).recargar().join();
+    }
+
+    <T> T bean(Class<T> tipo) {
+        return contexto.getBean(tipo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        contexto.close();
+        try (var archivos = Files.list(carpeta)) {
+            for (Path archivo : archivos.toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+        Files.deleteIfExists(carpeta);
+    }
+}
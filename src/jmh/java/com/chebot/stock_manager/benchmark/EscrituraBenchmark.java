@@ -0,0 +1,66 @@
+package com.chebot.stock_manager.benchmark;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.service.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductoService#guardarProducto(Producto)}: alta (INSERT) y edición (UPDATE), incluido el QR
+ * y el commit del escritor serializado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EscrituraBenchmark {
+
+    private static final int FILAS = 1000;
+
+    private BaseDeDatosSembrada base;
+    private ProductoService productoService;
+    private Producto editado;
+    private long contador = 0;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        base = new BaseDeDatosSembrada(FILAS);
+        productoService = base.bean(ProductoService.class);
+        editado = productoService.obtenerProducto(1L).orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        base.close();
+    }
+
+    @Benchmark
+    public Producto guardarNuevo() {
+        contador++;
+        return productoService.guardarProducto(new Producto("BENCH-" + contador, "Producto de prueba " + contador,
+                (int) (contador % 100), Producto.ESTADO_DISPONIBLE, null)).join();
+    }
+
+    @Benchmark
+    public Producto guardarEdicion() {
+        contador++;
+        editado.setCantidad((int) (contador % 100));
+        // guardarProducto devuelve el mismo objeto con la versión nueva: la próxima edición no choca
+        return productoService.guardarProducto(editado).join();
+    }
+}
@@ -0,0 +1,81 @@
+package com.chebot.stock_manager.benchmark;
+
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.service.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listado completo y filtros de {@link ProductoService} con 1k, 100k y 1M productos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LecturaBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    private BaseDeDatosSembrada base;
+    private ProductoService productoService;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        base = new BaseDeDatosSembrada(filas);
+        productoService = base.bean(ProductoService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        base.close();
+    }
+
+    @Benchmark
+    public List<ProductoResumen> obtenerTodosLosProductos() {
+        return productoService.obtenerTodosLosProductos();
+    }
+
+    @Benchmark
+    public List<ProductoResumen> filtrarPorReferencia() {
+        return productoService.filtrarProductos("Referencia", "0042");
+    }
+
+    @Benchmark
+    public List<ProductoResumen> filtrarPorReferenciaCorta() {
+        // Menos de 3 caracteres: no usa el índice de trigramas
+        return productoService.filtrarProductos("Referencia", "42");
+    }
+
+    @Benchmark
+    public List<ProductoResumen> filtrarPorDescripcion() {
+        return productoService.filtrarProductos("Descripción", "modelo 42");
+    }
+
+    @Benchmark
+    public List<ProductoResumen> filtrarPorEstado() {
+        return productoService.filtrarProductos("Estado", "Roto");
+    }
+
+    @Benchmark
+    public List<ProductoResumen> filtrarPorCantidad() {
+        return productoService.filtrarProductos("Cantidad hasta", "3");
+    }
+}
@@ -0,0 +1,36 @@
+package com.chebot.stock_manager.benchmark;
+
+import com.chebot.stock_manager.service.ContenidoQr;
+import com.chebot.stock_manager.service.QrCodeGenerator;
+import com.google.zxing.WriterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renderizado de un Código QR (codificación + PNG) con un contenido típico.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeGeneratorBenchmark {
+
+    private final String contenido = ContenidoQr.generar("REF-0000042", "Proyector Epson modelo 42", 12, "Disponible");
+
+    @Benchmark
+    public byte[] generarQr() throws WriterException, IOException {
+        return QrCodeGenerator.generateQrCodeImage(contenido);
+    }
+}
@@ -4,12 +4,26 @@ import com.chebot.stock_manager.fx.StockManagerFXApplication; // Importación co
 import javafx.application.Application; // Necesario para llamar a launch
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling // Verificación periódica del catálogo en memoria
 public class StockManagerApplication {
 
+	// Argumento del modo servidor: sin ventana, solo la API HTTP (ver ServidorApi)
+	public static final String MODO_SERVIDOR = "--servidor";
+
 	public static void main(String[] args) {
+		if (Arrays.asList(args).contains(MODO_SERVIDOR)) {
+			new SpringApplicationBuilder(StockManagerApplication.class)
+					.headless(true)
+					.profiles("servidor")
+					.run(args);
+			return;
+		}
 		// Lanzamos la aplicación JavaFX, que a su vez se encarga de iniciar Spring
 		Application.launch(StockManagerFXApplication.class, args);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,591 @@
+package com.chebot.stock_manager.api;
+
+import com.chebot.stock_manager.model.FiltroProductos;
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.service.AlertasStockService;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.Json;
+import com.chebot.stock_manager.service.ProductoService;
+import com.chebot.stock_manager.service.QrCodeGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API HTTP del modo servidor (sin interfaz gráfica), para que varias terminales y lectores de QR
+ * trabajen a la vez sobre la misma DB. Cada solicitud se atiende en su propio hilo virtual: esperar
+ * al escritor serializado no ocupa un hilo del sistema, y las escrituras simultáneas se agrupan en
+ * un mismo commit.
+ * <pre>
+ * GET    /api/productos?despues=ID&amp;limite=N   Página por clave (Link rel="next" con la siguiente)
+ * GET    /api/productos                        Todo el catálogo, transmitido por tandas
+ * GET    /api/productos?criterio=C&amp;valor=V     Búsqueda (los mismos criterios que la vista)
+ * GET    /api/productos?referencia=R           Búsqueda exacta (p. ej. la leída de un QR)
+ * GET    /api/productos?estados=Roto,Desaparecido&amp;cantidadMaxima=5&amp;descripcionContiene=proyector
+ *        &amp;orden=cantidad&amp;descendente=true&amp;maximo=N  Filtro combinado (ver {@link FiltroProductos})
+ * GET    /api/productos/reposicion?maximo=N    Productos bajo su stock mínimo, los más urgentes primero
+ * POST   /api/productos                        Alta
+ * GET    /api/productos/ID                     Producto completo, con ETag = versión
+ * PUT    /api/productos/ID                     Edición; exige If-Match con la versión cargada
+ * DELETE /api/productos/ID                     Baja
+ * POST   /api/productos/ID/movimientos         Suma o resta stock: {"delta": -2, "motivo": "Préstamo"}
+ * GET    /api/productos/ID/qr?lado=N           PNG del Código QR
+ * </pre>
+ * Los listados llevan un ETag débil con la secuencia de cambios del catálogo: con If-None-Match,
+ * mientras nada cambie se responde 304 sin cuerpo.
+ */
+@Component
+@ConditionalOnProperty(name = "stock.api.habilitada", havingValue = "true")
+public class ServidorApi implements SmartLifecycle {
+
+    private static final String RUTA = "/api/productos";
+    // Productos por tanda al transmitir un listado: solo una tanda en memoria por solicitud
+    private static final int TAMANO_TANDA = 500;
+    private static final int LIMITE_MAXIMO = 1000;
+    private static final int LIMITE_CUERPO = 64 * 1024;
+    private static final String MOTIVO_API = "API";
+    private static final String JSON = "application/json; charset=utf-8";
+    // Cualquiera de estos parámetros pide el filtro combinado
+    private static final Set<String> PARAMETROS_FILTRO = Set.of("referenciaContiene", "descripcionContiene", "estados",
+            "cantidadMinima", "cantidadMaxima", "orden", "descendente", "maximo");
+
+    // Solicitud que termina con un código de error (no es una falla del servidor)
+    private static final class ErrorHttp extends RuntimeException {
+        private final int codigo;
+
+        ErrorHttp(int codigo, String mensaje) {
+            super(mensaje);
+            this.codigo = codigo;
+        }
+    }
+
+    private final ProductoService productoService;
+    private final int puerto;
+    // Distingue las secuencias del catálogo entre arranques (vuelven a empezar de cero)
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private HttpServer servidor;
+    private ExecutorService hilos;
+
+    public ServidorApi(ProductoService productoService, @Value("${stock.api.puerto:8080}") int puerto) {
+        this.productoService = productoService;
+        this.puerto = puerto;
+    }
+
+    // --- Ciclo de vida ---
+
+    @Override
+    public synchronized void start() {
+        try {
+            servidor = HttpServer.create(new InetSocketAddress(puerto), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el puerto " + puerto + " para la API", e);
+        }
+        hilos = Executors.newVirtualThreadPerTaskExecutor();
+        servidor.setExecutor(hilos);
+        servidor.createContext(RUTA, this::atender);
+        servidor.start();
+        System.out.println("API HTTP escuchando en el puerto " + getPuerto());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (servidor != null) {
+            servidor.stop(1); // Espera hasta 1 s a que terminen las solicitudes en curso
+            hilos.close();
+            servidor = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return servidor != null;
+    }
+
+    /**
+     * Puerto en que escucha (útil si se configuró 0 para que elija uno libre).
+     */
+    public synchronized int getPuerto() {
+        return servidor == null ? puerto : servidor.getAddress().getPort();
+    }
+
+    // --- Despacho ---
+
+    private void atender(HttpExchange intercambio) {
+        long inicio = System.nanoTime();
+        try (intercambio) {
+            try {
+                despachar(intercambio);
+            } catch (ErrorHttp e) {
+                responderError(intercambio, e.codigo, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                responderError(intercambio, 400, e.getMessage());
+            } catch (OptimisticLockingFailureException e) {
+                responderError(intercambio, 412, e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error en la API (" + intercambio.getRequestMethod() + " "
+                        + intercambio.getRequestURI() + "): " + e);
+                responderError(intercambio, 500, "Error interno: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            // El cliente cortó la conexión o la respuesta ya había empezado (p. ej. a mitad de un listado)
+        } finally {
+            Timer.builder("stock.api")
+                    .tag("metodo", intercambio.getRequestMethod())
+                    .tag("codigo", String.valueOf(intercambio.getResponseCode()))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(Metrics.globalRegistry)
+                    .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void despachar(HttpExchange intercambio) throws IOException {
+        String metodo = intercambio.getRequestMethod();
+        String resto = intercambio.getRequestURI().getPath().substring(RUTA.length());
+        if (!resto.isEmpty() && !resto.startsWith("/")) {
+            throw new ErrorHttp(404, "Recurso no encontrado: " + intercambio.getRequestURI().getPath());
+        }
+        String[] partes = resto.isEmpty() || resto.equals("/") ? new String[0] : resto.substring(1).split("/");
+
+        if (partes.length == 0) {
+            switch (metodo) {
+                case "GET" -> listar(intercambio);
+                case "POST" -> crear(intercambio);
+                default -> throw metodoNoPermitido(intercambio, "GET, POST");
+            }
+            return;
+        }
+
+        if (partes.length == 1 && partes[0].equals("reposicion")) {
+            if (!metodo.equals("GET")) {
+                throw metodoNoPermitido(intercambio, "GET");
+            }
+            listarReposicion(intercambio);
+            return;
+        }
+
+        long id = leerId(partes[0]);
+        if (partes.length == 1) {
+            switch (metodo) {
+                case "GET" -> obtener(intercambio, id);
+                case "PUT" -> actualizar(intercambio, id);
+                case "DELETE" -> eliminar(intercambio, id);
+                default -> throw metodoNoPermitido(intercambio, "GET, PUT, DELETE");
+            }
+        } else if (partes.length == 2 && partes[1].equals("movimientos")) {
+            if (!metodo.equals("POST")) {
+                throw metodoNoPermitido(intercambio, "POST");
+            }
+            registrarMovimiento(intercambio, id);
+        } else if (partes.length == 2 && partes[1].equals("qr")) {
+            if (!metodo.equals("GET")) {
+                throw metodoNoPermitido(intercambio, "GET");
+            }
+            obtenerQr(intercambio, id);
+        } else {
+            throw new ErrorHttp(404, "Recurso no encontrado: " + intercambio.getRequestURI().getPath());
+        }
+    }
+
+    // --- Listados ---
+
+    private void listar(HttpExchange intercambio) throws IOException {
+        Map<String, String> parametros = parametros(intercambio);
+
+        // 1. ETag del listado: cualquier alta, edición o baja cambia la secuencia del catálogo.
+        // Se toma antes de leer, así un cambio concurrente nunca queda oculto tras un 304.
+        CatalogoEnMemoria.Conteo conteo = productoService.contarProductosConSecuencia();
+        String etag = "W/\"" + arranque + "-" + conteo.secuencia() + "\"";
+        intercambio.getResponseHeaders().set("ETag", etag);
+        if (coincide(intercambio.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            intercambio.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        // 2. Búsquedas: el resultado ya está acotado por el límite de búsqueda
+        if (parametros.containsKey("referencia")) {
+            ProductoResumen producto = productoService.obtenerPorReferencia(parametros.get("referencia"));
+            transmitir(intercambio, producto == null ? List.of() : List.of(producto));
+            return;
+        }
+        if (parametros.containsKey("criterio")) {
+            transmitir(intercambio, productoService.filtrarProductos(parametros.get("criterio"), parametros.get("valor")));
+            return;
+        }
+        if (parametros.keySet().stream().anyMatch(PARAMETROS_FILTRO::contains)) {
+            transmitir(intercambio, productoService.filtrarProductos(leerFiltro(parametros)));
+            return;
+        }
+
+        // 3. Página por clave: WHERE id > despues, sin OFFSET
+        long despues = parametros.containsKey("despues") ? leerNumero(parametros.get("despues"), "despues") : 0;
+        if (parametros.containsKey("limite")) {
+            int limite = (int) Math.min(leerNumero(parametros.get("limite"), "limite"), LIMITE_MAXIMO);
+            if (limite <= 0) {
+                throw new IllegalArgumentException("El parámetro 'limite' debe ser mayor que cero.");
+            }
+            List<ProductoResumen> pagina = productoService.obtenerPagina(despues, limite);
+            if (pagina.size() == limite) {
+                intercambio.getResponseHeaders().set("Link", "<" + RUTA + "?despues="
+                        + pagina.get(pagina.size() - 1).getId() + "&limite=" + limite + ">; rel=\"next\"");
+            }
+            transmitir(intercambio, pagina);
+            return;
+        }
+
+        // 4. Sin límite: todo el catálogo, tanda por tanda (la respuesta va en bloques a medida que se escribe)
+        intercambio.getResponseHeaders().set("Content-Type", JSON);
+        intercambio.getResponseHeaders().set("X-Total-Count", String.valueOf(conteo.total()));
+        intercambio.sendResponseHeaders(200, 0);
+        try (Writer salida = escritor(intercambio)) {
+            salida.write('[');
+            boolean primero = true;
+            List<ProductoResumen> tanda = productoService.obtenerPagina(despues, TAMANO_TANDA);
+            while (!tanda.isEmpty()) {
+                for (ProductoResumen producto : tanda) {
+                    if (!primero) {
+                        salida.write(',');
+                    }
+                    primero = false;
+                    escribirResumen(salida, producto);
+                }
+                salida.flush();
+                tanda = tanda.size() < TAMANO_TANDA ? List.of()
+                        : productoService.obtenerPagina(tanda.get(tanda.size() - 1).getId(), TAMANO_TANDA);
+            }
+            salida.write(']');
+        }
+    }
+
+    private void listarReposicion(HttpExchange intercambio) throws IOException {
+        Map<String, String> parametros = parametros(intercambio);
+        long maximo = parametros.containsKey("maximo") ? leerNumero(parametros.get("maximo"), "maximo") : LIMITE_MAXIMO;
+        List<AlertasStockService.Sugerencia> sugerencias = productoService.obtenerSugerenciasReposicion(
+                (int) Math.max(0, Math.min(maximo, LIMITE_MAXIMO)));
+        intercambio.getResponseHeaders().set("Content-Type", JSON);
+        intercambio.sendResponseHeaders(200, 0);
+        try (Writer salida = escritor(intercambio)) {
+            salida.write('[');
+            for (int i = 0; i < sugerencias.size(); i++) {
+                if (i > 0) {
+                    salida.write(',');
+                }
+                AlertasStockService.Sugerencia sugerencia = sugerencias.get(i);
+                salida.write("{\"id\":" + sugerencia.id()
+                        + ",\"referencia\":" + Json.texto(sugerencia.referencia())
+                        + ",\"descripcion\":" + Json.texto(sugerencia.descripcion())
+                        + ",\"cantidad\":" + sugerencia.cantidad()
+                        + ",\"umbralMinimo\":" + sugerencia.umbral()
+                        + ",\"faltan\":" + sugerencia.faltan() + "}");
+            }
+            salida.write(']');
+        }
+    }
+
+    private void transmitir(HttpExchange intercambio, List<ProductoResumen> productos) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", JSON);
+        intercambio.sendResponseHeaders(200, 0);
+        try (Writer salida = escritor(intercambio)) {
+            salida.write('[');
+            for (int i = 0; i < productos.size(); i++) {
+                if (i > 0) {
+                    salida.write(',');
+                }
+                escribirResumen(salida, productos.get(i));
+            }
+            salida.write(']');
+        }
+    }
+
+    // --- Un producto ---
+
+    private void obtener(HttpExchange intercambio, long id) throws IOException {
+        Producto producto = productoService.obtenerProducto(id)
+                .orElseThrow(() -> noEncontrado(id));
+        String etag = etag(producto);
+        if (coincide(intercambio.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            intercambio.getResponseHeaders().set("ETag", etag);
+            intercambio.sendResponseHeaders(304, -1);
+            return;
+        }
+        responderProducto(intercambio, 200, producto);
+    }
+
+    private void crear(HttpExchange intercambio) throws IOException {
+        Map<String, Object> cuerpo = leerCuerpo(intercambio);
+        Producto producto = aProducto(cuerpo);
+        Producto guardado = esperar(productoService.guardarProducto(producto));
+        intercambio.getResponseHeaders().set("Location", RUTA + "/" + guardado.getId());
+        responderProducto(intercambio, 201, guardado);
+    }
+
+    private void actualizar(HttpExchange intercambio, long id) throws IOException {
+        // Bloqueo optimista: sin la versión cargada se podría pisar el cambio de otra terminal
+        String ifMatch = intercambio.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch == null) {
+            throw new ErrorHttp(428, "Falta el encabezado If-Match con el ETag del producto cargado.");
+        }
+        if (productoService.obtenerResumen(id) == null) {
+            throw noEncontrado(id);
+        }
+        Producto producto = aProducto(leerCuerpo(intercambio));
+        producto.setId(id);
+        producto.setVersion(leerVersion(ifMatch));
+        responderProducto(intercambio, 200, esperar(productoService.guardarProducto(producto)));
+    }
+
+    private void eliminar(HttpExchange intercambio, long id) throws IOException {
+        if (productoService.obtenerResumen(id) == null) {
+            throw noEncontrado(id);
+        }
+        esperar(productoService.eliminarProducto(id));
+        intercambio.sendResponseHeaders(204, -1);
+    }
+
+    private void registrarMovimiento(HttpExchange intercambio, long id) throws IOException {
+        if (productoService.obtenerResumen(id) == null) {
+            throw noEncontrado(id);
+        }
+        Map<String, Object> cuerpo = leerCuerpo(intercambio);
+        if (!(cuerpo.get("delta") instanceof Long delta) || delta < Integer.MIN_VALUE || delta > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El campo 'delta' debe ser un número entero.");
+        }
+        String motivo = cuerpo.get("motivo") instanceof String texto && !texto.isBlank() ? texto.trim() : MOTIVO_API;
+        responderProducto(intercambio, 200, esperar(productoService.registrarMovimiento(id, delta.intValue(), motivo)));
+    }
+
+    private void obtenerQr(HttpExchange intercambio, long id) throws IOException {
+        Map<String, String> parametros = parametros(intercambio);
+        int lado = parametros.containsKey("lado")
+                ? (int) Math.min(leerNumero(parametros.get("lado"), "lado"), 2000)
+                : QrCodeGenerator.LADO;
+        if (lado < 50) {
+            throw new IllegalArgumentException("El parámetro 'lado' debe ser de al menos 50 pixeles.");
+        }
+        byte[] png = productoService.obtenerCodigoQr(id, lado);
+        if (png == null) {
+            throw noEncontrado(id);
+        }
+        intercambio.getResponseHeaders().set("Content-Type", "image/png");
+        intercambio.sendResponseHeaders(200, png.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(png);
+        }
+    }
+
+    // --- Conversión a y desde JSON ---
+
+    private static Producto aProducto(Map<String, Object> cuerpo) {
+        String referencia = textoObligatorio(cuerpo, "referencia");
+        String descripcion = textoObligatorio(cuerpo, "descripcion");
+        if (!(cuerpo.get("cantidad") instanceof Long cantidad) || cantidad > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El campo 'cantidad' debe ser un número entero.");
+        }
+        String estado = Producto.ESTADO_DISPONIBLE;
+        if (cuerpo.get("estado") instanceof String estadoTexto) {
+            estado = Producto.ESTADOS.stream()
+                    .filter(e -> e.equalsIgnoreCase(estadoTexto.trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Estado desconocido: '" + estadoTexto
+                            + "' (válidos: " + String.join(", ", Producto.ESTADOS) + ")"));
+        }
+        String observaciones = cuerpo.get("observaciones") instanceof String texto && !texto.isBlank() ? texto : null;
+        Producto producto = new Producto(referencia, descripcion, cantidad.intValue(), estado, observaciones);
+        // Opcional: sin él, el producto queda sin stock mínimo
+        Object umbral = cuerpo.get("umbralMinimo");
+        if (umbral != null) {
+            if (!(umbral instanceof Long umbralMinimo) || umbralMinimo > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("El campo 'umbralMinimo' debe ser un número entero.");
+            }
+            producto.setUmbralMinimo(umbralMinimo.intValue());
+        }
+        return producto;
+    }
+
+    private static String textoObligatorio(Map<String, Object> cuerpo, String campo) {
+        if (!(cuerpo.get(campo) instanceof String texto) || texto.isBlank()) {
+            throw new IllegalArgumentException("El campo '" + campo + "' es obligatorio.");
+        }
+        return texto.trim();
+    }
+
+    private static void escribirResumen(Writer salida, ProductoResumen producto) throws IOException {
+        salida.write("{\"id\":" + producto.getId()
+                + ",\"referencia\":" + Json.texto(producto.getReferencia())
+                + ",\"descripcion\":" + Json.texto(producto.getDescripcion())
+                + ",\"cantidad\":" + producto.getCantidad()
+                + ",\"estado\":" + Json.texto(producto.getEstado()) + "}");
+    }
+
+    private static void responderProducto(HttpExchange intercambio, int codigo, Producto producto) throws IOException {
+        byte[] cuerpo = ("{\"id\":" + producto.getId()
+                + ",\"referencia\":" + Json.texto(producto.getReferencia())
+                + ",\"descripcion\":" + Json.texto(producto.getDescripcion())
+                + ",\"cantidad\":" + producto.getCantidad()
+                + ",\"estado\":" + Json.texto(producto.getEstado())
+                + ",\"observaciones\":" + Json.texto(producto.getObservaciones())
+                + ",\"umbralMinimo\":" + producto.getUmbralMinimo()
+                + ",\"version\":" + producto.getVersion() + "}").getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("ETag", etag(producto));
+        intercambio.getResponseHeaders().set("Content-Type", JSON);
+        intercambio.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static void responderError(HttpExchange intercambio, int codigo, String mensaje) throws IOException {
+        byte[] cuerpo = ("{\"error\":" + Json.texto(mensaje) + "}").getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", JSON);
+        intercambio.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static Writer escritor(HttpExchange intercambio) {
+        return new BufferedWriter(new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    private static Map<String, Object> leerCuerpo(HttpExchange intercambio) throws IOException {
+        byte[] bytes;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            bytes = entrada.readNBytes(LIMITE_CUERPO + 1);
+        }
+        if (bytes.length > LIMITE_CUERPO) {
+            throw new ErrorHttp(413, "El cuerpo de la solicitud supera los " + LIMITE_CUERPO + " bytes.");
+        }
+        return Json.leerObjeto(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    // --- Auxiliares ---
+
+    // ETag fuerte del producto: su versión (la misma que controla el bloqueo optimista)
+    private static String etag(Producto producto) {
+        return "\"" + producto.getVersion() + "\"";
+    }
+
+    private static long leerVersion(String ifMatch) {
+        String valor = ifMatch.trim();
+        if (valor.length() < 3 || !valor.startsWith("\"") || !valor.endsWith("\"")) {
+            throw new IllegalArgumentException("If-Match inválido: " + ifMatch);
+        }
+        return leerNumero(valor.substring(1, valor.length() - 1), "If-Match");
+    }
+
+    // If-None-Match puede traer varios ETag separados por comas, o '*'
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*") || valor.equals(etag) || ("W/" + valor).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parametros(HttpExchange intercambio) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = intercambio.getRequestURI().getRawQuery();
+        if (consulta != null) {
+            for (String par : consulta.split("&")) {
+                int igual = par.indexOf('=');
+                String clave = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+                String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+                parametros.put(clave, valor);
+            }
+        }
+        return parametros;
+    }
+
+    private static FiltroProductos leerFiltro(Map<String, String> parametros) {
+        String estados = parametros.get("estados");
+        FiltroProductos.Orden orden = null;
+        if (parametros.containsKey("orden")) {
+            try {
+                orden = FiltroProductos.Orden.valueOf(parametros.get("orden").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("'orden' debe ser id, referencia, descripcion, cantidad o estado: '"
+                        + parametros.get("orden") + "'");
+            }
+        }
+        long maximo = parametros.containsKey("maximo") ? leerNumero(parametros.get("maximo"), "maximo") : LIMITE_MAXIMO;
+        return new FiltroProductos(parametros.get("referenciaContiene"), parametros.get("descripcionContiene"),
+                estados == null || estados.isBlank() ? Set.of() : Set.copyOf(Arrays.asList(estados.split(","))),
+                leerCantidad(parametros, "cantidadMinima"), leerCantidad(parametros, "cantidadMaxima"), orden,
+                Boolean.parseBoolean(parametros.get("descendente")), (int) Math.min(maximo, LIMITE_MAXIMO));
+    }
+
+    private static Integer leerCantidad(Map<String, String> parametros, String nombre) {
+        return parametros.containsKey(nombre) ? Math.toIntExact(leerNumero(parametros.get(nombre), nombre)) : null;
+    }
+
+    private static long leerId(String texto) {
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(404, "Recurso no encontrado: " + texto);
+        }
+    }
+
+    private static long leerNumero(String texto, String nombre) {
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + nombre + "' debe ser un número: '" + texto + "'");
+        }
+    }
+
+    // Espera la confirmación del escritor; sus errores se responden como si fueran de esta solicitud
+    private static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private static ErrorHttp noEncontrado(long id) {
+        return new ErrorHttp(404, "Producto no encontrado con ID: " + id);
+    }
+
+    private static ErrorHttp metodoNoPermitido(HttpExchange intercambio, String permitidos) {
+        intercambio.getResponseHeaders().set("Allow", permitidos);
+        return new ErrorHttp(405, "Método no permitido: " + intercambio.getRequestMethod());
+    }
+}
@@ -0,0 +1,252 @@
+package com.chebot.stock_manager.controller;
+
+import com.chebot.stock_manager.fx.EjecutorFx;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.ProductoService;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Lista observable de solo lectura que trae los productos por páginas a medida que la tabla los pide.
+ * <p>
+ * Las páginas se leen con paginación por clave (id &gt; último id visto) y solo se mantienen en memoria
+ * las cercanas a la zona visible, así el consumo no crece con el tamaño del inventario.
+ * El TableView ya virtualiza las celdas: solo llama a {@link #get(int)} para las filas que dibuja.
+ * <p>
+ * Las páginas se leen en segundo plano: mientras llegan, {@link #get(int)} devuelve null (fila vacía)
+ * y al terminar se avisa con 'alCargarPagina' para que la tabla vuelva a dibujarse.
+ * Los cambios del catálogo se aplican en el lugar con {@link #aplicar(CatalogoEnMemoria.Cambio)}.
+ * Salvo las anclas, todo el estado se usa solo desde el hilo de JavaFX.
+ */
+public class ListaProductosPaginada extends ObservableListBase<ProductoResumen> {
+
+    private final ProductoService productoService;
+    private final EjecutorFx ejecutorFx;
+    private final Runnable alCargarPagina;
+    private final int tamanoPagina;
+    private final int maxPaginas;
+    // Secuencia del catálogo incluida en el conteo inicial: los cambios hasta ella ya están
+    private final long secuenciaBase;
+    private int total;
+
+    // Páginas cargadas, en orden de uso (la menos usada primero)
+    private final LinkedHashMap<Integer, List<ProductoResumen>> paginas = new LinkedHashMap<>(16, 0.75f, true);
+    // Páginas pedidas que todavía no llegaron
+    private final Set<Integer> paginasEnCarga = new HashSet<>();
+    // Ancla de cada página conocida: último ID de la página anterior (0 para la primera).
+    // Se lee desde los hilos de carga, por eso es concurrente.
+    private final ConcurrentSkipListMap<Integer, Long> anclas = new ConcurrentSkipListMap<>();
+    // Cambia cuando una baja corre las filas: las cargas pedidas antes se descartan
+    private int generacion = 0;
+
+    // Resultado de una carga en segundo plano: filas y anclas que se calcularon por el camino
+    private record PaginaLeida(List<ProductoResumen> filas, Map<Integer, Long> anclasNuevas) {
+    }
+
+    /**
+     * @param conteo Cantidad de productos y su secuencia, de {@link ProductoService#contarProductosConSecuencia()}.
+     */
+    public ListaProductosPaginada(ProductoService productoService, EjecutorFx ejecutorFx, Runnable alCargarPagina,
+                                  CatalogoEnMemoria.Conteo conteo, int tamanoPagina, int maxPaginas) {
+        this.productoService = productoService;
+        this.ejecutorFx = ejecutorFx;
+        this.alCargarPagina = alCargarPagina;
+        this.tamanoPagina = tamanoPagina;
+        this.maxPaginas = maxPaginas;
+        this.total = conteo.total();
+        this.secuenciaBase = conteo.secuencia();
+        this.anclas.put(0, 0L);
+    }
+
+    @Override
+    public ProductoResumen get(int index) {
+        Objects.checkIndex(index, total);
+        List<ProductoResumen> filas = paginas.get(index / tamanoPagina);
+        if (filas == null) {
+            solicitarPagina(index / tamanoPagina);
+            return null;
+        }
+        int posicion = index % tamanoPagina;
+        // Si se borraron filas desde que se contó el total, la página puede venir incompleta
+        return posicion < filas.size() ? filas.get(posicion) : null;
+    }
+
+    @Override
+    public int size() {
+        return total;
+    }
+
+    // --- Cambios del catálogo ---
+
+    /**
+     * Aplica un cambio solo sobre las filas afectadas (la tabla conserva selección y desplazamiento).
+     * @return false si el cambio no se puede aplicar en el lugar y hay que volver a crear la lista.
+     */
+    public boolean aplicar(CatalogoEnMemoria.Cambio cambio) {
+        if (cambio.secuencia() <= secuenciaBase) {
+            return true; // Ya estaba incluido en el conteo
+        }
+        return switch (cambio.tipo()) {
+            case INSERTADO -> agregarAlFinal(cambio.producto());
+            case ACTUALIZADO -> reemplazar(cambio.producto());
+            case ELIMINADO -> quitar(cambio.id());
+            case RESINCRONIZAR -> false;
+        };
+    }
+
+    // Un ID nuevo siempre es el mayor: va al final
+    private boolean agregarAlFinal(ProductoResumen producto) {
+        int indice = total;
+        int pagina = indice / tamanoPagina;
+        List<ProductoResumen> filas = paginas.get(pagina);
+        if (filas != null && filas.size() == indice % tamanoPagina) {
+            filas.add(producto);
+            if (filas.size() == tamanoPagina) {
+                anclas.put(pagina + 1, producto.getId());
+            }
+        }
+        total++;
+        beginChange();
+        nextAdd(indice, indice + 1);
+        endChange();
+        return true;
+    }
+
+    private boolean reemplazar(ProductoResumen producto) {
+        int indice = buscarIndiceCargado(producto.getId());
+        if (indice < 0) {
+            return true; // No está en memoria: cuando se lea la página ya vendrá actualizado
+        }
+        List<ProductoResumen> filas = paginas.get(indice / tamanoPagina);
+        ProductoResumen anterior = filas.set(indice % tamanoPagina, producto);
+        beginChange();
+        nextSet(indice, anterior);
+        endChange();
+        return true;
+    }
+
+    private boolean quitar(long id) {
+        int indice = buscarIndiceCargado(id);
+        if (indice < 0) {
+            return false; // No se sabe en qué posición estaba
+        }
+        int pagina = indice / tamanoPagina;
+        ProductoResumen anterior = paginas.get(pagina).get(indice % tamanoPagina);
+
+        // Las filas siguientes se corren una posición: esa página y las posteriores se vuelven a leer
+        generacion++;
+        paginas.keySet().removeIf(p -> p >= pagina);
+        paginasEnCarga.clear();
+        anclas.tailMap(pagina, false).clear();
+        total--;
+
+        beginChange();
+        nextRemove(indice, anterior);
+        endChange();
+        return true;
+    }
+
+    private int buscarIndiceCargado(long id) {
+        for (Map.Entry<Integer, List<ProductoResumen>> entrada : paginas.entrySet()) {
+            List<ProductoResumen> filas = entrada.getValue();
+            // Cada página está ordenada por ID
+            if (filas.isEmpty() || id < filas.get(0).getId() || id > filas.get(filas.size() - 1).getId()) {
+                continue;
+            }
+            int bajo = 0;
+            int alto = filas.size() - 1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                long actual = filas.get(medio).getId();
+                if (actual == id) {
+                    return entrada.getKey() * tamanoPagina + medio;
+                } else if (actual < id) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio - 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // --- Carga y descarte de páginas ---
+
+    private void solicitarPagina(int pagina) {
+        if (!paginasEnCarga.add(pagina)) {
+            return; // Ya se está leyendo
+        }
+        int generacionPedida = generacion;
+        ejecutorFx.enSegundoPlano(() -> cargarPagina(pagina),
+                leida -> {
+                    if (generacionPedida != generacion) {
+                        return; // Una baja corrió las filas mientras tanto
+                    }
+                    paginasEnCarga.remove(pagina);
+                    anclas.putAll(leida.anclasNuevas());
+                    paginas.put(pagina, leida.filas());
+                    descartarPaginasLejanas(pagina);
+                    alCargarPagina.run();
+                },
+                error -> {
+                    paginasEnCarga.remove(pagina);
+                    System.err.println("Error al cargar la página " + pagina + " de productos: " + error.getMessage());
+                });
+    }
+
+    // Se ejecuta en segundo plano: las anclas calculadas se guardan después, en el hilo de JavaFX
+    private PaginaLeida cargarPagina(int pagina) {
+        Map<Integer, Long> anclasNuevas = new LinkedHashMap<>();
+        Long ancla = buscarAncla(pagina, anclasNuevas);
+        if (ancla == null) {
+            return new PaginaLeida(new ArrayList<>(), anclasNuevas);
+        }
+        List<ProductoResumen> filas = new ArrayList<>(productoService.obtenerPagina(ancla, tamanoPagina));
+        if (filas.size() == tamanoPagina) {
+            anclasNuevas.put(pagina + 1, filas.get(filas.size() - 1).getId());
+        }
+        return new PaginaLeida(filas, anclasNuevas);
+    }
+
+    /**
+     * Ancla de la página: si no se conoce, se avanza por el índice desde el ancla conocida más cercana.
+     */
+    private Long buscarAncla(int pagina, Map<Integer, Long> anclasNuevas) {
+        Map.Entry<Integer, Long> base = anclas.floorEntry(pagina);
+        if (base.getKey() == pagina) {
+            return base.getValue();
+        }
+        int saltar = (pagina - base.getKey()) * tamanoPagina;
+        Long ancla = productoService.buscarIdTrasSaltar(base.getValue(), saltar);
+        if (ancla != null) {
+            anclasNuevas.put(pagina, ancla);
+        }
+        return ancla;
+    }
+
+    private void descartarPaginasLejanas(int paginaActual) {
+        int radio = maxPaginas / 2;
+        Iterator<Integer> it = paginas.keySet().iterator();
+        while (it.hasNext()) {
+            if (Math.abs(it.next() - paginaActual) > radio) {
+                it.remove();
+            }
+        }
+        // Por si se accede de forma salteada: se descartan las de uso más antiguo
+        it = paginas.keySet().iterator();
+        while (paginas.size() > maxPaginas && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
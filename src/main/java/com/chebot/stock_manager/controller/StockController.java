@@ -1,35 +1,119 @@
 package com.chebot.stock_manager.controller;
 
+import com.chebot.stock_manager.fx.EjecutorFx;
+import com.chebot.stock_manager.model.FiltroProductos;
+import com.chebot.stock_manager.model.MovimientoStock;
 import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.replicacion.ReplicacionService;
+import com.chebot.stock_manager.service.AlertasStockService;
+import com.chebot.stock_manager.service.CacheLru;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.ConciliacionInventarioService;
+import com.chebot.stock_manager.service.ExportacionInventarioService;
+import com.chebot.stock_manager.service.ExportacionQrService;
+import com.chebot.stock_manager.service.HistorialStockService;
+import com.chebot.stock_manager.service.ImportacionService;
 import com.chebot.stock_manager.service.ProductoService;
+import com.chebot.stock_manager.service.RegeneracionQrService;
+import com.chebot.stock_manager.service.RespaldoService;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller; // Usar el @Controller de Spring
-import jakarta.annotation.PostConstruct;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
 
 @Controller
 public class StockController {
 
     // Campo para almacenar temporalmente el ID del producto que se está editando/actualizando.
     private Long productoEnEdicionId = null;
+    // Versión con la que se cargó: si otra terminal lo cambió después, el guardado se rechaza
+    private Long productoEnEdicionVersion = null;
     // Inyección del Servicio (Spring se encarga de crear esta instancia)
     private final ProductoService productoService;
-    private final ObservableList<Producto> productosList = FXCollections.observableArrayList();
+    // Resultados de un filtro; el listado completo usa ListaProductosPaginada
+    private final ObservableList<ProductoResumen> productosList = FXCollections.observableArrayList();
+    // Filas por página y páginas retenidas alrededor de la zona visible de la tabla
+    private static final int TAMANO_PAGINA = 200;
+    private static final int MAX_PAGINAS_EN_MEMORIA = 10;
+    // Imágenes QR ya decodificadas, por ID de producto (acotada para no crecer con el catálogo)
+    private static final int TAMANO_CACHE_QR = 200;
+    private final CacheLru<Long, Image> cacheQr = new CacheLru<>(TAMANO_CACHE_QR);
+    private final ImportacionService importacionService;
+    private final RegeneracionQrService regeneracionQrService;
+    private final ExportacionQrService exportacionQrService;
+    private final HistorialStockService historialStockService;
+    private final ConciliacionInventarioService conciliacionInventarioService;
+    private final ExportacionInventarioService exportacionInventarioService;
+    private final RespaldoService respaldoService;
+    private final ReplicacionService replicacionService;
+    // Movimientos que se muestran en el historial de un producto
+    private static final int MOVIMIENTOS_EN_HISTORIAL = 20;
+    // Sugerencias que se muestran en la vista de reposición (las más urgentes)
+    private static final int SUGERENCIAS_EN_REPOSICION = 50;
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")
+            .withZone(ZoneId.systemDefault());
+    // Ejecuta las llamadas al servicio fuera del hilo de JavaFX
+    private final EjecutorFx ejecutorFx;
+
+    // Búsqueda mientras se escribe: se espera una pausa antes de consultar
+    private static final Duration ESPERA_FILTRO = Duration.millis(300);
+    private PauseTransition filtroPendiente; // Se crea en initialize(): las animaciones necesitan JavaFX iniciado
+    // Criterio que muestra los campos del filtro combinado (lo resuelve la DB en una sola consulta)
+    private static final String CRITERIO_COMBINADO = "Combinado";
+    private static final int LIMITE_FILTRO_COMBINADO = 500;
+    // Consulta en curso y su número de generación (solo se aplica el resultado de la más reciente)
+    private Future<?> busquedaEnCurso;
+    private long generacionBusqueda = 0;
+    // Secuencia del último cambio del catálogo aplicado a la tabla
+    private long ultimaSecuencia = 0;
 
     // Constructor que Spring usa para inyectar ProductoService
-    public StockController(ProductoService productoService) {
+    // Importación, exportación, conciliación y replicación se crean recién al usarlas (@Lazy): no demoran la apertura de la ventana
+    public StockController(ProductoService productoService, @Lazy ImportacionService importacionService,
+                           RegeneracionQrService regeneracionQrService, @Lazy ExportacionQrService exportacionQrService,
+                           HistorialStockService historialStockService,
+                           @Lazy ConciliacionInventarioService conciliacionInventarioService,
+                           @Lazy ExportacionInventarioService exportacionInventarioService,
+                           RespaldoService respaldoService, @Lazy ReplicacionService replicacionService,
+                           EjecutorFx ejecutorFx) {
         this.productoService = productoService;
+        this.importacionService = importacionService;
+        this.regeneracionQrService = regeneracionQrService;
+        this.exportacionQrService = exportacionQrService;
+        this.historialStockService = historialStockService;
+        this.conciliacionInventarioService = conciliacionInventarioService;
+        this.exportacionInventarioService = exportacionInventarioService;
+        this.respaldoService = respaldoService;
+        this.replicacionService = replicacionService;
+        this.ejecutorFx = ejecutorFx;
     }
 
     // --- Componentes FXML ---
@@ -38,14 +122,29 @@ public class StockController {
     @FXML private TextField txtDescripcion;
     @FXML private Spinner<Integer> spinnerCantidad;
     @FXML private ComboBox<String> cmbEstado;
+    @FXML private Spinner<Integer> spinnerUmbral;
     @FXML private TextArea txtObservaciones;
     @FXML private ImageView imgQrCode; // Necesitas añadir este fx:id en tu FXML
     // Tabla y sus componentes
-    @FXML private TableView<Producto> tblStock;
+    @FXML private TableView<ProductoResumen> tblStock;
 
     // Componentes para FILTRADO
     @FXML private TextField txtFiltroValor;
     @FXML private ComboBox<String> cmbFiltroCriterio;
+    // Componentes del FILTRO COMBINADO
+    @FXML private HBox boxFiltroCombinado;
+    @FXML private TextField txtFiltroReferencia;
+    @FXML private TextField txtFiltroDescripcion;
+    @FXML private HBox boxFiltroEstados;
+    @FXML private TextField txtFiltroCantidadMinima;
+    @FXML private TextField txtFiltroCantidadMaxima;
+    @FXML private ComboBox<FiltroProductos.Orden> cmbFiltroOrden;
+    @FXML private CheckBox chkFiltroDescendente;
+    @FXML private Spinner<Integer> spinnerFiltroLimite;
+    // Mensajes de progreso de las tareas largas
+    @FXML private Label lblEstado;
+    // Totales del inventario por estado (se actualizan con cada cambio confirmado)
+    @FXML private Label lblTotales;
 
     // --- Métodos de Inicialización ---
 
@@ -54,137 +153,341 @@ public class StockController {
         // Se ejecuta cuando el FXML es cargado, ANTES de @PostConstruct
 
         // Inicializar ComboBox de Estado (para agregar/editar)
-        cmbEstado.getItems().addAll("Disponible", "Roto", "Desaparecido");
-        cmbEstado.setValue("Disponible");
+        cmbEstado.getItems().addAll(Producto.ESTADOS);
+        cmbEstado.setValue(Producto.ESTADO_DISPONIBLE);
 
         // Inicializar ComboBox de Filtro
-        cmbFiltroCriterio.getItems().addAll("Referencia", "Descripción", "Estado");
+        cmbFiltroCriterio.getItems().addAll("Referencia", "Descripción", "Estado", "Cantidad hasta", CRITERIO_COMBINADO);
         cmbFiltroCriterio.setValue("Referencia");
+        configurarFiltroCombinado();
         SpinnerValueFactory<Integer> valueFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 10000, 1);
         spinnerCantidad.setValueFactory(valueFactory);
+        spinnerUmbral.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 10000, 0));
         // 1. Configurar las columnas de la tabla (CRUCIAL para ver datos)
         configurarColumnasTabla();
 
-        // 2. Enlaza la lista observable a la tabla
-        tblStock.setItems(productosList);
+        // 2. La lista paginada no se puede reordenar en memoria: solo se ordenan los resultados de un filtro
+        tblStock.setSortPolicy(tabla -> !(tabla.getItems() instanceof ListaProductosPaginada)
+                && TableView.DEFAULT_SORT_POLICY.call(tabla));
+        // Selección múltiple para exportar QR por lotes
+        tblStock.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         // Muestra el QR al hacer clic en un elemento de la tabla
         tblStock.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
             if (newSelection != null) {
                 mostrarQrEnVista(newSelection);
             }
         });
+        // Filtrar mientras se escribe, con espera (debounce) para no consultar en cada tecla
+        filtroPendiente = new PauseTransition(ESPERA_FILTRO);
+        filtroPendiente.setOnFinished(event -> filtrarProductos());
+        txtFiltroValor.textProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+        cmbFiltroCriterio.valueProperty().addListener((obs, anterior, nuevo) -> {
+            // El combinado usa sus propios campos en lugar del valor
+            boolean combinado = CRITERIO_COMBINADO.equals(nuevo);
+            boxFiltroCombinado.setVisible(combinado);
+            boxFiltroCombinado.setManaged(combinado);
+            txtFiltroValor.setDisable(combinado);
+            filtroPendiente.playFromStart();
+        });
         // Opcional: Configurar la tabla para que con doble clic cargue los datos
         tblStock.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) {
                 cargarProductoParaEdicion();
             }
         });
-    }
 
-    @PostConstruct // Se ejecuta después de que el Bean de Spring ha sido inicializado
-    private void cargarDatosIniciales() {
-        // 3. Carga los datos iniciales de la DB usando el servicio de Spring
+        // Cambios ya confirmados (llegan desde el hilo escritor): se aplican fila por fila
+        ultimaSecuencia = productoService.agregarOyenteCambios(cambio -> Platform.runLater(() -> aplicarCambio(cambio)));
+        mostrarTotales();
+
+        // Alertas de stock bajo y de estado (llegan desde el hilo de alertas, sin demorar el guardado)
+        productoService.agregarOyenteAlertas(alerta -> Platform.runLater(() -> mostrarAlertaStock(alerta)));
+
+        // Avance de la regeneración masiva de QR (llega desde su hilo de trabajo)
+        regeneracionQrService.agregarOyente(progreso -> Platform.runLater(() -> mostrarProgresoQr(progreso)));
+
+        // 3. Carga los datos iniciales (aquí y no en @PostConstruct: la tabla ya está inyectada)
         refrescarTabla();
     }
 
+    private void configurarFiltroCombinado() {
+        // Un CheckBox por estado; ninguno marcado = cualquier estado
+        for (String estado : Producto.ESTADOS) {
+            CheckBox estadoFiltro = new CheckBox(estado);
+            estadoFiltro.selectedProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+            boxFiltroEstados.getChildren().add(estadoFiltro);
+        }
+        cmbFiltroOrden.getItems().addAll(FiltroProductos.Orden.values());
+        cmbFiltroOrden.setValue(FiltroProductos.Orden.ID);
+        spinnerFiltroLimite.setValueFactory(
+                new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 10000, LIMITE_FILTRO_COMBINADO, 100));
+
+        // Cualquier cambio repite el filtro (con la misma espera que el valor)
+        for (TextField campo : List.of(txtFiltroReferencia, txtFiltroDescripcion, txtFiltroCantidadMinima, txtFiltroCantidadMaxima)) {
+            campo.textProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+        }
+        cmbFiltroOrden.valueProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+        chkFiltroDescendente.selectedProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+        spinnerFiltroLimite.valueProperty().addListener((obs, anterior, nuevo) -> filtroPendiente.playFromStart());
+    }
+
     // --- Configuración de Tabla ---
 
     private void configurarColumnasTabla() {
-        // Se mapea cada columna de la tabla al nombre de la propiedad en Producto.java
+        // Se mapea cada columna de la tabla al nombre de la propiedad en ProductoResumen.java
+        // (las observaciones ya no se muestran: se ven al cargar el producto para edición)
 
-        TableColumn<Producto, Long> idCol = new TableColumn<>("ID");
+        TableColumn<ProductoResumen, Long> idCol = new TableColumn<>("ID");
         idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
 
-        TableColumn<Producto, String> refCol = new TableColumn<>("Referencia");
+        TableColumn<ProductoResumen, String> refCol = new TableColumn<>("Referencia");
         refCol.setCellValueFactory(new PropertyValueFactory<>("referencia"));
 
-        TableColumn<Producto, String> descCol = new TableColumn<>("Descripción");
+        TableColumn<ProductoResumen, String> descCol = new TableColumn<>("Descripción");
         descCol.setCellValueFactory(new PropertyValueFactory<>("descripcion"));
 
-        TableColumn<Producto, Integer> cantCol = new TableColumn<>("Cantidad");
+        TableColumn<ProductoResumen, Integer> cantCol = new TableColumn<>("Cantidad");
         cantCol.setCellValueFactory(new PropertyValueFactory<>("cantidad"));
 
-        TableColumn<Producto, String> estadoCol = new TableColumn<>("Estado");
+        TableColumn<ProductoResumen, String> estadoCol = new TableColumn<>("Estado");
         estadoCol.setCellValueFactory(new PropertyValueFactory<>("estado"));
 
-        TableColumn<Producto, String> obsCol = new TableColumn<>("Observaciones");
-        obsCol.setCellValueFactory(new PropertyValueFactory<>("observaciones"));
-
         // Limpia columnas existentes y añade las nuevas
         tblStock.getColumns().clear();
-        tblStock.getColumns().addAll(idCol, refCol, descCol, cantCol, estadoCol, obsCol);
+        tblStock.getColumns().addAll(idCol, refCol, descCol, cantCol, estadoCol);
     }
 
 
     // --- Métodos de Acción (Llamados por FXML) ---
+    // Las llamadas al servicio corren en segundo plano (EjecutorFx) para no congelar la ventana.
 
     @FXML
     public void agregarProducto() {
-        try {
-            // 1. Creamos el objeto con los datos del formulario
-            Producto productoAguardar = new Producto(
-                    txtReferencia.getText(),
-                    txtDescripcion.getText(),
-                    spinnerCantidad.getValue(),
-                    cmbEstado.getValue(),
-                    txtObservaciones.getText()
-            );
-
-            // --- SOLUCIÓN DEL ERROR UNIQUE ---
-            // 2. Si la variable tiene un ID, se lo asignamos al producto.
-            // Esto le dice al Servicio: "¡Es una edición, no una inserción!"
-            if (productoEnEdicionId != null) {
-                productoAguardar.setId(productoEnEdicionId);
-            }
+        // 1. Creamos el objeto con los datos del formulario
+        Producto productoAguardar = new Producto(
+                txtReferencia.getText(),
+                txtDescripcion.getText(),
+                spinnerCantidad.getValue(),
+                cmbEstado.getValue(),
+                txtObservaciones.getText()
+        );
+
+        // --- SOLUCIÓN DEL ERROR UNIQUE ---
+        // 2. Si la variable tiene un ID, se lo asignamos al producto.
+        // Esto le dice al Servicio: "¡Es una edición, no una inserción!"
+        // Stock mínimo 0 = sin aviso
+        productoAguardar.setUmbralMinimo(spinnerUmbral.getValue() == 0 ? null : spinnerUmbral.getValue());
+
+        Long idEditado = productoEnEdicionId;
+        if (idEditado != null) {
+            productoAguardar.setId(idEditado);
+            productoAguardar.setVersion(productoEnEdicionVersion);
+        }
 
-            // 3. Llamamos al servicio
-            // Si tiene ID -> El servicio usará productoRepository.save() (UPDATE) -> ¡ÉXITO!
-            // Si no tiene ID -> El servicio usará JDBC (INSERT) -> ¡ÉXITO!
-            productoService.guardarProducto(productoAguardar);
+        // 3. Llamamos al servicio
+        // Si tiene ID -> UPDATE; si no -> INSERT. Ambos pasan por el escritor serializado.
+        ejecutorFx.enSegundoPlano(() -> productoService.guardarProducto(productoAguardar).get(),
+                guardado -> {
+                    // 4. Limpieza (la fila de la tabla ya la actualizó el aviso de cambios)
+                    limpiarCampos(); // Esto debe poner productoEnEdicionId = null
+
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "Éxito", "Operación realizada correctamente.");
+                },
+                error -> {
+                    if (error instanceof OptimisticLockingFailureException) {
+                        mostrarAlerta(Alert.AlertType.WARNING, "Conflicto de Edición", error.getMessage());
+                        return;
+                    }
+                    // Aquí verás el mensaje de error si algo más falla
+                    error.printStackTrace(); // Imprime en consola para ver detalles
+                    mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage());
+                });
+    }
+
+    @FXML
+    public void filtrarProductos() {
+        String criterio = cmbFiltroCriterio.getValue();
+        String valor = txtFiltroValor.getText();
 
-            // 4. Limpieza
+        if (CRITERIO_COMBINADO.equals(criterio)) {
+            filtrarCombinado();
+            return;
+        }
+        // Sin texto se vuelve al listado completo paginado
+        if (valor == null || valor.isBlank()) {
             refrescarTabla();
-            limpiarCampos(); // Esto debe poner productoEnEdicionId = null
+            return;
+        }
+        mostrarBusqueda(() -> productoService.filtrarProductos(criterio, valor));
+    }
+
+    private void filtrarCombinado() {
+        FiltroProductos filtro;
+        try {
+            filtro = leerFiltroCombinado();
+        } catch (IllegalArgumentException e) {
+            lblEstado.setText(e.getMessage()); // Mientras se escribe, p. ej. "hasta" menor que "desde"
+            return;
+        }
+        lblEstado.setText("");
+        // Sin condiciones ni orden se vuelve al listado completo paginado
+        if (filtro.sinCondiciones() && filtro.orden() == FiltroProductos.Orden.ID && !filtro.descendente()) {
+            refrescarTabla();
+            return;
+        }
+        mostrarBusqueda(() -> productoService.filtrarProductos(filtro));
+    }
 
-            mostrarAlerta(Alert.AlertType.INFORMATION, "Éxito", "Operación realizada correctamente.");
+    private FiltroProductos leerFiltroCombinado() {
+        Set<String> estados = new LinkedHashSet<>();
+        boxFiltroEstados.getChildren().forEach(nodo -> {
+            if (nodo instanceof CheckBox estado && estado.isSelected()) {
+                estados.add(estado.getText());
+            }
+        });
+        return new FiltroProductos(txtFiltroReferencia.getText(), txtFiltroDescripcion.getText(), estados,
+                leerCantidad(txtFiltroCantidadMinima, "desde"), leerCantidad(txtFiltroCantidadMaxima, "hasta"),
+                cmbFiltroOrden.getValue(), chkFiltroDescendente.isSelected(), spinnerFiltroLimite.getValue());
+    }
 
+    private static Integer leerCantidad(TextField campo, String nombre) {
+        String texto = campo.getText();
+        if (texto == null || texto.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(texto.trim());
         } catch (NumberFormatException e) {
-            mostrarAlerta(Alert.AlertType.ERROR, "Error", "La cantidad debe ser un número.");
-        } catch (Exception e) {
-            // Aquí verás el mensaje de error si algo más falla
-            e.printStackTrace(); // Imprime en consola para ver detalles
-            mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", e.getMessage());
+            throw new IllegalArgumentException("La cantidad '" + nombre + "' debe ser un número entero.");
         }
     }
 
+    private void mostrarBusqueda(Callable<List<ProductoResumen>> busqueda) {
+        // Una búsqueda nueva cancela la anterior; la generación evita que un resultado viejo pise uno nuevo
+        cancelarBusqueda();
+        long generacion = generacionBusqueda;
+        busquedaEnCurso = ejecutorFx.enSegundoPlano(busqueda,
+                productosFiltrados -> {
+                    if (generacion != generacionBusqueda) {
+                        return;
+                    }
+                    productosList.setAll(productosFiltrados);
+                    tblStock.setItems(productosList);
+                },
+                error -> {
+                    if (generacion == generacionBusqueda) {
+                        mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage());
+                    }
+                });
+    }
+
     @FXML
-    public void filtrarProductos() {
-        String criterio = cmbFiltroCriterio.getValue();
-        String valor = txtFiltroValor.getText();
+    public void refrescarTabla() {
+        // Una lista nueva vuelve a contar las filas; las páginas se leen al desplazarse
+        cancelarBusqueda();
+        long generacion = generacionBusqueda;
+        busquedaEnCurso = ejecutorFx.enSegundoPlano(productoService::contarProductosConSecuencia,
+                conteo -> {
+                    if (generacion != generacionBusqueda) {
+                        return;
+                    }
+                    if (conteo.secuencia() < ultimaSecuencia) {
+                        refrescarTabla(); // Llegaron cambios mientras se contaba: el conteo ya es viejo
+                        return;
+                    }
+                    tblStock.setItems(new ListaProductosPaginada(productoService, ejecutorFx, tblStock::refresh,
+                            conteo, TAMANO_PAGINA, MAX_PAGINAS_EN_MEMORIA));
+                },
+                error -> mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage()));
+    }
+
+    // --- Aviso de cambios del catálogo ---
+
+    // Lee los contadores del catálogo: no recorre los productos
+    private void mostrarTotales() {
+        CatalogoEnMemoria.Totales totales = productoService.obtenerTotales();
+        StringBuilder texto = new StringBuilder()
+                .append(totales.productos()).append(" productos, ")
+                .append(totales.unidades()).append(" unidades");
+        totales.porEstado().forEach((estado, total) -> texto.append("   |   ").append(estado).append(": ")
+                .append(total.productos()).append(" (").append(total.unidades()).append(" u.)"));
+        lblTotales.setText(texto.toString());
+    }
 
-        List<Producto> productosFiltrados = productoService.filtrarProductos(criterio, valor);
+    /**
+     * Aplica un cambio confirmado solo sobre la fila afectada. Si falta un cambio en la secuencia
+     * o no se puede ubicar la fila, se recarga la vista entera.
+     */
+    private void aplicarCambio(CatalogoEnMemoria.Cambio cambio) {
+        boolean enOrden = cambio.secuencia() == ultimaSecuencia + 1;
+        ultimaSecuencia = cambio.secuencia();
+        mostrarTotales();
+        if (cambio.tipo() == CatalogoEnMemoria.TipoCambio.RESINCRONIZAR) {
+            cacheQr.limpiar();
+        } else {
+            cacheQr.invalidar(cambio.id()); // El QR cambió o el producto ya no existe
+        }
+
+        if (!enOrden || cambio.tipo() == CatalogoEnMemoria.TipoCambio.RESINCRONIZAR) {
+            resincronizarTabla();
+            return;
+        }
+        if (tblStock.getItems() instanceof ListaProductosPaginada lista) {
+            if (!lista.aplicar(cambio)) {
+                refrescarTabla();
+                return;
+            }
+        } else if (tblStock.getItems() == productosList) {
+            // Resultado de un filtro: se actualizan o quitan sus filas (las altas no entran al filtro)
+            for (int i = 0; i < productosList.size(); i++) {
+                if (productosList.get(i).getId() == cambio.id()) {
+                    if (cambio.tipo() == CatalogoEnMemoria.TipoCambio.ELIMINADO) {
+                        productosList.remove(i);
+                    } else {
+                        productosList.set(i, cambio.producto());
+                    }
+                    break;
+                }
+            }
+        }
 
-        productosList.clear();
-        productosList.addAll(productosFiltrados);
+        // Si cambió el producto seleccionado, se vuelve a mostrar su QR
+        ProductoResumen seleccionado = tblStock.getSelectionModel().getSelectedItem();
+        if (seleccionado != null && seleccionado.getId() == cambio.id()) {
+            mostrarQrEnVista(seleccionado);
+        }
     }
 
-    @FXML
-    public void refrescarTabla() {
-        productosList.clear();
-        productosList.addAll(productoService.obtenerTodosLosProductos());
+    private void resincronizarTabla() {
+        if (tblStock.getItems() == productosList) {
+            filtrarProductos(); // Se repite el filtro activo
+        } else {
+            refrescarTabla();
+        }
     }
 
     // --- Métodos Auxiliares ---
 
+    private void cancelarBusqueda() {
+        filtroPendiente.stop();
+        generacionBusqueda++;
+        if (busquedaEnCurso != null) {
+            busquedaEnCurso.cancel(true);
+            busquedaEnCurso = null;
+        }
+    }
+
     private void limpiarCampos() {
         txtReferencia.clear();
         txtDescripcion.clear();
         spinnerCantidad.getValueFactory().setValue(1);
         txtObservaciones.clear();
-        cmbEstado.setValue("Disponible");
+        cmbEstado.setValue(Producto.ESTADO_DISPONIBLE);
+        spinnerUmbral.getValueFactory().setValue(0);
 
         // IMPORTANTE: Reiniciar el ID de edición a null
         productoEnEdicionId = null;
+        productoEnEdicionVersion = null;
     }
 
     private void mostrarAlerta(Alert.AlertType type, String title, String message) {
@@ -194,25 +497,38 @@ public class StockController {
         alert.setContentText(message);
         alert.showAndWait();
     }
-    private void mostrarQrEnVista(Producto producto) {
-        byte[] qrBytes = producto.getCodigoQr();
-        if (qrBytes != null) {
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(qrBytes)) {
-                javafx.scene.image.Image qrImage = new javafx.scene.image.Image(bis);
-                imgQrCode.setImage(qrImage);
-            } catch (IOException e) {
-                e.printStackTrace();
-                imgQrCode.setImage(null);
-            }
-        } else {
-            imgQrCode.setImage(null);
+    private void mostrarQrEnVista(ProductoResumen producto) {
+        // El QR se pide a la DB solo la primera vez; luego sale de la caché LRU
+        Long id = producto.getId();
+        ejecutorFx.enSegundoPlano(() -> Optional.ofNullable(cacheQr.obtener(id, this::cargarImagenQr)),
+                imagen -> {
+                    // Si mientras tanto se seleccionó otra fila, se descarta
+                    ProductoResumen actual = tblStock.getSelectionModel().getSelectedItem();
+                    if (actual != null && id.equals(actual.getId())) {
+                        imgQrCode.setImage(imagen.orElse(null));
+                    }
+                },
+                error -> imgQrCode.setImage(null));
+    }
+
+    // Se ejecuta en segundo plano (la Image de JavaFX se puede decodificar fuera del hilo de la interfaz)
+    private Image cargarImagenQr(Long productoId) {
+        byte[] qrBytes = productoService.obtenerCodigoQr(productoId);
+        if (qrBytes == null) {
+            return null;
+        }
+        try (ByteArrayInputStream bis = new ByteArrayInputStream(qrBytes)) {
+            return new Image(bis);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
         }
     }
     @FXML
     public void exportarQrSeleccionado() {
 
         // Obtener el producto actualmente seleccionado en la tabla
-        Producto seleccionado = tblStock.getSelectionModel().getSelectedItem();
+        ProductoResumen seleccionado = tblStock.getSelectionModel().getSelectedItem();
 
         if (seleccionado == null) {
             mostrarAlerta(Alert.AlertType.WARNING, "Advertencia", "Por favor, selecciona un producto de la tabla.");
@@ -225,44 +541,440 @@ public class StockController {
         File rutaDestino = dirChooser.showDialog(tblStock.getScene().getWindow()); // Usa la ventana actual
 
         if (rutaDestino != null) {
-            try {
-                // 2. Llamar al servicio para guardar el archivo
-                String rutaGuardada = productoService.exportarQrCode(seleccionado.getId(), rutaDestino);
-
-                mostrarAlerta(Alert.AlertType.INFORMATION,
-                        "Exportación Exitosa",
-                        "Código QR guardado en:\n" + rutaGuardada);
-
-            } catch (IOException e) {
-                mostrarAlerta(Alert.AlertType.ERROR, "Error de Archivo",
-                        "No se pudo guardar el archivo QR: " + e.getMessage());
-            } catch (IllegalArgumentException e) {
-                mostrarAlerta(Alert.AlertType.ERROR, "Error de Producto", e.getMessage());
-            }
+            // 2. Llamar al servicio para guardar el archivo
+            ejecutorFx.enSegundoPlano(() -> productoService.exportarQrCode(seleccionado.getId(), rutaDestino),
+                    rutaGuardada -> mostrarAlerta(Alert.AlertType.INFORMATION,
+                            "Exportación Exitosa",
+                            "Código QR guardado en:\n" + rutaGuardada),
+                    error -> {
+                        if (error instanceof IOException) {
+                            mostrarAlerta(Alert.AlertType.ERROR, "Error de Archivo",
+                                    "No se pudo guardar el archivo QR: " + error.getMessage());
+                        } else {
+                            mostrarAlerta(Alert.AlertType.ERROR, "Error de Producto", error.getMessage());
+                        }
+                    });
+        }
+    }
+    @FXML
+    public void importarCsv() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Seleccionar Archivo CSV para Importar");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV (coma o punto y coma)", "*.csv", "*.txt"));
+        File archivo = fileChooser.showOpenDialog(tblStock.getScene().getWindow());
+
+        if (archivo == null) {
+            return;
+        }
+
+        lblEstado.setText("Importando " + archivo.getName() + "...");
+        ejecutorFx.enSegundoPlano(
+                () -> importacionService.importarCsv(archivo.toPath(), progreso -> Platform.runLater(() ->
+                        lblEstado.setText("Importando: " + progreso.filasLeidas() + " filas leídas, "
+                                + progreso.insertados() + " insertadas, " + progreso.errores() + " con errores"))),
+                resultado -> {
+                    lblEstado.setText("Importación terminada: " + resultado.insertados() + " productos en "
+                            + resultado.milisegundos() + " ms");
+                    mostrarAlerta(resultado.totalErrores() == 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING,
+                            "Importación Terminada", resumirImportacion(resultado));
+                },
+                error -> {
+                    lblEstado.setText("La importación falló.");
+                    mostrarAlerta(Alert.AlertType.ERROR, "Error de Importación",
+                            "La importación se interrumpió (los lotes ya confirmados quedan guardados): "
+                                    + error.getMessage());
+                });
+    }
+
+    private String resumirImportacion(ImportacionService.ResultadoImportacion resultado) {
+        StringBuilder resumen = new StringBuilder()
+                .append("Productos insertados: ").append(resultado.insertados())
+                .append("\nFilas con errores: ").append(resultado.totalErrores());
+        // Solo los primeros errores: el detalle completo puede ser muy largo
+        resultado.errores().stream().limit(10).forEach(e ->
+                resumen.append("\n  Línea ").append(e.linea()).append(": ").append(e.mensaje()));
+        if (resultado.totalErrores() > 10) {
+            resumen.append("\n  ...");
+        }
+        return resumen.toString();
+    }
+
+    @FXML
+    public void regenerarCodigosQr() {
+        Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION,
+                "Se volverán a generar los Códigos QR de todos los productos en segundo plano. ¿Continuar?",
+                ButtonType.YES, ButtonType.NO);
+        Optional<ButtonType> result = confirmAlert.showAndWait();
+
+        if (result.isPresent() && result.get() == ButtonType.YES) {
+            // Guarda el punto de partida por el escritor: fuera del hilo de la interfaz
+            ejecutorFx.enSegundoPlano(() -> regeneracionQrService.iniciar(false),
+                    iniciada -> lblEstado.setText(iniciada
+                            ? "Regenerando Códigos QR..."
+                            : "Los Códigos QR no se guardan (modo NINGUNO): se generan al mostrarlos."),
+                    error -> mostrarAlerta(Alert.AlertType.WARNING, "Advertencia", error.getMessage()));
         }
     }
+
+    private void mostrarProgresoQr(RegeneracionQrService.ProgresoRegeneracion progreso) {
+        if (progreso.terminado()) {
+            cacheQr.limpiar(); // Las imágenes en caché pueden ser de QR viejos
+            lblEstado.setText(String.format("Códigos QR generados: %d (%.0f QR/s)",
+                    progreso.procesados(), progreso.qrPorSegundo()));
+        } else {
+            lblEstado.setText(String.format("Generando Códigos QR: %d de %d (%.0f QR/s)",
+                    progreso.procesados(), progreso.total(), progreso.qrPorSegundo()));
+        }
+    }
+
+    @FXML
+    public void exportarQrZip() {
+        List<Long> ids = idsParaExportar();
+        if (!confirmarExportacion(ids)) {
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Guardar Códigos QR en ZIP");
+        fileChooser.setInitialFileName("codigos_qr.zip");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Archivo ZIP", "*.zip"));
+        File archivo = fileChooser.showSaveDialog(tblStock.getScene().getWindow());
+
+        if (archivo != null) {
+            lblEstado.setText("Exportando Códigos QR...");
+            ejecutorFx.enSegundoPlano(
+                    () -> exportacionQrService.exportarZip(ids, archivo.toPath(), this::mostrarProgresoExportacion),
+                    this::mostrarResultadoExportacion,
+                    this::mostrarErrorExportacion);
+        }
+    }
+
+    @FXML
+    public void exportarHojasEtiquetas() {
+        List<Long> ids = idsParaExportar();
+        if (!confirmarExportacion(ids)) {
+            return;
+        }
+        DirectoryChooser dirChooser = new DirectoryChooser();
+        dirChooser.setTitle("Seleccionar Carpeta para las Hojas de Etiquetas");
+        File carpeta = dirChooser.showDialog(tblStock.getScene().getWindow());
+
+        if (carpeta != null) {
+            lblEstado.setText("Generando hojas de etiquetas...");
+            ejecutorFx.enSegundoPlano(
+                    () -> exportacionQrService.exportarHojasEtiquetas(ids, carpeta.toPath(), this::mostrarProgresoExportacion),
+                    this::mostrarResultadoExportacion,
+                    this::mostrarErrorExportacion);
+        }
+    }
+
+    /**
+     * Exporta a CSV o JSON (según la extensión elegida, comprimido si termina en .gz) los productos
+     * del filtro activo, o todo el inventario si no hay filtro. Con el filtro combinado se exportan
+     * los productos que muestra la tabla.
+     */
+    @FXML
+    public void exportarInventario() {
+        String criterio = cmbFiltroCriterio.getValue();
+        String valor = txtFiltroValor.getText();
+        List<Long> ids = CRITERIO_COMBINADO.equals(criterio) && tblStock.getItems() == productosList
+                ? productosList.stream().map(ProductoResumen::getId).toList()
+                : null;
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Exportar Inventario");
+        fileChooser.setInitialFileName("inventario.csv");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV comprimido", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("JSON", "*.json"),
+                new FileChooser.ExtensionFilter("JSON comprimido", "*.json.gz"));
+        File archivo = fileChooser.showSaveDialog(tblStock.getScene().getWindow());
+
+        if (archivo != null) {
+            String nombre = archivo.getName().toLowerCase();
+            ExportacionInventarioService.Formato formato = nombre.endsWith(".json") || nombre.endsWith(".json.gz")
+                    ? ExportacionInventarioService.Formato.JSON
+                    : ExportacionInventarioService.Formato.CSV;
+            lblEstado.setText("Exportando inventario...");
+            ejecutorFx.enSegundoPlano(
+                    () -> {
+                        LongConsumer progreso = filas -> Platform.runLater(
+                                () -> lblEstado.setText("Exportando inventario: " + filas + " productos"));
+                        return ids != null
+                                ? exportacionInventarioService.exportar(ids, formato, nombre.endsWith(".gz"), archivo.toPath(), progreso)
+                                : exportacionInventarioService.exportar(criterio, valor, formato, nombre.endsWith(".gz"),
+                                        archivo.toPath(), progreso);
+                    },
+                    resultado -> {
+                        lblEstado.setText("Exportación terminada en " + resultado.milisegundos() + " ms");
+                        mostrarAlerta(Alert.AlertType.INFORMATION, "Exportación Exitosa",
+                                "Productos exportados: " + resultado.exportados() + "\nDestino:\n" + resultado.destino());
+                    },
+                    this::mostrarErrorExportacion);
+        }
+    }
+
+    /**
+     * Lee los QR de las fotos de una carpeta y guarda un CSV con lo que falta, sobra o no se conoce.
+     */
+    @FXML
+    public void conciliarInventario() {
+        DirectoryChooser dirChooser = new DirectoryChooser();
+        dirChooser.setTitle("Seleccionar Carpeta con las Fotos del Inventario");
+        File carpeta = dirChooser.showDialog(tblStock.getScene().getWindow());
+        if (carpeta == null) {
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Guardar Reporte de Conciliación");
+        fileChooser.setInitialFileName("conciliacion.csv");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        File reporte = fileChooser.showSaveDialog(tblStock.getScene().getWindow());
+
+        if (reporte != null) {
+            lblEstado.setText("Leyendo fotos...");
+            ejecutorFx.enSegundoPlano(
+                    () -> conciliacionInventarioService.conciliar(carpeta.toPath(), reporte.toPath(),
+                            progreso -> Platform.runLater(() -> lblEstado.setText(
+                                    "Leyendo fotos: " + progreso.procesadas() + " de " + progreso.total()))),
+                    this::mostrarResultadoConciliacion,
+                    error -> {
+                        lblEstado.setText("La conciliación falló.");
+                        mostrarAlerta(Alert.AlertType.ERROR, "Error de Conciliación", "No se pudo conciliar: " + error.getMessage());
+                    });
+        }
+    }
+
+    /**
+     * Respaldo completo de la DB ahora mismo, sin esperar al programado. Se puede seguir trabajando mientras copia.
+     */
+    @FXML
+    public void respaldarAhora() {
+        lblEstado.setText("Respaldando la base de datos...");
+        ejecutorFx.enSegundoPlano(
+                respaldoService::respaldarCompleto,
+                resultado -> {
+                    lblEstado.setText("Respaldo terminado en " + resultado.milisegundos() + " ms");
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "Respaldo Exitoso",
+                            "Productos respaldados: " + resultado.productos() + "\nArchivo:\n" + resultado.archivo().toAbsolutePath());
+                },
+                error -> {
+                    lblEstado.setText("El respaldo falló.");
+                    mostrarAlerta(Alert.AlertType.ERROR, "Error de Respaldo", "No se pudo respaldar: " + error.getMessage());
+                });
+    }
+
+    /**
+     * Guarda en un archivo los cambios que la otra instalación todavía no tiene, para llevárselos.
+     */
+    @FXML
+    public void exportarCambios() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Exportar Cambios para la Otra Instalación");
+        fileChooser.setInitialFileName("cambios.stkr");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Cambios del inventario", "*.stkr"));
+        File archivo = fileChooser.showSaveDialog(tblStock.getScene().getWindow());
+
+        if (archivo != null) {
+            lblEstado.setText("Exportando cambios...");
+            ejecutorFx.enSegundoPlano(
+                    () -> replicacionService.exportar(archivo.toPath()),
+                    resultado -> {
+                        lblEstado.setText("Cambios exportados en " + resultado.milisegundos() + " ms");
+                        mostrarAlerta(Alert.AlertType.INFORMATION, "Cambios Exportados",
+                                "Cambios: " + resultado.enviados() + " (" + resultado.bytes() + " bytes)\nArchivo:\n" + resultado.destino());
+                    },
+                    error -> {
+                        lblEstado.setText("La exportación de cambios falló.");
+                        mostrarAlerta(Alert.AlertType.ERROR, "Error de Replicación", "No se pudieron exportar los cambios: " + error.getMessage());
+                    });
+        }
+    }
+
+    /**
+     * Aplica el archivo de cambios traído de la otra instalación.
+     */
+    @FXML
+    public void importarCambios() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Importar Cambios de la Otra Instalación");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Cambios del inventario", "*.stkr"));
+        File archivo = fileChooser.showOpenDialog(tblStock.getScene().getWindow());
+
+        if (archivo != null) {
+            lblEstado.setText("Importando cambios...");
+            ejecutorFx.enSegundoPlano(
+                    () -> replicacionService.importar(archivo.toPath()),
+                    resultado -> {
+                        lblEstado.setText("Cambios importados en " + resultado.milisegundos() + " ms");
+                        mostrarAlerta(Alert.AlertType.INFORMATION, "Cambios Importados",
+                                "Cambios nuevos: " + resultado.nuevos() + " de " + resultado.recibidos()
+                                        + "\nProductos actualizados: " + resultado.guardados()
+                                        + "\nProductos eliminados: " + resultado.eliminados());
+                    },
+                    error -> {
+                        lblEstado.setText("La importación de cambios falló.");
+                        mostrarAlerta(Alert.AlertType.ERROR, "Error de Replicación", "No se pudieron importar los cambios: " + error.getMessage());
+                    });
+        }
+    }
+
+    private void mostrarResultadoConciliacion(ConciliacionInventarioService.ResultadoConciliacion resultado) {
+        lblEstado.setText("Conciliación terminada en " + resultado.milisegundos() + " ms");
+        StringBuilder mensaje = new StringBuilder()
+                .append("Fotos leídas: ").append(resultado.imagenes())
+                .append("\nCódigos QR leídos: ").append(resultado.qrLeidos()).append("\n");
+        for (ConciliacionInventarioService.Resultado tipo : ConciliacionInventarioService.Resultado.values()) {
+            mensaje.append("\n").append(tipo).append(": ").append(resultado.porResultado().getOrDefault(tipo, 0));
+        }
+        if (resultado.qrAjenos() > 0) {
+            mensaje.append("\n\nQR que no son de productos (ignorados): ").append(resultado.qrAjenos());
+        }
+        if (resultado.imagenesConError() > 0) {
+            mensaje.append("\nFotos que no se pudieron abrir: ").append(resultado.imagenesConError());
+        }
+        mensaje.append("\n\nReporte:\n").append(resultado.reporte());
+        mostrarAlerta(Alert.AlertType.INFORMATION, "Conciliación Terminada", mensaje.toString());
+    }
+
+    /**
+     * Productos a exportar: la selección si hay más de uno elegido; si no, el resultado del filtro
+     * activo; y sin filtro, null (todo el inventario).
+     */
+    private List<Long> idsParaExportar() {
+        List<ProductoResumen> seleccion = tblStock.getSelectionModel().getSelectedItems();
+        if (seleccion.size() > 1) {
+            return seleccion.stream().filter(Objects::nonNull).map(ProductoResumen::getId).toList();
+        }
+        if (tblStock.getItems() == productosList) {
+            return productosList.stream().map(ProductoResumen::getId).toList();
+        }
+        return null;
+    }
+
+    private boolean confirmarExportacion(List<Long> ids) {
+        String alcance = ids == null ? "todo el inventario" : ids.size() + " producto(s)";
+        Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION,
+                "Se exportarán los Códigos QR de " + alcance + ". ¿Continuar?", ButtonType.YES, ButtonType.NO);
+        Optional<ButtonType> result = confirmAlert.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.YES;
+    }
+
+    // Llega desde el hilo de la exportación
+    private void mostrarProgresoExportacion(int exportados) {
+        Platform.runLater(() -> lblEstado.setText("Exportando Códigos QR: " + exportados));
+    }
+
+    private void mostrarResultadoExportacion(ExportacionQrService.ResultadoExportacion resultado) {
+        lblEstado.setText("Exportación terminada en " + resultado.milisegundos() + " ms");
+        String mensaje = "Códigos QR exportados: " + resultado.exportados() + "\nDestino:\n" + resultado.destino();
+        if (resultado.sinQr() > 0) {
+            mensaje += "\n\nProductos sin Código QR (omitidos): " + resultado.sinQr();
+        }
+        mostrarAlerta(Alert.AlertType.INFORMATION, "Exportación Exitosa", mensaje);
+    }
+
+    private void mostrarErrorExportacion(Throwable error) {
+        lblEstado.setText("La exportación falló.");
+        mostrarAlerta(Alert.AlertType.ERROR, "Error de Archivo", "No se pudo exportar: " + error.getMessage());
+    }
+
     @FXML
     public void cargarProductoParaEdicion() {
-        Producto seleccionado = tblStock.getSelectionModel().getSelectedItem();
+        ProductoResumen seleccionado = tblStock.getSelectionModel().getSelectedItem();
 
         if (seleccionado != null) {
-            // --- AQUÍ ESTÁ LA CLAVE ---
-            // Guardamos el ID en nuestra variable temporal
-            productoEnEdicionId = seleccionado.getId();
-
-            // Cargar los datos visuales
-            txtReferencia.setText(seleccionado.getReferencia());
-            txtDescripcion.setText(seleccionado.getDescripcion());
-            spinnerCantidad.getValueFactory().setValue(seleccionado.getCantidad());
-            cmbEstado.setValue(seleccionado.getEstado());
-            txtObservaciones.setText(seleccionado.getObservaciones());
+            // La fila de la tabla es un resumen: pedimos el producto completo (con observaciones)
+            ejecutorFx.enSegundoPlano(() -> productoService.obtenerProducto(seleccionado.getId()),
+                    producto -> {
+                        if (producto.isEmpty()) {
+                            mostrarAlerta(Alert.AlertType.WARNING, "Advertencia", "El producto ya no existe.");
+                            refrescarTabla();
+                            return;
+                        }
+                        Producto completo = producto.get();
+
+                        // --- AQUÍ ESTÁ LA CLAVE ---
+                        // Guardamos el ID en nuestra variable temporal
+                        productoEnEdicionId = completo.getId();
+                        productoEnEdicionVersion = completo.getVersion();
+
+                        // Cargar los datos visuales
+                        txtReferencia.setText(completo.getReferencia());
+                        txtDescripcion.setText(completo.getDescripcion());
+                        spinnerCantidad.getValueFactory().setValue(completo.getCantidad());
+                        cmbEstado.setValue(completo.getEstado());
+                        txtObservaciones.setText(completo.getObservaciones());
+                        spinnerUmbral.getValueFactory().setValue(
+                                completo.getUmbralMinimo() == null ? 0 : completo.getUmbralMinimo());
+
+                        mostrarQrEnVista(seleccionado);
+                    },
+                    error -> mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage()));
+        }
+    }
+    @FXML
+    public void mostrarHistorial() {
+        ProductoResumen seleccionado = tblStock.getSelectionModel().getSelectedItem();
 
-            // (Opcional) Mostrar el QR si lo tienes implementado
+        if (seleccionado == null) {
+            mostrarAlerta(Alert.AlertType.WARNING, "Advertencia", "Por favor, selecciona un producto para ver su historial.");
+            return;
         }
+
+        ejecutorFx.enSegundoPlano(() -> historialStockService.obtenerHistorial(seleccionado.getId(), MOVIMIENTOS_EN_HISTORIAL),
+                historial -> {
+                    StringBuilder texto = new StringBuilder();
+                    for (MovimientoStock movimiento : historial.movimientos()) {
+                        texto.append(FORMATO_FECHA.format(Instant.ofEpochMilli(movimiento.fecha())))
+                                .append("  ").append(movimiento.delta() > 0 ? "+" : "").append(movimiento.delta())
+                                .append(" → ").append(movimiento.cantidadResultante())
+                                .append("  (").append(movimiento.motivo()).append(")\n");
+                    }
+                    if (historial.snapshot() != null) {
+                        texto.append("Cantidad al ").append(FORMATO_FECHA.format(Instant.ofEpochMilli(historial.snapshot().fecha())))
+                                .append(" (movimientos anteriores compactados): ").append(historial.snapshot().cantidad());
+                    }
+                    if (texto.isEmpty()) {
+                        texto.append("Sin movimientos registrados.");
+                    }
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "Historial de " + seleccionado.getReferencia(), texto.toString());
+                },
+                error -> mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage()));
+    }
+
+    /**
+     * Productos por debajo de su stock mínimo, los que más unidades necesitan primero,
+     * con lo que hay que pedir para volver al mínimo.
+     */
+    @FXML
+    public void mostrarReposicion() {
+        ejecutorFx.enSegundoPlano(() -> productoService.obtenerSugerenciasReposicion(SUGERENCIAS_EN_REPOSICION),
+                sugerencias -> {
+                    StringBuilder texto = new StringBuilder();
+                    for (AlertasStockService.Sugerencia sugerencia : sugerencias) {
+                        texto.append(sugerencia.referencia()).append("  ").append(sugerencia.descripcion())
+                                .append(": hay ").append(sugerencia.cantidad())
+                                .append(", mínimo ").append(sugerencia.umbral())
+                                .append(" → reponer ").append(sugerencia.faltan()).append("\n");
+                    }
+                    if (texto.isEmpty()) {
+                        texto.append("Ningún producto está por debajo de su stock mínimo.");
+                    }
+                    mostrarAlerta(Alert.AlertType.INFORMATION, "Sugerencias de Reposición", texto.toString());
+                },
+                error -> mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", error.getMessage()));
     }
+
+    // En la barra de estado: no interrumpe lo que se está haciendo
+    private void mostrarAlertaStock(AlertasStockService.Alerta alerta) {
+        lblEstado.setText(alerta.tipo() == AlertasStockService.TipoAlerta.STOCK_BAJO
+                ? "⚠ Stock bajo: " + alerta.referencia() + " tiene " + alerta.cantidad() + " (mínimo " + alerta.umbral() + ")"
+                : "⚠ " + alerta.referencia() + " pasó a " + alerta.estado());
+    }
+
     @FXML
     public void eliminarProducto() {
-        Producto seleccionado = tblStock.getSelectionModel().getSelectedItem();
+        ProductoResumen seleccionado = tblStock.getSelectionModel().getSelectedItem();
 
         if (seleccionado == null) {
             mostrarAlerta(Alert.AlertType.WARNING, "Advertencia", "Por favor, selecciona un producto para eliminar.");
@@ -273,14 +985,20 @@ public class StockController {
         Optional<ButtonType> result = confirmAlert.showAndWait();
 
         if (result.isPresent() && result.get() == ButtonType.YES) {
-            try {
-                productoService.eliminarProducto(seleccionado.getId());
-                refrescarTabla();
-                limpiarCampos();
-                mostrarAlerta(Alert.AlertType.INFORMATION, "Éxito", "Producto eliminado correctamente.");
-            } catch (Exception e) {
-                mostrarAlerta(Alert.AlertType.ERROR, "Error de DB", "No se pudo eliminar el producto.");
-            }
+            ejecutorFx.enSegundoPlano(() -> {
+                        productoService.eliminarProducto(seleccionado.getId()).get();
+                        return seleccionado.getId();
+                    },
+                    idEliminado -> {
+                        limpiarCampos();
+                        mostrarAlerta(Alert.AlertType.INFORMATION, "Éxito", "Producto eliminado correctamente.");
+                    },
+                    error -> {
+                        // EjecutorFx ya entrega la causa original (p. ej. "Producto no encontrado con ID: ...")
+                        error.printStackTrace();
+                        mostrarAlerta(Alert.AlertType.ERROR, "Error de DB",
+                                "No se pudo eliminar el producto: " + error.getMessage());
+                    });
         }
     }
 
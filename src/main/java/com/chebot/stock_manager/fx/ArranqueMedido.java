@@ -0,0 +1,239 @@
+package com.chebot.stock_manager.fx;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Sigue los pasos de arranque que publica Spring: informa el avance (para el splash) y arma
+ * un reporte con el tiempo de cada fase y de los beans más lentos.
+ * <p>
+ * El avance es la fracción de beans creados sobre los singletons no perezosos; antes de crear
+ * beans se informa -1 (indeterminado) con el nombre de la fase.
+ */
+class ArranqueMedido implements ApplicationStartup {
+
+    private static final String PASO_BEAN = "spring.beans.instantiate";
+    private static final String PASO_REFRESCO = "spring.context.refresh";
+    private static final int BEANS_EN_REPORTE = 10;
+
+    // Nombres legibles de las fases que se muestran en el splash
+    private static final Map<String, String> FASES = Map.of(
+            "spring.boot.application.starting", "Iniciando",
+            "spring.boot.application.environment-prepared", "Leyendo configuración",
+            "spring.boot.application.context-prepared", "Preparando el contexto",
+            "spring.context.config-classes.parse", "Buscando componentes",
+            "spring.context.beans.post-process", "Preparando componentes");
+
+    private record PasoTerminado(String nombre, long padre, String padreNombre, String detalle,
+                                 long inicioNanos, long duracionNanos) {
+    }
+
+    private final long inicioNanos = System.nanoTime();
+    // Milisegundos desde que arrancó el proceso (JVM) hasta que se creó este objeto
+    private final long msDesdeProceso = ProcessHandle.current().info().startInstant()
+            .map(inicio -> Duration.between(inicio, Instant.now()).toMillis()).orElse(-1L);
+
+    private final AtomicLong ultimoId = new AtomicLong();
+    private final ThreadLocal<Paso> pasoActual = new ThreadLocal<>();
+    private final ConcurrentLinkedQueue<PasoTerminado> terminados = new ConcurrentLinkedQueue<>();
+    private final Map<String, Long> hitos = new LinkedHashMap<>();
+
+    private volatile BiConsumer<Double, String> alAvanzar = (avance, fase) -> { };
+    private volatile ConfigurableListableBeanFactory fabrica;
+    private volatile int beansEsperados = 0;
+    private final AtomicInteger beansCreados = new AtomicInteger();
+
+    /**
+     * @param alAvanzar Recibe el avance (0 a 1, o -1 si no se conoce) y la fase. Se llama desde el hilo de arranque.
+     */
+    void alAvanzar(BiConsumer<Double, String> alAvanzar) {
+        this.alAvanzar = alAvanzar;
+    }
+
+    /**
+     * Inicializador de Spring: guarda la fábrica de beans para contar los que hay que crear.
+     */
+    void registrarContexto(ConfigurableApplicationContext contexto) {
+        this.fabrica = contexto.getBeanFactory();
+    }
+
+    /**
+     * Marca un momento del arranque fuera de Spring (p. ej. "Ventana principal visible").
+     */
+    synchronized void hito(String nombre) {
+        hitos.put(nombre, System.nanoTime() - inicioNanos);
+    }
+
+    @Override
+    public StartupStep start(String name) {
+        Paso padre = pasoActual.get();
+        Paso paso = new Paso(ultimoId.incrementAndGet(), name, padre);
+        pasoActual.set(paso);
+        String fase = FASES.get(name);
+        if (fase != null) {
+            alAvanzar.accept(-1.0, fase);
+        }
+        return paso;
+    }
+
+    private void alTerminar(Paso paso) {
+        pasoActual.set(paso.padre);
+        long duracion = System.nanoTime() - paso.inicio;
+        terminados.add(new PasoTerminado(paso.nombre, paso.padre == null ? -1 : paso.padre.id,
+                paso.padre == null ? null : paso.padre.nombre, paso.detalle(), paso.inicio - inicioNanos, duracion));
+
+        if ("spring.context.beans.post-process".equals(paso.nombre)) {
+            beansEsperados = contarSingletonsNoPerezosos();
+        } else if (PASO_BEAN.equals(paso.nombre) && beansEsperados > 0
+                && (paso.padre == null || !PASO_BEAN.equals(paso.padre.nombre))) {
+            // Solo cuentan los beans de primer nivel: las dependencias se crean dentro de ellos
+            double avance = Math.min(0.99, (double) beansCreados.incrementAndGet() / beansEsperados);
+            alAvanzar.accept(avance, "Iniciando " + paso.detalle());
+        }
+    }
+
+    private int contarSingletonsNoPerezosos() {
+        if (fabrica == null) {
+            return 0;
+        }
+        int total = 0;
+        for (String nombre : fabrica.getBeanDefinitionNames()) {
+            BeanDefinition definicion = fabrica.getBeanDefinition(nombre);
+            if (definicion.isSingleton() && !definicion.isLazyInit() && !definicion.isAbstract()) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    // --- Reporte ---
+
+    /**
+     * Tiempos de arranque: fases principales (las de primer nivel y las del refresco del contexto,
+     * agrupadas por nombre), los beans que más tardaron en crearse y los hitos de la interfaz.
+     */
+    synchronized String reporte() {
+        List<PasoTerminado> pasos = new ArrayList<>(terminados);
+        StringBuilder texto = new StringBuilder("--- Tiempos de arranque ---").append(System.lineSeparator());
+        if (msDesdeProceso >= 0) {
+            texto.append(String.format("  en %6d ms  %9s  %s%n", 0, msDesdeProceso + " ms", "JVM y JavaFX hasta iniciar la aplicación"));
+        }
+
+        // 1. Fases: cada una con su inicio y la suma de sus duraciones
+        Map<String, long[]> fases = new LinkedHashMap<>();
+        for (PasoTerminado paso : pasos) {
+            boolean principal = paso.padre() == -1 || PASO_REFRESCO.equals(paso.padreNombre());
+            if (principal && !PASO_BEAN.equals(paso.nombre())) {
+                long[] acumulado = fases.computeIfAbsent(paso.nombre(), n -> new long[]{paso.inicioNanos(), 0, 0});
+                acumulado[1] += paso.duracionNanos();
+                acumulado[2]++;
+            }
+        }
+        fases.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue()[0]))
+                .forEach(e -> linea(texto, e.getValue()[0], e.getValue()[1],
+                        e.getKey() + (e.getValue()[2] > 1 ? " (x" + e.getValue()[2] + ")" : "")));
+
+        // 2. Beans más lentos (los de primer nivel: su tiempo incluye el de sus dependencias)
+        texto.append("Beans más lentos:").append(System.lineSeparator());
+        pasos.stream()
+                .filter(p -> PASO_BEAN.equals(p.nombre()) && !PASO_BEAN.equals(p.padreNombre()))
+                .sorted(Comparator.comparingLong(PasoTerminado::duracionNanos).reversed())
+                .limit(BEANS_EN_REPORTE)
+                .forEach(p -> linea(texto, p.inicioNanos(), p.duracionNanos(), p.detalle()));
+
+        // 3. Hitos de la interfaz
+        hitos.forEach((nombre, nanos) -> linea(texto, nanos, -1, nombre));
+        return texto.toString();
+    }
+
+    // Inicio en ms desde el arranque del proceso, y duración en ms (si corresponde)
+    private void linea(StringBuilder texto, long inicioNanos, long duracionNanos, String descripcion) {
+        long inicio = Math.max(msDesdeProceso, 0) + TimeUnit.NANOSECONDS.toMillis(inicioNanos);
+        String duracion = duracionNanos < 0 ? "" : TimeUnit.NANOSECONDS.toMillis(duracionNanos) + " ms";
+        texto.append(String.format("  en %6d ms  %9s  %s%n", inicio, duracion, descripcion));
+    }
+
+    // --- Paso de arranque ---
+
+    private final class Paso implements StartupStep {
+
+        private final long id;
+        private final String nombre;
+        private final Paso padre;
+        private final long inicio = System.nanoTime();
+        private final List<Tag> etiquetas = new ArrayList<>(2);
+
+        Paso(long id, String nombre, Paso padre) {
+            this.id = id;
+            this.nombre = nombre;
+            this.padre = padre;
+        }
+
+        // Para los beans, el nombre del bean; para el resto, las etiquetas
+        String detalle() {
+            for (Tag etiqueta : etiquetas) {
+                if ("beanName".equals(etiqueta.getKey())) {
+                    return etiqueta.getValue();
+                }
+            }
+            return etiquetas.isEmpty() ? nombre : nombre + " " + etiquetas.get(0).getValue();
+        }
+
+        @Override
+        public String getName() {
+            return nombre;
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getParentId() {
+            return padre == null ? null : padre.id;
+        }
+
+        @Override
+        public StartupStep tag(String key, String value) {
+            etiquetas.add(new Etiqueta(key, value));
+            return this;
+        }
+
+        @Override
+        public StartupStep tag(String key, Supplier<String> value) {
+            return tag(key, value.get());
+        }
+
+        @Override
+        public Tags getTags() {
+            return etiquetas::iterator;
+        }
+
+        @Override
+        public void end() {
+            alTerminar(this);
+        }
+    }
+
+    private record Etiqueta(String getKey, String getValue) implements StartupStep.Tag {
+    }
+}
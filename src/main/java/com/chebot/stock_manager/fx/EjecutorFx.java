@@ -0,0 +1,56 @@
+package com.chebot.stock_manager.fx;
+
+import jakarta.annotation.PreDestroy;
+import javafx.application.Platform;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta llamadas al servicio fuera del hilo de JavaFX (en hilos virtuales) y
+ * entrega el resultado de vuelta en el hilo de la interfaz con Platform.runLater.
+ */
+@Component
+public class EjecutorFx {
+
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Lanza la tarea en segundo plano.
+     * @param alTerminar Recibe el resultado en el hilo de JavaFX.
+     * @param alFallar Recibe el error en el hilo de JavaFX (no se llama si la tarea se canceló).
+     * @return El Future de la tarea, para poder cancelarla.
+     */
+    public <T> Future<?> enSegundoPlano(Callable<T> tarea, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+        return ejecutor.submit(() -> {
+            try {
+                T resultado = tarea.call();
+                if (!Thread.currentThread().isInterrupted()) {
+                    Platform.runLater(() -> alTerminar.accept(resultado));
+                }
+            } catch (CancellationException | InterruptedException e) {
+                // Cancelada: una consulta más nueva la reemplazó
+            } catch (ExecutionException e) {
+                // La tarea esperó un Future (p. ej. una escritura encolada): se entrega el error original
+                if (!Thread.currentThread().isInterrupted()) {
+                    Platform.runLater(() -> alFallar.accept(e.getCause()));
+                }
+            } catch (Throwable e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    Platform.runLater(() -> alFallar.accept(e));
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    void cerrar() {
+        ejecutor.shutdownNow();
+    }
+}
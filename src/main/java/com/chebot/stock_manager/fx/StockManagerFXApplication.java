@@ -3,9 +3,13 @@ package com.chebot.stock_manager.fx;
 import com.chebot.stock_manager.StockManagerApplication;
 import javafx.animation.FadeTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.util.Duration;
@@ -14,44 +18,96 @@ import org.springframework.context.ConfigurableApplicationContext;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class StockManagerFXApplication extends Application {
 
-    private ConfigurableApplicationContext applicationContext;
-
-    @Override
-    public void init() {
-        String[] args = getParameters().getRaw().toArray(new String[0]);
-        this.applicationContext = SpringApplication.run(StockManagerApplication.class, args);
-    }
+    // Mide el arranque desde que JavaFX crea la aplicación
+    private final ArranqueMedido arranque = new ArranqueMedido();
+    private volatile ConfigurableApplicationContext applicationContext;
 
     @Override
     public void start(Stage splashStage) throws IOException {
         // 1. Cargar el Splash Screen
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/splash_view.fxml"));
         Parent splashRoot = loader.load();
+        ProgressBar barraProgreso = (ProgressBar) splashRoot.lookup("#barraProgreso");
+        Label faseArranque = (Label) splashRoot.lookup("#faseArranque");
 
         Scene splashScene = new Scene(splashRoot);
         splashStage.setScene(splashScene);
         splashStage.initStyle(StageStyle.UNDECORATED);
         splashStage.show();
 
-        // 2. Animación de carga
-        FadeTransition fadeIn = new FadeTransition(Duration.seconds(3), splashRoot);
+        FadeTransition fadeIn = new FadeTransition(Duration.millis(300), splashRoot);
         fadeIn.setFromValue(0);
         fadeIn.setToValue(1);
-        fadeIn.setCycleCount(1);
+        fadeIn.play();
+        arranque.hito("Splash visible");
+
+        // 2. El avance llega desde el hilo de arranque: se muestra solo el último (un runLater pendiente a la vez)
+        AtomicReference<Object[]> ultimoAvance = new AtomicReference<>();
+        arranque.alAvanzar((avance, fase) -> {
+            if (ultimoAvance.getAndSet(new Object[]{avance, fase}) == null) {
+                Platform.runLater(() -> {
+                    Object[] actual = ultimoAvance.getAndSet(null);
+                    barraProgreso.setProgress((Double) actual[0]);
+                    faseArranque.setText((String) actual[1]);
+                });
+            }
+        });
+
+        // 3. Spring arranca en segundo plano; la ventana principal se abre apenas termina
+        String[] args = getParameters().getRaw().toArray(new String[0]);
+        Thread hiloArranque = new Thread(() -> iniciarSpring(args, splashStage), "arranque-spring");
+        hiloArranque.start();
+    }
+
+    private void iniciarSpring(String[] args, Stage splashStage) {
+        ConfigurableApplicationContext contexto;
+        try {
+            SpringApplication aplicacion = new SpringApplication(StockManagerApplication.class);
+            aplicacion.setApplicationStartup(arranque);
+            aplicacion.addInitializers(arranque::registrarContexto);
+            contexto = aplicacion.run(args);
+        } catch (SpringApplication.AbandonedRunException e) {
+            // Corrida de entrenamiento del archivo CDS (spring.context.exit=onRefresh): se cierra sin abrir la ventana
+            if (e.getApplicationContext() != null) {
+                e.getApplicationContext().close();
+            }
+            Platform.exit();
+            return;
+        } catch (Throwable e) {
+            Platform.runLater(() -> mostrarErrorDeArranque(e));
+            return;
+        }
+        this.applicationContext = contexto;
+        arranque.hito("Contexto de Spring listo");
 
-        fadeIn.setOnFinished(e -> {
+        Platform.runLater(() -> {
             try {
+                // Avisa si el hilo de la interfaz se queda bloqueado
+                contexto.getBean(VigilanteHiloFx.class).iniciar();
                 mostrarVentanaPrincipal(); // Abrir la app real
                 splashStage.close();
+                arranque.hito("Ventana principal visible");
+                if (contexto.getEnvironment().getProperty("stock.arranque.reporte", Boolean.class, false)) {
+                    System.out.println(arranque.reporte());
+                }
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
         });
+    }
 
-        fadeIn.play();
+    private void mostrarErrorDeArranque(Throwable error) {
+        error.printStackTrace();
+        Alert alerta = new Alert(Alert.AlertType.ERROR);
+        alerta.setTitle("Error al iniciar");
+        alerta.setHeaderText("No se pudo iniciar la aplicación");
+        alerta.setContentText(error.getMessage());
+        alerta.showAndWait();
+        Platform.exit();
     }
 
     // --- AQUÍ ESTÁ LA CORRECCIÓN DE ESTILO ---
@@ -85,7 +141,9 @@ public class StockManagerFXApplication extends Application {
 
     @Override
     public void stop() {
-        this.applicationContext.close();
-        javafx.application.Platform.exit();
+        if (this.applicationContext != null) {
+            this.applicationContext.close();
+        }
+        Platform.exit();
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.chebot.stock_manager.fx;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import javafx.application.Platform;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecta bloqueos del hilo de JavaFX: cada 'intervalo' le manda un latido con Platform.runLater;
+ * si el latido no se atiende dentro del umbral, imprime la pila del hilo (qué lo está bloqueando)
+ * y, al recuperarse, registra cuánto duró el bloqueo (timer 'stock.fx.bloqueo').
+ */
+@Component
+public class VigilanteHiloFx {
+
+    private static final long INTERVALO_MS = 100;
+
+    private final long umbralNanos;
+    private final Counter bloqueos = Counter.builder("stock.fx.bloqueos").register(Metrics.globalRegistry);
+    private final Timer duracionBloqueos = Timer.builder("stock.fx.bloqueo")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(Metrics.globalRegistry);
+
+    private Thread vigilante;
+    private volatile Thread hiloFx;
+    // Momento en que se envió el latido pendiente (0: ninguno pendiente)
+    private volatile long latidoEnviado = 0;
+
+    public VigilanteHiloFx(@Value("${stock.fx.umbral-bloqueo-ms:500}") long umbralBloqueoMs) {
+        this.umbralNanos = TimeUnit.MILLISECONDS.toNanos(umbralBloqueoMs);
+    }
+
+    /**
+     * Empieza a vigilar. Debe llamarse desde el hilo de JavaFX.
+     */
+    public synchronized void iniciar() {
+        if (vigilante != null) {
+            return;
+        }
+        hiloFx = Thread.currentThread();
+        vigilante = new Thread(this::vigilar, "vigilante-fx");
+        vigilante.setDaemon(true);
+        vigilante.start();
+    }
+
+    private void vigilar() {
+        boolean reportado = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            long enviado = latidoEnviado;
+            if (enviado == 0) {
+                // 1. Sin latido pendiente: se manda uno nuevo
+                reportado = false;
+                long ahora = System.nanoTime();
+                latidoEnviado = ahora;
+                Platform.runLater(() -> alRecibirLatido(ahora));
+            } else if (!reportado && System.nanoTime() - enviado > umbralNanos) {
+                // 2. El latido no se atendió a tiempo: el hilo está bloqueado
+                reportado = true;
+                reportarBloqueo(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enviado));
+            }
+            try {
+                Thread.sleep(INTERVALO_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Se ejecuta en el hilo de JavaFX
+    private void alRecibirLatido(long enviado) {
+        long espera = System.nanoTime() - enviado;
+        latidoEnviado = 0;
+        if (espera > umbralNanos) {
+            duracionBloqueos.record(espera, TimeUnit.NANOSECONDS);
+            System.err.println("El hilo de JavaFX se liberó tras " + TimeUnit.NANOSECONDS.toMillis(espera) + " ms de bloqueo.");
+        }
+    }
+
+    private void reportarBloqueo(long milisegundos) {
+        bloqueos.increment();
+        StringBuilder texto = new StringBuilder("Hilo de JavaFX bloqueado hace más de ")
+                .append(milisegundos).append(" ms. Pila actual:");
+        for (StackTraceElement elemento : hiloFx.getStackTrace()) {
+            texto.append(System.lineSeparator()).append("\tat ").append(elemento);
+        }
+        System.err.println(texto);
+    }
+
+    @PreDestroy
+    synchronized void detener() {
+        if (vigilante != null) {
+            vigilante.interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.chebot.stock_manager.metricas;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSource que mide cada sentencia SQL ejecutada (timer 'stock.sql', etiqueta 'tipo': SELECT, INSERT, ...)
+ * y deja registro de las que superan el umbral de consulta lenta.
+ * <p>
+ * Se mide la llamada execute*: en un SELECT incluye preparar el primer resultado, pero no recorrer el ResultSet.
+ */
+public class DataSourceMedido extends DelegatingDataSource {
+
+    static final String NOMBRE = "stock.sql";
+    // Consultas lentas que se guardan para el volcado de métricas
+    private static final int MAX_CONSULTAS_LENTAS = 100;
+
+    /**
+     * Consulta que superó el umbral.
+     */
+    public record ConsultaLenta(Instant fecha, long milisegundos, String sql) {
+    }
+
+    private final long umbralLentaNanos;
+    private final Map<String, Timer> timers;
+    private final ConcurrentLinkedDeque<ConsultaLenta> consultasLentas = new ConcurrentLinkedDeque<>();
+
+    public DataSourceMedido(DataSource dataSource, long umbralLentaMs) {
+        super(dataSource);
+        this.umbralLentaNanos = TimeUnit.MILLISECONDS.toNanos(umbralLentaMs);
+        this.timers = Map.of(
+                "SELECT", crearTimer("SELECT"),
+                "INSERT", crearTimer("INSERT"),
+                "UPDATE", crearTimer("UPDATE"),
+                "DELETE", crearTimer("DELETE"),
+                "OTRO", crearTimer("OTRO"));
+    }
+
+    private static Timer crearTimer(String tipo) {
+        return Timer.builder(NOMBRE)
+                .tag("tipo", tipo)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Últimas consultas lentas, de la más vieja a la más nueva.
+     */
+    public List<ConsultaLenta> getConsultasLentas() {
+        return new ArrayList<>(consultasLentas);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return envolverConexion(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return envolverConexion(super.getConnection(username, password));
+    }
+
+    // --- Proxies de conexión y sentencias ---
+
+    private Connection envolverConexion(Connection conexion) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    Object resultado = invocar(conexion, metodo, args);
+                    if (resultado instanceof Statement sentencia && metodo.getName().startsWith("prepare")) {
+                        // prepareStatement / prepareCall: el SQL es el primer argumento
+                        return envolverSentencia(sentencia, (String) args[0]);
+                    } else if (resultado instanceof Statement sentencia) {
+                        return envolverSentencia(sentencia, null);
+                    }
+                    return resultado;
+                });
+    }
+
+    private Statement envolverSentencia(Statement sentencia, String sqlPreparado) {
+        Class<?> interfaz = sentencia instanceof CallableStatement ? CallableStatement.class
+                : sentencia instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            if (!metodo.getName().startsWith("execute")) {
+                return invocar(sentencia, metodo, args);
+            }
+            // En un Statement simple el SQL llega como argumento de execute*
+            String sql = sqlPreparado != null ? sqlPreparado
+                    : args != null && args.length > 0 && args[0] instanceof String texto ? texto : "(lote)";
+            long inicio = System.nanoTime();
+            try {
+                return invocar(sentencia, metodo, args);
+            } finally {
+                registrar(sql, System.nanoTime() - inicio);
+            }
+        };
+        return (Statement) Proxy.newProxyInstance(interfaz.getClassLoader(), new Class<?>[]{interfaz}, manejador);
+    }
+
+    private void registrar(String sql, long nanos) {
+        timers.get(tipo(sql)).record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos >= umbralLentaNanos) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            System.err.println("Consulta lenta (" + ms + " ms): " + sql);
+            consultasLentas.addLast(new ConsultaLenta(Instant.now(), ms, sql));
+            while (consultasLentas.size() > MAX_CONSULTAS_LENTAS) {
+                consultasLentas.pollFirst();
+            }
+        }
+    }
+
+    private static String tipo(String sql) {
+        String inicio = sql.stripLeading();
+        int fin = 0;
+        while (fin < inicio.length() && Character.isLetter(inicio.charAt(fin))) {
+            fin++;
+        }
+        String palabra = inicio.substring(0, fin).toUpperCase(Locale.ROOT);
+        return switch (palabra) {
+            case "SELECT", "WITH" -> "SELECT";
+            case "INSERT", "UPDATE", "DELETE" -> palabra;
+            default -> "OTRO";
+        };
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.chebot.stock_manager.metricas;
+
+import com.chebot.stock_manager.service.ProductoService;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Instrumentación: tiempos de los métodos de ProductoService y de cada sentencia SQL.
+ * Los medidores se publican por JMX (Actuator) y se pueden volcar a un archivo con {@link VolcadoMetricas}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricasConfig {
+
+    /**
+     * Mide todos los métodos públicos de ProductoService (se suma al proxy transaccional).
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor temporizadorProductoService() {
+        StaticMethodMatcherPointcut metodosPublicos = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return Modifier.isPublic(method.getModifiers()) && method.getDeclaringClass() == ProductoService.class;
+            }
+        };
+        metodosPublicos.setClassFilter(ProductoService.class::isAssignableFrom);
+        return new DefaultPointcutAdvisor(metodosPublicos, new TemporizadorServicio());
+    }
+
+    /**
+     * Envuelve el DataSource para medir las sentencias SQL y registrar las lentas.
+     */
+    @Bean
+    static BeanPostProcessor medicionDataSource(@Value("${stock.sql.umbral-lenta-ms:200}") long umbralLentaMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceMedido)) {
+                    return new DataSourceMedido(dataSource, umbralLentaMs);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.chebot.stock_manager.metricas;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mide cada llamada a los métodos de un servicio en el timer 'stock.servicio' (etiquetas: clase, método y resultado).
+ * <p>
+ * Si el método devuelve un CompletableFuture (las escrituras van por el escritor), se mide hasta que se
+ * completa, no solo hasta que se encola.
+ */
+class TemporizadorServicio implements MethodInterceptor {
+
+    static final String NOMBRE = "stock.servicio";
+
+    // Un timer por método y resultado: buscarlo en el registro en cada llamada es lo más caro de medir
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method metodo = invocation.getMethod();
+        Timer.Sample muestra = Timer.start();
+        Object resultado;
+        try {
+            resultado = invocation.proceed();
+        } catch (Throwable error) {
+            muestra.stop(timer(metodo, "error"));
+            throw error;
+        }
+        if (resultado instanceof CompletableFuture<?> futuro) {
+            futuro.whenComplete((valor, error) -> muestra.stop(timer(metodo, error == null ? "ok" : "error")));
+        } else {
+            muestra.stop(timer(metodo, "ok"));
+        }
+        return resultado;
+    }
+
+    private Timer timer(Method metodo, String resultado) {
+        String clase = metodo.getDeclaringClass().getSimpleName();
+        return timers.computeIfAbsent(clase + '.' + metodo.getName() + '/' + resultado, clave -> Timer.builder(NOMBRE)
+                .tag("clase", clase)
+                .tag("metodo", metodo.getName())
+                .tag("resultado", resultado)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+}
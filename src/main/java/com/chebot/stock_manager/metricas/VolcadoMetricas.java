@@ -0,0 +1,122 @@
+package com.chebot.stock_manager.metricas;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Vuelca todas las métricas 'stock.*' y las últimas consultas lentas a un archivo de texto.
+ * Se puede invocar por JMX (jconsole: com.chebot.stock_manager > Metricas) o desde el código.
+ */
+@Component
+@ManagedResource(objectName = "com.chebot.stock_manager:type=Metricas", description = "Métricas de Stock Manager")
+public class VolcadoMetricas {
+
+    private static final String PREFIJO = "stock.";
+
+    private final DataSource dataSource;
+    private final Path archivoPorDefecto;
+
+    public VolcadoMetricas(DataSource dataSource, @Value("${stock.metricas.archivo:metricas-stock.txt}") String archivo) {
+        this.dataSource = dataSource;
+        this.archivoPorDefecto = Path.of(archivo);
+    }
+
+    @ManagedOperation(description = "Texto con todas las métricas de la aplicación")
+    public String resumen() {
+        StringWriter texto = new StringWriter();
+        escribir(new PrintWriter(texto));
+        return texto.toString();
+    }
+
+    @ManagedOperation(description = "Vuelca las métricas al archivo configurado y devuelve su ruta")
+    public String volcar() throws IOException {
+        return volcar(archivoPorDefecto).toString();
+    }
+
+    public Path volcar(Path archivo) throws IOException {
+        Path absoluto = archivo.toAbsolutePath();
+        try (PrintWriter salida = new PrintWriter(Files.newBufferedWriter(absoluto))) {
+            escribir(salida);
+        }
+        return absoluto;
+    }
+
+    private void escribir(PrintWriter salida) {
+        salida.println("# Métricas de Stock Manager - " + Instant.now());
+        List<Meter> medidores = Metrics.globalRegistry.getMeters().stream()
+                .filter(m -> m.getId().getName().startsWith(PREFIJO))
+                .sorted(Comparator.comparing((Meter m) -> m.getId().getName()).thenComparing(m -> etiquetas(m)))
+                .toList();
+        for (Meter medidor : medidores) {
+            salida.println(medidor.getId().getName() + etiquetas(medidor) + " " + valores(medidor));
+        }
+
+        if (dataSource instanceof DataSourceMedido medido) {
+            List<DataSourceMedido.ConsultaLenta> lentas = medido.getConsultasLentas();
+            salida.println();
+            salida.println("# Consultas lentas (" + lentas.size() + ")");
+            for (DataSourceMedido.ConsultaLenta lenta : lentas) {
+                salida.println(lenta.fecha() + " " + lenta.milisegundos() + " ms " + lenta.sql());
+            }
+        }
+        salida.flush();
+    }
+
+    private static String etiquetas(Meter medidor) {
+        List<Tag> tags = medidor.getId().getTags();
+        if (tags.isEmpty()) {
+            return "";
+        }
+        return tags.stream().map(t -> t.getKey() + "=" + t.getValue()).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private static String valores(Meter medidor) {
+        if (medidor instanceof Timer timer) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            return String.format(Locale.ROOT, "n=%d total=%.1fms media=%.3fms max=%.3fms%s", snapshot.count(),
+                    snapshot.total(TimeUnit.MILLISECONDS), snapshot.mean(TimeUnit.MILLISECONDS),
+                    snapshot.max(TimeUnit.MILLISECONDS), percentiles(snapshot));
+        } else if (medidor instanceof DistributionSummary resumen) {
+            HistogramSnapshot snapshot = resumen.takeSnapshot();
+            return String.format(Locale.ROOT, "n=%d total=%.0f media=%.1f max=%.0f", snapshot.count(),
+                    snapshot.total(), snapshot.mean(), snapshot.max());
+        } else if (medidor instanceof Counter contador) {
+            return String.format(Locale.ROOT, "n=%.0f", contador.count());
+        } else if (medidor instanceof Gauge indicador) {
+            return String.format(Locale.ROOT, "valor=%s", indicador.value());
+        }
+        return "";
+    }
+
+    private static String percentiles(HistogramSnapshot snapshot) {
+        StringBuilder texto = new StringBuilder();
+        for (ValueAtPercentile p : snapshot.percentileValues()) {
+            texto.append(String.format(Locale.ROOT, " p%.0f=%.3fms", p.percentile() * 100, p.value(TimeUnit.MILLISECONDS)));
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.chebot.stock_manager.model;
+
+import java.util.Set;
+
+/**
+ * Filtro combinado de productos: el resultado cumple a la vez todas las condiciones que no son nulas.
+ * @param referencia Texto contenido en la referencia (sin distinguir mayúsculas).
+ * @param descripcion Texto contenido en la descripción (sin distinguir mayúsculas).
+ * @param estados Estados aceptados; vacío = cualquiera.
+ * @param cantidadMinima Cantidad mínima, inclusive.
+ * @param cantidadMaxima Cantidad máxima, inclusive.
+ * @param limite Máximo de productos del resultado.
+ */
+public record FiltroProductos(String referencia, String descripcion, Set<String> estados, Integer cantidadMinima,
+                              Integer cantidadMaxima, Orden orden, boolean descendente, int limite) {
+
+    // Columnas por las que se puede ordenar el resultado (en empate, por ID)
+    public enum Orden {
+        ID("id", "ID"),
+        REFERENCIA("referencia", "Referencia"),
+        DESCRIPCION("descripcion", "Descripción"),
+        CANTIDAD("cantidad", "Cantidad"),
+        ESTADO("estado", "Estado");
+
+        private final String propiedad;
+        private final String etiqueta;
+
+        Orden(String propiedad, String etiqueta) {
+            this.propiedad = propiedad;
+            this.etiqueta = etiqueta;
+        }
+
+        public String getPropiedad() {
+            return propiedad;
+        }
+
+        // El combo de la vista muestra la etiqueta
+        @Override
+        public String toString() {
+            return etiqueta;
+        }
+    }
+
+    public FiltroProductos {
+        referencia = referencia == null || referencia.isBlank() ? null : referencia.trim();
+        descripcion = descripcion == null || descripcion.isBlank() ? null : descripcion.trim();
+        estados = estados == null ? Set.of() : Set.copyOf(estados);
+        orden = orden == null ? Orden.ID : orden;
+        if (cantidadMinima != null && cantidadMaxima != null && cantidadMinima > cantidadMaxima) {
+            throw new IllegalArgumentException("La cantidad mínima no puede ser mayor que la máxima.");
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite del filtro debe ser mayor que cero.");
+        }
+    }
+
+    /**
+     * true si no tiene ninguna condición (el resultado sería todo el inventario).
+     */
+    public boolean sinCondiciones() {
+        return referencia == null && descripcion == null && estados.isEmpty()
+                && cantidadMinima == null && cantidadMaxima == null;
+    }
+}
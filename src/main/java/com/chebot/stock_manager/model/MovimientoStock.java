@@ -0,0 +1,10 @@
+package com.chebot.stock_manager.model;
+
+/**
+ * Un cambio de cantidad de un producto en el libro de movimientos (solo se agregan, nunca se editan).
+ * @param delta Unidades que entraron (positivo) o salieron (negativo).
+ * @param cantidadResultante Cantidad del producto después del movimiento.
+ * @param fecha Milisegundos desde epoch.
+ */
+public record MovimientoStock(long id, long productoId, int delta, int cantidadResultante, String motivo, long fecha) {
+}
@@ -4,12 +4,17 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
 
 import java.sql.Types;
+import java.util.List;
 // import org.hibernate.annotations.Type; // ESTO YA NO ES NECESARIO Y DEBE ELIMINARSE
 
 @Entity
 @Table(name = "productos")
 public class Producto {
 
+    // Estados posibles de un producto (los mismos que ofrece la vista)
+    public static final String ESTADO_DISPONIBLE = "Disponible";
+    public static final List<String> ESTADOS = List.of(ESTADO_DISPONIBLE, "Roto", "Desaparecido");
+
     @Id
     // CRUCIAL: Se usa IDENTITY para indicar a JPA que la DB genera el ID.
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,9 +36,19 @@ public class Producto {
     @Lob
     private String observaciones;
 
+    // Stock mínimo: con menos unidades se avisa y se sugiere reponer (null = sin umbral)
+    private Integer umbralMinimo;
+
+    // PNG, matriz empaquetada o hash, según stock.qr.almacenamiento (ver CodigoQrAlmacenado)
     @JdbcTypeCode(Types.VARBINARY)
     private byte[] codigoQr;
 
+    // Bloqueo optimista: cada edición lo incrementa y solo se aplica si nadie lo cambió antes.
+    // Con DEFAULT 0 SQLite puede agregar la columna a una tabla que ya tiene filas.
+    @Version
+    @Column(nullable = false, columnDefinition = "INTEGER NOT NULL DEFAULT 0")
+    private Long version;
+
     // --- Constructores ---
     public Producto() {
     }
@@ -96,6 +111,14 @@ public class Producto {
         this.observaciones = observaciones;
     }
 
+    public Integer getUmbralMinimo() {
+        return umbralMinimo;
+    }
+
+    public void setUmbralMinimo(Integer umbralMinimo) {
+        this.umbralMinimo = umbralMinimo;
+    }
+
     public byte[] getCodigoQr() {
         return codigoQr;
     }
@@ -103,4 +126,12 @@ public class Producto {
     public void setCodigoQr(byte[] codigoQr) {
         this.codigoQr = codigoQr;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.chebot.stock_manager.model;
+
+/**
+ * Proyección liviana de {@link Producto} para la tabla de stock.
+ * No incluye el Código QR ni las observaciones: se cargan bajo demanda.
+ */
+public class ProductoResumen {
+
+    private final Long id;
+    private final String referencia;
+    private final String descripcion;
+    private final Integer cantidad;
+    private final String estado;
+
+    public ProductoResumen(Long id, String referencia, String descripcion, Integer cantidad, String estado) {
+        this.id = id;
+        this.referencia = referencia;
+        this.descripcion = descripcion;
+        this.cantidad = cantidad;
+        this.estado = estado;
+    }
+
+    // --- Getters (usados por PropertyValueFactory en la tabla) ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReferencia() {
+        return referencia;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public Integer getCantidad() {
+        return cantidad;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+}
@@ -0,0 +1,36 @@
+package com.chebot.stock_manager.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Vista de solo lectura del índice de texto 'productos_fts' (migración V3), para usarlo
+ * en consultas JPA (p. ej. los filtros combinados de ProductoEspecificaciones).
+ * <p>
+ * En FTS5, comparar la columna oculta que se llama como la tabla equivale a MATCH:
+ * 'productos_fts = ?' se resuelve desde el índice de trigramas.
+ */
+@Entity
+@Immutable
+@Table(name = "productos_fts")
+public class ProductoTexto {
+
+    // El rowid del índice es el ID del producto
+    @Id
+    @Column(name = "rowid")
+    private Long id;
+
+    // Expresión de búsqueda (ver ProductoBusquedaRepository.expresionMatch)
+    @Column(name = "productos_fts")
+    private String consulta;
+
+    protected ProductoTexto() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
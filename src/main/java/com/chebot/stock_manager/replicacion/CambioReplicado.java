@@ -0,0 +1,29 @@
+package com.chebot.stock_manager.replicacion;
+
+/**
+ * Una entrada del registro de cambios: qué le pasó a un producto (por referencia), en qué instalación
+ * ('nodo') y en qué momento ('hlc', ver {@link RelojHibrido}). El par (nodo, hlc) la identifica.
+ *
+ * @param cantidad En GUARDADO, la cantidad del producto; en MOVIMIENTO, el delta; en BAJA, null.
+ * @param motivo   Solo en MOVIMIENTO.
+ */
+public record CambioReplicado(long nodo, long hlc, Tipo tipo, String referencia, Integer cantidad,
+                              String descripcion, String estado, String observaciones, String motivo) {
+
+    public enum Tipo {
+        /** Alta o edición: el estado completo del producto. Gana el más reciente. */
+        GUARDADO,
+        /** Unidades sumadas o restadas. Se acumulan sobre el último GUARDADO. */
+        MOVIMIENTO,
+        /** Eliminación. Compite con GUARDADO: gana el más reciente. */
+        BAJA
+    }
+
+    /**
+     * Orden total de las entradas: por hlc y, si empatan, por nodo. Así las dos instalaciones
+     * eligen el mismo ganador sin ponerse de acuerdo.
+     */
+    boolean posteriorA(long otroHlc, long otroNodo) {
+        return hlc != otroHlc ? hlc > otroHlc : nodo > otroNodo;
+    }
+}
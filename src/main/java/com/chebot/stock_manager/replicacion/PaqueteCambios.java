@@ -0,0 +1,231 @@
+package com.chebot.stock_manager.replicacion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato binario de los paquetes de cambios que se intercambian las instalaciones.
+ * <p>
+ * Todo va comprimido con gzip (que además detecta archivos dañados con su CRC):
+ * <pre>
+ * "STKR" versión(1 byte) origen(8 bytes)
+ * vector: n(varint) y n veces nodo(8 bytes) hlc(varint)
+ * entradas: tipo(1 byte) nodo(varint, posición en el vector) hlc(varint, diferencia con la anterior del mismo nodo)
+ *           referencia(texto) y, según el tipo:
+ *             GUARDADO:   cantidad(varint, 0 = nula) descripcion estado observaciones(textos)
+ *             MOVIMIENTO: delta(varint zigzag) motivo(texto)
+ *             BAJA:       nada
+ * fin: tipo 0xFF
+ * </pre>
+ * Los textos van como largo + 1 (varint, 0 = nulo) y los bytes UTF-8. Las marcas de un mismo nodo
+ * van en orden, así que la diferencia con la anterior ocupa uno o dos bytes en lugar de ocho.
+ */
+final class PaqueteCambios {
+
+    private static final byte[] MAGICO = {'S', 'T', 'K', 'R'};
+    private static final int VERSION = 1;
+    private static final int FIN = 0xFF;
+
+    private PaqueteCambios() {
+    }
+
+    /**
+     * Escribe un paquete entrada por entrada (no las junta en memoria).
+     */
+    static final class Escritor implements Closeable {
+
+        private final DataOutputStream salida;
+        private final List<Long> nodos;
+        private final long[] anteriores;
+
+        /**
+         * @param vector Lo que tiene el emisor; toda entrada que se escriba tiene que ser de uno de estos nodos.
+         */
+        Escritor(OutputStream destino, long origen, Map<Long, Long> vector) throws IOException {
+            this.salida = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(destino, 64 * 1024)));
+            this.nodos = new ArrayList<>(vector.keySet());
+            this.anteriores = new long[nodos.size()];
+            salida.write(MAGICO);
+            salida.writeByte(VERSION);
+            salida.writeLong(origen);
+            escribirVarint(vector.size());
+            for (Map.Entry<Long, Long> entrada : vector.entrySet()) {
+                salida.writeLong(entrada.getKey());
+                escribirVarint(entrada.getValue());
+            }
+        }
+
+        void escribir(CambioReplicado cambio) throws IOException {
+            int indice = nodos.indexOf(cambio.nodo());
+            salida.writeByte(cambio.tipo().ordinal());
+            escribirVarint(indice);
+            escribirVarint(cambio.hlc() - anteriores[indice]);
+            anteriores[indice] = cambio.hlc();
+            escribirTexto(cambio.referencia());
+            switch (cambio.tipo()) {
+                case GUARDADO -> {
+                    escribirVarint(cambio.cantidad() == null ? 0 : zigzag(cambio.cantidad()) + 1);
+                    escribirTexto(cambio.descripcion());
+                    escribirTexto(cambio.estado());
+                    escribirTexto(cambio.observaciones());
+                }
+                case MOVIMIENTO -> {
+                    escribirVarint(zigzag(cambio.cantidad()));
+                    escribirTexto(cambio.motivo());
+                }
+                case BAJA -> {
+                }
+            }
+        }
+
+        // Termina el paquete y cierra el destino
+        @Override
+        public void close() throws IOException {
+            salida.writeByte(FIN);
+            salida.close();
+        }
+
+        private void escribirVarint(long valor) throws IOException {
+            while ((valor & ~0x7FL) != 0) {
+                salida.writeByte((int) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            salida.writeByte((int) valor);
+        }
+
+        private void escribirTexto(String texto) throws IOException {
+            if (texto == null) {
+                escribirVarint(0);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            escribirVarint(bytes.length + 1L);
+            salida.write(bytes);
+        }
+
+        private static long zigzag(int valor) {
+            return Integer.toUnsignedLong((valor << 1) ^ (valor >> 31));
+        }
+    }
+
+    /**
+     * Lee un paquete: primero el encabezado (origen y vector), después las entradas de a una.
+     */
+    static final class Lector implements Closeable {
+
+        private final DataInputStream entrada;
+        private final long origen;
+        private final Map<Long, Long> vector = new LinkedHashMap<>();
+        private final long[] nodos;
+        private final long[] anteriores;
+
+        Lector(InputStream origenDatos) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(new GZIPInputStream(origenDatos, 64 * 1024)));
+            byte[] magico = new byte[MAGICO.length];
+            entrada.readFully(magico);
+            if (!Arrays.equals(magico, MAGICO)) {
+                throw new IOException("El archivo no es un paquete de cambios del inventario.");
+            }
+            int version = entrada.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Versión de paquete de cambios no soportada: " + version);
+            }
+            this.origen = entrada.readLong();
+            int cantidadNodos = (int) leerVarint();
+            this.nodos = new long[cantidadNodos];
+            this.anteriores = new long[cantidadNodos];
+            for (int i = 0; i < cantidadNodos; i++) {
+                nodos[i] = entrada.readLong();
+                vector.put(nodos[i], leerVarint());
+            }
+        }
+
+        long getOrigen() {
+            return origen;
+        }
+
+        Map<Long, Long> getVector() {
+            return vector;
+        }
+
+        /**
+         * @return La siguiente entrada, o null al llegar al final del paquete.
+         */
+        CambioReplicado leer() throws IOException {
+            int tipoLeido = entrada.readUnsignedByte();
+            if (tipoLeido == FIN) {
+                return null;
+            }
+            if (tipoLeido >= CambioReplicado.Tipo.values().length) {
+                throw new IOException("Paquete de cambios dañado: tipo de entrada " + tipoLeido);
+            }
+            CambioReplicado.Tipo tipo = CambioReplicado.Tipo.values()[tipoLeido];
+            int indice = (int) leerVarint();
+            if (indice >= nodos.length) {
+                throw new IOException("Paquete de cambios dañado: nodo " + indice);
+            }
+            long hlc = anteriores[indice] + leerVarint();
+            anteriores[indice] = hlc;
+            String referencia = leerTexto();
+            return switch (tipo) {
+                case GUARDADO -> {
+                    long cantidad = leerVarint();
+                    yield new CambioReplicado(nodos[indice], hlc, tipo, referencia,
+                            cantidad == 0 ? null : dezigzag(cantidad - 1), leerTexto(), leerTexto(), leerTexto(), null);
+                }
+                case MOVIMIENTO -> new CambioReplicado(nodos[indice], hlc, tipo, referencia, dezigzag(leerVarint()),
+                        null, null, null, leerTexto());
+                case BAJA -> new CambioReplicado(nodos[indice], hlc, tipo, referencia, null, null, null, null, null);
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            entrada.close();
+        }
+
+        private long leerVarint() throws IOException {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+                int b = entrada.readUnsignedByte();
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                if ((b & 0x80) == 0) {
+                    return valor;
+                }
+            }
+            throw new IOException("Paquete de cambios dañado: número demasiado largo");
+        }
+
+        private String leerTexto() throws IOException {
+            long largo = leerVarint();
+            if (largo == 0) {
+                return null;
+            }
+            if (largo - 1 > Integer.MAX_VALUE - 8) {
+                throw new EOFException("Paquete de cambios dañado: texto demasiado largo");
+            }
+            byte[] bytes = new byte[(int) (largo - 1)];
+            entrada.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static int dezigzag(long valor) {
+            return (int) (valor >>> 1) ^ -(int) (valor & 1);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.chebot.stock_manager.replicacion;
+
+import com.chebot.stock_manager.model.Producto;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Registro de cambios para la replicación entre instalaciones ('replicacion_cambios', migración V6).
+ * <p>
+ * Cada escritura de ProductoService (y cada producto importado) agrega una entrada en la misma
+ * transacción que el cambio, con la marca del {@link RelojHibrido}. Las entradas se identifican
+ * por referencia, no por ID: cada instalación numera sus productos por su cuenta.
+ * <p>
+ * Lo que cada instalación ya tiene se resume en un vector: por cada nodo, la marca más alta recibida.
+ * Como las entradas de un nodo se envían siempre en orden, con eso alcanza para saber qué falta.
+ */
+@Repository
+public class RegistroCambios {
+
+    private static final String COLUMNAS = "nodo, hlc, tipo, referencia, cantidad, descripcion, estado, observaciones, motivo";
+    private static final String INSERT_SQL = "INSERT OR IGNORE INTO replicacion_cambios (" + COLUMNAS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final RowMapper<CambioReplicado> CAMBIO_MAPPER = (rs, rowNum) -> {
+        int cantidad = rs.getInt("cantidad");
+        return new CambioReplicado(rs.getLong("nodo"), rs.getLong("hlc"),
+                CambioReplicado.Tipo.values()[rs.getInt("tipo")], rs.getString("referencia"),
+                rs.wasNull() ? null : cantidad, rs.getString("descripcion"), rs.getString("estado"),
+                rs.getString("observaciones"), rs.getString("motivo"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private long nodo;
+    private RelojHibrido reloj;
+
+    public RegistroCambios(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    void iniciarNodo() {
+        List<Long> existente = jdbcTemplate.queryForList("SELECT nodo FROM replicacion_nodo WHERE id = 1", Long.class);
+        if (existente.isEmpty()) {
+            inicializarNodo();
+        } else {
+            nodo = existente.get(0);
+            reloj = new RelojHibrido(vector().values().stream().mapToLong(Long::longValue).max().orElse(0));
+        }
+    }
+
+    // Primera vez: los productos que ya había entran al registro como altas, para que la otra instalación los reciba
+    private void inicializarNodo() {
+        nodo = new SecureRandom().nextLong() & Long.MAX_VALUE;
+        reloj = new RelojHibrido(0);
+        transactionTemplate.executeWithoutResult(estado -> {
+            Long productos = jdbcTemplate.queryForObject("SELECT count(*) FROM productos", Long.class);
+            if (productos != null && productos > 0) {
+                anotarGuardados("", Collections.emptyList(), productos.intValue());
+            }
+            jdbcTemplate.update("INSERT INTO replicacion_nodo (id, nodo) VALUES (1, ?)", nodo);
+        });
+    }
+
+    public long getNodo() {
+        return nodo;
+    }
+
+    // --- Cambios locales (se llaman dentro de la transacción del cambio, después de escribir) ---
+
+    public void anotarGuardado(Producto producto) {
+        jdbcTemplate.update(INSERT_SQL, nodo, reloj.reservar(1), CambioReplicado.Tipo.GUARDADO.ordinal(),
+                producto.getReferencia(), producto.getCantidad(), producto.getDescripcion(), producto.getEstado(),
+                producto.getObservaciones(), null);
+    }
+
+    public void anotarMovimiento(String referencia, int delta, String motivo) {
+        jdbcTemplate.update(INSERT_SQL, nodo, reloj.reservar(1), CambioReplicado.Tipo.MOVIMIENTO.ordinal(),
+                referencia, delta, null, null, null, motivo);
+    }
+
+    public void anotarBaja(String referencia) {
+        jdbcTemplate.update(INSERT_SQL, nodo, reloj.reservar(1), CambioReplicado.Tipo.BAJA.ordinal(),
+                referencia, null, null, null, null, null);
+    }
+
+    /**
+     * Anota como guardados los productos con esas referencias (p. ej. los recién importados), con una sola sentencia.
+     */
+    public void anotarAltas(List<String> referencias) {
+        if (referencias.isEmpty()) {
+            return;
+        }
+        String marcadores = String.join(",", Collections.nCopies(referencias.size(), "?"));
+        anotarGuardados("WHERE referencia IN (" + marcadores + ") ", referencias, referencias.size());
+    }
+
+    // Una marca distinta por fila: se reservan todas juntas y se reparten en orden de ID
+    private void anotarGuardados(String filtro, List<String> referencias, int filas) {
+        Object[] parametros = new Object[referencias.size() + 3];
+        parametros[0] = nodo;
+        parametros[1] = reloj.reservar(filas) - 1;
+        parametros[2] = CambioReplicado.Tipo.GUARDADO.ordinal();
+        for (int i = 0; i < referencias.size(); i++) {
+            parametros[i + 3] = referencias.get(i);
+        }
+        jdbcTemplate.update("INSERT OR IGNORE INTO replicacion_cambios (" + COLUMNAS + ") "
+                + "SELECT ?, ? + row_number() OVER (ORDER BY id), ?, referencia, cantidad, descripcion, estado, "
+                + "observaciones, NULL FROM productos " + filtro, parametros);
+    }
+
+    // --- Intercambio ---
+
+    /**
+     * Por cada nodo, la marca más alta que hay en el registro.
+     */
+    public Map<Long, Long> vector() {
+        // Salta de un nodo al siguiente por la clave primaria: no recorre la tabla (hay pocos nodos y muchas entradas)
+        Map<Long, Long> vector = new LinkedHashMap<>();
+        jdbcTemplate.query("WITH RECURSIVE nodos(n) AS ("
+                        + "SELECT min(nodo) FROM replicacion_cambios "
+                        + "UNION ALL SELECT (SELECT min(nodo) FROM replicacion_cambios WHERE nodo > n) FROM nodos WHERE n IS NOT NULL) "
+                        + "SELECT n, (SELECT max(hlc) FROM replicacion_cambios WHERE nodo = n) FROM nodos WHERE n IS NOT NULL",
+                rs -> {
+                    vector.put(rs.getLong(1), rs.getLong(2));
+                });
+        return vector;
+    }
+
+    /**
+     * Por cada nodo, la marca más alta que todas las otras instalaciones confirmaron tener
+     * (0 si alguna no confirmó nada de ese nodo). Lo que sea posterior hay que enviarlo.
+     */
+    public Map<Long, Long> confirmadoPorTodos(Map<Long, Long> vector) {
+        List<Long> pares = jdbcTemplate.queryForList("SELECT DISTINCT par FROM replicacion_pares", Long.class);
+        Map<Long, Long> confirmado = new LinkedHashMap<>();
+        for (Long nodoVector : vector.keySet()) {
+            long minimo = pares.isEmpty() ? 0 : Long.MAX_VALUE;
+            for (Long par : pares) {
+                List<Long> hlc = jdbcTemplate.queryForList("SELECT hlc FROM replicacion_pares WHERE par = ? AND nodo = ?",
+                        Long.class, par, nodoVector);
+                minimo = Math.min(minimo, par.equals(nodoVector) ? Long.MAX_VALUE : hlc.isEmpty() ? 0 : hlc.get(0));
+            }
+            confirmado.put(nodoVector, minimo);
+        }
+        return confirmado;
+    }
+
+    /**
+     * Recorre, en orden de (nodo, hlc), las entradas de 'nodoOrigen' posteriores a 'despuesDe'.
+     */
+    public void leerPosteriores(long nodoOrigen, long despuesDe, Consumer<CambioReplicado> destino) {
+        jdbcTemplate.query("SELECT " + COLUMNAS + " FROM replicacion_cambios WHERE nodo = ? AND hlc > ? ORDER BY hlc",
+                rs -> {
+                    destino.accept(CAMBIO_MAPPER.mapRow(rs, 0));
+                }, nodoOrigen, despuesDe);
+    }
+
+    /**
+     * Agrega una entrada recibida (si ya estaba, no hace nada).
+     * @return true si era nueva.
+     */
+    public boolean agregarRecibido(CambioReplicado cambio) {
+        reloj.recibir(cambio.hlc());
+        return jdbcTemplate.update(INSERT_SQL, cambio.nodo(), cambio.hlc(), cambio.tipo().ordinal(), cambio.referencia(),
+                cambio.cantidad(), cambio.descripcion(), cambio.estado(), cambio.observaciones(), cambio.motivo()) > 0;
+    }
+
+    /**
+     * Guarda lo que otra instalación dice tener (nunca retrocede).
+     */
+    public void confirmarPar(long par, Map<Long, Long> vectorPar) {
+        for (Map.Entry<Long, Long> entrada : vectorPar.entrySet()) {
+            jdbcTemplate.update("INSERT INTO replicacion_pares (par, nodo, hlc) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (par, nodo) DO UPDATE SET hlc = max(hlc, excluded.hlc)", par, entrada.getKey(), entrada.getValue());
+        }
+    }
+
+    /**
+     * Todas las entradas de una referencia, en orden de marca.
+     */
+    public List<CambioReplicado> historial(String referencia) {
+        return jdbcTemplate.query("SELECT " + COLUMNAS + " FROM replicacion_cambios WHERE referencia = ? ORDER BY hlc, nodo",
+                CAMBIO_MAPPER, referencia);
+    }
+}
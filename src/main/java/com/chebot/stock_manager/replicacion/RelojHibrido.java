@@ -0,0 +1,45 @@
+package com.chebot.stock_manager.replicacion;
+
+/**
+ * Reloj lógico híbrido (HLC): marcas de tiempo que siguen al reloj de la máquina pero nunca
+ * retroceden y siempre superan a las ya vistas, también a las que llegan de la otra instalación.
+ * <p>
+ * La marca es un long con los milisegundos en los 48 bits altos y un contador en los 16 bajos.
+ * Si el contador se desborda, suma al milisegundo: sigue siendo creciente, solo se adelanta un poco.
+ */
+final class RelojHibrido {
+
+    private static final int BITS_CONTADOR = 16;
+    // Marcas remotas más adelantadas que esto respecto del reloj local se avisan (reloj mal configurado)
+    private static final long DESFASE_AVISO_MS = 60 * 60 * 1000;
+
+    private long ultima;
+
+    RelojHibrido(long ultimaConocida) {
+        this.ultima = ultimaConocida;
+    }
+
+    /**
+     * Reserva 'cantidad' marcas consecutivas para eventos locales.
+     * @return La primera de ellas.
+     */
+    synchronized long reservar(int cantidad) {
+        long primera = Math.max(ultima + 1, System.currentTimeMillis() << BITS_CONTADOR);
+        ultima = primera + cantidad - 1;
+        return primera;
+    }
+
+    /**
+     * Incorpora una marca recibida: las próximas locales van a ser mayores.
+     */
+    synchronized void recibir(long remota) {
+        if (milisegundos(remota) > System.currentTimeMillis() + DESFASE_AVISO_MS) {
+            System.err.println("Advertencia: los cambios recibidos tienen fecha adelantada; revisar el reloj de la otra instalación.");
+        }
+        ultima = Math.max(ultima, remota);
+    }
+
+    static long milisegundos(long marca) {
+        return marca >>> BITS_CONTADOR;
+    }
+}
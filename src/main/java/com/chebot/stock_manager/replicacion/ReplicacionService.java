@@ -0,0 +1,267 @@
+package com.chebot.stock_manager.replicacion;
+
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.repository.MovimientoStockRepository;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.EscritorSerializado;
+import com.chebot.stock_manager.service.RegeneracionQrService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Replicación del inventario entre dos (o más) instalaciones, cada una con su propia 'stock.db',
+ * sin conexión entre ellas: se lleva un archivo de cambios de una a otra.
+ * <p>
+ * El paquete lleva solo las entradas del {@link RegistroCambios} que la otra instalación todavía no
+ * confirmó tener, en el formato de {@link PaqueteCambios}: un día de trabajo son unos pocos KB.
+ * Recibir dos veces el mismo paquete no cambia nada.
+ * <p>
+ * Los conflictos se resuelven igual en todas las instalaciones, por el orden (hlc, nodo) de las entradas:
+ * de cada producto vale el último alta, edición o baja, más los movimientos de stock posteriores a esa
+ * entrada, sumados. Así dos movimientos hechos a la vez en el depósito y en la oficina se suman, y una
+ * edición de la cantidad (p. ej. tras un recuento) deja sin efecto los movimientos anteriores a ella.
+ */
+@Service
+public class ReplicacionService {
+
+    public record ResultadoEnvio(long enviados, Path destino, long bytes, long milisegundos) {
+    }
+
+    /**
+     * @param nuevos Entradas que no se tenían (el resto ya se había recibido antes).
+     */
+    public record ResultadoRecepcion(long recibidos, long nuevos, int guardados, int eliminados, long milisegundos) {
+    }
+
+    // Lo que se cambió en la DB al aplicar un paquete, para actualizar el catálogo después del commit
+    private record Aplicacion(long nuevos, List<ProductoResumen> guardados, List<Long> eliminados) {
+    }
+
+    // Fila local de un producto, para compararla con lo que indica el historial
+    private record FilaLocal(long id, String descripcion, Integer cantidad, String estado, String observaciones) {
+    }
+
+    private static final String MOTIVO_REPLICACION = "Replicación";
+    // Con más cambios que esto se recarga el catálogo entero en lugar de actualizarlo de a uno
+    private static final int MAX_CAMBIOS_CATALOGO = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RegistroCambios registro;
+    private final EscritorSerializado escritor;
+    private final CatalogoEnMemoria catalogo;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final RegeneracionQrService regeneracionQrService;
+
+    public ReplicacionService(JdbcTemplate jdbcTemplate, RegistroCambios registro, EscritorSerializado escritor,
+                              CatalogoEnMemoria catalogo, MovimientoStockRepository movimientoStockRepository,
+                              RegeneracionQrService regeneracionQrService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registro = registro;
+        this.escritor = escritor;
+        this.catalogo = catalogo;
+        this.movimientoStockRepository = movimientoStockRepository;
+        this.regeneracionQrService = regeneracionQrService;
+    }
+
+    // --- Envío ---
+
+    /**
+     * Guarda en 'destino' los cambios que las otras instalaciones todavía no confirmaron tener.
+     */
+    @Transactional(readOnly = true) // Una sola lectura: el vector y las entradas salen del mismo instante
+    public ResultadoEnvio exportar(Path destino) throws IOException {
+        long inicio = System.currentTimeMillis();
+        long enviados;
+        try (OutputStream salida = Files.newOutputStream(destino)) {
+            enviados = escribirCambios(salida);
+        }
+        return new ResultadoEnvio(enviados, destino, Files.size(destino), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Escribe el paquete de cambios en 'salida' (y la cierra).
+     * @return La cantidad de entradas enviadas.
+     */
+    @Transactional(readOnly = true)
+    public long escribirCambios(OutputStream salida) throws IOException {
+        Map<Long, Long> vector = registro.vector();
+        Map<Long, Long> confirmado = registro.confirmadoPorTodos(vector);
+        long[] enviados = {0};
+        try (PaqueteCambios.Escritor paquete = new PaqueteCambios.Escritor(salida, registro.getNodo(), vector)) {
+            for (Map.Entry<Long, Long> nodo : confirmado.entrySet()) {
+                registro.leerPosteriores(nodo.getKey(), nodo.getValue(), cambio -> {
+                    try {
+                        paquete.escribir(cambio);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    enviados[0]++;
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return enviados[0];
+    }
+
+    // --- Recepción ---
+
+    /**
+     * Aplica el archivo de cambios de otra instalación.
+     */
+    public ResultadoRecepcion importar(Path origen) throws IOException {
+        try (InputStream entrada = Files.newInputStream(origen)) {
+            return leerCambios(entrada);
+        }
+    }
+
+    /**
+     * Lee un paquete de cambios de 'entrada' y lo aplica en una sola transacción.
+     */
+    public ResultadoRecepcion leerCambios(InputStream entrada) throws IOException {
+        long inicio = System.currentTimeMillis();
+
+        // 1. Se lee el paquete entero antes de encolar: el hilo escritor no espera al disco
+        List<CambioReplicado> cambios = new ArrayList<>();
+        long origen;
+        Map<Long, Long> vectorOrigen;
+        try (PaqueteCambios.Lector paquete = new PaqueteCambios.Lector(entrada)) {
+            origen = paquete.getOrigen();
+            vectorOrigen = paquete.getVector();
+            for (CambioReplicado cambio = paquete.leer(); cambio != null; cambio = paquete.leer()) {
+                cambios.add(cambio);
+            }
+        }
+        if (origen == registro.getNodo()) {
+            throw new IllegalArgumentException("El archivo de cambios es de esta misma instalación.");
+        }
+
+        // 2. Entradas nuevas al registro y, por cada referencia tocada, el estado que resulta
+        Aplicacion aplicacion = escritor.enviar(() -> aplicar(origen, vectorOrigen, cambios), this::actualizarCatalogo)
+                .join();
+
+        // 3. Ya confirmado (y en el catálogo): QR de los productos que cambiaron
+        if (!aplicacion.guardados().isEmpty()) {
+            regeneracionQrService.generarFaltantes();
+        }
+        return new ResultadoRecepcion(cambios.size(), aplicacion.nuevos(), aplicacion.guardados().size(),
+                aplicacion.eliminados().size(), System.currentTimeMillis() - inicio);
+    }
+
+    // En el hilo escritor, recién confirmado: el catálogo ve estos cambios en el orden de los commits
+    private void actualizarCatalogo(Aplicacion aplicacion) {
+        if (aplicacion.guardados().size() + aplicacion.eliminados().size() > MAX_CAMBIOS_CATALOGO) {
+            catalogo.recargar();
+        } else {
+            aplicacion.guardados().forEach(catalogo::guardar);
+            aplicacion.eliminados().forEach(catalogo::eliminar);
+        }
+    }
+
+    // Se ejecuta en el hilo escritor, dentro de la transacción del lote
+    private Aplicacion aplicar(long origen, Map<Long, Long> vectorOrigen, List<CambioReplicado> cambios) {
+        Set<String> tocadas = new LinkedHashSet<>();
+        long nuevos = 0;
+        for (CambioReplicado cambio : cambios) {
+            if (registro.agregarRecibido(cambio)) {
+                nuevos++;
+                tocadas.add(cambio.referencia());
+            }
+        }
+        registro.confirmarPar(origen, vectorOrigen);
+
+        List<ProductoResumen> guardados = new ArrayList<>();
+        List<Long> eliminados = new ArrayList<>();
+        for (String referencia : tocadas) {
+            materializar(referencia, guardados, eliminados);
+        }
+        return new Aplicacion(nuevos, guardados, eliminados);
+    }
+
+    /**
+     * Deja el producto como indica su historial: el último GUARDADO o BAJA, más los movimientos posteriores.
+     */
+    private void materializar(String referencia, List<ProductoResumen> guardados, List<Long> eliminados) {
+        // 1. Entrada ganadora y movimientos que van sobre ella
+        CambioReplicado ganador = null;
+        List<CambioReplicado> historial = registro.historial(referencia);
+        for (CambioReplicado cambio : historial) {
+            if (cambio.tipo() != CambioReplicado.Tipo.MOVIMIENTO
+                    && (ganador == null || cambio.posteriorA(ganador.hlc(), ganador.nodo()))) {
+                ganador = cambio;
+            }
+        }
+        if (ganador == null) {
+            return; // Solo movimientos: el alta todavía no llegó
+        }
+        Integer cantidad = ganador.cantidad();
+        for (CambioReplicado cambio : historial) {
+            if (cambio.tipo() == CambioReplicado.Tipo.MOVIMIENTO && cambio.posteriorA(ganador.hlc(), ganador.nodo())) {
+                cantidad = (cantidad == null ? 0 : cantidad) + cambio.cantidad();
+            }
+        }
+
+        // 2. Estado local del producto
+        List<FilaLocal> actuales = jdbcTemplate.query(
+                "SELECT id, descripcion, cantidad, estado, observaciones FROM productos WHERE referencia = ?",
+                (rs, rowNum) -> {
+                    int valor = rs.getInt("cantidad");
+                    return new FilaLocal(rs.getLong("id"), rs.getString("descripcion"), rs.wasNull() ? null : valor,
+                            rs.getString("estado"), rs.getString("observaciones"));
+                }, referencia);
+        FilaLocal actual = actuales.isEmpty() ? null : actuales.get(0);
+
+        // 3. Baja
+        if (ganador.tipo() == CambioReplicado.Tipo.BAJA) {
+            if (actual != null) {
+                if (actual.cantidad() != null && actual.cantidad() != 0) {
+                    movimientoStockRepository.registrar(actual.id(), -actual.cantidad(), 0, MOTIVO_REPLICACION);
+                }
+                jdbcTemplate.update("DELETE FROM productos WHERE id = ?", actual.id());
+                eliminados.add(actual.id());
+            }
+            return;
+        }
+
+        // 4. Alta o edición (el QR se borra y se vuelve a generar con el contenido nuevo)
+        long id;
+        if (actual == null) {
+            jdbcTemplate.update("INSERT INTO productos (referencia, descripcion, cantidad, estado, observaciones) "
+                    + "VALUES (?, ?, ?, ?, ?)", referencia, ganador.descripcion(), cantidad, ganador.estado(),
+                    ganador.observaciones());
+            id = jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class);
+            if (cantidad != null && cantidad != 0) {
+                movimientoStockRepository.registrar(id, cantidad, cantidad, MOTIVO_REPLICACION);
+            }
+        } else {
+            if (Objects.equals(actual.descripcion(), ganador.descripcion()) && Objects.equals(actual.cantidad(), cantidad)
+                    && Objects.equals(actual.estado(), ganador.estado())
+                    && Objects.equals(actual.observaciones(), ganador.observaciones())) {
+                return; // Ya estaba así (p. ej. el cambio vino de acá y vuelve)
+            }
+            id = actual.id();
+            jdbcTemplate.update("UPDATE productos SET descripcion = ?, cantidad = ?, estado = ?, observaciones = ?, "
+                    + "codigo_qr = NULL, version = version + 1 WHERE id = ?", ganador.descripcion(), cantidad,
+                    ganador.estado(), ganador.observaciones(), id);
+            int delta = (cantidad == null ? 0 : cantidad) - (actual.cantidad() == null ? 0 : actual.cantidad());
+            if (delta != 0) {
+                movimientoStockRepository.registrar(id, delta, cantidad == null ? 0 : cantidad, MOTIVO_REPLICACION);
+            }
+        }
+        guardados.add(new ProductoResumen(id, referencia, ganador.descripcion(), cantidad, ganador.estado()));
+    }
+}
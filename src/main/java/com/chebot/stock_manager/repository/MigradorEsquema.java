@@ -0,0 +1,238 @@
+package com.chebot.stock_manager.repository;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Crea y actualiza el esquema de la DB con migraciones SQL numeradas ('db/migraciones/V<n>__<nombre>.sql').
+ * <p>
+ * Cada migración se aplica una sola vez, en orden y en su propia transacción, y queda anotada en
+ * 'esquema_migraciones' con el hash de su contenido. Si una migración ya aplicada cambia, el arranque
+ * se detiene: el esquema de las DB existentes ya no coincidiría con el de una DB nueva.
+ * <p>
+ * Corre antes que Hibernate y que cualquier JdbcTemplate (ver {@link Detector}), así que el resto de
+ * la aplicación encuentra todas las tablas creadas. Hibernate ya no revisa el esquema (ddl-auto=none).
+ */
+@Component
+public class MigradorEsquema implements InitializingBean {
+
+    private static final String MIGRACIONES = "classpath*:db/migraciones/V*__*.sql";
+    private static final Pattern NOMBRE = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    // Una migración leída del classpath
+    private record Migracion(int version, String nombre, String sql, String checksum) {
+    }
+
+    private final DataSource dataSource;
+
+    public MigradorEsquema(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        migrar();
+    }
+
+    /**
+     * Aplica las migraciones pendientes.
+     * @return Cantidad de migraciones aplicadas.
+     */
+    public int migrar() {
+        List<Migracion> migraciones = leerMigraciones();
+        try (Connection conexion = dataSource.getConnection()) {
+            // 1. Registro de migraciones (y adopción de una DB que hasta ahora administraba Hibernate)
+            Map<Integer, String> aplicadas = prepararRegistro(conexion);
+
+            // 2. Las ya aplicadas no pueden haber cambiado
+            for (Migracion migracion : migraciones) {
+                String checksum = aplicadas.get(migracion.version());
+                if (checksum != null && !checksum.equals(migracion.checksum())) {
+                    throw new IllegalStateException("La migración V" + migracion.version() + " (" + migracion.nombre()
+                            + ") cambió después de aplicarse. Las migraciones aplicadas no se editan: agregar una nueva.");
+                }
+            }
+
+            // 3. Las pendientes, en orden, cada una en su transacción
+            int cantidad = 0;
+            for (Migracion migracion : migraciones) {
+                if (!aplicadas.containsKey(migracion.version())) {
+                    aplicar(conexion, migracion);
+                    cantidad++;
+                }
+            }
+            return cantidad;
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo actualizar el esquema de la base de datos: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<Integer, String> prepararRegistro(Connection conexion) throws SQLException {
+        try (Statement sentencia = conexion.createStatement()) {
+            if (!existeTabla(conexion, "esquema_migraciones") && existeTabla(conexion, "productos")) {
+                adoptarEsquemaHibernate(conexion);
+            }
+            sentencia.execute("CREATE TABLE IF NOT EXISTS esquema_migraciones ("
+                    + "version INTEGER PRIMARY KEY, "
+                    + "nombre TEXT NOT NULL, "
+                    + "checksum TEXT NOT NULL, "
+                    + "aplicada INTEGER NOT NULL, "
+                    + "milisegundos INTEGER NOT NULL)");
+            Map<Integer, String> aplicadas = new HashMap<>();
+            try (ResultSet rs = sentencia.executeQuery("SELECT version, checksum FROM esquema_migraciones")) {
+                while (rs.next()) {
+                    aplicadas.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+            return aplicadas;
+        }
+    }
+
+    // DB creada con ddl-auto=update: puede faltarle la columna 'version' (SQLite no tiene ADD COLUMN IF NOT EXISTS)
+    private static void adoptarEsquemaHibernate(Connection conexion) throws SQLException {
+        boolean tieneVersion = false;
+        try (Statement sentencia = conexion.createStatement();
+             ResultSet rs = sentencia.executeQuery("SELECT name FROM pragma_table_info('productos')")) {
+            while (rs.next()) {
+                tieneVersion |= "version".equalsIgnoreCase(rs.getString(1));
+            }
+        }
+        if (!tieneVersion) {
+            try (Statement sentencia = conexion.createStatement()) {
+                sentencia.execute("ALTER TABLE productos ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            }
+        }
+    }
+
+    private static void aplicar(Connection conexion, Migracion migracion) throws SQLException {
+        long inicio = System.currentTimeMillis();
+        conexion.setAutoCommit(false);
+        try (Statement sentencia = conexion.createStatement()) {
+            for (String sql : separarSentencias(migracion.sql())) {
+                sentencia.execute(sql);
+            }
+            try (PreparedStatement registro = conexion.prepareStatement("INSERT INTO esquema_migraciones "
+                    + "(version, nombre, checksum, aplicada, milisegundos) VALUES (?, ?, ?, ?, ?)")) {
+                registro.setInt(1, migracion.version());
+                registro.setString(2, migracion.nombre());
+                registro.setString(3, migracion.checksum());
+                registro.setLong(4, System.currentTimeMillis());
+                registro.setLong(5, System.currentTimeMillis() - inicio);
+                registro.executeUpdate();
+            }
+            conexion.commit();
+        } catch (SQLException e) {
+            conexion.rollback();
+            throw new SQLException("falló la migración V" + migracion.version() + " (" + migracion.nombre() + "): "
+                    + e.getMessage(), e);
+        } finally {
+            conexion.setAutoCommit(true);
+        }
+        System.out.println("Migración V" + migracion.version() + " (" + migracion.nombre() + ") aplicada en "
+                + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    // --- Lectura de las migraciones ---
+
+    private static List<Migracion> leerMigraciones() {
+        try {
+            List<Migracion> migraciones = new ArrayList<>();
+            for (Resource recurso : new PathMatchingResourcePatternResolver().getResources(MIGRACIONES)) {
+                Matcher nombre = NOMBRE.matcher(recurso.getFilename());
+                if (!nombre.matches()) {
+                    continue;
+                }
+                byte[] contenido;
+                try (InputStream entrada = recurso.getInputStream()) {
+                    contenido = entrada.readAllBytes();
+                }
+                int version = Integer.parseInt(nombre.group(1));
+                if (migraciones.stream().anyMatch(m -> m.version() == version)) {
+                    throw new IllegalStateException("Hay dos migraciones con la versión " + version);
+                }
+                migraciones.add(new Migracion(version, nombre.group(2), new String(contenido, StandardCharsets.UTF_8),
+                        HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido))));
+            }
+            migraciones.sort(Comparator.comparingInt(Migracion::version));
+            return migraciones;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Separa el script en sentencias por el ';' de fin de línea. Dentro de un CREATE TRIGGER los ';'
+     * separan las sentencias del cuerpo: ahí la sentencia termina recién en 'END;'.
+     */
+    static List<String> separarSentencias(String script) {
+        List<String> sentencias = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        for (String linea : script.split("\\R")) {
+            String limpia = linea.strip();
+            if (limpia.isEmpty() || limpia.startsWith("--")) {
+                continue;
+            }
+            actual.append(linea).append('\n');
+            boolean enTrigger = actual.toString().stripLeading().toUpperCase(Locale.ROOT).startsWith("CREATE TRIGGER");
+            String mayusculas = limpia.toUpperCase(Locale.ROOT);
+            if (limpia.endsWith(";") && (!enTrigger || mayusculas.equals("END;") || mayusculas.endsWith(" END;"))) {
+                sentencias.add(actual.toString().strip());
+                actual.setLength(0);
+            }
+        }
+        if (!actual.toString().isBlank()) {
+            sentencias.add(actual.toString().strip());
+        }
+        return sentencias;
+    }
+
+    private static boolean existeTabla(Connection conexion, String tabla) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            sentencia.setString(1, tabla);
+            try (ResultSet rs = sentencia.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Le indica a Spring Boot que el migrador inicializa la DB: Hibernate y los JdbcTemplate se crean
+     * después de él (registrado en META-INF/spring.factories).
+     */
+    public static class Detector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+        @Override
+        protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+            return Set.of(MigradorEsquema.class);
+        }
+    }
+}
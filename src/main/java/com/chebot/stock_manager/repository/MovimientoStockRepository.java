@@ -0,0 +1,95 @@
+package com.chebot.stock_manager.repository;
+
+import com.chebot.stock_manager.model.MovimientoStock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Libro de movimientos de stock ('movimientos_stock') y sus instantáneas ('snapshots_stock').
+ * <p>
+ * Cada cambio de cantidad agrega una fila con el delta y la cantidad resultante; las filas no se
+ * editan. Para que el libro no crezca sin límite, los movimientos viejos se compactan: por cada
+ * producto se guarda una instantánea con la cantidad que tenía al último movimiento compactado,
+ * y esos movimientos se borran. La cantidad actual sigue estando en 'productos.cantidad'.
+ * Las tablas las crea la migración V2.
+ */
+@Repository
+public class MovimientoStockRepository {
+
+    public record SnapshotStock(long productoId, long ultimoMovimientoId, int cantidad, long fecha) {
+    }
+
+    private static final RowMapper<MovimientoStock> MOVIMIENTO_MAPPER = (rs, rowNum) -> new MovimientoStock(
+            rs.getLong("id"),
+            rs.getLong("producto_id"),
+            rs.getInt("delta"),
+            rs.getInt("cantidad_resultante"),
+            rs.getString("motivo"),
+            rs.getLong("fecha"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MovimientoStockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void registrar(long productoId, int delta, int cantidadResultante, String motivo) {
+        jdbcTemplate.update("INSERT INTO movimientos_stock (producto_id, delta, cantidad_resultante, motivo, fecha) "
+                + "VALUES (?, ?, ?, ?, ?)", productoId, delta, cantidadResultante, motivo, System.currentTimeMillis());
+    }
+
+    /**
+     * Registra como alta la cantidad inicial de los productos recién insertados con esas referencias.
+     */
+    public void registrarAltas(List<String> referencias, String motivo) {
+        if (referencias.isEmpty()) {
+            return;
+        }
+        String marcadores = String.join(",", Collections.nCopies(referencias.size(), "?"));
+        Object[] parametros = new Object[referencias.size() + 2];
+        parametros[0] = motivo;
+        parametros[1] = System.currentTimeMillis();
+        for (int i = 0; i < referencias.size(); i++) {
+            parametros[i + 2] = referencias.get(i);
+        }
+        jdbcTemplate.update("INSERT INTO movimientos_stock (producto_id, delta, cantidad_resultante, motivo, fecha) "
+                + "SELECT id, coalesce(cantidad, 0), coalesce(cantidad, 0), ?, ? FROM productos "
+                + "WHERE referencia IN (" + marcadores + ")", parametros);
+    }
+
+    /**
+     * Últimos movimientos del producto, del más nuevo al más viejo.
+     */
+    public List<MovimientoStock> buscarUltimos(long productoId, int limite) {
+        return jdbcTemplate.query("SELECT id, producto_id, delta, cantidad_resultante, motivo, fecha FROM movimientos_stock "
+                + "WHERE producto_id = ? ORDER BY id DESC LIMIT ?", MOVIMIENTO_MAPPER, productoId, limite);
+    }
+
+    /**
+     * Instantánea más reciente del producto, o null si nunca se compactaron sus movimientos.
+     */
+    public SnapshotStock buscarUltimoSnapshot(long productoId) {
+        List<SnapshotStock> snapshots = jdbcTemplate.query("SELECT producto_id, ultimo_movimiento_id, cantidad, fecha "
+                        + "FROM snapshots_stock WHERE producto_id = ? ORDER BY id DESC LIMIT 1",
+                (rs, rowNum) -> new SnapshotStock(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getLong(4)),
+                productoId);
+        return snapshots.isEmpty() ? null : snapshots.get(0);
+    }
+
+    /**
+     * Compacta los movimientos anteriores a 'antesDe': una instantánea por producto y se borran los movimientos.
+     * Debe ejecutarse dentro de una transacción.
+     * @return Cantidad de movimientos compactados.
+     */
+    public int compactar(long antesDe) {
+        // En SQLite, con max() las demás columnas salen de la fila del máximo: la cantidad tras el último movimiento
+        jdbcTemplate.update("INSERT INTO snapshots_stock (producto_id, ultimo_movimiento_id, cantidad, fecha) "
+                + "SELECT producto_id, max(id), cantidad_resultante, ? FROM movimientos_stock "
+                + "WHERE fecha < ? GROUP BY producto_id", System.currentTimeMillis(), antesDe);
+        return jdbcTemplate.update("DELETE FROM movimientos_stock WHERE fecha < ?", antesDe);
+    }
+}
@@ -0,0 +1,67 @@
+package com.chebot.stock_manager.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Búsqueda de texto sobre referencia y descripción con un índice FTS5 de SQLite.
+ * <p>
+ * La tabla virtual usa el tokenizador 'trigram', que resuelve búsquedas por subcadena (y por prefijo)
+ * desde el índice en lugar de recorrer la tabla con LIKE '%x%'. Se mantiene sincronizada con
+ * triggers sobre 'productos', así cubre cualquier alta, edición o baja (migración V3).
+ */
+@Repository
+public class ProductoBusquedaRepository {
+
+    // El tokenizador trigram no puede buscar textos de menos de 3 caracteres
+    public static final int LONGITUD_MINIMA = 3;
+
+    public enum Campo {
+        REFERENCIA("referencia"),
+        DESCRIPCION("descripcion");
+
+        private final String columna;
+
+        Campo(String columna) {
+            this.columna = columna;
+        }
+
+        public String getColumna() {
+            return columna;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductoBusquedaRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Busca los IDs de los productos cuyo campo contiene el texto (sin distinguir mayúsculas).
+     * Primero la coincidencia exacta, luego las que empiezan por el texto y después por relevancia (bm25).
+     */
+    public List<Long> buscarIds(Campo campo, String texto, int limite) {
+        String columna = campo.columna;
+        String consulta = expresionMatch(campo, texto);
+
+        String sql = "SELECT p.id "
+                + "FROM productos_fts f JOIN productos p ON p.id = f.rowid "
+                + "WHERE productos_fts MATCH ? "
+                + "ORDER BY CASE WHEN lower(p." + columna + ") = lower(?) THEN 0 "
+                + "WHEN lower(p." + columna + ") LIKE lower(?) || '%' THEN 1 ELSE 2 END, f.rank "
+                + "LIMIT ?";
+
+        return jdbcTemplate.queryForList(sql, Long.class, consulta, texto, texto, limite);
+    }
+
+    /**
+     * Expresión para 'productos_fts MATCH ?' que busca el texto en el campo.
+     */
+    public static String expresionMatch(Campo campo, String texto) {
+        // Frase entre comillas: el texto se busca literal, sin operadores de FTS5
+        return campo.columna + " : \"" + texto.replace("\"", "\"\"") + "\"";
+    }
+}
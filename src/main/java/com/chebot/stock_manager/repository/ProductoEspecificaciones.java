@@ -0,0 +1,72 @@
+package com.chebot.stock_manager.repository;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoTexto;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Condiciones sobre productos para combinar en un filtro (Specification.allOf) y resolver
+ * en una sola consulta. Cada una usa el índice de su columna:
+ * <ul>
+ *   <li>Texto contenido: el índice de trigramas 'productos_fts' (como ProductoBusquedaRepository).</li>
+ *   <li>Estados: 'productos_estado'.</li>
+ *   <li>Rango de cantidad: 'productos_cantidad'.</li>
+ * </ul>
+ * SQLite elige el más selectivo y verifica el resto sobre esas filas.
+ */
+public final class ProductoEspecificaciones {
+
+    private ProductoEspecificaciones() {
+    }
+
+    public static Specification<Producto> referenciaContiene(String texto) {
+        return contiene(ProductoBusquedaRepository.Campo.REFERENCIA, texto);
+    }
+
+    public static Specification<Producto> descripcionContiene(String texto) {
+        return contiene(ProductoBusquedaRepository.Campo.DESCRIPCION, texto);
+    }
+
+    public static Specification<Producto> estadoEn(Collection<String> estados) {
+        return (producto, consulta, cb) -> producto.get("estado").in(estados);
+    }
+
+    /**
+     * Cantidad entre los dos valores, inclusive; un extremo nulo no limita.
+     */
+    public static Specification<Producto> cantidadEntre(Integer minimo, Integer maximo) {
+        return (producto, consulta, cb) -> {
+            if (minimo != null && maximo != null) {
+                return cb.between(producto.get("cantidad"), minimo, maximo);
+            }
+            if (minimo != null) {
+                return cb.greaterThanOrEqualTo(producto.get("cantidad"), minimo);
+            }
+            // El stock nunca es negativo: con los dos extremos SQLite toma el índice aunque se ordene por ID
+            // (con solo "<= ?" prefiere recorrer la tabla en orden de ID)
+            return cb.between(producto.get("cantidad"), 0, maximo);
+        };
+    }
+
+    private static Specification<Producto> contiene(ProductoBusquedaRepository.Campo campo, String texto) {
+        return (producto, consulta, cb) -> {
+            // Textos muy cortos no pasan por el índice de trigramas: LIKE sobre la columna
+            if (texto.length() < ProductoBusquedaRepository.LONGITUD_MINIMA) {
+                String patron = "%" + texto.toLowerCase(Locale.ROOT)
+                        .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+                return cb.like(cb.lower(producto.get(campo.getColumna())), patron, '\\');
+            }
+            // id IN (SELECT rowid FROM productos_fts WHERE productos_fts = 'columna : "texto"')
+            Subquery<Long> coincidencias = consulta.subquery(Long.class);
+            Root<ProductoTexto> indice = coincidencias.from(ProductoTexto.class);
+            coincidencias.select(indice.get("id"))
+                    .where(cb.equal(indice.get("consulta"), ProductoBusquedaRepository.expresionMatch(campo, texto)));
+            return producto.get("id").in(coincidencias);
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.chebot.stock_manager.repository;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Filtros combinados de ProductoRepository (implementado en ProductoFiltroRepositoryImpl).
+ */
+public interface ProductoFiltroRepository {
+
+    /**
+     * Productos que cumplen la condición, ya proyectados a ProductoResumen (sin QR ni observaciones),
+     * ordenados y limitados por la misma consulta.
+     */
+    List<ProductoResumen> findResumen(Specification<Producto> condicion, Sort orden, int limite);
+}
@@ -0,0 +1,44 @@
+package com.chebot.stock_manager.repository;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+/**
+ * Arma la consulta del filtro con la API Criteria: condición, proyección, orden y límite
+ * van en un único SELECT (la DB no devuelve filas que después se descarten).
+ */
+public class ProductoFiltroRepositoryImpl implements ProductoFiltroRepository {
+
+    private final EntityManager entityManager;
+
+    public ProductoFiltroRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<ProductoResumen> findResumen(Specification<Producto> condicion, Sort orden, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductoResumen> consulta = cb.createQuery(ProductoResumen.class);
+        Root<Producto> producto = consulta.from(Producto.class);
+        consulta.select(cb.construct(ProductoResumen.class, producto.get("id"), producto.get("referencia"),
+                producto.get("descripcion"), producto.get("cantidad"), producto.get("estado")));
+
+        Predicate predicado = condicion.toPredicate(producto, consulta, cb);
+        if (predicado != null) {
+            consulta.where(predicado);
+        }
+        consulta.orderBy(QueryUtils.toOrders(orden, producto, cb));
+
+        return entityManager.createQuery(consulta).setMaxResults(limite).getResultList();
+    }
+}
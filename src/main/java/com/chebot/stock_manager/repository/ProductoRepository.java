@@ -1,22 +1,22 @@
 package com.chebot.stock_manager.repository;
 
 import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
 import java.util.List;
 import java.util.Optional;
 
-// JpaRepository toma la Entidad (Producto) y el tipo de su ID (Long)
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+// JpaRepository toma la Entidad (Producto) y el tipo de su ID (Long); los filtros combinados vienen de ProductoFiltroRepository
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoFiltroRepository {
+
+    // --- Proyección para la tabla (sin codigoQr ni observaciones) ---
+    @Query("SELECT new com.chebot.stock_manager.model.ProductoResumen(p.id, p.referencia, p.descripcion, p.cantidad, p.estado) " +
+            "FROM Producto p ORDER BY p.id")
+    List<ProductoResumen> findAllResumen();
 
     // --- Métodos de Filtrado Personalizado ---
     Optional<Producto> findByReferencia(String referencia);
-    // 1. Filtrar por Referencia (Spring Data JPA infiere el query por el nombre del método)
-    List<Producto> findByReferenciaContainingIgnoreCase(String referencia);
-
-    // 2. Filtrar por Descripción
-    List<Producto> findByDescripcionContainingIgnoreCase(String descripcion);
-
-    // 3. Filtrar por Estado (búsqueda exacta)
-    List<Producto> findByEstado(String estado);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,265 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.ProductoResumen;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Alertas de stock bajo (cantidad menor que el umbral mínimo del producto) y de productos que pasan
+ * a un estado con alerta (por defecto "Roto" o "Desaparecido"), y sugerencias de reposición.
+ * <p>
+ * No recorre la tabla: cada cambio que confirma ProductoService (y la importación y la replicación)
+ * llega por el aviso de cambios del {@link CatalogoEnMemoria} y se evalúa solo para ese producto.
+ * Los productos por debajo del umbral se guardan ordenados por cuántas unidades les faltan,
+ * así las k sugerencias más urgentes se leen sin ordenar nada.
+ * <p>
+ * Los cambios se evalúan y las alertas se entregan en un hilo propio: guardar nunca espera
+ * a los oyentes de las alertas.
+ */
+@Service
+public class AlertasStockService {
+
+    public enum TipoAlerta { STOCK_BAJO, ESTADO }
+
+    /**
+     * @param umbral Umbral mínimo del producto (null en las alertas de estado sin umbral).
+     * @param fecha Milisegundos desde epoch.
+     */
+    public record Alerta(TipoAlerta tipo, long id, String referencia, String descripcion, Integer cantidad,
+                         Integer umbral, String estado, long fecha) {
+    }
+
+    /**
+     * Producto por debajo de su umbral; 'faltan' son las unidades para volver a él.
+     */
+    public record Sugerencia(long id, String referencia, String descripcion, int cantidad, int umbral) {
+
+        public int faltan() {
+            return umbral - cantidad;
+        }
+    }
+
+    // Primero los que más unidades necesitan; en empate, por ID
+    private static final Comparator<Sugerencia> POR_URGENCIA = Comparator.comparingInt(Sugerencia::faltan).reversed()
+            .thenComparingLong(Sugerencia::id);
+
+    private final CatalogoEnMemoria catalogo;
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<String> estadosConAlerta;
+
+    // Umbral de cada producto que tiene uno (lo fija ProductoService antes de publicar el cambio)
+    private final Map<Long, Integer> umbrales = new ConcurrentHashMap<>();
+
+    // --- Estado de las alertas (lo modifica solo el hilo de alertas; 'lock' para leerlo desde otros) ---
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeSet<Sugerencia> faltantes = new TreeSet<>(POR_URGENCIA);
+    private final Map<Long, Sugerencia> faltantePorId = new HashMap<>();
+    // Productos que ya están en un estado con alerta (solo se avisa al entrar)
+    private final Set<Long> conEstadoAlerta = new HashSet<>();
+
+    private final List<Consumer<Alerta>> oyentes = new CopyOnWriteArrayList<>();
+    private final ExecutorService hiloAlertas = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "alertas-stock");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public AlertasStockService(CatalogoEnMemoria catalogo, JdbcTemplate jdbcTemplate,
+                               @Value("${stock.alertas.estados:Roto,Desaparecido}") List<String> estadosConAlerta) {
+        this.catalogo = catalogo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.estadosConAlerta = Set.copyOf(estadosConAlerta);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        // Umbrales desde el índice parcial (solo los productos que tienen uno)
+        jdbcTemplate.query("SELECT id, umbral_minimo FROM productos WHERE umbral_minimo IS NOT NULL",
+                rs -> {
+                    umbrales.put(rs.getLong(1), rs.getInt(2));
+                });
+        // Primero se escucha y después se arma el estado: un cambio intermedio se aplica dos veces, sin efecto
+        catalogo.agregarOyente(cambio -> hiloAlertas.execute(() -> aplicar(cambio)));
+        hiloAlertas.execute(() -> reconstruir(false));
+    }
+
+    @PreDestroy
+    void detener() {
+        hiloAlertas.shutdownNow();
+    }
+
+    /**
+     * Registra un oyente de alertas. Se llama desde el hilo de alertas, en el orden de los cambios.
+     */
+    public void agregarOyente(Consumer<Alerta> oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Guarda el umbral de un producto. Se llama antes de que el catálogo publique su cambio,
+     * así ese cambio ya se evalúa con el umbral nuevo.
+     */
+    public void fijarUmbral(long id, Integer umbral) {
+        if (umbral == null) {
+            umbrales.remove(id);
+        } else {
+            umbrales.put(id, umbral);
+        }
+    }
+
+    /**
+     * Las 'limite' sugerencias de reposición más urgentes, de la que más unidades necesita a la que menos.
+     * Recorre solo esas: no depende del tamaño del catálogo.
+     */
+    public List<Sugerencia> sugerenciasReposicion(int limite) {
+        lock.readLock().lock();
+        try {
+            List<Sugerencia> sugerencias = new ArrayList<>(Math.min(limite, faltantes.size()));
+            Iterator<Sugerencia> recorrido = faltantes.iterator();
+            while (sugerencias.size() < limite && recorrido.hasNext()) {
+                sugerencias.add(recorrido.next());
+            }
+            return sugerencias;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de productos por debajo de su umbral.
+     */
+    public int contarFaltantes() {
+        lock.readLock().lock();
+        try {
+            return faltantes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Evaluación (en el hilo de alertas) ---
+
+    private void aplicar(CatalogoEnMemoria.Cambio cambio) {
+        switch (cambio.tipo()) {
+            case INSERTADO, ACTUALIZADO -> evaluar(cambio.producto(), true);
+            case ELIMINADO -> {
+                umbrales.remove(cambio.id());
+                lock.writeLock().lock();
+                try {
+                    quitarFaltante(cambio.id());
+                    conEstadoAlerta.remove(cambio.id());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            case RESINCRONIZAR -> reconstruir(true);
+        }
+    }
+
+    // Solo este producto: O(log n) sobre los faltantes
+    private void evaluar(ProductoResumen producto, boolean avisar) {
+        List<Alerta> alertas = new ArrayList<>(2);
+        long id = producto.getId();
+        Integer umbral = umbrales.get(id);
+        int cantidad = producto.getCantidad() == null ? 0 : producto.getCantidad();
+
+        lock.writeLock().lock();
+        try {
+            // 1. Stock bajo: se avisa al cruzar el umbral; si ya estaba debajo, solo cambia su lugar
+            boolean estabaDebajo = quitarFaltante(id) != null;
+            if (umbral != null && cantidad < umbral) {
+                Sugerencia sugerencia = new Sugerencia(id, producto.getReferencia(), producto.getDescripcion(), cantidad, umbral);
+                faltantes.add(sugerencia);
+                faltantePorId.put(id, sugerencia);
+                if (!estabaDebajo) {
+                    alertas.add(new Alerta(TipoAlerta.STOCK_BAJO, id, producto.getReferencia(), producto.getDescripcion(),
+                            cantidad, umbral, producto.getEstado(), System.currentTimeMillis()));
+                }
+            }
+
+            // 2. Estado con alerta: se avisa al entrar en él
+            if (estadosConAlerta.contains(producto.getEstado())) {
+                if (conEstadoAlerta.add(id)) {
+                    alertas.add(new Alerta(TipoAlerta.ESTADO, id, producto.getReferencia(), producto.getDescripcion(),
+                            cantidad, umbral, producto.getEstado(), System.currentTimeMillis()));
+                }
+            } else {
+                conEstadoAlerta.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (avisar) {
+            alertas.forEach(this::avisar);
+        }
+    }
+
+    /**
+     * Arma todo de nuevo desde el catálogo (al arrancar, o tras una recarga que no dice qué cambió).
+     * Los productos con umbral y los de los estados con alerta se ubican por los índices del catálogo.
+     */
+    private void reconstruir(boolean avisar) {
+        List<ProductoResumen> aEvaluar = new ArrayList<>(catalogo.materializar(new ArrayList<>(umbrales.keySet())));
+        Set<Long> vigentes = new HashSet<>();
+        aEvaluar.forEach(producto -> vigentes.add(producto.getId()));
+        umbrales.keySet().retainAll(vigentes); // Umbrales de productos que ya no existen
+        for (String estado : estadosConAlerta) {
+            aEvaluar.addAll(catalogo.porEstado(estado));
+        }
+
+        // Se evalúa sobre lo que ya había: solo avisa lo que entró
+        aEvaluar.forEach(producto -> evaluar(producto, avisar));
+
+        // Lo que había y ya no aparece (sin umbral o fuera de los estados con alerta) sale
+        Set<Long> evaluados = new HashSet<>();
+        aEvaluar.forEach(producto -> evaluados.add(producto.getId()));
+        lock.writeLock().lock();
+        try {
+            new ArrayList<>(faltantePorId.keySet()).stream().filter(id -> !evaluados.contains(id)).forEach(this::quitarFaltante);
+            conEstadoAlerta.retainAll(evaluados);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Con el lock de escritura tomado
+    private Sugerencia quitarFaltante(long id) {
+        Sugerencia anterior = faltantePorId.remove(id);
+        if (anterior != null) {
+            faltantes.remove(anterior);
+        }
+        return anterior;
+    }
+
+    private void avisar(Alerta alerta) {
+        System.out.println(alerta.tipo() == TipoAlerta.STOCK_BAJO
+                ? "Alerta de stock: " + alerta.referencia() + " tiene " + alerta.cantidad() + " (mínimo " + alerta.umbral() + ")"
+                : "Alerta de estado: " + alerta.referencia() + " pasó a " + alerta.estado());
+        for (Consumer<Alerta> oyente : oyentes) {
+            try {
+                oyente.accept(alerta);
+            } catch (RuntimeException e) {
+                System.err.println("Advertencia: un oyente de alertas falló: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.chebot.stock_manager.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Caché acotada con política LRU (se descarta el elemento usado hace más tiempo).
+ * Los valores nulos devueltos por el cargador no se guardan.
+ * <p>
+ * El lock se toma solo para leer o modificar el mapa: el cargador corre fuera de él, así una carga
+ * lenta (DB, dibujo de una imagen) no frena a las demás lecturas ni a las invalidaciones. Si la clave
+ * se pide dos veces a la vez, se carga dos veces. Una carga que empezó antes de una invalidación
+ * devuelve su valor pero no lo guarda: podría ser de antes del cambio.
+ * <p>
+ * Invalidar nunca espera: si el lock está ocupado, la invalidación queda pendiente y la aplica
+ * el próximo acceso (se puede invalidar desde el hilo escritor o el de JavaFX sin frenarlos).
+ */
+public class CacheLru<K, V> {
+
+    private final LinkedHashMap<K, V> entradas;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Sube con cada invalidación
+    private final AtomicLong generacion = new AtomicLong();
+    // Invalidaciones que llegaron con el lock ocupado
+    private final ConcurrentLinkedQueue<Predicate<K>> pendientes = new ConcurrentLinkedQueue<>();
+
+    public CacheLru(int capacidad) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser mayor que cero.");
+        }
+        // accessOrder = true: cada lectura mueve la entrada al final de la lista
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    public V obtener(K clave, Function<K, V> cargador) {
+        long generacionAlCargar;
+        lock.lock();
+        try {
+            aplicarPendientes();
+            V valor = entradas.get(clave);
+            if (valor != null) {
+                return valor;
+            }
+            generacionAlCargar = generacion.get();
+        } finally {
+            lock.unlock();
+        }
+
+        V valor = cargador.apply(clave);
+        if (valor != null) {
+            lock.lock();
+            try {
+                if (generacion.get() == generacionAlCargar) {
+                    entradas.put(clave, valor);
+                }
+                // Después de guardar: una invalidación que se anotó sin subir aún la generación también lo alcanza
+                aplicarPendientes();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return valor;
+    }
+
+    public void invalidar(K clave) {
+        invalidarSi(clave::equals);
+    }
+
+    public void invalidarSi(Predicate<K> condicion) {
+        pendientes.add(condicion);
+        generacion.incrementAndGet();
+        if (lock.tryLock()) {
+            try {
+                aplicarPendientes();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void limpiar() {
+        invalidarSi(clave -> true);
+    }
+
+    public int tamano() {
+        lock.lock();
+        try {
+            aplicarPendientes();
+            return entradas.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Con el lock tomado
+    private void aplicarPendientes() {
+        Predicate<K> condicion;
+        while ((condicion = pendientes.poll()) != null) {
+            entradas.keySet().removeIf(condicion);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Copia en memoria del catálogo (como {@link ProductoResumen}) para responder lecturas sin ir a SQLite.
+ * <p>
+ * Se carga una vez al arrancar y la mantienen al día las escrituras de {@link ProductoService}
+ * (en el hilo escritor, justo después de cada commit: los cambios llegan en el orden de los commits). Además del mapa por ID (ordenado, para paginar), tiene índices secundarios:
+ * hash por referencia, un grupo por estado y un mapa ordenado por cantidad.
+ * <p>
+ * Los totales del inventario (productos y unidades, en total y por estado) se llevan como contadores
+ * que se ajustan en cada alta, edición o baja: leerlos no recorre el catálogo.
+ * <p>
+ * Las recargas completas y la verificación contra la DB se encolan en el {@link EscritorSerializado}:
+ * mientras corren no se confirma ninguna otra escritura, así que ningún cambio queda en medio.
+ * <p>
+ * Cada cambio se publica a los oyentes con un número de secuencia correlativo (alta, edición o baja
+ * de un ID, o RESINCRONIZAR tras una recarga), para que la vista se actualice solo donde cambió.
+ */
+@Component
+@Lazy(false) // Se carga al arrancar y se verifica con @Scheduled, aun en modo perezoso
+public class CatalogoEnMemoria {
+
+    public enum TipoCambio { INSERTADO, ACTUALIZADO, ELIMINADO, RESINCRONIZAR }
+
+    /**
+     * Un cambio del catálogo. 'producto' es null para ELIMINADO y RESINCRONIZAR.
+     * INSERTADO solo se publica cuando el ID nuevo es el mayor (queda al final del listado);
+     * si no, se publica RESINCRONIZAR.
+     */
+    public record Cambio(long secuencia, TipoCambio tipo, long id, ProductoResumen producto) {
+    }
+
+    /** Cantidad de productos y secuencia del último cambio incluido en ese conteo. */
+    public record Conteo(int total, long secuencia) {
+    }
+
+    /** Productos y unidades en stock de un estado. */
+    public record TotalEstado(int productos, long unidades) {
+    }
+
+    /** Totales del inventario y por estado (primero los de {@link Producto#ESTADOS}, aunque estén en cero). */
+    public record Totales(int productos, long unidades, Map<String, TotalEstado> porEstado, long secuencia) {
+    }
+
+    private final ProductoRepository productoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // --- Datos e índices (protegidos por 'lock') ---
+    private final TreeMap<Long, ProductoResumen> porId = new TreeMap<>();
+    private final Map<String, Long> porReferencia = new HashMap<>();
+    private final Map<String, TreeSet<Long>> porEstado = new HashMap<>();
+    private final TreeMap<Integer, TreeSet<Long>> porCantidad = new TreeMap<>();
+    private long sumaCantidades = 0;
+    // Unidades por estado (los productos por estado son el tamaño de su grupo en 'porEstado')
+    private final Map<String, Long> unidadesPorEstado = new HashMap<>();
+    private long secuencia = 0;
+
+    private final List<Consumer<Cambio>> oyentes = new CopyOnWriteArrayList<>();
+
+    public CatalogoEnMemoria(ProductoRepository productoRepository, JdbcTemplate jdbcTemplate, EscritorSerializado escritor) {
+        this.productoRepository = productoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+    }
+
+    @PostConstruct
+    void cargar() {
+        long inicio = System.currentTimeMillis();
+        reemplazar(productoRepository.findAllResumen());
+        System.out.println("Catálogo en memoria: " + contar() + " productos cargados en "
+                + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    /**
+     * Vuelve a leer todo el catálogo de la DB (p. ej. después de una importación masiva).
+     */
+    public CompletableFuture<Void> recargar() {
+        return escritor.enviar(() -> {
+            reemplazar(productoRepository.findAllResumen());
+            return null;
+        });
+    }
+
+    /**
+     * Compara productos y unidades por estado y el último ID con la DB; si no coinciden, recarga.
+     * @return Se completa con true si la copia en memoria (y sus totales) estaba al día.
+     */
+    @Scheduled(initialDelayString = "${stock.catalogo.verificacion-ms:300000}",
+            fixedDelayString = "${stock.catalogo.verificacion-ms:300000}")
+    public CompletableFuture<Boolean> verificarConsistencia() {
+        return escritor.enviar(() -> {
+            Map<String, TotalEstado> db = new HashMap<>();
+            jdbcTemplate.query("SELECT estado, count(*), coalesce(sum(cantidad), 0) FROM productos GROUP BY estado",
+                    rs -> {
+                        db.put(rs.getString(1), new TotalEstado(rs.getInt(2), rs.getLong(3)));
+                    });
+            Long ultimoIdDb = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM productos", Long.class);
+            Map<String, TotalEstado> memoria;
+            long ultimoId;
+            lock.readLock().lock();
+            try {
+                memoria = totalesPorEstadoSinBloqueo();
+                ultimoId = porId.isEmpty() ? 0 : porId.lastKey();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            boolean alDia = db.equals(memoria) && ultimoIdDb != null && ultimoIdDb == ultimoId;
+            if (!alDia) {
+                System.err.println("Advertencia: el catálogo en memoria no coincide con la DB (por estado "
+                        + memoria + " vs " + db + "). Se recarga.");
+                reemplazar(productoRepository.findAllResumen());
+            }
+            return alDia;
+        });
+    }
+
+    /**
+     * Registra un oyente de cambios. Se llama desde el hilo que escribe, con el lock tomado:
+     * debe ser breve (p. ej. pasar el cambio al hilo de JavaFX).
+     * @return La secuencia actual: el primer cambio que reciba el oyente será el siguiente.
+     */
+    public long agregarOyente(Consumer<Cambio> oyente) {
+        lock.writeLock().lock();
+        try {
+            oyentes.add(oyente);
+            return secuencia;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Escritura (la llama el hilo escritor después de cada commit) ---
+
+    public void guardar(ProductoResumen producto) {
+        lock.writeLock().lock();
+        try {
+            boolean nuevo = quitar(producto.getId()) == null;
+            agregar(producto);
+            TipoCambio tipo = !nuevo ? TipoCambio.ACTUALIZADO
+                    : porId.lastKey().equals(producto.getId()) ? TipoCambio.INSERTADO : TipoCambio.RESINCRONIZAR;
+            publicar(tipo, producto.getId(), tipo == TipoCambio.RESINCRONIZAR ? null : producto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (quitar(id) != null) {
+                publicar(TipoCambio.ELIMINADO, id, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Avisa que cambió algo del producto que no está en el resumen (p. ej. su QR).
+     */
+    public void marcarModificado(Long id) {
+        lock.writeLock().lock();
+        try {
+            ProductoResumen producto = porId.get(id);
+            if (producto != null) {
+                publicar(TipoCambio.ACTUALIZADO, id, producto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Lectura ---
+
+    public int contar() {
+        lock.readLock().lock();
+        try {
+            return porId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Conteo contarConSecuencia() {
+        lock.readLock().lock();
+        try {
+            return new Conteo(porId.size(), secuencia);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Totales del inventario, leídos de los contadores (no recorre el catálogo).
+     */
+    public Totales totales() {
+        lock.readLock().lock();
+        try {
+            Map<String, TotalEstado> porEstadoActual = totalesPorEstadoSinBloqueo();
+            Map<String, TotalEstado> ordenados = new LinkedHashMap<>();
+            for (String estado : Producto.ESTADOS) {
+                ordenados.put(estado, porEstadoActual.getOrDefault(estado, new TotalEstado(0, 0)));
+            }
+            porEstadoActual.forEach(ordenados::putIfAbsent);
+            return new Totales(porId.size(), sumaCantidades, ordenados, secuencia);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public ProductoResumen obtener(Long id) {
+        lock.readLock().lock();
+        try {
+            return porId.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Búsqueda exacta por referencia (índice hash).
+     */
+    public ProductoResumen obtenerPorReferencia(String referencia) {
+        lock.readLock().lock();
+        try {
+            Long id = porReferencia.get(referencia);
+            return id == null ? null : porId.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Todos los productos ordenados por ID.
+     */
+    public List<ProductoResumen> todos() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(porId.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hasta 'tamano' productos con ID mayor a 'despuesDeId', ordenados por ID.
+     */
+    public List<ProductoResumen> pagina(long despuesDeId, int tamano) {
+        lock.readLock().lock();
+        try {
+            List<ProductoResumen> filas = new ArrayList<>(Math.min(tamano, porId.size()));
+            Iterator<ProductoResumen> it = porId.tailMap(despuesDeId, false).values().iterator();
+            while (filas.size() < tamano && it.hasNext()) {
+                filas.add(it.next());
+            }
+            return filas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * El ID que queda 'saltar' filas después de 'despuesDeId', o null si no hay tantas filas.
+     */
+    public Long idTrasSaltar(long despuesDeId, int saltar) {
+        lock.readLock().lock();
+        try {
+            Long id = null;
+            Iterator<Long> it = porId.tailMap(despuesDeId, false).keySet().iterator();
+            for (int i = 0; i < saltar; i++) {
+                if (!it.hasNext()) {
+                    return null;
+                }
+                id = it.next();
+            }
+            return id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Productos de un estado (grupo del índice), ordenados por ID.
+     */
+    public List<ProductoResumen> porEstado(String estado) {
+        lock.readLock().lock();
+        try {
+            return materializarSinBloqueo(porEstado.getOrDefault(estado, new TreeSet<>()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Productos con cantidad entre 'minimo' y 'maximo' (inclusive), de menor a mayor cantidad.
+     */
+    public List<ProductoResumen> porCantidad(int minimo, int maximo) {
+        lock.readLock().lock();
+        try {
+            List<ProductoResumen> resultado = new ArrayList<>();
+            for (TreeSet<Long> ids : porCantidad.subMap(minimo, true, maximo, true).values()) {
+                resultado.addAll(materializarSinBloqueo(ids));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Convierte IDs (p. ej. los que devuelve el índice de texto) en productos, respetando el orden.
+     * Los IDs que ya no existen se omiten.
+     */
+    public List<ProductoResumen> materializar(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            return materializarSinBloqueo(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recorre el catálogo y devuelve, en orden de ID, hasta 'limite' productos que cumplen la condición.
+     */
+    public List<ProductoResumen> filtrar(Predicate<ProductoResumen> condicion, int limite) {
+        lock.readLock().lock();
+        try {
+            List<ProductoResumen> resultado = new ArrayList<>();
+            for (ProductoResumen producto : porId.values()) {
+                if (condicion.test(producto)) {
+                    resultado.add(producto);
+                    if (resultado.size() == limite) {
+                        break;
+                    }
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Mantenimiento de los índices (siempre con el lock de escritura tomado) ---
+
+    private void reemplazar(List<ProductoResumen> productos) {
+        lock.writeLock().lock();
+        try {
+            porId.clear();
+            porReferencia.clear();
+            porEstado.clear();
+            porCantidad.clear();
+            sumaCantidades = 0;
+            unidadesPorEstado.clear();
+            productos.forEach(this::agregar);
+            publicar(TipoCambio.RESINCRONIZAR, 0, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void agregar(ProductoResumen producto) {
+        porId.put(producto.getId(), producto);
+        porReferencia.put(producto.getReferencia(), producto.getId());
+        porEstado.computeIfAbsent(producto.getEstado(), e -> new TreeSet<>()).add(producto.getId());
+        if (producto.getCantidad() != null) {
+            porCantidad.computeIfAbsent(producto.getCantidad(), c -> new TreeSet<>()).add(producto.getId());
+            sumaCantidades += producto.getCantidad();
+        }
+        unidadesPorEstado.merge(producto.getEstado(), producto.getCantidad() == null ? 0L : producto.getCantidad(), Long::sum);
+    }
+
+    private ProductoResumen quitar(Long id) {
+        ProductoResumen anterior = porId.remove(id);
+        if (anterior == null) {
+            return null;
+        }
+        // La referencia pudo pasar a otro producto: solo se borra si todavía apunta a este
+        porReferencia.remove(anterior.getReferencia(), id);
+        quitarDeGrupo(porEstado, anterior.getEstado(), id);
+        if (anterior.getCantidad() != null) {
+            quitarDeGrupo(porCantidad, anterior.getCantidad(), id);
+            sumaCantidades -= anterior.getCantidad();
+        }
+        if (porEstado.containsKey(anterior.getEstado())) {
+            unidadesPorEstado.merge(anterior.getEstado(), anterior.getCantidad() == null ? 0L : -anterior.getCantidad(), Long::sum);
+        } else {
+            unidadesPorEstado.remove(anterior.getEstado()); // Era el último producto del estado
+        }
+        return anterior;
+    }
+
+    // Una entrada por estado con productos: el tamaño de su grupo y sus unidades
+    private Map<String, TotalEstado> totalesPorEstadoSinBloqueo() {
+        Map<String, TotalEstado> totales = new HashMap<>();
+        porEstado.forEach((estado, ids) -> totales.put(estado, new TotalEstado(ids.size(), unidadesPorEstado.get(estado))));
+        return totales;
+    }
+
+    private void publicar(TipoCambio tipo, long id, ProductoResumen producto) {
+        Cambio cambio = new Cambio(++secuencia, tipo, id, producto);
+        for (Consumer<Cambio> oyente : oyentes) {
+            oyente.accept(cambio);
+        }
+    }
+
+    private static <K> void quitarDeGrupo(Map<K, TreeSet<Long>> grupos, K clave, Long id) {
+        TreeSet<Long> ids = grupos.get(clave);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                grupos.remove(clave);
+            }
+        }
+    }
+
+    private List<ProductoResumen> materializarSinBloqueo(Collection<Long> ids) {
+        List<ProductoResumen> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductoResumen producto = porId.get(id);
+            if (producto != null) {
+                resultado.add(producto);
+            }
+        }
+        return resultado;
+    }
+}
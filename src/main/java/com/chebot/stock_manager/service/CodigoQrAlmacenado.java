@@ -0,0 +1,115 @@
+package com.chebot.stock_manager.service;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Formatos en que se guarda el QR en 'productos.codigo_qr'. Se distinguen por los primeros bytes,
+ * así una tabla puede tener filas en formatos distintos (p. ej. durante una migración).
+ * <ul>
+ *     <li>PNG: la imagen completa (formato original).</li>
+ *     <li>MATRIZ: 'QRM' + versión + lado en módulos + un bit por módulo, fila por fila.</li>
+ *     <li>HASH: 'QRH' + versión + SHA-256 del contenido (la imagen se genera del contenido actual).</li>
+ * </ul>
+ */
+public final class CodigoQrAlmacenado {
+
+    public enum Formato {
+        PNG, MATRIZ, HASH
+    }
+
+    private static final byte[] FIRMA_PNG = {(byte) 0x89, 'P', 'N', 'G'};
+    private static final byte[] FIRMA_MATRIZ = {'Q', 'R', 'M', 1};
+    private static final byte[] FIRMA_HASH = {'Q', 'R', 'H', 1};
+    private static final int LARGO_FIRMA = 4;
+
+    private CodigoQrAlmacenado() {
+    }
+
+    /**
+     * @return El formato de los bytes guardados, o null si no hay QR o no se reconoce.
+     */
+    public static Formato formato(byte[] almacenado) {
+        if (almacenado == null || almacenado.length < LARGO_FIRMA) {
+            return null;
+        } else if (empiezaCon(almacenado, FIRMA_PNG)) {
+            return Formato.PNG;
+        } else if (empiezaCon(almacenado, FIRMA_MATRIZ)) {
+            return Formato.MATRIZ;
+        } else if (empiezaCon(almacenado, FIRMA_HASH)) {
+            return Formato.HASH;
+        }
+        return null;
+    }
+
+    // --- MATRIZ ---
+
+    public static byte[] empaquetar(BitMatrix modulos) {
+        int lado = modulos.getWidth();
+        if (lado != modulos.getHeight() || lado > 255) {
+            throw new IllegalArgumentException("Matriz de QR inválida: " + lado + "x" + modulos.getHeight());
+        }
+        byte[] bytes = new byte[LARGO_FIRMA + 1 + (lado * lado + 7) / 8];
+        System.arraycopy(FIRMA_MATRIZ, 0, bytes, 0, LARGO_FIRMA);
+        bytes[LARGO_FIRMA] = (byte) lado;
+        int bit = 0;
+        for (int y = 0; y < lado; y++) {
+            for (int x = 0; x < lado; x++, bit++) {
+                if (modulos.get(x, y)) {
+                    bytes[LARGO_FIRMA + 1 + bit / 8] |= (byte) (0x80 >>> (bit % 8));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public static BitMatrix desempaquetar(byte[] almacenado) {
+        if (formato(almacenado) != Formato.MATRIZ) {
+            throw new IllegalArgumentException("Los bytes no son una matriz de QR.");
+        }
+        int lado = almacenado[LARGO_FIRMA] & 0xFF;
+        BitMatrix modulos = new BitMatrix(lado);
+        int bit = 0;
+        for (int y = 0; y < lado; y++) {
+            for (int x = 0; x < lado; x++, bit++) {
+                if ((almacenado[LARGO_FIRMA + 1 + bit / 8] & (0x80 >>> (bit % 8))) != 0) {
+                    modulos.set(x, y);
+                }
+            }
+        }
+        return modulos;
+    }
+
+    // --- HASH ---
+
+    public static byte[] hash(String contenido) {
+        byte[] bytes = new byte[LARGO_FIRMA + 32];
+        System.arraycopy(FIRMA_HASH, 0, bytes, 0, LARGO_FIRMA);
+        System.arraycopy(sha256(contenido), 0, bytes, LARGO_FIRMA, 32);
+        return bytes;
+    }
+
+    /**
+     * @return true si el hash guardado corresponde a ese contenido.
+     */
+    public static boolean coincideHash(byte[] almacenado, String contenido) {
+        return formato(almacenado) == Formato.HASH
+                && Arrays.equals(almacenado, LARGO_FIRMA, almacenado.length, sha256(contenido), 0, 32);
+    }
+
+    private static byte[] sha256(String contenido) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contenido.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean empiezaCon(byte[] bytes, byte[] firma) {
+        return Arrays.equals(bytes, 0, firma.length, firma, 0, firma.length);
+    }
+}
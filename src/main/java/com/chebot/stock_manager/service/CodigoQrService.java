@@ -0,0 +1,239 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.service.CodigoQrAlmacenado.Formato;
+import com.google.zxing.WriterException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Guardado compacto y dibujo a demanda de los Códigos QR.
+ * <p>
+ * El QR se deriva por completo del contenido del producto (ver {@link ContenidoQr}), así que no hace
+ * falta guardar la imagen: según 'stock.qr.almacenamiento' se guarda el PNG, la matriz de módulos
+ * empaquetada en bits, un hash del contenido o nada. La imagen se dibuja cuando se pide, en el tamaño
+ * pedido, y las últimas se guardan en una caché LRU que se invalida con los cambios del catálogo.
+ * <p>
+ * Al arrancar con un modo distinto al de la última vez, las filas existentes se convierten por lotes.
+ */
+@Service
+public class CodigoQrService {
+
+    public enum ModoAlmacenamiento {
+        PNG, MATRIZ, HASH, NINGUNO
+    }
+
+    public record ResultadoMigracion(ModoAlmacenamiento modo, long convertidas, long bytesAntes, long bytesDespues,
+                                     long bytesLibresEnArchivo, long milisegundos) {
+    }
+
+    // Filas por lote de la migración (un commit del escritor por lote)
+    private static final int TAMANO_LOTE = 500;
+
+    // Clave de la caché: el mismo producto puede pedirse en varios tamaños
+    private record ClaveRender(long id, int lado) {
+    }
+
+    // Fila leída para dibujar o convertir su QR
+    private record FilaQr(long id, long version, String contenido, byte[] almacenado) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+    private final ModoAlmacenamiento modo;
+    private final CacheLru<ClaveRender, byte[]> cacheRender;
+
+    public CodigoQrService(JdbcTemplate jdbcTemplate, EscritorSerializado escritor, CatalogoEnMemoria catalogo,
+                           @Value("${stock.qr.almacenamiento:MATRIZ}") ModoAlmacenamiento modo,
+                           @Value("${stock.qr.cache-render:256}") int capacidadCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+        this.modo = modo;
+        this.cacheRender = new CacheLru<>(capacidadCache);
+
+        // Cualquier cambio del producto (también el QR regenerado) descarta sus imágenes. Llega en el hilo
+        // escritor con el catálogo bloqueado: invalidar no espera a los dibujos en curso
+        catalogo.agregarOyente(cambio -> {
+            if (cambio.tipo() == CatalogoEnMemoria.TipoCambio.RESINCRONIZAR) {
+                cacheRender.limpiar();
+            } else {
+                cacheRender.invalidarSi(clave -> clave.id() == cambio.id());
+            }
+        });
+    }
+
+    public ModoAlmacenamiento getModo() {
+        return modo;
+    }
+
+    // --- Guardado ---
+
+    /**
+     * Lo que hay que guardar en 'codigo_qr' para ese contenido, según el modo (null en modo NINGUNO).
+     * Es trabajo de CPU: conviene llamarlo fuera del hilo escritor.
+     */
+    public byte[] codificar(String contenido) throws WriterException, IOException {
+        return switch (modo) {
+            case PNG -> QrCodeGenerator.generateQrCodeImage(contenido);
+            case MATRIZ -> CodigoQrAlmacenado.empaquetar(QrCodeGenerator.generarModulos(contenido));
+            case HASH -> CodigoQrAlmacenado.hash(contenido);
+            case NINGUNO -> null;
+        };
+    }
+
+    // --- Dibujo a demanda ---
+
+    /**
+     * PNG del QR del producto, de 'lado' x 'lado' pixeles (sale de la caché si ya se dibujó).
+     * La lectura y el dibujo corren fuera del lock de la caché: varios pedidos se dibujan a la vez.
+     * @return Los bytes PNG, o null si el producto no existe.
+     */
+    public byte[] obtenerPng(long id, int lado) {
+        return cacheRender.obtener(new ClaveRender(id, lado), clave -> {
+            List<FilaQr> filas = jdbcTemplate.query(
+                    "SELECT id, version, referencia, descripcion, cantidad, estado, codigo_qr FROM productos WHERE id = ?",
+                    (rs, rowNum) -> leerFila(rs), id);
+            return filas.isEmpty() ? null : aPng(filas.get(0).almacenado(), filas.get(0).contenido(), lado);
+        });
+    }
+
+    /**
+     * Dibuja un QR guardado en cualquier formato, sin pasar por la caché (para exportaciones masivas).
+     * Si lo guardado no sirve para ese tamaño (o no hay nada), se genera a partir del contenido.
+     */
+    public byte[] aPng(byte[] almacenado, String contenido, int lado) {
+        try {
+            Formato formato = CodigoQrAlmacenado.formato(almacenado);
+            if (formato == Formato.PNG && lado == QrCodeGenerator.LADO) {
+                return almacenado;
+            } else if (formato == Formato.MATRIZ) {
+                return QrCodeGenerator.renderizarPng(CodigoQrAlmacenado.desempaquetar(almacenado), lado);
+            }
+            return QrCodeGenerator.renderizarPng(QrCodeGenerator.generarModulos(contenido), lado);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (WriterException e) {
+            throw new IllegalStateException("No se pudo generar el Código QR: " + e.getMessage(), e);
+        }
+    }
+
+    // --- Migración entre modos ---
+
+    /**
+     * Si las filas quedaron guardadas en otro modo (o es la primera vez), las convierte en segundo plano.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrarSiCambioElModo() {
+        List<String> guardado = jdbcTemplate.queryForList("SELECT modo FROM qr_almacenamiento WHERE id = 1", String.class);
+        if (guardado.isEmpty() || !guardado.get(0).equals(modo.name())) {
+            Thread.ofVirtual().name("migracion-qr").start(() -> {
+                try {
+                    ResultadoMigracion resultado = migrar();
+                    System.out.printf("Códigos QR guardados como %s: %d filas convertidas, 'codigo_qr' pasó de %s a %s "
+                                    + "(%s menos). Espacio libre en el archivo: %s (se recupera con VACUUM). %d ms.%n",
+                            resultado.modo(), resultado.convertidas(), tamano(resultado.bytesAntes()),
+                            tamano(resultado.bytesDespues()), tamano(resultado.bytesAntes() - resultado.bytesDespues()),
+                            tamano(resultado.bytesLibresEnArchivo()), resultado.milisegundos());
+                } catch (Exception e) {
+                    System.err.println("Error al convertir los Códigos QR (se reintentará en el próximo arranque): " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Convierte al modo actual todas las filas que estén en otro formato. Se puede interrumpir:
+     * las filas ya convertidas se saltean la próxima vez.
+     */
+    public synchronized ResultadoMigracion migrar() {
+        long inicio = System.currentTimeMillis();
+        long bytesAntes = bytesEnColumna();
+        long convertidas = 0;
+        long ultimoId = 0;
+
+        while (true) {
+            List<FilaQr> lote = jdbcTemplate.query(
+                    "SELECT id, version, referencia, descripcion, cantidad, estado, codigo_qr FROM productos "
+                            + "WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> leerFila(rs), ultimoId, TAMANO_LOTE);
+            if (lote.isEmpty()) {
+                break;
+            }
+            ultimoId = lote.get(lote.size() - 1).id();
+
+            // 1. Codificar en paralelo solo las filas que no están en el formato del modo
+            List<Object[]> actualizaciones = lote.parallelStream()
+                    .filter(fila -> !enFormatoActual(fila))
+                    .map(fila -> new Object[]{codificarSinError(fila), fila.id(), fila.version()})
+                    .toList();
+
+            // 2. Guardar por el escritor; si la fila cambió mientras tanto, ya se guardó en el modo actual
+            if (!actualizaciones.isEmpty()) {
+                int[] filas = escritor.enviar(() -> jdbcTemplate.batchUpdate(
+                        "UPDATE productos SET codigo_qr = ? WHERE id = ? AND version = ?", actualizaciones)).join();
+                for (int actualizadas : filas) {
+                    convertidas += Math.max(actualizadas, 0);
+                }
+            }
+        }
+
+        escritor.enviar(() -> jdbcTemplate.update("INSERT OR REPLACE INTO qr_almacenamiento (id, modo) VALUES (1, ?)",
+                modo.name())).join();
+        cacheRender.limpiar();
+
+        Long paginasLibres = jdbcTemplate.queryForObject("PRAGMA freelist_count", Long.class);
+        Long tamanoPagina = jdbcTemplate.queryForObject("PRAGMA page_size", Long.class);
+        return new ResultadoMigracion(modo, convertidas, bytesAntes, bytesEnColumna(),
+                Objects.requireNonNullElse(paginasLibres, 0L) * Objects.requireNonNullElse(tamanoPagina, 0L),
+                System.currentTimeMillis() - inicio);
+    }
+
+    private boolean enFormatoActual(FilaQr fila) {
+        Formato formato = CodigoQrAlmacenado.formato(fila.almacenado());
+        return switch (modo) {
+            case PNG -> formato == Formato.PNG;
+            case MATRIZ -> formato == Formato.MATRIZ;
+            case HASH -> CodigoQrAlmacenado.coincideHash(fila.almacenado(), fila.contenido());
+            case NINGUNO -> fila.almacenado() == null;
+        };
+    }
+
+    private byte[] codificarSinError(FilaQr fila) {
+        try {
+            return codificar(fila.contenido());
+        } catch (WriterException | IOException e) {
+            // Igual que en el alta manual: si el QR no se puede generar, queda sin QR
+            System.err.println("Advertencia: no se pudo generar el QR del producto " + fila.id());
+            return null;
+        }
+    }
+
+    private long bytesEnColumna() {
+        Long bytes = jdbcTemplate.queryForObject("SELECT coalesce(sum(length(codigo_qr)), 0) FROM productos", Long.class);
+        return bytes == null ? 0 : bytes;
+    }
+
+    private static FilaQr leerFila(ResultSet rs) throws SQLException {
+        int cantidad = rs.getInt("cantidad");
+        Integer cantidadONull = rs.wasNull() ? null : cantidad;
+        return new FilaQr(rs.getLong("id"), rs.getLong("version"),
+                ContenidoQr.generar(rs.getString("referencia"), rs.getString("descripcion"), cantidadONull, rs.getString("estado")),
+                rs.getBytes("codigo_qr"));
+    }
+
+    private static String tamano(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
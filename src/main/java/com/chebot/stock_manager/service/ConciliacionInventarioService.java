@@ -0,0 +1,206 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Conciliación del inventario con fotos de las estanterías: lee los Códigos QR de todas las imágenes
+ * de una carpeta y compara lo visto con lo que figura en el sistema.
+ * <p>
+ * Las imágenes se decodifican en paralelo con un hilo por núcleo. Como una foto descomprimida ocupa
+ * decenas de MB, un semáforo limita cuántas se procesan a la vez: el consumo de memoria depende de
+ * la cantidad de núcleos, no de la cantidad de fotos. Las referencias se buscan en el índice hash del
+ * catálogo en memoria, sin consultar la DB.
+ */
+@Service
+public class ConciliacionInventarioService {
+
+    private static final Set<String> EXTENSIONES = Set.of("png", "jpg", "jpeg", "bmp", "gif");
+    // Intenta más a fondo: las fotos tienen perspectiva, poca luz y varios QR
+    private static final Map<DecodeHintType, Object> PISTAS = Map.of(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+
+    public enum Resultado {
+        /** En el sistema con stock y visto en alguna foto. */
+        ENCONTRADO,
+        /** En el sistema con stock, pero no apareció en ninguna foto. */
+        FALTANTE,
+        /** Visto en una foto, pero en el sistema figura sin stock. */
+        SOBRANTE,
+        /** Visto en una foto, pero la referencia no existe en el sistema. */
+        DESCONOCIDO
+    }
+
+    public record ProgresoConciliacion(int procesadas, int total) {
+    }
+
+    public record ResultadoConciliacion(int imagenes, int imagenesConError, int qrLeidos, int qrAjenos,
+                                        Map<Resultado, Integer> porResultado, Path reporte, long milisegundos) {
+    }
+
+    private final CatalogoEnMemoria catalogo;
+
+    public ConciliacionInventarioService(CatalogoEnMemoria catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    /**
+     * Lee todas las imágenes de la carpeta (y subcarpetas) y escribe el reporte de diferencias en CSV.
+     * @param progreso Recibe la cantidad de imágenes procesadas (desde los hilos de decodificación).
+     */
+    public ResultadoConciliacion conciliar(Path carpeta, Path reporteCsv, Consumer<ProgresoConciliacion> progreso)
+            throws IOException, InterruptedException {
+        long inicio = System.currentTimeMillis();
+        int total;
+        try (Stream<Path> archivos = listarImagenes(carpeta)) {
+            total = (int) archivos.count();
+        }
+
+        // Referencia -> veces vista (una foto puede tener varios QR, y un producto aparecer en varias fotos)
+        Map<String, AtomicInteger> vistas = new ConcurrentHashMap<>();
+        LongAdder qrLeidos = new LongAdder();
+        LongAdder qrAjenos = new LongAdder();
+        AtomicInteger procesadas = new AtomicInteger();
+        AtomicInteger conError = new AtomicInteger();
+
+        // 1. Decodificar en paralelo, con a lo sumo 'nucleos' imágenes en memoria a la vez
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        Semaphore enMemoria = new Semaphore(nucleos);
+        ExecutorService decodificadores = Executors.newFixedThreadPool(nucleos);
+        try (Stream<Path> archivos = listarImagenes(carpeta)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                enMemoria.acquire(); // El recorrido espera si ya hay suficientes imágenes en proceso
+                decodificadores.execute(() -> {
+                    try {
+                        for (String texto : decodificar(archivo)) {
+                            qrLeidos.increment();
+                            String referencia = ContenidoQr.extraerReferencia(texto);
+                            if (referencia == null) {
+                                qrAjenos.increment();
+                            } else {
+                                vistas.computeIfAbsent(referencia, r -> new AtomicInteger()).incrementAndGet();
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        conError.incrementAndGet();
+                        System.err.println("No se pudo leer la imagen " + archivo + ": " + e.getMessage());
+                    } finally {
+                        enMemoria.release();
+                        progreso.accept(new ProgresoConciliacion(procesadas.incrementAndGet(), total));
+                    }
+                });
+            }
+        } finally {
+            decodificadores.shutdown();
+            decodificadores.awaitTermination(1, TimeUnit.DAYS);
+        }
+
+        // 2. Comparar con el sistema y escribir el reporte
+        Map<Resultado, Integer> porResultado = escribirReporte(vistas, reporteCsv);
+        return new ResultadoConciliacion(total, conError.get(), qrLeidos.intValue(), qrAjenos.intValue(),
+                porResultado, reporteCsv, System.currentTimeMillis() - inicio);
+    }
+
+    private static Stream<Path> listarImagenes(Path carpeta) throws IOException {
+        return Files.walk(carpeta)
+                .filter(Files::isRegularFile)
+                .filter(archivo -> {
+                    String nombre = archivo.getFileName().toString();
+                    int punto = nombre.lastIndexOf('.');
+                    return punto > 0 && EXTENSIONES.contains(nombre.substring(punto + 1).toLowerCase(Locale.ROOT));
+                });
+    }
+
+    // Todos los QR de la imagen (una foto de estantería suele tener varios)
+    private static List<String> decodificar(Path archivo) throws IOException {
+        BufferedImage imagen = ImageIO.read(archivo.toFile());
+        if (imagen == null) {
+            throw new IOException("formato de imagen no soportado");
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(imagen)));
+        try {
+            Result[] resultados = new QRCodeMultiReader().decodeMultiple(bitmap, PISTAS);
+            List<String> textos = new ArrayList<>(resultados.length);
+            for (Result resultado : resultados) {
+                textos.add(resultado.getText());
+            }
+            return textos;
+        } catch (NotFoundException e) {
+            return List.of(); // Foto sin QR legibles
+        }
+    }
+
+    /**
+     * Una fila por producto con stock y por referencia vista; primero las diferencias.
+     */
+    private Map<Resultado, Integer> escribirReporte(Map<String, AtomicInteger> vistas, Path reporteCsv) throws IOException {
+        Map<Resultado, Integer> porResultado = new ConcurrentHashMap<>();
+        List<String[]> filas = new ArrayList<>();
+
+        for (ProductoResumen producto : catalogo.porCantidad(1, Integer.MAX_VALUE)) {
+            AtomicInteger veces = vistas.get(producto.getReferencia());
+            Resultado resultado = veces == null ? Resultado.FALTANTE : Resultado.ENCONTRADO;
+            filas.add(fila(resultado, producto.getReferencia(), producto, veces));
+        }
+        for (Map.Entry<String, AtomicInteger> vista : vistas.entrySet()) {
+            ProductoResumen producto = catalogo.obtenerPorReferencia(vista.getKey());
+            if (producto == null) {
+                filas.add(fila(Resultado.DESCONOCIDO, vista.getKey(), null, vista.getValue()));
+            } else if (producto.getCantidad() == null || producto.getCantidad() <= 0) {
+                filas.add(fila(Resultado.SOBRANTE, vista.getKey(), producto, vista.getValue()));
+            }
+        }
+        filas.sort(Comparator.comparing((String[] f) -> Resultado.valueOf(f[0]) == Resultado.ENCONTRADO)
+                .thenComparing(f -> f[0]).thenComparing(f -> f[1]));
+
+        try (BufferedWriter salida = Files.newBufferedWriter(reporteCsv, StandardCharsets.UTF_8)) {
+            salida.write("resultado;referencia;descripcion;cantidad_sistema;estado;veces_visto");
+            salida.newLine();
+            for (String[] fila : filas) {
+                porResultado.merge(Resultado.valueOf(fila[0]), 1, Integer::sum);
+                salida.write(String.join(";", fila));
+                salida.newLine();
+            }
+        }
+        return porResultado;
+    }
+
+    private static String[] fila(Resultado resultado, String referencia, ProductoResumen producto, AtomicInteger veces) {
+        return new String[]{
+                resultado.name(),
+                Csv.campo(referencia),
+                producto == null ? "" : Csv.campo(producto.getDescripcion()),
+                producto == null || producto.getCantidad() == null ? "" : producto.getCantidad().toString(),
+                producto == null ? "" : Csv.campo(producto.getEstado()),
+                String.valueOf(veces == null ? 0 : veces.get())};
+    }
+}
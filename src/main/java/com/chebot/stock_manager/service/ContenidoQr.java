@@ -0,0 +1,40 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.Producto;
+
+/**
+ * Formato del texto que se codifica en el QR de cada producto.
+ * Si se cambia, hay que regenerar los códigos existentes (ver RegeneracionQrService).
+ */
+public final class ContenidoQr {
+
+    private static final String PREFIJO_REFERENCIA = "Referencia:";
+
+    private ContenidoQr() {
+    }
+
+    public static String generar(Producto producto) {
+        return generar(producto.getReferencia(), producto.getDescripcion(), producto.getCantidad(), producto.getEstado());
+    }
+
+    public static String generar(String referencia, String descripcion, Integer cantidad, String estado) {
+        return PREFIJO_REFERENCIA + referencia + "\nDescripción: "
+                + descripcion + "\nCantidad: " + cantidad
+                + "\nEstado: " + estado;
+    }
+
+    /**
+     * Lee la referencia de un texto escaneado con el formato de {@link #generar}.
+     * @return La referencia, o null si el texto no es un QR de esta aplicación.
+     */
+    public static String extraerReferencia(String texto) {
+        if (texto == null || !texto.startsWith(PREFIJO_REFERENCIA)) {
+            return null;
+        }
+        // Hasta el primer salto de línea: el resto puede llegar con otra codificación (la 'ó' de Descripción)
+        int fin = texto.indexOf('\n');
+        String referencia = (fin < 0 ? texto.substring(PREFIJO_REFERENCIA.length())
+                : texto.substring(PREFIJO_REFERENCIA.length(), fin)).strip();
+        return referencia.isEmpty() ? null : referencia;
+    }
+}
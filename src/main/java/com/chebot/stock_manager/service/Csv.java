@@ -0,0 +1,25 @@
+package com.chebot.stock_manager.service;
+
+/**
+ * Lo mínimo de CSV que necesitan las exportaciones y los reportes: escribir un campo con escape
+ * (separador ';', el mismo que acepta la importación).
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * El valor tal cual, o entre comillas (con las comillas duplicadas) si tiene separador, comillas
+     * o saltos de línea. Vacío si es null.
+     */
+    public static String campo(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(';') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,140 @@
+package com.chebot.stock_manager.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Serializa todas las escrituras en un único hilo escritor con commits agrupados.
+ * <p>
+ * SQLite admite un solo escritor a la vez: en lugar de que cada llamada abra su propia transacción
+ * (y compita por el bloqueo y haga un fsync), las operaciones se encolan y el hilo escritor ejecuta
+ * todas las que se juntaron en una sola transacción, con un solo commit para el lote.
+ * Si una operación del lote falla, el lote se deshace y se vuelve a ejecutar operación por operación,
+ * para que cada llamada reciba su propio resultado o su propio error.
+ */
+@Component
+public class EscritorSerializado {
+
+    // Operaciones como máximo por transacción
+    private static final int MAX_LOTE = 256;
+
+    // Una operación pendiente, lo que corre tras su commit y el Future de quien la pidió
+    private record Operacion<T>(Supplier<T> accion, Consumer<? super T> alConfirmar, CompletableFuture<T> resultado) {
+    }
+
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Operacion<?>> cola = new LinkedBlockingQueue<>();
+    private final Thread hiloEscritor;
+    private volatile boolean detener = false;
+
+    public EscritorSerializado(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+        this.hiloEscritor = new Thread(this::atenderCola, "escritor-sqlite");
+        this.hiloEscritor.setDaemon(true);
+        this.hiloEscritor.start();
+    }
+
+    /**
+     * Encola una escritura. La acción corre en el hilo escritor, dentro de la transacción del lote,
+     * así que no debe hacer trabajo lento (p. ej. generar QR): eso se prepara antes de encolar.
+     * Si el lote se deshace, la acción se ejecuta otra vez: no debe modificar objetos de quien la encoló
+     * (que verían el estado del intento deshecho), sino devolver lo que haya que actualizar.
+     * @return Se completa después del commit con el resultado de la acción, o con su error.
+     */
+    public <T> CompletableFuture<T> enviar(Supplier<T> accion) {
+        return enviar(accion, resultado -> {
+        });
+    }
+
+    /**
+     * Como {@link #enviar(Supplier)}, y 'alConfirmar' recibe el resultado en el hilo escritor apenas se
+     * confirma el lote, antes de completar el Future y de empezar la transacción siguiente. Así lo que
+     * sigue a la DB (p. ej. el catálogo en memoria) recibe los cambios en el orden de los commits.
+     * Debe ser breve y no encolar escrituras esperando su resultado.
+     */
+    public <T> CompletableFuture<T> enviar(Supplier<T> accion, Consumer<? super T> alConfirmar) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        if (detener) {
+            resultado.completeExceptionally(new IllegalStateException("El escritor de la DB está detenido."));
+            return resultado;
+        }
+        cola.add(new Operacion<>(accion, alConfirmar, resultado));
+        return resultado;
+    }
+
+    @PreDestroy
+    void cerrar() {
+        detener = true;
+        hiloEscritor.interrupt();
+    }
+
+    // --- Hilo escritor ---
+
+    private void atenderCola() {
+        List<Operacion<?>> lote = new ArrayList<>(MAX_LOTE);
+        while (!detener) {
+            try {
+                // 1. Espera la primera operación y se lleva las que ya se acumularon detrás
+                lote.add(cola.take());
+                cola.drainTo(lote, MAX_LOTE - 1);
+                // 2. Un commit para todo el lote
+                ejecutarLote(lote);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lote.clear();
+            }
+        }
+        // Lo que quedó en la cola no se va a ejecutar
+        List<Operacion<?>> pendientes = new ArrayList<>();
+        cola.drainTo(pendientes);
+        pendientes.forEach(op -> op.resultado().completeExceptionally(
+                new IllegalStateException("La aplicación se cerró antes de guardar los cambios.")));
+    }
+
+    private void ejecutarLote(List<Operacion<?>> lote) {
+        List<Object> resultados = new ArrayList<>(lote.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Operacion<?> op : lote) {
+                    resultados.add(op.accion().get());
+                }
+            });
+        } catch (Throwable e) {
+            // También un Error (AssertionError, StackOverflowError...): el hilo escritor no puede morir,
+            // o los Futures pendientes y los que vengan no se completarían nunca
+            if (lote.size() == 1) {
+                lote.get(0).resultado().completeExceptionally(e);
+            } else {
+                // 3. Alguna falló: se deshizo todo, se repite de a una para aislar el error
+                lote.forEach(op -> ejecutarLote(List.of(op)));
+            }
+            return;
+        }
+        // Los Futures se completan recién con los datos confirmados
+        for (int i = 0; i < lote.size(); i++) {
+            completar(lote.get(i), resultados.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void completar(Operacion<T> op, Object resultado) {
+        T confirmado = (T) resultado;
+        try {
+            op.alConfirmar().accept(confirmado);
+        } catch (Throwable e) {
+            // El cambio ya está en la DB: quien llamó recibe su resultado igual
+            System.err.println("Advertencia: falló la actualización posterior al commit: " + e.getMessage());
+        }
+        op.resultado().complete(confirmado);
+    }
+}
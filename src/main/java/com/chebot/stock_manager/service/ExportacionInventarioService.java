@@ -0,0 +1,261 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.repository.ProductoBusquedaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación del inventario completo (o de un filtro) a CSV o JSON.
+ * <p>
+ * Las filas se leen con un cursor de solo avance y se escriben a medida que llegan, así que nunca
+ * hay más de una fila en memoria: el consumo es el mismo para cien productos que para un millón.
+ * No se leen los Códigos QR. El CSV usa las columnas de la importación, así se puede volver a importar.
+ */
+@Service
+public class ExportacionInventarioService {
+
+    public enum Formato {
+        CSV, JSON
+    }
+
+    public record ResultadoExportacion(long exportados, Path destino, long bytes, long milisegundos) {
+    }
+
+    private static final String COLUMNAS = "SELECT p.id, p.referencia, p.descripcion, p.cantidad, p.estado, p.observaciones "
+            + "FROM productos p ";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    // Cada cuántas filas se avisa el progreso
+    private static final int AVISO_PROGRESO = 1000;
+
+    // Consulta y parámetros que corresponden a un criterio de filtro
+    private record Consulta(String sql, Object... parametros) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    // Filas que el driver trae por vez del cursor
+    private final int filasPorLectura;
+
+    public ExportacionInventarioService(JdbcTemplate jdbcTemplate,
+                                        @Value("${stock.exportacion.fetch-size:1000}") int filasPorLectura) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.filasPorLectura = filasPorLectura;
+    }
+
+    /**
+     * Exporta los productos que cumplen el filtro (los mismos criterios que
+     * {@link ProductoService#filtrarProductos}; sin valor, todo el inventario).
+     * @param comprimir Si es true, el archivo se escribe comprimido con gzip.
+     * @param progreso Recibe la cantidad de filas escritas hasta el momento.
+     */
+    public ResultadoExportacion exportar(String criterio, String valor, Formato formato, boolean comprimir,
+                                         Path destino, LongConsumer progreso) throws IOException {
+        return exportar(consulta(criterio, valor), formato, comprimir, destino, progreso);
+    }
+
+    /**
+     * Exporta los productos con esos IDs (p. ej. el resultado de un filtro combinado), en orden de ID.
+     */
+    public ResultadoExportacion exportar(List<Long> ids, Formato formato, boolean comprimir, Path destino,
+                                         LongConsumer progreso) throws IOException {
+        // Los IDs van como un solo parámetro (arreglo JSON): no hay límite de variables por sentencia
+        String arreglo = ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        return exportar(new Consulta(COLUMNAS + "WHERE p.id IN (SELECT value FROM json_each(?)) ORDER BY p.id", arreglo),
+                formato, comprimir, destino, progreso);
+    }
+
+    private ResultadoExportacion exportar(Consulta consulta, Formato formato, boolean comprimir, Path destino,
+                                          LongConsumer progreso) throws IOException {
+        long inicio = System.currentTimeMillis();
+        OutputStream salida = Channels.newOutputStream(FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        if (comprimir) {
+            salida = new GZIPOutputStream(salida, TAMANO_BUFFER);
+        }
+        long exportados;
+        try (Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER)) {
+            exportados = escribir(consulta, formato, escritor, progreso);
+        }
+        progreso.accept(exportados);
+        return new ResultadoExportacion(exportados, destino, Files.size(destino), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Escribe los productos en 'salida' a medida que se leen (no la cierra).
+     * @return La cantidad de productos escritos.
+     */
+    public long exportar(String criterio, String valor, Formato formato, Writer salida, LongConsumer progreso)
+            throws IOException {
+        return escribir(consulta(criterio, valor), formato, salida, progreso);
+    }
+
+    private long escribir(Consulta consulta, Formato formato, Writer salida, LongConsumer progreso) throws IOException {
+        Escritura escritura = formato == Formato.CSV ? new EscrituraCsv(salida) : new EscrituraJson(salida);
+        escritura.inicio();
+        long[] filas = {0};
+
+        if (consulta != null) {
+            try {
+                // Cursor de solo avance: cada fila se escribe y se descarta antes de leer la siguiente
+                jdbcTemplate.query(conexion -> {
+                    PreparedStatement sentencia = conexion.prepareStatement(consulta.sql(),
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    sentencia.setFetchSize(filasPorLectura);
+                    for (int i = 0; i < consulta.parametros().length; i++) {
+                        sentencia.setObject(i + 1, consulta.parametros()[i]);
+                    }
+                    return sentencia;
+                }, (RowCallbackHandler) rs -> {
+                    try {
+                        int cantidad = rs.getInt("cantidad");
+                        Integer cantidadONull = rs.wasNull() ? null : cantidad;
+                        escritura.fila(rs.getLong("id"), rs.getString("referencia"), rs.getString("descripcion"),
+                                cantidadONull, rs.getString("estado"), rs.getString("observaciones"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (++filas[0] % AVISO_PROGRESO == 0) {
+                        progreso.accept(filas[0]);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        escritura.fin();
+        return filas[0];
+    }
+
+    // --- Criterios de filtro (los mismos que ProductoService.filtrarProductos, pero sin límite) ---
+
+    /**
+     * @return La consulta del filtro, o null si el filtro no puede tener resultados.
+     */
+    private static Consulta consulta(String criterio, String valor) {
+        if (valor == null || valor.trim().isEmpty() || criterio == null) {
+            return new Consulta(COLUMNAS + "ORDER BY p.id");
+        }
+        String texto = valor.trim();
+        return switch (criterio.toLowerCase()) {
+            case "referencia" -> consultaTexto(ProductoBusquedaRepository.Campo.REFERENCIA, texto);
+            case "descripcion", "descripción" -> consultaTexto(ProductoBusquedaRepository.Campo.DESCRIPCION, texto);
+            case "estado" -> new Consulta(COLUMNAS + "WHERE p.estado = ? ORDER BY p.id", valor);
+            case "cantidad hasta" -> {
+                try {
+                    int maximo = Integer.parseInt(texto);
+                    // Por ID y no por cantidad como la vista: ordenar por cantidad armaría el resultado entero antes de escribir
+                    yield maximo < 0 ? null
+                            : new Consulta(COLUMNAS + "WHERE p.cantidad BETWEEN 0 AND ? ORDER BY p.id", maximo);
+                } catch (NumberFormatException e) {
+                    yield null;
+                }
+            }
+            default -> new Consulta(COLUMNAS + "ORDER BY p.id");
+        };
+    }
+
+    private static Consulta consultaTexto(ProductoBusquedaRepository.Campo campo, String texto) {
+        // Textos muy cortos no pasan por el índice de trigramas: se recorre la tabla
+        if (texto.length() < ProductoBusquedaRepository.LONGITUD_MINIMA) {
+            return new Consulta(COLUMNAS + "WHERE instr(lower(p." + campo.getColumna() + "), lower(?)) > 0 ORDER BY p.id", texto);
+        }
+        // El índice devuelve las filas en orden de ID, sin ordenar el resultado completo en memoria
+        return new Consulta(COLUMNAS + "JOIN productos_fts f ON f.rowid = p.id WHERE productos_fts MATCH ?",
+                ProductoBusquedaRepository.expresionMatch(campo, texto));
+    }
+
+    // --- Formatos ---
+
+    private interface Escritura {
+        void inicio() throws IOException;
+
+        void fila(long id, String referencia, String descripcion, Integer cantidad, String estado,
+                  String observaciones) throws IOException;
+
+        void fin() throws IOException;
+    }
+
+    // Separador ';' y BOM: Excel lo abre con las tildes bien, y la importación lo reconoce
+    private record EscrituraCsv(Writer salida) implements Escritura {
+
+        @Override
+        public void inicio() throws IOException {
+            salida.write('\uFEFF');
+            salida.write("referencia;descripcion;cantidad;estado;observaciones\r\n");
+        }
+
+        @Override
+        public void fila(long id, String referencia, String descripcion, Integer cantidad, String estado,
+                         String observaciones) throws IOException {
+            salida.write(Csv.campo(referencia));
+            salida.write(';');
+            salida.write(Csv.campo(descripcion));
+            salida.write(';');
+            salida.write(cantidad == null ? "" : cantidad.toString());
+            salida.write(';');
+            salida.write(Csv.campo(estado));
+            salida.write(';');
+            salida.write(Csv.campo(observaciones));
+            salida.write("\r\n");
+        }
+
+        @Override
+        public void fin() {
+        }
+    }
+
+    // Una lista de objetos, un producto por línea
+    private static final class EscrituraJson implements Escritura {
+
+        private final Writer salida;
+        private boolean primera = true;
+
+        EscrituraJson(Writer salida) {
+            this.salida = salida;
+        }
+
+        @Override
+        public void inicio() throws IOException {
+            salida.write('[');
+        }
+
+        @Override
+        public void fila(long id, String referencia, String descripcion, Integer cantidad, String estado,
+                         String observaciones) throws IOException {
+            salida.write(primera ? "\n" : ",\n");
+            primera = false;
+            salida.write("{\"id\":" + id
+                    + ",\"referencia\":" + Json.texto(referencia)
+                    + ",\"descripcion\":" + Json.texto(descripcion)
+                    + ",\"cantidad\":" + cantidad
+                    + ",\"estado\":" + Json.texto(estado)
+                    + ",\"observaciones\":" + Json.texto(observaciones) + "}");
+        }
+
+        @Override
+        public void fin() throws IOException {
+            salida.write(primera ? "]\n" : "\n]\n");
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.chebot.stock_manager.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportación por lotes de Códigos QR: un ZIP con un PNG por producto, o hojas de etiquetas para imprimir.
+ * <p>
+ * Un hilo lector saca los QR de la DB por lotes, los dibuja y los deja en una cola acotada; el hilo que exporta
+ * los va escribiendo a disco a través de un FileChannel. La cola limita cuántos QR hay en memoria
+ * a la vez, así que el consumo no depende de la cantidad de productos exportados.
+ */
+@Service
+public class ExportacionQrService {
+
+    // QR leídos que pueden esperar en memoria a ser escritos
+    private static final int CAPACIDAD_COLA = 64;
+    // Filas por consulta del hilo lector
+    private static final int TAMANO_LOTE = 500;
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    // Hoja A4 a 150 ppp, con 4 x 6 etiquetas
+    private static final int ANCHO_HOJA = 1240;
+    private static final int ALTO_HOJA = 1754;
+    private static final int COLUMNAS = 4;
+    private static final int FILAS = 6;
+    private static final int LADO_QR = 220;
+
+    public record ResultadoExportacion(int exportados, int sinQr, Path destino, long milisegundos) {
+    }
+
+    // Un QR en tránsito por la cola
+    private record EntradaQr(long id, String referencia, byte[] png) {
+    }
+
+    // Marca de fin de la cola
+    private static final EntradaQr FIN = new EntradaQr(0, null, null);
+
+    private static final String SELECT_QR = "SELECT id, referencia, descripcion, cantidad, estado, codigo_qr FROM productos ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CodigoQrService codigoQrService;
+
+    public ExportacionQrService(JdbcTemplate jdbcTemplate, CodigoQrService codigoQrService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.codigoQrService = codigoQrService;
+    }
+
+    /**
+     * Escribe un ZIP con un archivo QR_&lt;referencia&gt;.png por producto.
+     * @param ids Productos a exportar, o null para todo el inventario.
+     * @param progreso Recibe la cantidad de QR escritos hasta el momento.
+     */
+    public ResultadoExportacion exportarZip(List<Long> ids, Path archivoZip, IntConsumer progreso) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Lector lector = iniciarLector(ids, QrCodeGenerator.LADO);
+        int exportados = 0;
+        Set<String> nombresUsados = new HashSet<>();
+
+        try (FileChannel canal = FileChannel.open(archivoZip, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), TAMANO_BUFFER))) {
+
+            EntradaQr entrada;
+            while ((entrada = lector.siguiente()) != FIN) {
+                // El PNG ya está comprimido: se guarda sin volver a comprimir (STORED)
+                CRC32 crc = new CRC32();
+                crc.update(entrada.png());
+                ZipEntry zipEntry = new ZipEntry(nombreUnico(entrada, nombresUsados));
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(entrada.png().length);
+                zipEntry.setCompressedSize(entrada.png().length);
+                zipEntry.setCrc(crc.getValue());
+
+                zip.putNextEntry(zipEntry);
+                zip.write(entrada.png());
+                zip.closeEntry();
+
+                exportados++;
+                if (exportados % 100 == 0) {
+                    progreso.accept(exportados);
+                }
+            }
+        } finally {
+            lector.cerrar();
+        }
+
+        progreso.accept(exportados);
+        return new ResultadoExportacion(exportados, lector.sinQr.get(), archivoZip, System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Escribe hojas A4 (etiquetas_0001.png, etiquetas_0002.png, ...) con 24 etiquetas cada una:
+     * el QR y debajo la referencia. Se reutiliza una sola imagen de hoja para todas.
+     */
+    public ResultadoExportacion exportarHojasEtiquetas(List<Long> ids, Path carpeta, IntConsumer progreso) throws IOException {
+        long inicio = System.currentTimeMillis();
+        // Los QR se dibujan directamente del tamaño de la etiqueta (sin escalar la imagen)
+        Lector lector = iniciarLector(ids, LADO_QR);
+        int exportados = 0;
+        int hojas = 0;
+
+        BufferedImage hoja = new BufferedImage(ANCHO_HOJA, ALTO_HOJA, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = hoja.createGraphics();
+        ImageWriter pngWriter = ImageIO.getImageWritersByFormatName("png").next();
+        int anchoCelda = ANCHO_HOJA / COLUMNAS;
+        int altoCelda = ALTO_HOJA / FILAS;
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 22));
+            FontMetrics metricas = g.getFontMetrics();
+
+            int enHoja = 0;
+            EntradaQr entrada;
+            while ((entrada = lector.siguiente()) != FIN) {
+                if (enHoja == 0) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, ANCHO_HOJA, ALTO_HOJA);
+                }
+                BufferedImage qr = ImageIO.read(new ByteArrayInputStream(entrada.png()));
+                if (qr == null) {
+                    lector.sinQr.incrementAndGet();
+                    continue;
+                }
+
+                int x = (enHoja % COLUMNAS) * anchoCelda;
+                int y = (enHoja / COLUMNAS) * altoCelda;
+                g.drawImage(qr, x + (anchoCelda - LADO_QR) / 2, y + 10, null);
+                g.setColor(Color.BLACK);
+                String texto = entrada.referencia();
+                g.drawString(texto, x + Math.max(0, (anchoCelda - metricas.stringWidth(texto)) / 2), y + LADO_QR + 40);
+
+                exportados++;
+                enHoja++;
+                if (enHoja == COLUMNAS * FILAS) {
+                    escribirHoja(pngWriter, hoja, carpeta.resolve(String.format("etiquetas_%04d.png", ++hojas)));
+                    enHoja = 0;
+                    progreso.accept(exportados);
+                }
+            }
+            if (enHoja > 0) {
+                escribirHoja(pngWriter, hoja, carpeta.resolve(String.format("etiquetas_%04d.png", ++hojas)));
+            }
+        } finally {
+            g.dispose();
+            pngWriter.dispose();
+            lector.cerrar();
+        }
+
+        progreso.accept(exportados);
+        return new ResultadoExportacion(exportados, lector.sinQr.get(), carpeta, System.currentTimeMillis() - inicio);
+    }
+
+    private static void escribirHoja(ImageWriter pngWriter, BufferedImage hoja, Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream salida = new BufferedOutputStream(Channels.newOutputStream(canal), TAMANO_BUFFER);
+             ImageOutputStream imagen = new MemoryCacheImageOutputStream(salida)) {
+            pngWriter.setOutput(imagen);
+            pngWriter.write(null, new IIOImage(hoja, null, null), null);
+        } finally {
+            pngWriter.reset();
+        }
+    }
+
+    // Mismo nombre que la exportación individual, sin caracteres que no admite un nombre de archivo
+    private static String nombreArchivo(String referencia) {
+        return "QR_" + referencia.replaceAll("[\\\\/:*?\"<>|]", "_") + ".png";
+    }
+
+    /**
+     * El nombre de la entrada dentro del ZIP. Dos referencias pueden dar el mismo nombre ("A/B" y "A_B",
+     * o "a" y "A" al descomprimir en Windows): la segunda lleva además el ID del producto.
+     */
+    private static String nombreUnico(EntradaQr entrada, Set<String> nombresUsados) {
+        String nombre = nombreArchivo(entrada.referencia());
+        String base = nombre.substring(0, nombre.length() - ".png".length()) + "_" + entrada.id();
+        // Una referencia podría llamarse justo "<otra>_<id>": se sigue numerando hasta encontrar uno libre
+        for (int copia = 1; !nombresUsados.add(nombre.toLowerCase(Locale.ROOT)); copia++) {
+            nombre = (copia == 1 ? base : base + "_" + copia) + ".png";
+        }
+        return nombre;
+    }
+
+    // --- Hilo lector (productor) ---
+
+    private Lector iniciarLector(List<Long> ids, int lado) {
+        Lector lector = new Lector(ids, lado);
+        lector.hilo = Thread.ofVirtual().name("exportacion-qr-lector").start(lector::leer);
+        return lector;
+    }
+
+    private class Lector {
+        private final List<Long> ids;
+        private final int lado;
+        private final BlockingQueue<EntradaQr> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        private volatile Exception error;
+        private final AtomicInteger sinQr = new AtomicInteger();
+        private Thread hilo;
+
+        private Lector(List<Long> ids, int lado) {
+            this.ids = ids;
+            this.lado = lado;
+        }
+
+        private void leer() {
+            try {
+                if (ids == null) {
+                    leerTodos();
+                } else {
+                    for (int desde = 0; desde < ids.size(); desde += TAMANO_LOTE) {
+                        List<Long> lote = ids.subList(desde, Math.min(ids.size(), desde + TAMANO_LOTE));
+                        String marcadores = String.join(",", Collections.nCopies(lote.size(), "?"));
+                        jdbcTemplate.query(SELECT_QR + "WHERE id IN (" + marcadores + ") ORDER BY id",
+                                this::encolar, lote.toArray());
+                    }
+                }
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                try {
+                    cola.put(FIN);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        // Todo el inventario, paginando por ID
+        private void leerTodos() {
+            long[] ultimoId = {0};
+            int leidos;
+            do {
+                int[] contador = {0};
+                jdbcTemplate.query(SELECT_QR + "WHERE id > ? ORDER BY id LIMIT ?",
+                        rs -> {
+                            ultimoId[0] = rs.getLong("id");
+                            contador[0]++;
+                            encolar(rs);
+                        }, ultimoId[0], TAMANO_LOTE);
+                leidos = contador[0];
+            } while (leidos == TAMANO_LOTE);
+        }
+
+        // Dibuja el PNG a partir de lo guardado (PNG, matriz o hash) o del contenido
+        private void encolar(ResultSet rs) throws SQLException {
+            int cantidad = rs.getInt("cantidad");
+            Integer cantidadONull = rs.wasNull() ? null : cantidad;
+            String contenido = ContenidoQr.generar(rs.getString("referencia"), rs.getString("descripcion"),
+                    cantidadONull, rs.getString("estado"));
+            byte[] png;
+            try {
+                png = codigoQrService.aPng(rs.getBytes("codigo_qr"), contenido, lado);
+            } catch (RuntimeException e) {
+                sinQr.incrementAndGet();
+                return;
+            }
+            try {
+                cola.put(new EntradaQr(rs.getLong("id"), rs.getString("referencia"), png)); // Se bloquea si el escritor va más lento
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Exportación cancelada.", e);
+            }
+        }
+
+        private EntradaQr siguiente() throws IOException {
+            try {
+                EntradaQr entrada = cola.take();
+                if (entrada == FIN && error != null) {
+                    throw new IOException("Error al leer los Códigos QR: " + error.getMessage(), error);
+                }
+                return entrada;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Exportación cancelada.", e);
+            }
+        }
+
+        private void cerrar() {
+            hilo.interrupt(); // Si el escritor falló, el lector no debe quedar bloqueado en la cola
+        }
+    }
+}
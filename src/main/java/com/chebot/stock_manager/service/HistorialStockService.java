@@ -0,0 +1,64 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.MovimientoStock;
+import com.chebot.stock_manager.repository.MovimientoStockRepository;
+import com.chebot.stock_manager.repository.MovimientoStockRepository.SnapshotStock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consulta del historial de stock y compactación periódica del libro de movimientos.
+ */
+@Service
+@Lazy(false) // Tiene una tarea @Scheduled: en modo perezoso no se registraría
+public class HistorialStockService {
+
+    /**
+     * Historial de un producto: la última instantánea (null si no hubo compactación) y los movimientos
+     * más recientes, del más nuevo al más viejo.
+     */
+    public record HistorialStock(SnapshotStock snapshot, List<MovimientoStock> movimientos) {
+    }
+
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final EscritorSerializado escritor;
+    // Los movimientos más viejos que esto se compactan en instantáneas
+    private final Duration retencion;
+
+    public HistorialStockService(MovimientoStockRepository movimientoStockRepository, EscritorSerializado escritor,
+                                 @Value("${stock.movimientos.retencion-dias:90}") int retencionDias) {
+        this.movimientoStockRepository = movimientoStockRepository;
+        this.escritor = escritor;
+        this.retencion = Duration.ofDays(retencionDias);
+    }
+
+    @Transactional(readOnly = true)
+    public HistorialStock obtenerHistorial(long productoId, int limite) {
+        return new HistorialStock(movimientoStockRepository.buscarUltimoSnapshot(productoId),
+                movimientoStockRepository.buscarUltimos(productoId, limite));
+    }
+
+    /**
+     * Compacta los movimientos más viejos que la retención (por defecto, todos los días a las 3:00).
+     * @return Se completa con la cantidad de movimientos compactados.
+     */
+    @Scheduled(cron = "${stock.movimientos.compactacion-cron:0 0 3 * * *}")
+    public CompletableFuture<Integer> compactar() {
+        long antesDe = System.currentTimeMillis() - retencion.toMillis();
+        return escritor.enviar(() -> movimientoStockRepository.compactar(antesDe))
+                .whenComplete((compactados, error) -> {
+                    if (error != null) {
+                        System.err.println("Error al compactar el libro de movimientos: " + error.getMessage());
+                    } else if (compactados > 0) {
+                        System.out.println("Libro de movimientos: " + compactados + " movimientos compactados.");
+                    }
+                });
+    }
+}
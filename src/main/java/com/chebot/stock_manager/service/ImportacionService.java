@@ -0,0 +1,368 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.replicacion.RegistroCambios;
+import com.chebot.stock_manager.repository.MovimientoStockRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva de productos desde un archivo CSV.
+ * <p>
+ * Lee el archivo fila por fila (sin cargarlo entero), valida cada fila e inserta las válidas
+ * por lotes con JdbcTemplate.batchUpdate. Cada lote es una operación del {@link EscritorSerializado}
+ * con su propio commit: la importación no retiene la DB mientras lee el archivo, y las ediciones
+ * de otras terminales se intercalan entre lotes. Si se corta a mitad de camino, quedan los lotes
+ * ya confirmados; al importar el mismo archivo otra vez, esas referencias se informan como existentes.
+ * Acepta coma o punto y coma como separador (Excel en español guarda con punto y coma).
+ * Los productos se insertan sin QR; al terminar se lanzan en segundo plano
+ * con RegeneracionQrService, que los genera en paralelo.
+ */
+@Service
+public class ImportacionService {
+
+    // Filas por lote de INSERT
+    private static final int TAMANO_LOTE = 1000;
+    // Con más altas que esto en un lote se recarga el catálogo entero en lugar de publicar un cambio por fila
+    private static final int MAX_CAMBIOS_CATALOGO = 100;
+    // Errores que se guardan con detalle (el resto solo se cuenta)
+    private static final int MAX_ERRORES_DETALLADOS = 1000;
+
+    private static final String INSERT_SQL = "INSERT INTO productos (referencia, descripcion, cantidad, estado, observaciones) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String MOTIVO_IMPORTACION = "Importación CSV";
+
+    public record ErrorFila(long linea, String mensaje) {
+    }
+
+    public record ProgresoImportacion(long filasLeidas, int insertados, int errores) {
+    }
+
+    public record ResultadoImportacion(int insertados, int totalErrores, List<ErrorFila> errores, long milisegundos) {
+    }
+
+    // Fila válida a la espera de su lote, con su número de línea para reportar errores
+    private record FilaValida(long linea, Producto producto) {
+    }
+
+    // Lo que dejó un lote confirmado: los productos insertados y las filas cuya referencia ya existía
+    private record LoteInsertado(List<ProductoResumen> insertados, List<FilaValida> existentes) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+    private final RegeneracionQrService regeneracionQrService;
+    private final CatalogoEnMemoria catalogo;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final RegistroCambios registroCambios;
+
+    public ImportacionService(JdbcTemplate jdbcTemplate, EscritorSerializado escritor,
+                              RegeneracionQrService regeneracionQrService, CatalogoEnMemoria catalogo,
+                              MovimientoStockRepository movimientoStockRepository, RegistroCambios registroCambios) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+        this.regeneracionQrService = regeneracionQrService;
+        this.catalogo = catalogo;
+        this.movimientoStockRepository = movimientoStockRepository;
+        this.registroCambios = registroCambios;
+    }
+
+    /**
+     * Importa el archivo CSV. La primera línea debe ser el encabezado con, al menos,
+     * las columnas "referencia" y "descripcion"; "cantidad", "estado" y "observaciones" son opcionales.
+     * @param progreso Se llama después de cada lote confirmado (desde el hilo que importa).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Cada lote abre su transacción en el escritor
+    public ResultadoImportacion importarCsv(Path archivo, Consumer<ProgresoImportacion> progreso) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Estado estado = new Estado();
+
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            // 1. ENCABEZADO
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                throw new IllegalArgumentException("El archivo está vacío.");
+            }
+            encabezado = encabezado.replace("\uFEFF", ""); // BOM que agrega Excel
+            char separador = detectarSeparador(encabezado);
+            Map<String, Integer> columnas = leerEncabezado(parsearLinea(encabezado, separador));
+            if (!columnas.containsKey("referencia") || !columnas.containsKey("descripcion")) {
+                throw new IllegalArgumentException("El encabezado debe tener las columnas 'referencia' y 'descripcion'.");
+            }
+
+            // 2. FILAS
+            List<FilaValida> lote = new ArrayList<>(TAMANO_LOTE);
+            long numeroLinea = 1;
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+                long lineaInicio = numeroLinea;
+                // Un campo entre comillas puede contener saltos de línea
+                while (comillasAbiertas(linea)) {
+                    String continuacion = lector.readLine();
+                    if (continuacion == null) {
+                        break;
+                    }
+                    numeroLinea++;
+                    linea = linea + "\n" + continuacion;
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+                estado.filasLeidas++;
+
+                try {
+                    Producto producto = convertirFila(parsearLinea(linea, separador), columnas);
+                    if (!estado.referenciasVistas.add(producto.getReferencia())) {
+                        throw new IllegalArgumentException("Referencia repetida en el archivo: " + producto.getReferencia());
+                    }
+                    lote.add(new FilaValida(lineaInicio, producto));
+                } catch (IllegalArgumentException e) {
+                    estado.registrarError(lineaInicio, e.getMessage());
+                }
+
+                if (lote.size() == TAMANO_LOTE) {
+                    insertarLote(lote, estado);
+                    progreso.accept(new ProgresoImportacion(estado.filasLeidas, estado.insertados, estado.totalErrores));
+                }
+            }
+            insertarLote(lote, estado);
+            progreso.accept(new ProgresoImportacion(estado.filasLeidas, estado.insertados, estado.totalErrores));
+        }
+
+        // 3. QR: todos los lotes ya están confirmados (la regeneración lee con otra conexión)
+        if (estado.insertados > 0) {
+            regeneracionQrService.generarFaltantes();
+        }
+
+        return new ResultadoImportacion(estado.insertados, estado.totalErrores,
+                Collections.unmodifiableList(estado.errores), System.currentTimeMillis() - inicio);
+    }
+
+    // --- Inserción por lotes ---
+
+    private void insertarLote(List<FilaValida> lote, Estado estado) {
+        if (lote.isEmpty()) {
+            return;
+        }
+
+        // Si el lote del escritor se deshace, la operación se repite: trabaja sobre su propia copia
+        List<FilaValida> filas = List.copyOf(lote);
+        lote.clear();
+        LoteInsertado resultado;
+        try {
+            resultado = escritor.enviar(() -> insertar(filas), this::actualizarCatalogo).join();
+        } catch (CompletionException e) {
+            // El error del lote, como si hubiera ocurrido en este hilo
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+        // Lote grande: una sola recarga (un aviso RESINCRONIZAR; las alertas se reevalúan enteras). Se espera,
+        // así al terminar la importación el catálogo ya tiene todas las altas
+        if (resultado.insertados().size() > MAX_CAMBIOS_CATALOGO) {
+            catalogo.recargar().join();
+        }
+
+        for (FilaValida fila : resultado.existentes()) {
+            estado.registrarError(fila.linea(), "La referencia ya existe: " + fila.producto().getReferencia());
+        }
+        estado.insertados += resultado.insertados().size();
+    }
+
+    // Se ejecuta en el hilo escritor, dentro de la transacción del lote
+    private LoteInsertado insertar(List<FilaValida> lote) {
+        // 1. Descarta las referencias que ya existen en la DB (una sola consulta por lote)
+        Set<String> existentes = buscarReferenciasExistentes(lote);
+        List<FilaValida> nuevas = new ArrayList<>(lote.size());
+        List<FilaValida> repetidas = new ArrayList<>();
+        for (FilaValida fila : lote) {
+            (existentes.contains(fila.producto().getReferencia()) ? repetidas : nuevas).add(fila);
+        }
+        if (nuevas.isEmpty()) {
+            return new LoteInsertado(List.of(), repetidas);
+        }
+
+        // 2. Un solo batch de INSERT para todo el lote (el QR se genera después, en segundo plano)
+        List<Object[]> parametros = new ArrayList<>(nuevas.size());
+        for (FilaValida fila : nuevas) {
+            Producto p = fila.producto();
+            parametros.add(new Object[]{p.getReferencia(), p.getDescripcion(), p.getCantidad(), p.getEstado(),
+                    p.getObservaciones()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, parametros);
+        // 3. La cantidad inicial de cada producto nuevo entra al libro de movimientos y al registro de replicación
+        List<String> referencias = nuevas.stream().map(fila -> fila.producto().getReferencia()).toList();
+        movimientoStockRepository.registrarAltas(referencias, MOTIVO_IMPORTACION);
+        registroCambios.anotarAltas(referencias);
+
+        // 4. Los IDs recién generados, para el catálogo en memoria
+        String marcadores = String.join(",", Collections.nCopies(referencias.size(), "?"));
+        List<ProductoResumen> insertados = jdbcTemplate.query(
+                "SELECT id, referencia, descripcion, cantidad, estado FROM productos WHERE referencia IN (" + marcadores
+                        + ") ORDER BY id",
+                (rs, rowNum) -> {
+                    int cantidad = rs.getInt("cantidad");
+                    return new ProductoResumen(rs.getLong("id"), rs.getString("referencia"), rs.getString("descripcion"),
+                            rs.wasNull() ? null : cantidad, rs.getString("estado"));
+                },
+                referencias.toArray());
+        return new LoteInsertado(insertados, repetidas);
+    }
+
+    // En el hilo escritor, recién confirmado: en un lote chico cada alta llega al catálogo y, por él, a las alertas
+    // de stock. Uno grande publicaría un cambio por fila (y la vista aplicaría cada uno): se recarga después
+    private void actualizarCatalogo(LoteInsertado resultado) {
+        if (resultado.insertados().size() <= MAX_CAMBIOS_CATALOGO) {
+            resultado.insertados().forEach(catalogo::guardar);
+        }
+    }
+
+    private Set<String> buscarReferenciasExistentes(List<FilaValida> lote) {
+        String marcadores = String.join(",", Collections.nCopies(lote.size(), "?"));
+        Object[] referencias = lote.stream().map(fila -> fila.producto().getReferencia()).toArray();
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT referencia FROM productos WHERE referencia IN (" + marcadores + ")", String.class, referencias));
+    }
+
+    // --- Validación de filas ---
+
+    private Producto convertirFila(List<String> campos, Map<String, Integer> columnas) {
+        String referencia = campo(campos, columnas, "referencia");
+        String descripcion = campo(campos, columnas, "descripcion");
+        String cantidadTexto = campo(campos, columnas, "cantidad");
+        String estadoTexto = campo(campos, columnas, "estado");
+        String observaciones = campo(campos, columnas, "observaciones");
+
+        if (referencia.isEmpty()) {
+            throw new IllegalArgumentException("La referencia es obligatoria.");
+        }
+        if (descripcion.isEmpty()) {
+            throw new IllegalArgumentException("La descripción es obligatoria.");
+        }
+
+        int cantidad;
+        try {
+            cantidad = cantidadTexto.isEmpty() ? 0 : Integer.parseInt(cantidadTexto);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La cantidad debe ser un número: '" + cantidadTexto + "'");
+        }
+        if (cantidad < 0) {
+            throw new IllegalArgumentException("La cantidad debe ser un número positivo.");
+        }
+
+        String estado = Producto.ESTADO_DISPONIBLE;
+        if (!estadoTexto.isEmpty()) {
+            estado = Producto.ESTADOS.stream()
+                    .filter(e -> e.equalsIgnoreCase(estadoTexto))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Estado desconocido: '" + estadoTexto
+                            + "' (válidos: " + String.join(", ", Producto.ESTADOS) + ")"));
+        }
+
+        return new Producto(referencia, descripcion, cantidad, estado, observaciones.isEmpty() ? null : observaciones);
+    }
+
+    private static String campo(List<String> campos, Map<String, Integer> columnas, String nombre) {
+        Integer indice = columnas.get(nombre);
+        if (indice == null || indice >= campos.size()) {
+            return "";
+        }
+        return campos.get(indice).trim();
+    }
+
+    // --- Lectura de CSV ---
+
+    private static char detectarSeparador(String encabezado) {
+        long comas = encabezado.chars().filter(c -> c == ',').count();
+        long puntoYComa = encabezado.chars().filter(c -> c == ';').count();
+        return puntoYComa > comas ? ';' : ',';
+    }
+
+    private static Map<String, Integer> leerEncabezado(List<String> nombres) {
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < nombres.size(); i++) {
+            // Sin tildes ni mayúsculas: "Descripción" y "descripcion" son la misma columna
+            String nombre = Normalizer.normalize(nombres.get(i).trim(), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "")
+                    .toLowerCase(Locale.ROOT);
+            if (nombre.equals("notas")) {
+                nombre = "observaciones";
+            }
+            columnas.putIfAbsent(nombre, i);
+        }
+        return columnas;
+    }
+
+    private static boolean comillasAbiertas(String linea) {
+        return linea.chars().filter(c -> c == '"').count() % 2 != 0;
+    }
+
+    /**
+     * Separa una línea CSV respetando los campos entre comillas ("" es una comilla literal).
+     */
+    private static List<String> parsearLinea(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    // Contadores de una importación en curso
+    private static class Estado {
+        private final Set<String> referenciasVistas = new HashSet<>();
+        private final List<ErrorFila> errores = new ArrayList<>();
+        private long filasLeidas = 0;
+        private int insertados = 0;
+        private int totalErrores = 0;
+
+        private void registrarError(long linea, String mensaje) {
+            totalErrores++;
+            if (errores.size() < MAX_ERRORES_DETALLADOS) {
+                errores.add(new ErrorFila(linea, mensaje));
+            }
+        }
+    }
+}
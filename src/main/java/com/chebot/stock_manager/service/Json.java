@@ -0,0 +1,188 @@
+package com.chebot.stock_manager.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lo mínimo de JSON que necesitan la API y las exportaciones: escribir textos con escape y leer
+ * objetos planos (textos, números, true/false y null) del cuerpo de las solicitudes.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * El texto entre comillas y con escape, o null.
+     */
+    public static String texto(String valor) {
+        if (valor == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(valor.length() + 2).append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Lee un objeto JSON plano. Los números enteros quedan como Long y los decimales como Double.
+     * @throws IllegalArgumentException Si no es un objeto JSON válido o tiene objetos o listas anidados.
+     */
+    public static Map<String, Object> leerObjeto(String json) {
+        Lector lector = new Lector(json);
+        Map<String, Object> objeto = lector.objeto();
+        lector.espacios();
+        if (lector.pos < json.length()) {
+            throw lector.error("contenido después del objeto");
+        }
+        return objeto;
+    }
+
+    private static final class Lector {
+
+        private final String json;
+        private int pos = 0;
+
+        Lector(String json) {
+            this.json = json;
+        }
+
+        Map<String, Object> objeto() {
+            Map<String, Object> objeto = new LinkedHashMap<>();
+            esperar('{');
+            espacios();
+            if (siguienteEs('}')) {
+                pos++;
+                return objeto;
+            }
+            while (true) {
+                espacios();
+                String clave = cadena();
+                espacios();
+                esperar(':');
+                espacios();
+                objeto.put(clave, valor());
+                espacios();
+                if (siguienteEs(',')) {
+                    pos++;
+                } else {
+                    esperar('}');
+                    return objeto;
+                }
+            }
+        }
+
+        private Object valor() {
+            if (pos >= json.length()) {
+                throw error("falta un valor");
+            }
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return cadena();
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                return numero();
+            } else if (json.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (json.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (json.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            } else if (c == '{' || c == '[') {
+                throw error("solo se aceptan valores simples");
+            }
+            throw error("valor inesperado");
+        }
+
+        private String cadena() {
+            esperar('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                } else if (pos < json.length()) {
+                    char escape = json.charAt(pos++);
+                    switch (escape) {
+                        case '"', '\\', '/' -> sb.append(escape);
+                        case 'b' -> sb.append('\b');
+                        case 'f' -> sb.append('\f');
+                        case 'n' -> sb.append('\n');
+                        case 'r' -> sb.append('\r');
+                        case 't' -> sb.append('\t');
+                        case 'u' -> {
+                            if (pos + 4 > json.length()) {
+                                throw error("escape \\u incompleto");
+                            }
+                            try {
+                                sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("escape \\u inválido");
+                            }
+                            pos += 4;
+                        }
+                        default -> throw error("escape desconocido");
+                    }
+                }
+            }
+            throw error("texto sin cerrar");
+        }
+
+        private Object numero() {
+            int inicio = pos;
+            while (pos < json.length() && "+-0123456789.eE".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String numero = json.substring(inicio, pos);
+            try {
+                if (numero.indexOf('.') < 0 && numero.indexOf('e') < 0 && numero.indexOf('E') < 0) {
+                    return Long.parseLong(numero);
+                }
+                return Double.parseDouble(numero);
+            } catch (NumberFormatException e) {
+                throw error("número inválido '" + numero + "'");
+            }
+        }
+
+        void espacios() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean siguienteEs(char c) {
+            return pos < json.length() && json.charAt(pos) == c;
+        }
+
+        private void esperar(char c) {
+            if (!siguienteEs(c)) {
+                throw error("se esperaba '" + c + "'");
+            }
+            pos++;
+        }
+
+        IllegalArgumentException error(String detalle) {
+            return new IllegalArgumentException("JSON inválido en la posición " + pos + ": " + detalle);
+        }
+    }
+}
@@ -1,119 +1,480 @@
 package com.chebot.stock_manager.service;
 
+import com.chebot.stock_manager.model.FiltroProductos;
 import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.replicacion.RegistroCambios;
+import com.chebot.stock_manager.repository.MovimientoStockRepository;
+import com.chebot.stock_manager.repository.ProductoBusquedaRepository;
+import com.chebot.stock_manager.repository.ProductoEspecificaciones;
 import com.chebot.stock_manager.repository.ProductoRepository;
 import com.google.zxing.WriterException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.jdbc.core.JdbcTemplate;
 import java.io.FileOutputStream; // Nuevo import
 import java.io.File;             // Nuevo import
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @Transactional
 public class ProductoService {
 
+    private static final String INSERT_SQL = "INSERT INTO productos (referencia, descripcion, cantidad, estado, observaciones, "
+            + "umbral_minimo, codigo_qr) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE productos SET referencia = ?, descripcion = ?, cantidad = ?, estado = ?, "
+            + "observaciones = ?, umbral_minimo = ?, codigo_qr = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    // Motivos que se anotan en el libro de movimientos
+    public static final String MOTIVO_ALTA = "Alta";
+    public static final String MOTIVO_EDICION = "Edición";
+    public static final String MOTIVO_BAJA = "Baja";
+
     private final ProductoRepository productoRepository;
+    private final ProductoBusquedaRepository productoBusquedaRepository;
     private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+    private final CatalogoEnMemoria catalogo;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final CodigoQrService codigoQrService;
+    // Cada escritura se anota para replicarla a las otras instalaciones
+    private final RegistroCambios registroCambios;
+    // Evalúa cada cambio contra el umbral mínimo del producto
+    private final AlertasStockService alertasStockService;
+    // Máximo de resultados que devuelve una búsqueda de texto
+    private final int limiteBusqueda;
 
-    public ProductoService(ProductoRepository productoRepository, JdbcTemplate jdbcTemplate) {
+    public ProductoService(ProductoRepository productoRepository, ProductoBusquedaRepository productoBusquedaRepository,
+                           JdbcTemplate jdbcTemplate, EscritorSerializado escritor, CatalogoEnMemoria catalogo,
+                           MovimientoStockRepository movimientoStockRepository, CodigoQrService codigoQrService,
+                           RegistroCambios registroCambios, AlertasStockService alertasStockService,
+                           @Value("${stock.busqueda.limite:500}") int limiteBusqueda) {
         this.productoRepository = productoRepository;
+        this.productoBusquedaRepository = productoBusquedaRepository;
         this.jdbcTemplate = jdbcTemplate;
-    }
-
-    // --- Métodos Auxiliares ---
-    private String generarContenidoQr(Producto producto) {
-        return "Referencia:" + producto.getReferencia() + "\nDescripción: "
-                + producto.getDescripcion() + "\nCantidad: " + producto.getCantidad()
-                + "\nEstado: " + producto.getEstado();
+        this.escritor = escritor;
+        this.catalogo = catalogo;
+        this.movimientoStockRepository = movimientoStockRepository;
+        this.codigoQrService = codigoQrService;
+        this.registroCambios = registroCambios;
+        this.alertasStockService = alertasStockService;
+        this.limiteBusqueda = limiteBusqueda;
     }
 
     // --- CRUD Y LÓGICA DE NEGOCIO ---
 
-    @Transactional
-    public Producto guardarProducto(Producto producto) {
+    /**
+     * Valida el producto, genera su QR y encola el INSERT o UPDATE en el escritor serializado.
+     * @return Se completa con el producto guardado (con su ID) cuando el cambio ya está confirmado.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // La transacción la abre el escritor
+    public CompletableFuture<Producto> guardarProducto(Producto producto) {
 
         // 1. VALIDACIONES
         if (producto.getCantidad() == null || producto.getCantidad() < 0) {
             throw new IllegalArgumentException("La cantidad debe ser un número positivo.");
         }
+        if (producto.getUmbralMinimo() != null && producto.getUmbralMinimo() < 0) {
+            throw new IllegalArgumentException("El stock mínimo no puede ser negativo.");
+        }
 
-        // 2. GENERACIÓN DE QR
-        String qrContent = generarContenidoQr(producto);
+        // La referencia es única: se avisa antes de llegar a la restricción de la DB (índice hash en memoria)
+        ProductoResumen existente = catalogo.obtenerPorReferencia(producto.getReferencia());
+        if (existente != null && !existente.getId().equals(producto.getId())) {
+            throw new IllegalArgumentException("La referencia ya existe: " + producto.getReferencia());
+        }
+
+        // 2. GENERACIÓN DE QR (fuera del hilo escritor: es trabajo de CPU)
+        String qrContent = ContenidoQr.generar(producto);
         try {
-            byte[] qrImageBytes = QrCodeGenerator.generateQrCodeImage(qrContent);
-            producto.setCodigoQr(qrImageBytes);
+            producto.setCodigoQr(codigoQrService.codificar(qrContent));
         } catch (WriterException | IOException e) {
             System.err.println("Advertencia: Error al generar el Código QR. Se insertará sin QR.");
             producto.setCodigoQr(null);
         }
 
-        // 3. MANEJO DE INSERCIÓN/EDICIÓN
+        // 3. MANEJO DE INSERCIÓN/EDICIÓN: se decide antes de encolar. Las operaciones no modifican 'producto'
+        // (devuelven una copia con el ID y la versión nuevos): si el lote se deshace, se repiten sobre el original
+        boolean edicion = producto.getId() != null;
+        return escritor.enviar(() -> edicion ? actualizar(producto) : insertar(producto),
+                        guardado -> {
+                            // El umbral no está en el catálogo: se pasa antes, para que el cambio se evalúe con él
+                            alertasStockService.fijarUmbral(guardado.getId(), guardado.getUmbralMinimo());
+                            actualizarCatalogo(guardado);
+                        })
+                .thenApply(guardado -> {
+                    // Ya confirmado: recién ahora quien llamó ve el ID y la versión nuevos
+                    producto.setId(guardado.getId());
+                    producto.setVersion(guardado.getVersion());
+                    return guardado;
+                });
+    }
 
-        // A) SI ES UNA EDICIÓN: Usa el método estándar de JPA.
-        if (producto.getId() != null) {
-            return productoRepository.save(producto);
+    // Se ejecuta en el hilo escritor, dentro de la transacción del lote
+    private Producto actualizar(Producto producto) {
+        // 1. Bloqueo optimista: solo se guarda sobre la versión que se cargó para editar
+        List<Producto> actuales = jdbcTemplate.query("SELECT referencia, cantidad, version FROM productos WHERE id = ?",
+                (rs, rowNum) -> {
+                    Producto actual = new Producto();
+                    actual.setReferencia(rs.getString("referencia"));
+                    actual.setCantidad(rs.getInt("cantidad"));
+                    actual.setVersion(rs.getLong("version"));
+                    return actual;
+                }, producto.getId());
+        if (actuales.isEmpty()) {
+            throw new IllegalArgumentException("Producto no encontrado con ID: " + producto.getId());
+        }
+        Producto actual = actuales.get(0);
+        if (!actual.getVersion().equals(producto.getVersion())) {
+            throw new OptimisticLockingFailureException("El producto " + producto.getReferencia()
+                    + " fue modificado desde otra terminal. Vuelve a cargarlo antes de guardar.");
         }
 
-        // B) SI ES UN PRODUCTO NUEVO: Usa JDBC Puro y Nativo (SOLUCIÓN FINAL)
+        // 2. UPDATE (incrementa la versión) y el cambio de cantidad al libro de movimientos
+        jdbcTemplate.update(UPDATE_SQL,
+                producto.getReferencia(),
+                producto.getDescripcion(),
+                producto.getCantidad(),
+                producto.getEstado(),
+                producto.getObservaciones(),
+                producto.getUmbralMinimo(),
+                producto.getCodigoQr(),
+                producto.getId(),
+                producto.getVersion());
+        int delta = producto.getCantidad() - actual.getCantidad();
+        if (delta != 0) {
+            movimientoStockRepository.registrar(producto.getId(), delta, producto.getCantidad(), MOTIVO_EDICION);
+        }
+        // Para las otras instalaciones, cambiar la referencia es dar de baja la vieja y de alta la nueva
+        if (!actual.getReferencia().equals(producto.getReferencia())) {
+            registroCambios.anotarBaja(actual.getReferencia());
+        }
+        registroCambios.anotarGuardado(producto);
+        Producto guardado = copiar(producto);
+        guardado.setVersion(producto.getVersion() + 1);
+        return guardado;
+    }
 
-        String insertSql = "INSERT INTO productos (referencia, descripcion, cantidad, estado, observaciones, codigo_qr) VALUES (?, ?, ?, ?, ?, ?)";
-        String selectIdSql = "SELECT last_insert_rowid()"; // Función nativa de SQLite
+    // Se ejecuta en el hilo escritor, dentro de la transacción del lote
+    private Producto insertar(Producto producto) {
+        jdbcTemplate.update(INSERT_SQL,
+                producto.getReferencia(),
+                producto.getDescripcion(),
+                producto.getCantidad(),
+                producto.getEstado(),
+                producto.getObservaciones(),
+                producto.getUmbralMinimo(),
+                producto.getCodigoQr()
+        );
 
-        try {
-            // 1. Ejecutar la inserción (sin KeyHolder que falla)
-            jdbcTemplate.update(insertSql,
-                    producto.getReferencia(),
-                    producto.getDescripcion(),
-                    producto.getCantidad(),
-                    producto.getEstado(),
-                    producto.getObservaciones(),
-                    producto.getCodigoQr()
-            );
+        // last_insert_rowid() es por conexión: la transacción del lote usa siempre la misma
+        Long generatedId = jdbcTemplate.queryForObject("SELECT last_insert_rowid()", (rs, rowNum) -> rs.getLong(1));
+        Producto guardado = copiar(producto);
+        guardado.setId(generatedId);
+        guardado.setVersion(0L);
+        movimientoStockRepository.registrar(generatedId, guardado.getCantidad(), guardado.getCantidad(), MOTIVO_ALTA);
+        registroCambios.anotarGuardado(guardado);
+        return guardado;
+    }
 
-            // 2. RECUPERACIÓN NATIVA: Usamos un RowMapper para leer explícitamente el primer valor del ResultSet (columna 1).
-            Long generatedId = jdbcTemplate.queryForObject(selectIdSql, (rs, rowNum) -> rs.getLong(1));
+    /**
+     * Suma (o resta, si 'delta' es negativo) unidades al stock de un producto y lo anota en el libro
+     * de movimientos. Es un UPDATE atómico sobre la cantidad actual, así que dos terminales que
+     * mueven stock a la vez no se pisan y no hace falta controlar la versión.
+     * @return Se completa con el producto actualizado cuando el movimiento ya está confirmado.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // La transacción la abre el escritor
+    public CompletableFuture<Producto> registrarMovimiento(Long id, int delta, String motivo) {
+        if (id == null) {
+            throw new IllegalArgumentException("El ID del producto no puede ser nulo.");
+        }
+        if (delta == 0) {
+            throw new IllegalArgumentException("El movimiento debe cambiar la cantidad.");
+        }
 
-            // 3. Buscar el objeto por el ID para tenerlo en la sesión de Hibernate (JPA)
-            return productoRepository.findById(generatedId)
-                    .orElseThrow(() -> new RuntimeException("Error: No se pudo cargar el producto después de la inserción."));
+        return escritor.enviar(() -> {
+            int filas = jdbcTemplate.update("UPDATE productos SET cantidad = cantidad + ?, version = version + 1 "
+                    + "WHERE id = ? AND cantidad + ? >= 0", delta, id, delta);
+            if (filas == 0) {
+                throw catalogo.obtener(id) == null
+                        ? new IllegalArgumentException("Producto no encontrado con ID: " + id)
+                        : new IllegalArgumentException("No hay stock suficiente para restar " + (-delta) + " unidades.");
+            }
+            Producto producto = jdbcTemplate.queryForObject(
+                    "SELECT id, referencia, descripcion, cantidad, estado, version FROM productos WHERE id = ?",
+                    (rs, rowNum) -> {
+                        Producto p = new Producto(rs.getString("referencia"), rs.getString("descripcion"),
+                                rs.getInt("cantidad"), rs.getString("estado"), null);
+                        p.setId(rs.getLong("id"));
+                        p.setVersion(rs.getLong("version"));
+                        return p;
+                    }, id);
+            movimientoStockRepository.registrar(id, delta, producto.getCantidad(), motivo);
+            registroCambios.anotarMovimiento(producto.getReferencia(), delta, motivo);
+            return producto;
+        }, this::actualizarCatalogo).thenApply(producto -> {
+            // La cantidad forma parte del contenido del QR: se regenera fuera del hilo escritor
+            Thread.startVirtualThread(() -> regenerarQr(producto));
+            return producto;
+        });
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error al insertar producto vía JDBC: " + e.getMessage(), e);
+    private void regenerarQr(Producto producto) {
+        if (codigoQrService.getModo() == CodigoQrService.ModoAlmacenamiento.NINGUNO) {
+            return; // No hay nada guardado: el QR se dibuja del contenido actual
+        }
+        try {
+            byte[] codigo = codigoQrService.codificar(ContenidoQr.generar(producto));
+            // Solo si nadie lo cambió mientras tanto (un cambio posterior genera su propio QR)
+            escritor.enviar(() -> jdbcTemplate.update("UPDATE productos SET codigo_qr = ? WHERE id = ? AND version = ?",
+                            codigo, producto.getId(), producto.getVersion()),
+                    filas -> {
+                        if (filas > 0) {
+                            catalogo.marcarModificado(producto.getId()); // La vista vuelve a pedir el QR
+                        }
+                    });
+        } catch (WriterException | IOException e) {
+            System.err.println("Advertencia: no se pudo regenerar el QR del producto " + producto.getId());
         }
+    }
 
+    private static Producto copiar(Producto producto) {
+        Producto copia = new Producto(producto.getReferencia(), producto.getDescripcion(), producto.getCantidad(),
+                producto.getEstado(), producto.getObservaciones());
+        copia.setId(producto.getId());
+        copia.setVersion(producto.getVersion());
+        copia.setUmbralMinimo(producto.getUmbralMinimo());
+        copia.setCodigoQr(producto.getCodigoQr());
+        return copia;
     }
-    @Transactional
-    public void eliminarProducto(Long id) {
+
+    // En el hilo escritor, recién confirmado y antes del commit siguiente: el catálogo ve los cambios en orden
+    private void actualizarCatalogo(Producto guardado) {
+        catalogo.guardar(new ProductoResumen(guardado.getId(), guardado.getReferencia(),
+                guardado.getDescripcion(), guardado.getCantidad(), guardado.getEstado()));
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // La transacción la abre el escritor
+    public CompletableFuture<Void> eliminarProducto(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("El ID del producto no puede ser nulo para la eliminación.");
         }
-        // El método deleteById() ya viene de JpaRepository
-        productoRepository.deleteById(id);
+        return escritor.<Void>enviar(() -> {
+            // La baja queda en el libro: el historial del producto no se borra
+            Producto actual = jdbcTemplate.query("SELECT referencia, cantidad FROM productos WHERE id = ?",
+                    rs -> rs.next() ? new Producto(rs.getString(1), null, rs.getInt(2), null, null) : null, id);
+            if (actual != null && actual.getCantidad() != 0) {
+                movimientoStockRepository.registrar(id, -actual.getCantidad(), 0, MOTIVO_BAJA);
+            }
+            if (jdbcTemplate.update("DELETE FROM productos WHERE id = ?", id) > 0) {
+                registroCambios.anotarBaja(actual.getReferencia());
+            }
+            return null;
+        }, ignorado -> catalogo.eliminar(id));
     }
+
     // --- MÉTODOS DE LECTURA Y FILTRADO ---
+    // La tabla trabaja con ProductoResumen: el QR y las observaciones se piden aparte.
+    // Los listados se responden desde el catálogo en memoria, sin abrir transacción.
 
-    public List<Producto> obtenerTodosLosProductos() {
-        return productoRepository.findAll();
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductoResumen> obtenerTodosLosProductos() {
+        return catalogo.todos();
     }
 
-    public List<Producto> filtrarProductos(String criterio, String valor) {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductoResumen> filtrarProductos(String criterio, String valor) {
         if (valor == null || valor.trim().isEmpty()) {
             return obtenerTodosLosProductos();
         }
 
+        // El combo de la vista envía "Descripción" con tilde
         return switch (criterio.toLowerCase()) {
-            case "referencia" -> productoRepository.findByReferenciaContainingIgnoreCase(valor);
-            case "descripcion" -> productoRepository.findByDescripcionContainingIgnoreCase(valor);
-            case "estado" -> productoRepository.findByEstado(valor);
+            case "referencia" -> buscarTexto(ProductoBusquedaRepository.Campo.REFERENCIA, valor.trim());
+            case "descripcion", "descripción" -> buscarTexto(ProductoBusquedaRepository.Campo.DESCRIPCION, valor.trim());
+            case "estado" -> catalogo.porEstado(valor);
+            case "cantidad hasta" -> buscarPorCantidadMaxima(valor.trim());
             default -> obtenerTodosLosProductos();
         };
     }
+
+    /**
+     * Filtro combinado (texto, estados, rango de cantidad, orden y límite) resuelto por la DB
+     * en una sola consulta; a diferencia de los criterios simples, no recorre el catálogo en memoria.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductoResumen> filtrarProductos(FiltroProductos filtro) {
+        List<Specification<Producto>> condiciones = new ArrayList<>();
+        if (filtro.referencia() != null) {
+            condiciones.add(ProductoEspecificaciones.referenciaContiene(filtro.referencia()));
+        }
+        if (filtro.descripcion() != null) {
+            condiciones.add(ProductoEspecificaciones.descripcionContiene(filtro.descripcion()));
+        }
+        if (!filtro.estados().isEmpty()) {
+            condiciones.add(ProductoEspecificaciones.estadoEn(filtro.estados()));
+        }
+        if (filtro.cantidadMinima() != null || filtro.cantidadMaxima() != null) {
+            condiciones.add(ProductoEspecificaciones.cantidadEntre(filtro.cantidadMinima(), filtro.cantidadMaxima()));
+        }
+
+        // En empate, por ID: el mismo filtro siempre devuelve el mismo orden
+        Sort orden = Sort.by(filtro.descendente() ? Sort.Direction.DESC : Sort.Direction.ASC, filtro.orden().getPropiedad());
+        if (filtro.orden() != FiltroProductos.Orden.ID) {
+            orden = orden.and(Sort.by(FiltroProductos.Orden.ID.getPropiedad()));
+        }
+        return productoRepository.findResumen(Specification.allOf(condiciones), orden, filtro.limite());
+    }
+
+    private List<ProductoResumen> buscarTexto(ProductoBusquedaRepository.Campo campo, String texto) {
+        // Textos muy cortos no pasan por el índice de trigramas: se recorre el catálogo en memoria
+        if (texto.length() < ProductoBusquedaRepository.LONGITUD_MINIMA) {
+            String buscado = texto.toLowerCase(Locale.ROOT);
+            Function<ProductoResumen, String> valorCampo = campo == ProductoBusquedaRepository.Campo.REFERENCIA
+                    ? ProductoResumen::getReferencia
+                    : ProductoResumen::getDescripcion;
+            return catalogo.filtrar(p -> valorCampo.apply(p) != null
+                    && valorCampo.apply(p).toLowerCase(Locale.ROOT).contains(buscado), limiteBusqueda);
+        }
+        // El índice de texto devuelve los IDs en orden de relevancia; los datos salen de memoria
+        return catalogo.materializar(productoBusquedaRepository.buscarIds(campo, texto, limiteBusqueda));
+    }
+
+    // Productos con poco stock: cantidad menor o igual al valor, de menor a mayor
+    private List<ProductoResumen> buscarPorCantidadMaxima(String valor) {
+        try {
+            int maximo = Integer.parseInt(valor);
+            return maximo < 0 ? List.of() : catalogo.porCantidad(0, maximo);
+        } catch (NumberFormatException e) {
+            return List.of(); // Mientras se escribe puede no ser un número todavía
+        }
+    }
+
+    // --- ALERTAS Y REPOSICIÓN ---
+
+    /**
+     * Productos por debajo de su stock mínimo, los que más unidades necesitan primero.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<AlertasStockService.Sugerencia> obtenerSugerenciasReposicion(int limite) {
+        return alertasStockService.sugerenciasReposicion(limite);
+    }
+
+    /**
+     * Registra un oyente de alertas de stock bajo y de estado; las recibe desde el hilo de alertas,
+     * después de que el cambio ya se confirmó.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void agregarOyenteAlertas(Consumer<AlertasStockService.Alerta> oyente) {
+        alertasStockService.agregarOyente(oyente);
+    }
+
+    // --- PAGINACIÓN POR CLAVE (para la tabla virtualizada) ---
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long contarProductos() {
+        return catalogo.contar();
+    }
+
+    /**
+     * Cantidad de productos junto con la secuencia del último cambio que incluye,
+     * para saber qué cambios posteriores aplicar sobre la tabla.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CatalogoEnMemoria.Conteo contarProductosConSecuencia() {
+        return catalogo.contarConSecuencia();
+    }
+
+    /**
+     * Totales del inventario (productos y unidades, en total y por estado), sin recorrer el catálogo.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public CatalogoEnMemoria.Totales obtenerTotales() {
+        return catalogo.totales();
+    }
+
+    // --- AVISO DE CAMBIOS (para actualizar la tabla sin recargarla) ---
+
+    /**
+     * Registra un oyente que recibe cada alta, edición o baja ya confirmada, en orden de secuencia.
+     * @return La secuencia actual (el primer cambio que llegue será el siguiente).
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long agregarOyenteCambios(Consumer<CatalogoEnMemoria.Cambio> oyente) {
+        return catalogo.agregarOyente(oyente);
+    }
+
+    /**
+     * Devuelve hasta 'tamano' productos con ID mayor a 'despuesDeId', ordenados por ID.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductoResumen> obtenerPagina(long despuesDeId, int tamano) {
+        return catalogo.pagina(despuesDeId, tamano);
+    }
+
+    /**
+     * Devuelve el ID que queda 'saltar' filas después de 'despuesDeId', o null si no hay tantas filas.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Long buscarIdTrasSaltar(long despuesDeId, int saltar) {
+        return catalogo.idTrasSaltar(despuesDeId, saltar);
+    }
+
+    /**
+     * Resumen del producto desde el catálogo en memoria (sin consultar la DB), o null si no existe.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProductoResumen obtenerResumen(Long id) {
+        return catalogo.obtener(id);
+    }
+
+    /**
+     * Búsqueda exacta por referencia (p. ej. la leída de un Código QR), o null si no existe.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ProductoResumen obtenerPorReferencia(String referencia) {
+        return catalogo.obtenerPorReferencia(referencia);
+    }
+
+    /**
+     * Carga el producto completo (con observaciones y QR), p. ej. para editarlo.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Producto> obtenerProducto(Long id) {
+        return productoRepository.findById(id);
+    }
+
+    /**
+     * Imagen del Código QR de un producto, en el tamaño estándar ({@link QrCodeGenerator#LADO}).
+     * @return Los bytes PNG, o null si el producto no existe.
+     */
+    @Transactional(readOnly = true)
+    public byte[] obtenerCodigoQr(Long id) {
+        return obtenerCodigoQr(id, QrCodeGenerator.LADO);
+    }
+
+    /**
+     * Imagen del Código QR de un producto de 'lado' x 'lado' pixeles (se dibuja a demanda y queda en caché).
+     * @return Los bytes PNG, o null si el producto no existe.
+     */
+    @Transactional(readOnly = true)
+    public byte[] obtenerCodigoQr(Long id, int lado) {
+        return codigoQrService.obtenerPng(id, lado);
+    }
     /**
      * Exporta el array de bytes del código QR a un archivo PNG en la ruta especificada.
      * @return La ruta absoluta del archivo guardado.
@@ -125,11 +486,8 @@ public class ProductoService {
         Producto producto = productoRepository.findById(productoId)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + productoId));
 
-        byte[] qrBytes = producto.getCodigoQr();
-
-        if (qrBytes == null) {
-            throw new IOException("El producto no tiene un Código QR generado.");
-        }
+        // El QR guardado puede ser solo la matriz o un hash: se dibuja el PNG
+        byte[] qrBytes = codigoQrService.aPng(producto.getCodigoQr(), ContenidoQr.generar(producto), QrCodeGenerator.LADO);
 
         // 2. Definir el nombre del archivo
         String nombreArchivo = "QR_" + producto.getReferencia() + ".png";
@@ -1,32 +1,134 @@
 package com.chebot.stock_manager.service;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class QrCodeGenerator {
 
-    // Tamaño del QR en pixeles
-    private static final int WIDTH = 250;
-    private static final int HEIGHT = 250;
+    // Tamaño del QR en pixeles (el de la vista y la exportación individual)
+    public static final int LADO = 250;
+    // Zona de silencio alrededor del código, en módulos (la misma que usa QRCodeWriter)
+    private static final int MARGEN_MODULOS = 4;
+
+    // Cada hilo reutiliza su codificador, su imagen y su buffer de salida (importante al generar miles de QR)
+    private static final ThreadLocal<Codificador> CODIFICADOR = ThreadLocal.withInitial(Codificador::new);
+
+    // Métricas: tiempo de codificación (texto a módulos), de dibujo (módulos a PNG) y tamaño del PNG
+    private static final Timer TIEMPO_CODIFICACION = Timer.builder("stock.qr.codificacion")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final Timer TIEMPO_RENDER = Timer.builder("stock.qr.render")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    private static final DistributionSummary TAMANO_PNG = DistributionSummary.builder("stock.qr.bytes")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
 
     /**
-     * Genera un código QR para el texto dado y lo retorna como un array de bytes PNG.
+     * Genera un código QR para el texto dado y lo retorna como un array de bytes PNG de {@link #LADO} pixeles.
      */
     public static byte[] generateQrCodeImage(String text) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        // Genera la matriz de bits a partir del texto
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, WIDTH, HEIGHT);
+        return renderizarPng(generarModulos(text), LADO);
+    }
+
+    /**
+     * Codifica el texto en la matriz de módulos del QR (un bit por módulo, sin zona de silencio).
+     * Es la parte cara: corrección de errores y elección de la máscara.
+     */
+    public static BitMatrix generarModulos(String text) throws WriterException {
+        long inicio = System.nanoTime();
+        // Mismo nivel de corrección que usaba QRCodeWriter por defecto
+        ByteMatrix matriz = Encoder.encode(text, ErrorCorrectionLevel.L, null).getMatrix();
+        BitMatrix modulos = new BitMatrix(matriz.getWidth(), matriz.getHeight());
+        for (int y = 0; y < matriz.getHeight(); y++) {
+            for (int x = 0; x < matriz.getWidth(); x++) {
+                if (matriz.get(x, y) == 1) {
+                    modulos.set(x, y);
+                }
+            }
+        }
+        TIEMPO_CODIFICACION.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        return modulos;
+    }
+
+    /**
+     * Dibuja la matriz de módulos como PNG de 'lado' x 'lado' pixeles, con la zona de silencio
+     * y centrado igual que QRCodeWriter (cada módulo ocupa un número entero de pixeles).
+     */
+    public static byte[] renderizarPng(BitMatrix modulos, int lado) throws IOException {
+        if (lado <= 0) {
+            throw new IllegalArgumentException("El tamaño del QR debe ser mayor que cero.");
+        }
+        long inicio = System.nanoTime();
+        byte[] png = CODIFICADOR.get().dibujar(modulos, lado);
+        TIEMPO_RENDER.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        TAMANO_PNG.record(png.length);
+        return png;
+    }
+
+    /**
+     * Estado reutilizable de un hilo: imagen, fila de pixeles, buffer y escritor PNG.
+     * La imagen se vuelve a crear solo si cambia el tamaño pedido.
+     */
+    private static final class Codificador {
+
+        // Imagen de 1 bit por pixel: índice 0 = negro, 1 = blanco (igual que MatrixToImageWriter)
+        private BufferedImage imagen;
+        private int[] fila;
+        private final ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream(2048);
+        private final ImageWriter pngWriter = ImageIO.getImageWritersByFormatName("png").next();
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
+        byte[] dibujar(BitMatrix modulos, int lado) throws IOException {
+            int anchoModulos = modulos.getWidth();
+            int conMargen = anchoModulos + 2 * MARGEN_MODULOS;
+            int salida = Math.max(lado, conMargen);
+            if (imagen == null || imagen.getWidth() != salida) {
+                imagen = new BufferedImage(salida, salida, BufferedImage.TYPE_BYTE_BINARY);
+                fila = new int[salida];
+            }
+            int pixelesPorModulo = salida / conMargen;
+            int relleno = (salida - anchoModulos * pixelesPorModulo) / 2;
 
-        // Escribe la imagen PNG al stream de salida
-        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
+            WritableRaster raster = imagen.getRaster();
+            for (int y = 0; y < salida; y++) {
+                int moduloY = Math.floorDiv(y - relleno, pixelesPorModulo);
+                for (int x = 0; x < salida; x++) {
+                    int moduloX = Math.floorDiv(x - relleno, pixelesPorModulo);
+                    boolean negro = moduloX >= 0 && moduloX < anchoModulos && moduloY >= 0 && moduloY < anchoModulos
+                            && modulos.get(moduloX, moduloY);
+                    fila[x] = negro ? 0 : 1;
+                }
+                raster.setPixels(0, y, salida, 1, fila);
+            }
 
-        return pngOutputStream.toByteArray();
+            // Escribe el PNG en memoria (ImageIO.write usaría un archivo temporal como caché)
+            pngOutputStream.reset();
+            try (ImageOutputStream salidaPng = new MemoryCacheImageOutputStream(pngOutputStream)) {
+                pngWriter.setOutput(salidaPng);
+                pngWriter.write(null, new IIOImage(imagen, null, null), null);
+            } finally {
+                pngWriter.reset();
+            }
+            return pngOutputStream.toByteArray();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package com.chebot.stock_manager.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Regeneración masiva de Códigos QR en segundo plano.
+ * <p>
+ * Recorre los productos por lotes (paginación por ID), codifica los QR de cada lote en paralelo
+ * con un hilo por núcleo (en el formato de {@link CodigoQrService}) y los guarda con un UPDATE por lotes. El avance (último ID procesado) se
+ * guarda en la tabla 'qr_regeneracion' en la misma transacción que los QR, así que si la aplicación
+ * se cierra a mitad de camino, la próxima vez continúa desde donde quedó.
+ */
+@Service
+public class RegeneracionQrService {
+
+    // Productos por lote (un UPDATE por lotes y un commit por lote)
+    private static final int TAMANO_LOTE = 500;
+
+    public record ProgresoRegeneracion(long procesados, long total, double qrPorSegundo, boolean terminado) {
+    }
+
+    // Datos de un producto que entran en el contenido del QR, y la versión de la que se leyeron
+    private record FilaQr(long id, String referencia, String descripcion, Integer cantidad, String estado, long version) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+    private final CodigoQrService codigoQrService;
+    private final List<Consumer<ProgresoRegeneracion>> oyentes = new CopyOnWriteArrayList<>();
+
+    private Thread hiloCoordinador;
+    private volatile boolean detener = false;
+
+    public RegeneracionQrService(JdbcTemplate jdbcTemplate, EscritorSerializado escritor, CodigoQrService codigoQrService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+        this.codigoQrService = codigoQrService;
+    }
+
+    /**
+     * Si la aplicación se cerró con una regeneración a medias, la retoma.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reanudarPendiente() {
+        List<Boolean> pendiente = jdbcTemplate.query(
+                "SELECT solo_faltantes FROM qr_regeneracion WHERE id = 1 AND terminado = 0",
+                (rs, rowNum) -> rs.getInt(1) == 1);
+        if (!pendiente.isEmpty()) {
+            System.out.println("Reanudando la regeneración de Códigos QR pendiente.");
+            lanzar(pendiente.get(0));
+        }
+    }
+
+    public void agregarOyente(Consumer<ProgresoRegeneracion> oyente) {
+        oyentes.add(oyente);
+    }
+
+    public synchronized boolean enCurso() {
+        return hiloCoordinador != null && hiloCoordinador.isAlive();
+    }
+
+    /**
+     * Empieza una regeneración nueva desde el primer producto.
+     * @param soloFaltantes true para generar solo los productos que no tienen QR.
+     * @return false si no hay nada que regenerar: en modo NINGUNO no se guarda ningún QR (se generan al mostrarlos).
+     */
+    public synchronized boolean iniciar(boolean soloFaltantes) {
+        if (enCurso()) {
+            throw new IllegalStateException("Ya hay una regeneración de Códigos QR en curso.");
+        }
+        if (codigoQrService.getModo() == CodigoQrService.ModoAlmacenamiento.NINGUNO) {
+            return false;
+        }
+        esperar(escritor.enviar(() -> jdbcTemplate.update(
+                "INSERT OR REPLACE INTO qr_regeneracion (id, solo_faltantes, ultimo_id, procesados, terminado) "
+                        + "VALUES (1, ?, 0, 0, 0)", soloFaltantes ? 1 : 0)));
+        lanzar(soloFaltantes);
+        return true;
+    }
+
+    /**
+     * Genera los QR que falten (p. ej. tras una importación). Si ya hay una regeneración en curso
+     * no hace nada: esa recorrida llegará igual a los productos nuevos, que tienen IDs mayores.
+     */
+    public synchronized void generarFaltantes() {
+        if (!enCurso()) {
+            iniciar(true);
+        }
+    }
+
+    private synchronized void lanzar(boolean soloFaltantes) {
+        detener = false;
+        hiloCoordinador = new Thread(() -> ejecutar(soloFaltantes), "regeneracion-qr");
+        hiloCoordinador.setDaemon(true);
+        hiloCoordinador.start();
+    }
+
+    @PreDestroy
+    void detener() {
+        // El avance ya está guardado: la regeneración sigue en el próximo arranque
+        detener = true;
+    }
+
+    // --- Trabajo en segundo plano ---
+
+    private void ejecutar(boolean soloFaltantes) {
+        String filtro = soloFaltantes ? " AND codigo_qr IS NULL" : "";
+        long[] avance = jdbcTemplate.queryForObject("SELECT ultimo_id, procesados FROM qr_regeneracion WHERE id = 1",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long ultimoId = avance[0];
+        long procesados = avance[1];
+        Long pendientes = jdbcTemplate.queryForObject("SELECT count(*) FROM productos WHERE id > ?" + filtro, Long.class, ultimoId);
+        long total = procesados + (pendientes == null ? 0 : pendientes);
+
+        // Renderizar un QR es trabajo de CPU: hilos de plataforma, uno por núcleo
+        ExecutorService renderizadores = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        long inicio = System.nanoTime();
+        long procesadosAlInicio = procesados;
+        try {
+            while (!detener) {
+                List<FilaQr> lote = jdbcTemplate.query(
+                        "SELECT id, referencia, descripcion, cantidad, estado, version FROM productos WHERE id > ?" + filtro
+                                + " ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> {
+                            int cantidad = rs.getInt("cantidad");
+                            return new FilaQr(rs.getLong("id"), rs.getString("referencia"), rs.getString("descripcion"),
+                                    rs.wasNull() ? null : cantidad, rs.getString("estado"), rs.getLong("version"));
+                        },
+                        ultimoId, TAMANO_LOTE);
+                if (lote.isEmpty()) {
+                    break;
+                }
+
+                List<Object[]> actualizaciones = renderizar(lote, renderizadores);
+                long idFinal = lote.get(lote.size() - 1).id();
+                long procesadosLote = procesados + lote.size();
+
+                // QR y avance en la misma transacción (la del escritor): o se guardan ambos o ninguno.
+                // Solo si el producto no cambió desde que se leyó: el que lo editó genera su propio QR, y si
+                // quedó sin QR lo toma la próxima pasada de faltantes
+                escritor.enviar(() -> {
+                    jdbcTemplate.batchUpdate("UPDATE productos SET codigo_qr = ? WHERE id = ? AND version = ?",
+                            actualizaciones);
+                    return jdbcTemplate.update("UPDATE qr_regeneracion SET ultimo_id = ?, procesados = ? WHERE id = 1",
+                            idFinal, procesadosLote);
+                }).join();
+
+                ultimoId = idFinal;
+                procesados = procesadosLote;
+                notificar(new ProgresoRegeneracion(procesados, total,
+                        velocidad(procesados - procesadosAlInicio, inicio), false));
+            }
+
+            if (!detener) {
+                escritor.enviar(() -> jdbcTemplate.update("UPDATE qr_regeneracion SET terminado = 1 WHERE id = 1")).join();
+                ProgresoRegeneracion fin = new ProgresoRegeneracion(procesados, total,
+                        velocidad(procesados - procesadosAlInicio, inicio), true);
+                System.out.printf("Regeneración de Códigos QR terminada: %d QR (%.1f QR/s)%n", fin.procesados(), fin.qrPorSegundo());
+                notificar(fin);
+            }
+        } catch (Exception e) {
+            System.err.println("Error en la regeneración de Códigos QR (se reanudará en el próximo arranque): " + e.getMessage());
+        } finally {
+            renderizadores.shutdownNow();
+        }
+    }
+
+    private List<Object[]> renderizar(List<FilaQr> lote, ExecutorService renderizadores) throws InterruptedException {
+        List<Future<byte[]>> futuros = new ArrayList<>(lote.size());
+        for (FilaQr fila : lote) {
+            futuros.add(renderizadores.submit(() -> codigoQrService.codificar(
+                    ContenidoQr.generar(fila.referencia(), fila.descripcion(), fila.cantidad(), fila.estado()))));
+        }
+
+        List<Object[]> actualizaciones = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            byte[] codigo;
+            try {
+                codigo = futuros.get(i).get();
+            } catch (ExecutionException e) {
+                // Igual que en el alta manual: si el QR no se puede generar, queda sin QR
+                System.err.println("Advertencia: no se pudo generar el QR del producto " + lote.get(i).id());
+                codigo = null;
+            }
+            actualizaciones.add(new Object[]{codigo, lote.get(i).id(), lote.get(i).version()});
+        }
+        return actualizaciones;
+    }
+
+    // El error de la operación del escritor, como si hubiera ocurrido en este hilo
+    private static <T> T esperar(CompletableFuture<T> operacion) {
+        try {
+            return operacion.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private static double velocidad(long cantidad, long inicioNanos) {
+        double segundos = (System.nanoTime() - inicioNanos) / 1_000_000_000.0;
+        return segundos > 0 ? cantidad / segundos : 0;
+    }
+
+    private void notificar(ProgresoRegeneracion progreso) {
+        for (Consumer<ProgresoRegeneracion> oyente : oyentes) {
+            oyente.accept(progreso);
+        }
+    }
+}
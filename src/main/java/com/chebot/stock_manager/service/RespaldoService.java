@@ -0,0 +1,376 @@
+package com.chebot.stock_manager.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Respaldos de la DB en caliente, sin cerrar la aplicación ni frenar a quien la está usando.
+ * <p>
+ * El respaldo completo usa la API de backup de SQLite por tandas de páginas, con una pausa entre
+ * tandas: la conexión del respaldo solo lee (con WAL no bloquea a nadie) y la pausa deja disco y CPU
+ * para la interfaz. Si otra conexión escribe, SQLite vuelve a empezar la copia; después de varios
+ * reinicios se copia sin pausas y, si aun así no termina, se usa VACUUM INTO (una sola lectura).
+ * <p>
+ * Entre respaldos completos, unos triggers (migración V5) anotan en 'respaldo_cambios' los productos que cambian;
+ * el respaldo incremental guarda solo esas filas (y los movimientos de stock nuevos) en un archivo
+ * aparte. Para restaurar se toma el último respaldo completo y se le aplican, en orden, los
+ * incrementales posteriores ({@link #restaurar(Path)}).
+ * <p>
+ * Cada archivo se verifica al terminar (PRAGMA integrity_check y lectura de 'productos'); los que
+ * fallan se renombran a '.invalido'. Se conservan los últimos 'stock.respaldo.conservar' respaldos
+ * completos y sus incrementales.
+ */
+@Service
+@Lazy(false) // Los respaldos programados corren aun en modo perezoso
+public class RespaldoService {
+
+    public enum Tipo {
+        COMPLETO, INCREMENTAL
+    }
+
+    /**
+     * @param productos Filas de 'productos' en el archivo (en el incremental, las que cambiaron).
+     */
+    public record ResultadoRespaldo(Tipo tipo, Path archivo, long bytes, long productos, long milisegundos) {
+    }
+
+    private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneId.systemDefault());
+    private static final String PREFIJO = "stock-";
+    private static final String EXTENSION_COMPLETO = ".db";
+    private static final String EXTENSION_INCREMENTAL = ".inc.db";
+    // Reinicios de la copia (por escrituras de otras conexiones) antes de dejar de hacer pausas
+    private static final int MAX_REINICIOS = 3;
+    private static final int SQLITE_OK = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EscritorSerializado escritor;
+    private final boolean habilitado;
+    private final Path carpeta;
+    private final int conservar;
+    private final int paginasPorPaso;
+    private final long pausaMs;
+
+    public RespaldoService(JdbcTemplate jdbcTemplate, EscritorSerializado escritor,
+                           @Value("${stock.respaldo.habilitado:true}") boolean habilitado,
+                           @Value("${stock.respaldo.carpeta:respaldos}") Path carpeta,
+                           @Value("${stock.respaldo.conservar:7}") int conservar,
+                           @Value("${stock.respaldo.paginas-por-paso:256}") int paginasPorPaso,
+                           @Value("${stock.respaldo.pausa-ms:20}") long pausaMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.escritor = escritor;
+        this.habilitado = habilitado;
+        this.carpeta = carpeta;
+        this.conservar = Math.max(conservar, 1);
+        this.paginasPorPaso = paginasPorPaso;
+        this.pausaMs = pausaMs;
+    }
+
+    // --- Respaldos programados ---
+
+    @Scheduled(cron = "${stock.respaldo.cron:0 0 13 * * *}")
+    void respaldoCompletoProgramado() {
+        if (habilitado) {
+            try {
+                informar(respaldarCompleto());
+            } catch (Exception e) {
+                System.err.println("Error en el respaldo completo programado: " + e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${stock.respaldo.incremental-ms:3600000}",
+            fixedDelayString = "${stock.respaldo.incremental-ms:3600000}")
+    void respaldoIncrementalProgramado() {
+        if (habilitado) {
+            try {
+                ResultadoRespaldo resultado = respaldarIncremental();
+                if (resultado != null) {
+                    informar(resultado);
+                }
+            } catch (Exception e) {
+                System.err.println("Error en el respaldo incremental programado: " + e.getMessage());
+            }
+        }
+    }
+
+    // --- Respaldo completo ---
+
+    /**
+     * Copia la DB entera a un archivo nuevo de la carpeta de respaldos, lo verifica y rota los viejos.
+     */
+    public synchronized ResultadoRespaldo respaldarCompleto() throws IOException {
+        long inicio = System.currentTimeMillis();
+        Files.createDirectories(carpeta);
+        Path destino = carpeta.resolve(PREFIJO + FORMATO_NOMBRE.format(Instant.now()) + EXTENSION_COMPLETO);
+
+        // 1. Lo que cambie desde ahora queda para el próximo incremental (aunque también entre en esta copia)
+        long hastaSecuencia = ultimaSecuenciaCambios();
+        long hastaMovimiento = ultimoMovimiento();
+
+        // 2. Copia por tandas de páginas; si no termina, VACUUM INTO
+        if (!copiarPorPaginas(destino)) {
+            Files.deleteIfExists(destino);
+            jdbcTemplate.execute(
+                    (ConnectionCallback<Boolean>) conexion -> ejecutar(conexion, "VACUUM INTO ?", destino.toString()));
+        }
+
+        // 3. Verificación: un respaldo que no se puede abrir no cuenta
+        long productos = verificar(destino);
+        confirmar(hastaSecuencia, hastaMovimiento);
+        rotar();
+        return new ResultadoRespaldo(Tipo.COMPLETO, destino, Files.size(destino), productos,
+                System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * @return true si la copia terminó; false si no se pudo (p. ej. se reinició demasiadas veces).
+     */
+    private boolean copiarPorPaginas(Path destino) {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) conexion -> {
+            DB db = conexion.unwrap(SQLiteConnection.class).getDatabase();
+            int[] reinicios = {0};
+            int[] restantesAntes = {Integer.MAX_VALUE};
+            // Se llama después de cada tanda: la pausa es la que deja respirar a la interfaz
+            DB.ProgressObserver pausa = (restantes, total) -> {
+                if (restantes > restantesAntes[0]) {
+                    reinicios[0]++; // Otra conexión escribió: SQLite empezó la copia de nuevo
+                }
+                restantesAntes[0] = restantes;
+                if (restantes > 0 && reinicios[0] <= MAX_REINICIOS && pausaMs > 0) {
+                    try {
+                        Thread.sleep(pausaMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            // Si la DB está ocupada, reintenta cada 100 ms hasta 50 veces
+            return db.backup("main", destino.toString(), pausa, 100, 50, paginasPorPaso) == SQLITE_OK;
+        });
+    }
+
+    // --- Respaldo incremental ---
+
+    /**
+     * Guarda los productos que cambiaron (y los movimientos nuevos) desde el último respaldo.
+     * Si todavía no hay un respaldo completo, hace uno completo.
+     * @return El resultado, o null si no hubo cambios.
+     */
+    public synchronized ResultadoRespaldo respaldarIncremental() throws IOException {
+        if (listar(EXTENSION_COMPLETO).isEmpty()) {
+            return respaldarCompleto();
+        }
+        long inicio = System.currentTimeMillis();
+        long hastaSecuencia = ultimaSecuenciaCambios();
+        long desdeMovimiento = movimientoRespaldado();
+        long hastaMovimiento = ultimoMovimiento();
+        if (hastaSecuencia == 0 && hastaMovimiento == desdeMovimiento) {
+            return null;
+        }
+
+        Path destino = carpeta.resolve(PREFIJO + FORMATO_NOMBRE.format(Instant.now()) + EXTENSION_INCREMENTAL);
+        jdbcTemplate.execute((ConnectionCallback<Void>) conexion -> {
+            ejecutar(conexion, "ATTACH DATABASE ? AS incremental", destino.toString());
+            try (Statement sentencia = conexion.createStatement()) {
+                // Una sola transacción de lectura: las tres tablas salen del mismo instante
+                conexion.setAutoCommit(false);
+                try {
+                    sentencia.execute("CREATE TABLE incremental.productos AS SELECT p.* FROM respaldo_cambios c "
+                            + "JOIN productos p ON p.id = c.producto_id WHERE c.secuencia <= " + hastaSecuencia);
+                    sentencia.execute("CREATE TABLE incremental.eliminados AS SELECT c.producto_id AS id "
+                            + "FROM respaldo_cambios c WHERE c.secuencia <= " + hastaSecuencia
+                            + " AND NOT EXISTS (SELECT 1 FROM productos p WHERE p.id = c.producto_id)");
+                    sentencia.execute("CREATE TABLE incremental.movimientos_stock AS SELECT * FROM movimientos_stock "
+                            + "WHERE id > " + desdeMovimiento + " AND id <= " + hastaMovimiento);
+                    conexion.commit();
+                } catch (SQLException e) {
+                    conexion.rollback();
+                    throw e;
+                } finally {
+                    conexion.setAutoCommit(true);
+                }
+            } finally {
+                ejecutar(conexion, "DETACH DATABASE incremental");
+            }
+            return null;
+        });
+
+        long productos = verificar(destino);
+        confirmar(hastaSecuencia, hastaMovimiento);
+        return new ResultadoRespaldo(Tipo.INCREMENTAL, destino, Files.size(destino), productos,
+                System.currentTimeMillis() - inicio);
+    }
+
+    // --- Restauración ---
+
+    /**
+     * Arma en 'destino' la DB tal como quedó en el último respaldo: el último completo más los
+     * incrementales posteriores. No toca la DB en uso: para usarla hay que cerrar la aplicación
+     * y reemplazar 'stock.db' por el archivo restaurado.
+     * @return Cantidad de productos de la DB restaurada.
+     */
+    public synchronized long restaurar(Path destino) throws IOException {
+        List<Path> completos = listar(EXTENSION_COMPLETO);
+        if (completos.isEmpty()) {
+            throw new IllegalStateException("No hay respaldos completos en " + carpeta.toAbsolutePath());
+        }
+        Path base = completos.get(completos.size() - 1);
+        Files.copy(base, destino, StandardCopyOption.REPLACE_EXISTING);
+
+        String nombreBase = base.getFileName().toString();
+        try (Connection conexion = DriverManager.getConnection("jdbc:sqlite:" + destino)) {
+            for (Path incremental : listar(EXTENSION_INCREMENTAL)) {
+                if (incremental.getFileName().toString().compareTo(nombreBase) < 0) {
+                    continue; // Anterior al respaldo completo: ya está incluido
+                }
+                ejecutar(conexion, "ATTACH DATABASE ? AS incremental", incremental.toString());
+                try (Statement sentencia = conexion.createStatement()) {
+                    conexion.setAutoCommit(false);
+                    // Se borran y se vuelven a insertar, así los triggers del índice de texto quedan al día
+                    sentencia.execute("DELETE FROM productos WHERE id IN "
+                            + "(SELECT id FROM incremental.productos UNION SELECT id FROM incremental.eliminados)");
+                    sentencia.execute("INSERT INTO productos SELECT * FROM incremental.productos");
+                    sentencia.execute("INSERT OR IGNORE INTO movimientos_stock SELECT * FROM incremental.movimientos_stock");
+                    conexion.commit();
+                } catch (SQLException e) {
+                    conexion.rollback();
+                    throw e;
+                } finally {
+                    conexion.setAutoCommit(true);
+                    ejecutar(conexion, "DETACH DATABASE incremental");
+                }
+            }
+            // La DB restaurada no tiene cambios pendientes de respaldar
+            try (Statement sentencia = conexion.createStatement()) {
+                sentencia.execute("DELETE FROM respaldo_cambios");
+            }
+        } catch (SQLException e) {
+            throw new IOException("No se pudo restaurar el respaldo: " + e.getMessage(), e);
+        }
+        return verificar(destino);
+    }
+
+    // --- Auxiliares ---
+
+    /**
+     * Abre el archivo, corre 'PRAGMA integrity_check' y cuenta los productos.
+     * Si falla, el archivo se renombra a '.invalido' y se lanza la excepción.
+     */
+    private long verificar(Path archivo) throws IOException {
+        // No en solo lectura: para revisar el índice de texto, FTS5 necesita escribir una tabla temporal
+        try (Connection conexion = DriverManager.getConnection("jdbc:sqlite:" + archivo);
+             Statement sentencia = conexion.createStatement()) {
+            try (ResultSet rs = sentencia.executeQuery("PRAGMA integrity_check")) {
+                String resultado = rs.next() ? rs.getString(1) : "sin resultado";
+                if (!"ok".equals(resultado)) {
+                    throw new SQLException("integrity_check: " + resultado);
+                }
+            }
+            try (ResultSet rs = sentencia.executeQuery("SELECT count(*) FROM productos")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            Files.move(archivo, archivo.resolveSibling(archivo.getFileName() + ".invalido"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            throw new IOException("El respaldo " + archivo.getFileName() + " no pasó la verificación: " + e.getMessage(), e);
+        }
+    }
+
+    // Ya respaldado: se olvidan esos cambios (los posteriores tienen una secuencia mayor y se conservan)
+    private void confirmar(long hastaSecuencia, long hastaMovimiento) {
+        escritor.enviar(() -> {
+            jdbcTemplate.update("DELETE FROM respaldo_cambios WHERE secuencia <= ?", hastaSecuencia);
+            jdbcTemplate.update("INSERT OR REPLACE INTO respaldo_estado (id, ultimo_movimiento) VALUES (1, ?)", hastaMovimiento);
+            return null;
+        }).join();
+    }
+
+    // Borra los respaldos completos más viejos y los incrementales anteriores al más viejo que queda
+    private void rotar() throws IOException {
+        List<Path> completos = listar(EXTENSION_COMPLETO);
+        if (completos.size() <= conservar) {
+            return;
+        }
+        for (Path viejo : completos.subList(0, completos.size() - conservar)) {
+            Files.deleteIfExists(viejo);
+        }
+        String masViejo = completos.get(completos.size() - conservar).getFileName().toString();
+        for (Path incremental : listar(EXTENSION_INCREMENTAL)) {
+            if (incremental.getFileName().toString().compareTo(masViejo) < 0) {
+                Files.deleteIfExists(incremental);
+            }
+        }
+    }
+
+    // Archivos de respaldo de un tipo, del más viejo al más nuevo (el nombre lleva la fecha)
+    private List<Path> listar(String extension) throws IOException {
+        if (!Files.isDirectory(carpeta)) {
+            return List.of();
+        }
+        List<Path> archivos = new ArrayList<>();
+        try (Stream<Path> contenido = Files.list(carpeta)) {
+            contenido.filter(archivo -> {
+                String nombre = archivo.getFileName().toString();
+                // Los completos terminan en '.db' igual que los incrementales: se distinguen por '.inc.db'
+                return nombre.startsWith(PREFIJO) && nombre.endsWith(extension)
+                        && (extension.equals(EXTENSION_INCREMENTAL) || !nombre.endsWith(EXTENSION_INCREMENTAL));
+            }).sorted().forEach(archivos::add);
+        }
+        return archivos;
+    }
+
+    private long ultimaSecuenciaCambios() {
+        Long secuencia = jdbcTemplate.queryForObject("SELECT coalesce(max(secuencia), 0) FROM respaldo_cambios", Long.class);
+        return secuencia == null ? 0 : secuencia;
+    }
+
+    private long ultimoMovimiento() {
+        Long id = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM movimientos_stock", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    private long movimientoRespaldado() {
+        List<Long> id = jdbcTemplate.queryForList("SELECT ultimo_movimiento FROM respaldo_estado WHERE id = 1", Long.class);
+        return id.isEmpty() ? 0 : id.get(0);
+    }
+
+    private static boolean ejecutar(Connection conexion, String sql, String... parametros) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                sentencia.setString(i + 1, parametros[i]);
+            }
+            return sentencia.execute();
+        }
+    }
+
+    private static void informar(ResultadoRespaldo resultado) {
+        System.out.printf("Respaldo %s: %s (%d productos, %.1f MB) en %d ms%n", resultado.tipo(),
+                resultado.archivo().toAbsolutePath(), resultado.productos(), resultado.bytes() / (1024.0 * 1024.0),
+                resultado.milisegundos());
+    }
+}
@@ -0,0 +1,13 @@
+-- Tabla principal (la misma que creaba Hibernate con ddl-auto; en esas DB ya existe)
+CREATE TABLE IF NOT EXISTS productos (
+    id INTEGER,
+    cantidad INTEGER,
+    codigo_qr BLOB,
+    descripcion VARCHAR(255) NOT NULL,
+    estado VARCHAR(255),
+    observaciones CLOB,
+    referencia VARCHAR(255) NOT NULL UNIQUE,
+    -- Bloqueo optimista: cada edición lo incrementa
+    version INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,20 @@
+-- Libro de movimientos de stock y sus instantáneas (ver MovimientoStockRepository)
+CREATE TABLE IF NOT EXISTS movimientos_stock (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    producto_id INTEGER NOT NULL,
+    delta INTEGER NOT NULL,
+    cantidad_resultante INTEGER NOT NULL,
+    motivo TEXT,
+    fecha INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS movimientos_stock_producto ON movimientos_stock (producto_id, id);
+CREATE INDEX IF NOT EXISTS movimientos_stock_fecha ON movimientos_stock (fecha);
+
+CREATE TABLE IF NOT EXISTS snapshots_stock (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    producto_id INTEGER NOT NULL,
+    ultimo_movimiento_id INTEGER NOT NULL,
+    cantidad INTEGER NOT NULL,
+    fecha INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS snapshots_stock_producto ON snapshots_stock (producto_id, id);
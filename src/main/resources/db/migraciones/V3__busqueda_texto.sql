@@ -0,0 +1,21 @@
+-- Índice de texto sobre referencia y descripción (ver ProductoBusquedaRepository).
+-- El tokenizador trigram resuelve búsquedas por subcadena desde el índice.
+CREATE VIRTUAL TABLE IF NOT EXISTS productos_fts USING fts5(
+    referencia, descripcion, content='productos', content_rowid='id', tokenize='trigram');
+
+-- Triggers que lo mantienen al día con cualquier alta, edición o baja
+CREATE TRIGGER IF NOT EXISTS productos_fts_ai AFTER INSERT ON productos BEGIN
+    INSERT INTO productos_fts(rowid, referencia, descripcion) VALUES (new.id, new.referencia, new.descripcion);
+END;
+CREATE TRIGGER IF NOT EXISTS productos_fts_ad AFTER DELETE ON productos BEGIN
+    INSERT INTO productos_fts(productos_fts, rowid, referencia, descripcion)
+    VALUES ('delete', old.id, old.referencia, old.descripcion);
+END;
+CREATE TRIGGER IF NOT EXISTS productos_fts_au AFTER UPDATE OF referencia, descripcion ON productos BEGIN
+    INSERT INTO productos_fts(productos_fts, rowid, referencia, descripcion)
+    VALUES ('delete', old.id, old.referencia, old.descripcion);
+    INSERT INTO productos_fts(rowid, referencia, descripcion) VALUES (new.id, new.referencia, new.descripcion);
+END;
+
+-- Se indexan las filas que ya existían
+INSERT INTO productos_fts(productos_fts) VALUES ('rebuild');
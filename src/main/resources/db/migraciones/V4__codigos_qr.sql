@@ -0,0 +1,14 @@
+-- Una sola fila (id = 1) con la regeneración de QR en curso o la última terminada (ver RegeneracionQrService)
+CREATE TABLE IF NOT EXISTS qr_regeneracion (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    solo_faltantes INTEGER NOT NULL,
+    ultimo_id INTEGER NOT NULL,
+    procesados INTEGER NOT NULL,
+    terminado INTEGER NOT NULL
+);
+
+-- Una sola fila (id = 1) con el modo en que quedaron guardados los QR (ver CodigoQrService)
+CREATE TABLE IF NOT EXISTS qr_almacenamiento (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    modo TEXT NOT NULL
+);
@@ -0,0 +1,25 @@
+-- Productos cambiados desde el último respaldo (ver RespaldoService); 'secuencia' ordena los cambios
+CREATE TABLE IF NOT EXISTS respaldo_cambios (
+    producto_id INTEGER PRIMARY KEY,
+    secuencia INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS respaldo_cambios_secuencia ON respaldo_cambios (secuencia);
+
+-- Una sola fila (id = 1): último movimiento de stock que ya quedó en un respaldo
+CREATE TABLE IF NOT EXISTS respaldo_estado (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    ultimo_movimiento INTEGER NOT NULL
+);
+
+CREATE TRIGGER IF NOT EXISTS respaldo_cambios_ai AFTER INSERT ON productos BEGIN
+    INSERT OR REPLACE INTO respaldo_cambios (producto_id, secuencia)
+    VALUES (new.id, (SELECT coalesce(max(secuencia), 0) + 1 FROM respaldo_cambios));
+END;
+CREATE TRIGGER IF NOT EXISTS respaldo_cambios_au AFTER UPDATE ON productos BEGIN
+    INSERT OR REPLACE INTO respaldo_cambios (producto_id, secuencia)
+    VALUES (new.id, (SELECT coalesce(max(secuencia), 0) + 1 FROM respaldo_cambios));
+END;
+CREATE TRIGGER IF NOT EXISTS respaldo_cambios_ad AFTER DELETE ON productos BEGIN
+    INSERT OR REPLACE INTO respaldo_cambios (producto_id, secuencia)
+    VALUES (old.id, (SELECT coalesce(max(secuencia), 0) + 1 FROM respaldo_cambios));
+END;
@@ -0,0 +1,29 @@
+-- Registro de cambios para replicar entre instalaciones (ver RegistroCambios).
+-- Sin rowid: la clave (nodo, hlc) ya es el orden en que se leen las entradas para enviarlas.
+CREATE TABLE IF NOT EXISTS replicacion_cambios (
+    nodo INTEGER NOT NULL,
+    hlc INTEGER NOT NULL,
+    tipo INTEGER NOT NULL,
+    referencia TEXT NOT NULL,
+    cantidad INTEGER,
+    descripcion TEXT,
+    estado TEXT,
+    observaciones TEXT,
+    motivo TEXT,
+    PRIMARY KEY (nodo, hlc)
+) WITHOUT ROWID;
+CREATE INDEX IF NOT EXISTS replicacion_cambios_referencia ON replicacion_cambios (referencia, hlc);
+
+-- Una sola fila (id = 1): el identificador de esta instalación
+CREATE TABLE IF NOT EXISTS replicacion_nodo (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    nodo INTEGER NOT NULL
+);
+
+-- Lo que cada otra instalación confirmó tener (su vector, recibido en su último paquete)
+CREATE TABLE IF NOT EXISTS replicacion_pares (
+    par INTEGER NOT NULL,
+    nodo INTEGER NOT NULL,
+    hlc INTEGER NOT NULL,
+    PRIMARY KEY (par, nodo)
+) WITHOUT ROWID;
@@ -0,0 +1,14 @@
+-- Índices para las consultas de ProductoRepository y de los filtros que van a la DB.
+-- 'referencia' ya tiene el índice de su restricción UNIQUE.
+
+-- findByEstado y el filtro por estado de la exportación
+CREATE INDEX IF NOT EXISTS productos_estado ON productos (estado);
+
+-- Rangos de cantidad ("cantidad hasta", productos con poco stock)
+CREATE INDEX IF NOT EXISTS productos_cantidad ON productos (cantidad);
+
+-- findByReferenciaIgnoreCase: Hibernate compara upper(referencia) = upper(?)
+CREATE INDEX IF NOT EXISTS productos_referencia_mayusculas ON productos (upper(referencia));
+
+-- La huella del esquema ya no se usa: el esquema lo mantienen estas migraciones
+DROP TABLE IF EXISTS esquema_huella;
@@ -0,0 +1,6 @@
+-- Stock mínimo de cada producto: por debajo de él se avisa y se sugiere reponer (ver AlertasStockService).
+-- NULL = sin umbral.
+ALTER TABLE productos ADD COLUMN umbral_minimo INTEGER;
+
+-- Al arrancar se leen solo los productos con umbral: el índice parcial los tiene a todos (y nada más)
+CREATE INDEX IF NOT EXISTS productos_con_umbral ON productos (umbral_minimo) WHERE umbral_minimo IS NOT NULL;
@@ -0,0 +1,2 @@
+-- Ninguna consulta compara upper(referencia): el índice de V7 solo ocupaba lugar y se actualizaba en cada alta
+DROP INDEX IF EXISTS productos_referencia_mayusculas;
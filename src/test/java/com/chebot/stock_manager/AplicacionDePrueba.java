@@ -0,0 +1,59 @@
+package com.chebot.stock_manager;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Arranca la aplicación entera para un test, con su DB y sus métricas en una carpeta temporal
+ * y sin respaldos automáticos: el test no toca nada del directorio del proyecto.
+ */
+public final class AplicacionDePrueba {
+
+    private AplicacionDePrueba() {
+    }
+
+    /**
+     * Una instalación con la DB 'stock.db' en la carpeta.
+     * @param argumentos Propiedades adicionales ("--clave=valor"); pisan a las de la prueba.
+     */
+    public static ConfigurableApplicationContext iniciar(Path carpeta, String... argumentos) {
+        return iniciarInstalacion(carpeta, "stock", argumentos);
+    }
+
+    /**
+     * Una instalación con la DB 'nombre.db' en la carpeta (varias pueden compartirla).
+     * Cada contexto registra sus beans JMX con nombres únicos, así pueden convivir en la misma JVM.
+     */
+    public static ConfigurableApplicationContext iniciarInstalacion(Path carpeta, String nombre, String... argumentos) {
+        List<String> todos = new ArrayList<>();
+        propiedades(carpeta, nombre).forEach((clave, valor) -> todos.add("--" + clave + "=" + valor));
+        todos.add("--spring.jmx.unique-names=true");
+        todos.addAll(List.of(argumentos));
+        // Como argumentos: tienen que pisar a application.properties
+        return new SpringApplicationBuilder(StockManagerApplication.class)
+                .headless(true)
+                .run(todos.toArray(String[]::new));
+    }
+
+    /**
+     * Las mismas propiedades para un test con @SpringBootTest (desde su @DynamicPropertySource).
+     */
+    public static void registrar(DynamicPropertyRegistry registro, Path carpeta) {
+        propiedades(carpeta, "stock").forEach((clave, valor) -> registro.add(clave, () -> valor));
+    }
+
+    private static Map<String, String> propiedades(Path carpeta, String nombre) {
+        Map<String, String> propiedades = new LinkedHashMap<>();
+        propiedades.put("spring.datasource.url", "jdbc:sqlite:" + carpeta.resolve(nombre + ".db") + "?journal_mode=WAL");
+        propiedades.put("stock.respaldo.habilitado", "false");
+        propiedades.put("stock.metricas.archivo", carpeta.resolve(nombre + "-metricas.txt").toString());
+        return propiedades;
+    }
+}
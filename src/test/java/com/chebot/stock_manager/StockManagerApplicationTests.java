@@ -1,11 +1,25 @@
 package com.chebot.stock_manager;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @SpringBootTest
 class StockManagerApplicationTests {
 
+	// DB y métricas en una carpeta temporal: el test no toca el stock.db del proyecto
+	@TempDir
+	static Path carpeta;
+
+	@DynamicPropertySource
+	static void propiedades(DynamicPropertyRegistry registro) {
+		AplicacionDePrueba.registrar(registro, carpeta);
+	}
+
 	@Test
 	void contextLoads() {
 	}
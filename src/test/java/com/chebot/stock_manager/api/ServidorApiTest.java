@@ -0,0 +1,91 @@
+package com.chebot.stock_manager.api;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bloqueo optimista de la API: una edición con un If-Match viejo no pisa la de otra terminal.
+ */
+class ServidorApiTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private final HttpClient cliente = HttpClient.newHttpClient();
+    private String servidor;
+    private String base;
+
+    @BeforeEach
+    void iniciar() {
+        // Puerto 0: uno libre
+        contexto = AplicacionDePrueba.iniciar(carpeta, "--stock.api.habilitada=true", "--stock.api.puerto=0");
+        servidor = "http://localhost:" + contexto.getBean(ServidorApi.class).getPuerto();
+        base = servidor + "/api/productos";
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void unaEdicionConUnIfMatchViejoRecibe412() throws Exception {
+        HttpResponse<String> alta = enviar(HttpRequest.newBuilder(URI.create(base))
+                .POST(json("{\"referencia\":\"API-1\",\"descripcion\":\"Proyector\",\"cantidad\":3,\"estado\":\"Disponible\"}")));
+        assertEquals(201, alta.statusCode());
+        String etagCargado = alta.headers().firstValue("ETag").orElseThrow();
+        String producto = servidor + alta.headers().firstValue("Location").orElseThrow();
+
+        // Dos terminales cargaron la misma versión: la primera en guardar gana
+        HttpResponse<String> primera = enviar(HttpRequest.newBuilder(URI.create(producto))
+                .header("If-Match", etagCargado)
+                .PUT(json("{\"referencia\":\"API-1\",\"descripcion\":\"Proyector Epson\",\"cantidad\":3,\"estado\":\"Disponible\"}")));
+        assertEquals(200, primera.statusCode());
+        assertEquals("\"1\"", primera.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<String> segunda = enviar(HttpRequest.newBuilder(URI.create(producto))
+                .header("If-Match", etagCargado)
+                .PUT(json("{\"referencia\":\"API-1\",\"descripcion\":\"Proyector roto\",\"cantidad\":3,\"estado\":\"Roto\"}")));
+        assertEquals(412, segunda.statusCode());
+        assertTrue(segunda.body().contains("\"error\""), segunda.body());
+
+        // Quedó la edición de la primera
+        HttpResponse<String> actual = enviar(HttpRequest.newBuilder(URI.create(producto)).GET());
+        assertEquals("\"1\"", actual.headers().firstValue("ETag").orElseThrow());
+        assertTrue(actual.body().contains("\"descripcion\":\"Proyector Epson\""), actual.body());
+    }
+
+    @Test
+    void unaEdicionSinIfMatchRecibe428() throws Exception {
+        HttpResponse<String> alta = enviar(HttpRequest.newBuilder(URI.create(base))
+                .POST(json("{\"referencia\":\"API-2\",\"descripcion\":\"Pizarra\",\"cantidad\":1,\"estado\":\"Disponible\"}")));
+        String producto = servidor + alta.headers().firstValue("Location").orElseThrow();
+
+        HttpResponse<String> edicion = enviar(HttpRequest.newBuilder(URI.create(producto))
+                .PUT(json("{\"referencia\":\"API-2\",\"descripcion\":\"Pizarra blanca\",\"cantidad\":1,\"estado\":\"Disponible\"}")));
+
+        assertEquals(428, edicion.statusCode());
+    }
+
+    private HttpResponse<String> enviar(HttpRequest.Builder solicitud) throws Exception {
+        return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.BodyPublisher json(String cuerpo) {
+        return HttpRequest.BodyPublishers.ofString(cuerpo);
+    }
+}
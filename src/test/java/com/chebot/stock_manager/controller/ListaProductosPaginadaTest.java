@@ -0,0 +1,151 @@
+package com.chebot.stock_manager.controller;
+
+import com.chebot.stock_manager.fx.EjecutorFx;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.ProductoService;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lista paginada de la tabla: páginas por clave, descarte de las lejanas y cambios aplicados en el lugar.
+ * Las cargas corren en el mismo hilo (sin JavaFX) y leen de un catálogo en memoria.
+ */
+class ListaProductosPaginadaTest {
+
+    private static final int TAMANO_PAGINA = 10;
+    private static final int MAX_PAGINAS = 4;
+
+    private final CatalogoEnMemoria catalogo = new CatalogoEnMemoria(null, null, null);
+    private final ProductoService productoService = mock(ProductoService.class);
+    private final List<String> cambiosLista = new ArrayList<>();
+    private int paginasCargadas = 0;
+    private ListaProductosPaginada lista;
+
+    @BeforeEach
+    void iniciar() {
+        // 100 productos con IDs salteados (2, 4, ..., 200): la posición no se deduce del ID
+        for (long id = 2; id <= 200; id += 2) {
+            catalogo.guardar(new ProductoResumen(id, "REF-" + id, "Producto " + id, (int) id, "Disponible"));
+        }
+        when(productoService.obtenerPagina(anyLong(), anyInt()))
+                .thenAnswer(i -> catalogo.pagina(i.getArgument(0), i.getArgument(1)));
+        when(productoService.buscarIdTrasSaltar(anyLong(), anyInt()))
+                .thenAnswer(i -> catalogo.idTrasSaltar(i.getArgument(0), i.getArgument(1)));
+
+        lista = new ListaProductosPaginada(productoService, new EjecutorInmediato(), () -> paginasCargadas++,
+                catalogo.contarConSecuencia(), TAMANO_PAGINA, MAX_PAGINAS);
+        lista.addListener((ListChangeListener<ProductoResumen>) cambio -> {
+            while (cambio.next()) {
+                cambiosLista.add(cambio.wasReplaced() ? "reemplazo " + cambio.getFrom()
+                        : cambio.wasAdded() ? "alta " + cambio.getFrom() : "baja " + cambio.getFrom());
+            }
+        });
+    }
+
+    @Test
+    void unaFilaSinCargarPideSuPaginaYLaMuestraAlLlegar() {
+        assertEquals(100, lista.size());
+        assertNull(lista.get(15));
+        assertEquals(1, paginasCargadas);
+
+        assertEquals(32L, lista.get(15).getId());
+        assertEquals(40L, lista.get(19).getId()); // Misma página: no se vuelve a leer
+        assertEquals(1, paginasCargadas);
+    }
+
+    @Test
+    void unaPaginaLejanaSeUbicaSaltandoDesdeElAnclaConocida() {
+        lista.get(95);
+        assertEquals(192L, lista.get(95).getId());
+        // La página 9 se ubicó avanzando 90 filas desde el principio, sin leer las anteriores
+        verify(productoService, atLeastOnce()).buscarIdTrasSaltar(0L, 90);
+        assertEquals(1, paginasCargadas);
+    }
+
+    @Test
+    void lasPaginasLejanasSeDescartan() {
+        for (int pagina = 0; pagina < 10; pagina++) {
+            lista.get(pagina * TAMANO_PAGINA);
+        }
+        assertEquals(10, paginasCargadas);
+
+        // La primera quedó lejos de la última leída: se vuelve a pedir
+        assertNull(lista.get(0));
+        assertEquals(11, paginasCargadas);
+        assertEquals(2L, lista.get(0).getId());
+    }
+
+    @Test
+    void losCambiosDelCatalogoSeAplicanSobreLasFilasAfectadas() {
+        List<CatalogoEnMemoria.Cambio> cambios = new ArrayList<>();
+        catalogo.agregarOyente(cambios::add);
+        lista.get(0);
+        lista.get(0);
+
+        // Edición de una fila cargada
+        catalogo.guardar(new ProductoResumen(4L, "REF-4", "Editado", 1, "Roto"));
+        assertTrue(lista.aplicar(cambios.get(0)));
+        assertEquals("Editado", lista.get(1).getDescripcion());
+
+        // Alta al final
+        catalogo.guardar(new ProductoResumen(202L, "REF-202", "Nuevo", 1, "Disponible"));
+        assertTrue(lista.aplicar(cambios.get(1)));
+        assertEquals(101, lista.size());
+
+        // Baja de una fila cargada: las siguientes se corren y su página se vuelve a leer
+        catalogo.eliminar(2L);
+        assertTrue(lista.aplicar(cambios.get(2)));
+        assertEquals(100, lista.size());
+        assertNull(lista.get(0));
+        assertEquals(4L, lista.get(0).getId());
+
+        // Baja de una fila que no está en memoria: no se sabe su posición, hay que recrear la lista
+        catalogo.eliminar(150L);
+        assertFalse(lista.aplicar(cambios.get(3)));
+
+        assertEquals(List.of("reemplazo 1", "alta 100", "baja 0"), cambiosLista);
+    }
+
+    @Test
+    void losCambiosIncluidosEnElConteoSeIgnoran() {
+        CatalogoEnMemoria.Cambio incluido = new CatalogoEnMemoria.Cambio(catalogo.contarConSecuencia().secuencia(),
+                CatalogoEnMemoria.TipoCambio.INSERTADO, 200L, catalogo.obtener(200L));
+
+        assertTrue(lista.aplicar(incluido));
+        assertEquals(100, lista.size());
+        assertEquals(List.of(), cambiosLista);
+    }
+
+    // Ejecuta la tarea en el mismo hilo y entrega el resultado enseguida (sin Platform.runLater)
+    private static final class EjecutorInmediato extends EjecutorFx {
+        @Override
+        public <T> Future<?> enSegundoPlano(Callable<T> tarea, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+            try {
+                alTerminar.accept(tarea.call());
+            } catch (Exception e) {
+                alFallar.accept(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.chebot.stock_manager.replicacion;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.service.ProductoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dos instalaciones, cada una con su DB, que se pasan archivos de cambios.
+ */
+class ReplicacionServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext deposito;
+    private ConfigurableApplicationContext oficina;
+
+    @BeforeEach
+    void iniciar() {
+        deposito = iniciarInstalacion("deposito");
+        oficina = iniciarInstalacion("oficina");
+    }
+
+    @AfterEach
+    void cerrar() {
+        deposito.close();
+        oficina.close();
+    }
+
+    private ConfigurableApplicationContext iniciarInstalacion(String nombre) {
+        return AplicacionDePrueba.iniciarInstalacion(carpeta, nombre);
+    }
+
+    @Test
+    void lasDosInstalacionesConvergen() throws Exception {
+        ProductoService enDeposito = deposito.getBean(ProductoService.class);
+        ProductoService enOficina = oficina.getBean(ProductoService.class);
+
+        // 1. Altas en el depósito, que llegan a la oficina
+        Producto tornillo = enDeposito.guardarProducto(new Producto("TOR-1", "Tornillo", 100, "Disponible", null)).join();
+        Producto tuerca = enDeposito.guardarProducto(new Producto("TUE-1", "Tuerca", 50, "Disponible", null)).join();
+        enDeposito.guardarProducto(new Producto("ARA-1", "Arandela", 10, "Disponible", "caja azul")).join();
+        sincronizar(deposito, oficina);
+        assertEquals(filas(deposito), filas(oficina));
+
+        // 2. Cambios a la vez: movimientos en las dos (se suman), la misma edición en las dos (gana una) y una baja
+        enDeposito.registrarMovimiento(tornillo.getId(), -30, "Venta").join();
+        Long tornilloEnOficina = enOficina.obtenerPorReferencia("TOR-1").getId();
+        enOficina.registrarMovimiento(tornilloEnOficina, 5, "Devolución").join();
+
+        tuerca = enDeposito.obtenerProducto(tuerca.getId()).orElseThrow();
+        tuerca.setDescripcion("Tuerca M6");
+        enDeposito.guardarProducto(tuerca).join();
+        Producto tuercaEnOficina = enOficina.obtenerProducto(enOficina.obtenerPorReferencia("TUE-1").getId()).orElseThrow();
+        tuercaEnOficina.setDescripcion("Tuerca M8");
+        enOficina.guardarProducto(tuercaEnOficina).join();
+
+        enOficina.eliminarProducto(enOficina.obtenerPorReferencia("ARA-1").getId()).join();
+
+        long bytes = sincronizar(deposito, oficina) + sincronizar(oficina, deposito);
+        assertEquals(filas(deposito), filas(oficina));
+        assertEquals(75, enDeposito.obtenerPorReferencia("TOR-1").getCantidad());
+        assertEquals(null, enDeposito.obtenerPorReferencia("ARA-1"));
+        assertTrue(bytes < 2048, "Solo viajan los cambios: " + bytes + " bytes");
+
+        // 3. Sin cambios nuevos no se reenvía nada, y recibir el mismo paquete dos veces no cambia nada
+        Path paquete = carpeta.resolve("repetido.stkr");
+        assertEquals(0, deposito.getBean(ReplicacionService.class).exportar(paquete).enviados());
+        oficina.getBean(ReplicacionService.class).importar(paquete);
+        assertEquals(filas(deposito), filas(oficina));
+    }
+
+    // Lleva los cambios de 'origen' a 'destino' por archivo; devuelve el tamaño del archivo
+    private long sincronizar(ConfigurableApplicationContext origen, ConfigurableApplicationContext destino) throws Exception {
+        Path archivo = Files.createTempFile(carpeta, "cambios", ".stkr");
+        long bytes = origen.getBean(ReplicacionService.class).exportar(archivo).bytes();
+        destino.getBean(ReplicacionService.class).importar(archivo);
+        return bytes;
+    }
+
+    private static List<Map<String, Object>> filas(ConfigurableApplicationContext instalacion) {
+        return instalacion.getBean(JdbcTemplate.class).queryForList(
+                "SELECT referencia, descripcion, cantidad, estado, observaciones FROM productos ORDER BY referencia");
+    }
+}
@@ -0,0 +1,120 @@
+package com.chebot.stock_manager.repository;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.FiltroProductos;
+import com.chebot.stock_manager.service.ProductoService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Migraciones sobre una DB vacía y sobre una creada por Hibernate, y los índices que usan
+ * las consultas de los filtros (verificados con EXPLAIN QUERY PLAN).
+ */
+class MigradorEsquemaTest {
+
+    @TempDir
+    Path carpeta;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void iniciar() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + carpeta.resolve("stock.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void aplicaCadaMigracionUnaSolaVez() {
+        MigradorEsquema migrador = new MigradorEsquema(dataSource);
+        int aplicadas = migrador.migrar();
+
+        assertTrue(aplicadas >= 7, "Aplicadas: " + aplicadas);
+        assertEquals(0, migrador.migrar());
+        assertEquals(aplicadas, jdbcTemplate.queryForObject("SELECT count(*) FROM esquema_migraciones", Integer.class));
+        // V9 quita el índice sobre upper(referencia) que creaba V7
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM sqlite_master WHERE name = 'productos_referencia_mayusculas'", Integer.class));
+    }
+
+    @Test
+    void adoptaUnaDbCreadaPorHibernate() {
+        // Como la dejaba ddl-auto=update antes de la columna 'version'
+        jdbcTemplate.execute("CREATE TABLE productos (id integer, cantidad integer, codigo_qr blob, "
+                + "descripcion varchar(255) not null, estado varchar(255), observaciones clob, "
+                + "referencia varchar(255) not null unique, primary key (id))");
+        jdbcTemplate.update("INSERT INTO productos (referencia, descripcion, cantidad) VALUES ('TOR-1', 'Tornillo', 5)");
+
+        new MigradorEsquema(dataSource).migrar();
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT version FROM productos", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos_fts WHERE productos_fts MATCH 'Tornillo'", Integer.class));
+    }
+
+    @Test
+    void losFiltrosUsanIndices() {
+        // Se arranca la aplicación y se toman las consultas que Hibernate manda de verdad a la DB
+        ConfigurableApplicationContext contexto = AplicacionDePrueba.iniciarInstalacion(carpeta, "aplicacion",
+                "--spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + ConsultasEjecutadas.class.getName());
+        try {
+            ProductoService productoService = contexto.getBean(ProductoService.class);
+            jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+
+            assertEnElPlan("INDEX productos_estado", consultaDe(() -> productoService.filtrarProductos(
+                    new FiltroProductos(null, null, Set.of("Agotado"), null, null, null, false, 50))));
+            assertEnElPlan("INDEX productos_cantidad", consultaDe(() -> productoService.filtrarProductos(
+                    new FiltroProductos(null, null, null, null, 3, null, false, 50))));
+            // El índice de trigramas: la tabla virtual productos_fts resuelve el MATCH
+            assertEnElPlan("VIRTUAL TABLE INDEX", consultaDe(() -> productoService.filtrarProductos(
+                    new FiltroProductos("TOR", null, null, null, null, null, false, 50))));
+        } finally {
+            contexto.close();
+        }
+    }
+
+    // La última consulta de productos que pasó por Hibernate al ejecutar el filtro
+    private static String consultaDe(Runnable filtro) {
+        ConsultasEjecutadas.SQL.clear();
+        filtro.run();
+        return ConsultasEjecutadas.SQL.stream()
+                .filter(sql -> sql.contains("productos"))
+                .reduce((anterior, ultima) -> ultima)
+                .orElseThrow();
+    }
+
+    private void assertEnElPlan(String paso, String consulta) {
+        // Sin valores para los parámetros: SQLite arma el plan igual (los toma como NULL)
+        List<String> plan = jdbcTemplate.query("EXPLAIN QUERY PLAN " + consulta, (rs, rowNum) -> rs.getString("detail"));
+        assertTrue(plan.stream().anyMatch(detalle -> detalle.contains(paso)), consulta + " -> " + plan);
+    }
+
+    /**
+     * Hibernate la instancia por nombre (hibernate.session_factory.statement_inspector): anota cada SQL
+     * antes de mandarlo a la DB.
+     */
+    public static class ConsultasEjecutadas implements StatementInspector {
+
+        static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SQL.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Alertas de stock bajo y sugerencias de reposición: se avisa al cruzar el umbral y la lista
+ * de faltantes sigue cada cambio, de la sugerencia más urgente a la menos.
+ */
+class AlertasStockServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoService productoService;
+    private AlertasStockService alertasStockService;
+    private final BlockingQueue<AlertasStockService.Alerta> alertas = new LinkedBlockingQueue<>();
+    private int marcas;
+
+    @BeforeEach
+    void iniciar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+        productoService = contexto.getBean(ProductoService.class);
+        alertasStockService = contexto.getBean(AlertasStockService.class);
+        productoService.agregarOyenteAlertas(alertas::add);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void avisaAlCruzarElUmbralYOrdenaLasSugerenciasPorUrgencia() throws Exception {
+        Producto proyector = guardar("ALE-1", 12, 10);
+        assertEquals(List.of(), alertasHastaAhora());
+
+        // Ya nace por debajo: 5 unidades para llegar al umbral
+        Producto cable = guardar("ALE-2", 0, 5);
+        productoService.registrarMovimiento(proyector.getId(), -5, "Préstamo").join();
+        List<AlertasStockService.Alerta> recibidas = alertasHastaAhora();
+        assertEquals(List.of("ALE-2", "ALE-1"), recibidas.stream().map(AlertasStockService.Alerta::referencia).toList());
+        recibidas.forEach(alerta -> assertEquals(AlertasStockService.TipoAlerta.STOCK_BAJO, alerta.tipo()));
+        assertEquals(7, recibidas.get(1).cantidad());
+        assertEquals(List.of("ALE-2", "ALE-1"), sugerencias());
+
+        // Ya estaba debajo: no se avisa de nuevo, solo pasa a ser el más urgente (le faltan 6)
+        productoService.registrarMovimiento(proyector.getId(), -3, "Préstamo").join();
+        assertEquals(List.of(), alertasHastaAhora());
+        assertEquals(List.of("ALE-1", "ALE-2"), sugerencias());
+        assertEquals(6, productoService.obtenerSugerenciasReposicion(1).get(0).faltan());
+
+        // Al reponer o dar de baja sale de las sugerencias
+        productoService.registrarMovimiento(proyector.getId(), 10, "Compra").join();
+        productoService.eliminarProducto(cable.getId()).join();
+        assertEquals(List.of(), alertasHastaAhora());
+        assertEquals(List.of(), sugerencias());
+        assertEquals(0, alertasStockService.contarFaltantes());
+    }
+
+    @Test
+    void quitarElUmbralSacaAlProductoDeLasSugerencias() throws Exception {
+        Producto producto = guardar("ALE-3", 1, 4);
+        assertEquals(1, alertasHastaAhora().size());
+        assertEquals(1, alertasStockService.contarFaltantes());
+
+        Producto edicion = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        edicion.setUmbralMinimo(null);
+        productoService.guardarProducto(edicion).join();
+        alertasHastaAhora();
+        assertEquals(0, alertasStockService.contarFaltantes());
+    }
+
+    private Producto guardar(String referencia, int cantidad, Integer umbral) {
+        Producto producto = new Producto(referencia, "Producto " + referencia, cantidad, "Disponible", null);
+        producto.setUmbralMinimo(umbral);
+        return productoService.guardarProducto(producto).join();
+    }
+
+    private List<String> sugerencias() {
+        return productoService.obtenerSugerenciasReposicion(10).stream()
+                .map(AlertasStockService.Sugerencia::referencia).toList();
+    }
+
+    /**
+     * Las alertas de los cambios ya confirmados. Las alertas se evalúan en su propio hilo, en el orden
+     * de los cambios: se guarda un producto roto como marca y, cuando llega su alerta, todo lo anterior
+     * ya se evaluó.
+     */
+    private List<AlertasStockService.Alerta> alertasHastaAhora() throws InterruptedException {
+        String marca = "MARCA-" + ++marcas;
+        productoService.guardarProducto(new Producto(marca, "Marca", 1, "Roto", null)).join();
+        List<AlertasStockService.Alerta> recibidas = new ArrayList<>();
+        while (true) {
+            AlertasStockService.Alerta alerta = alertas.poll(10, TimeUnit.SECONDS);
+            assertNotNull(alerta, "No llegó la alerta de " + marca);
+            if (marca.equals(alerta.referencia())) {
+                return recibidas;
+            }
+            recibidas.add(alerta);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.chebot.stock_manager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Caché LRU: el cargador corre fuera del lock, invalidar no espera y lo que se invalida durante
+ * una carga no queda guardado.
+ */
+class CacheLruTest {
+
+    @Test
+    void descartaLaEntradaUsadaHaceMasTiempo() {
+        CacheLru<Integer, String> cache = new CacheLru<>(2);
+        cache.obtener(1, clave -> "uno");
+        cache.obtener(2, clave -> "dos");
+        cache.obtener(1, clave -> "otro"); // 1 pasa a ser la más reciente
+        cache.obtener(3, clave -> "tres");
+
+        assertEquals(2, cache.tamano());
+        assertEquals("uno", cache.obtener(1, clave -> "recargado"));
+        assertEquals("recargado", cache.obtener(2, clave -> "recargado"));
+    }
+
+    @Test
+    void unaCargaLentaNoFrenaLasLecturasNiLasInvalidaciones() throws Exception {
+        CacheLru<Integer, String> cache = new CacheLru<>(10);
+        cache.obtener(2, clave -> "dos");
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CompletableFuture<String> lenta = CompletableFuture.supplyAsync(() -> cache.obtener(1, clave -> {
+            cargando.countDown();
+            esperar(liberar);
+            return "uno";
+        }));
+        assertTrue(cargando.await(10, TimeUnit.SECONDS));
+
+        // Mientras la carga espera, la caché responde (como el hilo de JavaFX al aplicar un cambio)
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertEquals("dos", cache.obtener(2, clave -> "no debería cargarse"));
+            cache.invalidar(2);
+            cache.limpiar();
+        });
+        liberar.countDown();
+        assertEquals("uno", lenta.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void loCargadoAntesDeUnaInvalidacionNoSeGuarda() throws Exception {
+        CacheLru<Integer, String> cache = new CacheLru<>(10);
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CompletableFuture<String> vieja = CompletableFuture.supplyAsync(() -> cache.obtener(1, clave -> {
+            cargando.countDown();
+            esperar(liberar);
+            return "antes del cambio";
+        }));
+        assertTrue(cargando.await(10, TimeUnit.SECONDS));
+        cache.invalidar(1);
+        liberar.countDown();
+
+        // Quien la pidió recibe su valor, pero el siguiente vuelve a cargar
+        assertEquals("antes del cambio", vieja.get(10, TimeUnit.SECONDS));
+        assertEquals(0, cache.tamano());
+        assertEquals("después del cambio", cache.obtener(1, clave -> "después del cambio"));
+    }
+
+    @Test
+    void conCargasEInvalidacionesConcurrentesNoQuedanValoresViejos() throws Exception {
+        CacheLru<Integer, Long> cache = new CacheLru<>(4);
+        AtomicLong version = new AtomicLong();
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> lectores = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            lectores.add(CompletableFuture.runAsync(() -> {
+                while (corriendo.get()) {
+                    for (int clave = 0; clave < 8; clave++) {
+                        cache.obtener(clave, c -> version.get());
+                    }
+                }
+            }));
+        }
+        // Como un cambio del catálogo: primero cambia el dato y después se invalida
+        for (int i = 0; i < 20_000; i++) {
+            version.incrementAndGet();
+            if (i % 2 == 0) {
+                cache.invalidar(i % 8);
+            } else {
+                cache.invalidarSi(clave -> clave % 2 == 0);
+                cache.limpiar();
+            }
+        }
+        corriendo.set(false);
+        CompletableFuture.allOf(lectores.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        for (int clave = 0; clave < 8; clave++) {
+            assertEquals(version.get(), cache.obtener(clave, c -> version.get()));
+        }
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.model.ProductoResumen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Índices del catálogo en memoria: siguen a cada alta, edición y baja sin recargar.
+ * Sin DB: guardar y eliminar solo tocan la memoria (los llama el escritor después del commit).
+ */
+class CatalogoEnMemoriaTest {
+
+    private CatalogoEnMemoria catalogo;
+    private final List<CatalogoEnMemoria.Cambio> cambios = new ArrayList<>();
+
+    @BeforeEach
+    void iniciar() {
+        catalogo = new CatalogoEnMemoria(null, null, null);
+        catalogo.agregarOyente(cambios::add);
+        catalogo.guardar(new ProductoResumen(1L, "PRO-1", "Proyector", 2, "Disponible"));
+        catalogo.guardar(new ProductoResumen(2L, "PIZ-1", "Pizarra", 5, "Disponible"));
+        catalogo.guardar(new ProductoResumen(3L, "PAR-1", "Parlante", 0, "Roto"));
+    }
+
+    @Test
+    void unaEdicionMueveElProductoEnTodosLosIndices() {
+        catalogo.guardar(new ProductoResumen(2L, "PIZ-2", "Pizarra", 1, "Roto"));
+
+        assertNull(catalogo.obtenerPorReferencia("PIZ-1"));
+        assertEquals(2L, catalogo.obtenerPorReferencia("PIZ-2").getId());
+        assertEquals(List.of(1L), ids(catalogo.porEstado("Disponible")));
+        assertEquals(List.of(2L, 3L), ids(catalogo.porEstado("Roto")));
+        // De menor a mayor cantidad
+        assertEquals(List.of(3L, 2L, 1L), ids(catalogo.porCantidad(0, 2)));
+
+        CatalogoEnMemoria.Totales totales = catalogo.totales();
+        assertEquals(3, totales.productos());
+        assertEquals(3, totales.unidades());
+        assertEquals(new CatalogoEnMemoria.TotalEstado(1, 2), totales.porEstado().get("Disponible"));
+        assertEquals(new CatalogoEnMemoria.TotalEstado(2, 1), totales.porEstado().get("Roto"));
+    }
+
+    @Test
+    void unaBajaSaleDeLosIndicesYDeLosTotales() {
+        catalogo.eliminar(1L);
+        catalogo.eliminar(99L); // No existe: no se publica nada
+
+        assertNull(catalogo.obtener(1L));
+        assertNull(catalogo.obtenerPorReferencia("PRO-1"));
+        assertEquals(List.of(2L), ids(catalogo.porEstado("Disponible")));
+        assertEquals(List.of(3L), ids(catalogo.porCantidad(0, 2)));
+        assertEquals(new CatalogoEnMemoria.TotalEstado(1, 5), catalogo.totales().porEstado().get("Disponible"));
+        assertEquals(CatalogoEnMemoria.TipoCambio.ELIMINADO, cambios.get(cambios.size() - 1).tipo());
+        assertEquals(4, cambios.size());
+    }
+
+    @Test
+    void losCambiosSePublicanConSecuenciaCorrelativa() {
+        catalogo.guardar(new ProductoResumen(1L, "PRO-1", "Proyector", 3, "Disponible"));
+        // Un alta con un ID menor que el último no queda al final del listado: la vista se resincroniza
+        catalogo.guardar(new ProductoResumen(0L, "CAB-1", "Cable", 4, "Disponible"));
+
+        assertEquals(List.of(CatalogoEnMemoria.TipoCambio.INSERTADO, CatalogoEnMemoria.TipoCambio.INSERTADO,
+                        CatalogoEnMemoria.TipoCambio.INSERTADO, CatalogoEnMemoria.TipoCambio.ACTUALIZADO,
+                        CatalogoEnMemoria.TipoCambio.RESINCRONIZAR),
+                cambios.stream().map(CatalogoEnMemoria.Cambio::tipo).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), cambios.stream().map(CatalogoEnMemoria.Cambio::secuencia).toList());
+        assertEquals(5, catalogo.contarConSecuencia().secuencia());
+    }
+
+    @Test
+    void laPaginacionPorClaveNoPasaDelFinal() {
+        assertEquals(List.of(2L, 3L), ids(catalogo.pagina(1L, 10)));
+        assertEquals(List.of(), ids(catalogo.pagina(3L, 10)));
+        assertEquals(3L, catalogo.idTrasSaltar(0L, 3));
+        assertNull(catalogo.idTrasSaltar(0L, 4));
+        assertNull(catalogo.idTrasSaltar(3L, 1));
+    }
+
+    private static List<Long> ids(List<ProductoResumen> productos) {
+        return productos.stream().map(ProductoResumen::getId).toList();
+    }
+}
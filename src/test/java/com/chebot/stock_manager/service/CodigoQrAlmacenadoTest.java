@@ -0,0 +1,91 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.service.CodigoQrAlmacenado.Formato;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Formatos guardados en 'codigo_qr': la matriz empaquetada en bits tiene que volver exactamente
+ * a los mismos módulos (un bit corrido arruinaría todos los QR guardados).
+ */
+class CodigoQrAlmacenadoTest {
+
+    // Contenidos de distinto largo: lados de 21, 25, 29... módulos (ninguno múltiplo de 8)
+    private static final List<String> CONTENIDOS = List.of(
+            "A",
+            "Referencia: PRO-1\nDescripción: Proyector\nCantidad: 2\nEstado: Disponible",
+            "Referencia: CAB-9\nDescripción: " + "Cable HDMI de tres metros con ñandú ".repeat(12) + "\nEstado: Roto");
+
+    @Test
+    void laMatrizEmpaquetadaVuelveALosMismosModulos() throws Exception {
+        for (String contenido : CONTENIDOS) {
+            BitMatrix modulos = QrCodeGenerator.generarModulos(contenido);
+            byte[] empaquetada = CodigoQrAlmacenado.empaquetar(modulos);
+
+            int lado = modulos.getWidth();
+            assertEquals(4 + 1 + (lado * lado + 7) / 8, empaquetada.length);
+            assertEquals(Formato.MATRIZ, CodigoQrAlmacenado.formato(empaquetada));
+            assertEquals(modulos, CodigoQrAlmacenado.desempaquetar(empaquetada));
+        }
+    }
+
+    @Test
+    void laImagenDibujadaDesdeLaMatrizEsLaDelPng() throws Exception {
+        for (String contenido : CONTENIDOS) {
+            byte[] png = QrCodeGenerator.generateQrCodeImage(contenido);
+            byte[] desdeMatriz = QrCodeGenerator.renderizarPng(
+                    CodigoQrAlmacenado.desempaquetar(CodigoQrAlmacenado.empaquetar(QrCodeGenerator.generarModulos(contenido))),
+                    QrCodeGenerator.LADO);
+            assertArrayEquals(png, desdeMatriz);
+
+            // Y los pixeles son los del QR que dibuja zxing (el formato PNG original)
+            BitMatrix referencia = new QRCodeWriter().encode(contenido, BarcodeFormat.QR_CODE,
+                    QrCodeGenerator.LADO, QrCodeGenerator.LADO);
+            BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(desdeMatriz));
+            assertEquals(referencia.getWidth(), imagen.getWidth());
+            for (int y = 0; y < imagen.getHeight(); y++) {
+                for (int x = 0; x < imagen.getWidth(); x++) {
+                    boolean negro = (imagen.getRGB(x, y) & 0xFFFFFF) == 0;
+                    assertEquals(referencia.get(x, y), negro, "Pixel " + x + "," + y + " de '" + contenido + "'");
+                }
+            }
+        }
+    }
+
+    @Test
+    void reconoceCadaFormatoPorSusPrimerosBytes() throws Exception {
+        String contenido = CONTENIDOS.get(1);
+        assertEquals(Formato.PNG, CodigoQrAlmacenado.formato(QrCodeGenerator.generateQrCodeImage(contenido)));
+        assertEquals(Formato.HASH, CodigoQrAlmacenado.formato(CodigoQrAlmacenado.hash(contenido)));
+        assertNull(CodigoQrAlmacenado.formato(null));
+        assertNull(CodigoQrAlmacenado.formato(new byte[]{'Q', 'R'}));
+        assertNull(CodigoQrAlmacenado.formato("otra cosa".getBytes()));
+        assertThrows(IllegalArgumentException.class,
+                () -> CodigoQrAlmacenado.desempaquetar(CodigoQrAlmacenado.hash(contenido)));
+    }
+
+    @Test
+    void elHashCoincideSoloConSuContenido() throws Exception {
+        byte[] hash = CodigoQrAlmacenado.hash(CONTENIDOS.get(1));
+
+        assertTrue(CodigoQrAlmacenado.coincideHash(hash, CONTENIDOS.get(1)));
+        assertFalse(CodigoQrAlmacenado.coincideHash(hash, CONTENIDOS.get(1).replace("Cantidad: 2", "Cantidad: 3")));
+        // Una matriz no es un hash, aunque sea del mismo contenido
+        assertFalse(CodigoQrAlmacenado.coincideHash(
+                CodigoQrAlmacenado.empaquetar(QrCodeGenerator.generarModulos(CONTENIDOS.get(1))), CONTENIDOS.get(1)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.service.CodigoQrAlmacenado.Formato;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cambio de 'stock.qr.almacenamiento' entre arranques: las filas se convierten al modo nuevo
+ * y el QR que se muestra sigue siendo el mismo.
+ */
+class CodigoQrServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void alCambiarElModoLasFilasSeConviertenYElQrNoCambia() {
+        // 1. Guardados como PNG
+        arrancar("PNG");
+        ProductoService productoService = contexto.getBean(ProductoService.class);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            ids.add(productoService.guardarProducto(new Producto("MIG-" + i, "Producto " + i, i, "Disponible", null))
+                    .join().getId());
+        }
+        assertEquals(List.of(Formato.PNG), formatos());
+        List<byte[]> originales = pngs(ids);
+        long bytesPng = bytesEnColumna();
+
+        // 2. A MATRIZ: se convierten todas y el dibujo desde la matriz es el mismo PNG
+        // migrar() espera a la conversión que se lanzó al arrancar (o la hace)
+        contexto.close();
+        arrancar("MATRIZ");
+        contexto.getBean(CodigoQrService.class).migrar();
+        assertEquals(List.of(Formato.MATRIZ), formatos());
+        assertTrue(bytesEnColumna() < bytesPng, "La matriz ocupa menos que el PNG");
+        assertPngs(originales, pngs(ids));
+
+        // 3. A HASH: no se guarda la imagen; se dibuja del contenido
+        contexto.close();
+        arrancar("HASH");
+        contexto.getBean(CodigoQrService.class).migrar();
+        assertEquals(List.of(Formato.HASH), formatos());
+        assertPngs(originales, pngs(ids));
+        assertEquals("HASH", contexto.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT modo FROM qr_almacenamiento WHERE id = 1", String.class));
+    }
+
+    @Test
+    void unaEdicionDescartaLasImagenesYaDibujadas() throws Exception {
+        arrancar("MATRIZ");
+        ProductoService productoService = contexto.getBean(ProductoService.class);
+        CodigoQrService codigoQrService = contexto.getBean(CodigoQrService.class);
+        Producto producto = productoService.guardarProducto(new Producto("CAC-1", "Antes", 1, "Disponible", null)).join();
+        byte[] antes = codigoQrService.obtenerPng(producto.getId(), 500);
+        assertArrayEquals(antes, codigoQrService.obtenerPng(producto.getId(), 500));
+
+        Producto edicion = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        edicion.setDescripcion("Después");
+        productoService.guardarProducto(edicion).join();
+
+        // El aviso del catálogo llega antes de que se complete el guardado
+        assertArrayEquals(QrCodeGenerator.renderizarPng(QrCodeGenerator.generarModulos(ContenidoQr.generar(edicion)), 500),
+                codigoQrService.obtenerPng(producto.getId(), 500));
+    }
+
+    private void arrancar(String modo) {
+        contexto = AplicacionDePrueba.iniciar(carpeta, "--stock.qr.almacenamiento=" + modo);
+    }
+
+    // Formatos distintos presentes en la tabla (al arrancar con otro modo, la conversión puede haber empezado ya)
+    private List<Formato> formatos() {
+        return contexto.getBean(JdbcTemplate.class)
+                .query("SELECT codigo_qr FROM productos", (rs, rowNum) -> CodigoQrAlmacenado.formato(rs.getBytes(1)))
+                .stream().distinct().toList();
+    }
+
+    private long bytesEnColumna() {
+        return contexto.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT sum(length(codigo_qr)) FROM productos", Long.class);
+    }
+
+    private List<byte[]> pngs(List<Long> ids) {
+        CodigoQrService codigoQrService = contexto.getBean(CodigoQrService.class);
+        return ids.stream().map(id -> codigoQrService.obtenerPng(id, QrCodeGenerator.LADO)).toList();
+    }
+
+    private static void assertPngs(List<byte[]> esperados, List<byte[]> obtenidos) {
+        assertEquals(esperados.size(), obtenidos.size());
+        for (int i = 0; i < esperados.size(); i++) {
+            assertArrayEquals(esperados.get(i), obtenidos.get(i));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.chebot.stock_manager.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvTest {
+
+    @Test
+    void soloSeEntrecomillaLoQueHaceFalta() {
+        assertEquals("", Csv.campo(null));
+        assertEquals("", Csv.campo(""));
+        assertEquals("Proyector, 3 m", Csv.campo("Proyector, 3 m"));
+        assertEquals("\"A;B\"", Csv.campo("A;B"));
+        assertEquals("\"Cable \"\"HDMI\"\"\"", Csv.campo("Cable \"HDMI\""));
+        assertEquals("\"Línea 1\nLínea 2\"", Csv.campo("Línea 1\nLínea 2"));
+        // Un \r suelto también: si no, partiría el registro al abrirlo en otro programa
+        assertEquals("\"A\rB\"", Csv.campo("A\rB"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Lotes del escritor serializado: si una operación falla, el lote se deshace y las demás se repiten
+ * de a una; las que no fallaron tienen que confirmarse igual.
+ */
+class EscritorSerializadoTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private EscritorSerializado escritor;
+    private ProductoService productoService;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void iniciar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+        escritor = contexto.getBean(EscritorSerializado.class);
+        productoService = contexto.getBean(ProductoService.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void unAltaEnUnLoteQueFallaSeConfirmaAlRepetirla() {
+        Producto nuevo = new Producto("LOT-1", "Alta en lote", 5, "Disponible", null);
+
+        CompletableFuture<Producto> alta = enUnMismoLote(
+                () -> productoService.guardarProducto(nuevo),
+                () -> escritor.enviar(() -> {
+                    throw new IllegalStateException("Falla a propósito");
+                }));
+
+        Producto guardado = alta.join();
+        assertNotNull(guardado.getId());
+        assertEquals(guardado.getId(), nuevo.getId());
+        assertEquals(0L, nuevo.getVersion());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM productos WHERE referencia = 'LOT-1'", Integer.class));
+        assertEquals(guardado.getId(), productoService.obtenerPorReferencia("LOT-1").getId());
+    }
+
+    @Test
+    void unaEdicionEnUnLoteQueFallaNoDaConflictoDeVersion() {
+        Producto producto = productoService.guardarProducto(new Producto("LOT-3", "Antes", 5, "Disponible", null)).join();
+        Producto edicion = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        edicion.setDescripcion("Después");
+
+        CompletableFuture<Producto> guardado = enUnMismoLote(
+                () -> productoService.guardarProducto(edicion),
+                () -> escritor.enviar(() -> {
+                    throw new IllegalStateException("Falla a propósito");
+                }));
+
+        assertEquals(1L, guardado.join().getVersion());
+        assertEquals(1L, edicion.getVersion());
+        assertEquals("Después", jdbcTemplate.queryForObject(
+                "SELECT descripcion FROM productos WHERE id = ?", String.class, producto.getId()));
+    }
+
+    @Test
+    void laOperacionQueFallaRecibeSuPropioError() {
+        CompletableFuture<Object> falla = enUnMismoLote(
+                () -> escritor.enviar(() -> {
+                    throw new IllegalStateException("Falla a propósito");
+                }),
+                () -> productoService.guardarProducto(new Producto("LOT-2", "Otra alta", 1, "Disponible", null)));
+
+        CompletionException error = assertThrows(CompletionException.class, falla::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+
+    @Test
+    void unErrorEnUnaOperacionNoDetieneAlEscritor() {
+        CompletableFuture<Object> sola = escritor.enviar(() -> {
+            throw new AssertionError("Falla a propósito");
+        });
+        CompletionException error = assertThrows(CompletionException.class, sola::join);
+        assertInstanceOf(AssertionError.class, error.getCause());
+
+        // En un lote: las demás se confirman al repetirlas de a una
+        CompletableFuture<Producto> alta = enUnMismoLote(
+                () -> productoService.guardarProducto(new Producto("ERR-1", "Después del error", 1, "Disponible", null)),
+                () -> escritor.enviar(() -> {
+                    throw new StackOverflowError("Falla a propósito");
+                }));
+        assertNotNull(alta.join().getId());
+
+        // Si falla lo posterior al commit, el cambio ya está guardado y quien llamó recibe su resultado
+        assertEquals("hecho", escritor.enviar(() -> "hecho", valor -> {
+            throw new AssertionError("Falla a propósito");
+        }).join());
+        // Y el hilo escritor sigue atendiendo
+        assertEquals(1, escritor.enviar(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos WHERE referencia = 'ERR-1'", Integer.class)).join());
+    }
+
+    @Test
+    void loPosteriorAlCommitCorreEnElHiloEscritorAntesDeCompletar() {
+        List<String> orden = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> resultado = escritor.enviar(() -> "hecho",
+                valor -> orden.add("confirmado " + valor + " en " + Thread.currentThread().getName()));
+        resultado.thenRun(() -> orden.add("completado"));
+
+        assertEquals("hecho", resultado.join());
+        assertEquals(List.of("confirmado hecho en escritor-sqlite", "completado"), orden);
+    }
+
+    @Test
+    void elCatalogoRecibeLasEdicionesEnElOrdenDeLosCommits() {
+        Producto producto = productoService.guardarProducto(new Producto("ORD-1", "v0", 1, "Disponible", null)).join();
+        List<CompletableFuture<Producto>> movimientos = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            movimientos.add(productoService.registrarMovimiento(producto.getId(), 1, "Compra"));
+        }
+        movimientos.forEach(CompletableFuture::join);
+
+        assertEquals(51, productoService.obtenerPorReferencia("ORD-1").getCantidad());
+    }
+
+    /**
+     * Retiene al escritor con una operación que espera, encola las dos dadas (quedan en el mismo lote)
+     * y lo libera.
+     * @return El Future de la primera.
+     */
+    private <T> CompletableFuture<T> enUnMismoLote(Supplier<CompletableFuture<T>> primera,
+                                                   Supplier<? extends CompletableFuture<?>> segunda) {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        escritor.enviar(() -> {
+            ocupado.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        try {
+            ocupado.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        CompletableFuture<T> resultado = primera.get();
+        segunda.get();
+        liberar.countDown();
+        return resultado;
+    }
+}
@@ -0,0 +1,87 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El CSV exportado se puede volver a importar (en otra instalación) y quedan los mismos productos.
+ */
+class ExportacionInventarioServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext origen;
+    private ConfigurableApplicationContext destino;
+
+    @BeforeEach
+    void iniciar() {
+        origen = AplicacionDePrueba.iniciarInstalacion(carpeta, "origen");
+        destino = AplicacionDePrueba.iniciarInstalacion(carpeta, "destino");
+    }
+
+    @AfterEach
+    void cerrar() {
+        origen.close();
+        destino.close();
+    }
+
+    @Test
+    void elCsvExportadoSeVuelveAImportarIgual() throws Exception {
+        ProductoService productoService = origen.getBean(ProductoService.class);
+        productoService.guardarProducto(new Producto("EXP-1", "Simple", 3, "Disponible", null)).join();
+        productoService.guardarProducto(new Producto("EXP;2", "Cable \"HDMI\"; 3 m", 0, "Roto", "Sin ficha")).join();
+        productoService.guardarProducto(new Producto("EXP-3", "Proyector", 7, "Desaparecido", "Línea 1\nLínea 2")).join();
+        productoService.guardarProducto(new Producto("EXP-4", "Pizarra", 1, "Disponible", "Desde Windows\r\nsegunda")).join();
+
+        Path archivo = carpeta.resolve("inventario.csv");
+        ExportacionInventarioService.ResultadoExportacion exportacion = origen.getBean(ExportacionInventarioService.class)
+                .exportar("Referencia", "", ExportacionInventarioService.Formato.CSV, false, archivo, filas -> { });
+        assertEquals(4, exportacion.exportados());
+
+        // BOM (para Excel), separador ';', comillas donde hacen falta y cada registro terminado en \r\n
+        byte[] bytes = Files.readAllBytes(archivo);
+        assertArrayEquals(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, Arrays.copyOf(bytes, 3));
+        String texto = new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        assertTrue(texto.startsWith("referencia;descripcion;cantidad;estado;observaciones\r\nEXP-1;Simple;3;Disponible;\r\n"));
+        assertTrue(texto.contains("\"EXP;2\";\"Cable \"\"HDMI\"\"; 3 m\";0;Roto;Sin ficha\r\n"));
+        assertTrue(texto.contains("\"Desde Windows\r\nsegunda\"\r\n"));
+
+        ImportacionService.ResultadoImportacion importacion = destino.getBean(ImportacionService.class)
+                .importarCsv(archivo, progreso -> { });
+        assertEquals(4, importacion.insertados());
+        assertEquals(0, importacion.totalErrores());
+
+        // Los saltos de línea dentro de un campo vuelven como \n
+        assertEquals(List.of(
+                        "EXP-1|Simple|3|Disponible|null",
+                        "EXP;2|Cable \"HDMI\"; 3 m|0|Roto|Sin ficha",
+                        "EXP-3|Proyector|7|Desaparecido|Línea 1\nLínea 2",
+                        "EXP-4|Pizarra|1|Disponible|Desde Windows\nsegunda"),
+                productos(destino));
+        assertEquals(productos(origen).subList(0, 3), productos(destino).subList(0, 3));
+    }
+
+    private static List<String> productos(ConfigurableApplicationContext contexto) {
+        return contexto.getBean(JdbcTemplate.class).query(
+                "SELECT referencia, descripcion, cantidad, estado, observaciones FROM productos ORDER BY id",
+                (rs, rowNum) -> rs.getString(1) + "|" + rs.getString(2) + "|" + rs.getInt(3) + "|" + rs.getString(4)
+                        + "|" + rs.getString(5));
+    }
+}
@@ -0,0 +1,59 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Nombres de las entradas del ZIP de QR: referencias distintas que dan el mismo nombre de archivo.
+ */
+class ExportacionQrServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+
+    @BeforeEach
+    void iniciar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void lasReferenciasQueDanElMismoNombreLlevanElId() throws Exception {
+        ProductoService productoService = contexto.getBean(ProductoService.class);
+        List<Long> ids = new ArrayList<>();
+        for (String referencia : List.of("A/B", "A_B", "a_b")) {
+            ids.add(productoService.guardarProducto(new Producto(referencia, "Mismo nombre", 1, "Disponible", null))
+                    .join().getId());
+        }
+        Path zip = carpeta.resolve("qr.zip");
+
+        ExportacionQrService.ResultadoExportacion resultado = contexto.getBean(ExportacionQrService.class)
+                .exportarZip(ids, zip, exportados -> {
+                });
+
+        assertEquals(3, resultado.exportados());
+        try (ZipFile archivo = new ZipFile(zip.toFile())) {
+            assertEquals(List.of("QR_A_B.png", "QR_A_B_" + ids.get(1) + ".png", "QR_a_b_" + ids.get(2) + ".png"),
+                    archivo.stream().map(ZipEntry::getName).toList());
+        }
+    }
+}
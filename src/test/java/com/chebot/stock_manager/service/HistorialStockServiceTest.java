@@ -0,0 +1,106 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.MovimientoStock;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Libro de movimientos: cada cambio de cantidad queda anotado, las ediciones con una versión vieja
+ * se rechazan y la compactación resume lo viejo en una instantánea por producto.
+ */
+class HistorialStockServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoService productoService;
+    private HistorialStockService historialStockService;
+
+    @BeforeEach
+    void iniciar() {
+        // Retención 0: se compacta todo lo anterior
+        contexto = AplicacionDePrueba.iniciar(carpeta, "--stock.movimientos.retencion-dias=0");
+        productoService = contexto.getBean(ProductoService.class);
+        historialStockService = contexto.getBean(HistorialStockService.class);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void cadaCambioDeCantidadQuedaEnElLibro() {
+        Producto producto = productoService.guardarProducto(new Producto("LIB-1", "Proyector", 5, "Disponible", null)).join();
+        productoService.registrarMovimiento(producto.getId(), -2, "Préstamo").join();
+        Producto edicion = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        edicion.setCantidad(10);
+        productoService.guardarProducto(edicion).join();
+
+        // Sin stock suficiente no se mueve nada ni se anota
+        CompletionException sinStock = assertThrows(CompletionException.class,
+                () -> productoService.registrarMovimiento(producto.getId(), -11, "Préstamo").join());
+        assertInstanceOf(IllegalArgumentException.class, sinStock.getCause());
+
+        List<MovimientoStock> movimientos = historialStockService.obtenerHistorial(producto.getId(), 10).movimientos();
+        assertEquals(List.of(ProductoService.MOTIVO_EDICION, "Préstamo", ProductoService.MOTIVO_ALTA),
+                movimientos.stream().map(MovimientoStock::motivo).toList());
+        assertEquals(List.of(7, -2, 5), movimientos.stream().map(MovimientoStock::delta).toList());
+        assertEquals(List.of(10, 3, 5), movimientos.stream().map(MovimientoStock::cantidadResultante).toList());
+    }
+
+    @Test
+    void unaEdicionConUnaVersionViejaSeRechaza() {
+        Producto producto = productoService.guardarProducto(new Producto("LIB-2", "Pizarra", 5, "Disponible", null)).join();
+        Producto terminalA = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        Producto terminalB = productoService.obtenerProducto(producto.getId()).orElseThrow();
+        terminalA.setCantidad(6);
+        productoService.guardarProducto(terminalA).join();
+
+        terminalB.setCantidad(1);
+        CompletionException conflicto = assertThrows(CompletionException.class,
+                () -> productoService.guardarProducto(terminalB).join());
+        assertInstanceOf(OptimisticLockingFailureException.class, conflicto.getCause());
+        assertEquals(6, productoService.obtenerProducto(producto.getId()).orElseThrow().getCantidad());
+        assertEquals(2, historialStockService.obtenerHistorial(producto.getId(), 10).movimientos().size());
+    }
+
+    @Test
+    void laCompactacionDejaUnaInstantaneaConLaCantidadFinal() throws Exception {
+        Producto producto = productoService.guardarProducto(new Producto("LIB-3", "Parlante", 4, "Disponible", null)).join();
+        productoService.registrarMovimiento(producto.getId(), 3, "Compra").join();
+        productoService.registrarMovimiento(producto.getId(), -1, "Préstamo").join();
+        long ultimoMovimiento = historialStockService.obtenerHistorial(producto.getId(), 1).movimientos().get(0).id();
+        assertNull(historialStockService.obtenerHistorial(producto.getId(), 10).snapshot());
+        Thread.sleep(5); // Los movimientos tienen que quedar antes del corte
+
+        assertEquals(3, historialStockService.compactar().join());
+
+        HistorialStockService.HistorialStock historial = historialStockService.obtenerHistorial(producto.getId(), 10);
+        assertEquals(List.of(), historial.movimientos());
+        assertEquals(6, historial.snapshot().cantidad());
+        assertEquals(ultimoMovimiento, historial.snapshot().ultimoMovimientoId());
+
+        // Lo que se mueva después sigue en el libro, encima de la instantánea
+        productoService.registrarMovimiento(producto.getId(), -6, "Baja de stock").join();
+        historial = historialStockService.obtenerHistorial(producto.getId(), 10);
+        assertEquals(6, historial.snapshot().cantidad());
+        assertEquals(List.of(0), historial.movimientos().stream().map(MovimientoStock::cantidadResultante).toList());
+    }
+}
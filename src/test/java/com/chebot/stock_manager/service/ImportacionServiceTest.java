@@ -0,0 +1,100 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Importación por lotes del escritor: cada lote se confirma por separado y sus altas llegan
+ * al catálogo en memoria y a las alertas de stock.
+ */
+class ImportacionServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private ImportacionService importacionService;
+    private ProductoService productoService;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void iniciar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+        importacionService = contexto.getBean(ImportacionService.class);
+        productoService = contexto.getBean(ProductoService.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void importaVariosLotesYLosPasaAlCatalogoYALasAlertas() throws Exception {
+        productoService.guardarProducto(new Producto("IMP-0010", "Ya cargado", 1, "Disponible", null)).join();
+        int productosAntes = productoService.contarProductosConSecuencia().total();
+        BlockingQueue<AlertasStockService.Alerta> alertas = new ArrayBlockingQueue<>(10);
+        productoService.agregarOyenteAlertas(alertas::add);
+        List<CatalogoEnMemoria.TipoCambio> cambios = new CopyOnWriteArrayList<>();
+        productoService.agregarOyenteCambios(cambio -> cambios.add(cambio.tipo()));
+
+        // Más de dos lotes; una referencia que ya existe y una fila con un estado que avisa
+        List<String> lineas = new ArrayList<>(List.of("referencia;descripcion;cantidad;estado"));
+        for (int i = 1; i <= 2500; i++) {
+            lineas.add(String.format("IMP-%04d;Producto %d;%d;%s", i, i, i % 7, i == 2222 ? "Roto" : "Disponible"));
+        }
+        Path archivo = carpeta.resolve("productos.csv");
+        Files.write(archivo, lineas);
+        List<ImportacionService.ProgresoImportacion> progresos = new ArrayList<>();
+
+        ImportacionService.ResultadoImportacion resultado = importacionService.importarCsv(archivo, progresos::add);
+
+        assertEquals(2499, resultado.insertados());
+        assertEquals(1, resultado.totalErrores());
+        assertEquals(11, resultado.errores().get(0).linea());
+        assertEquals(3, progresos.size());
+        assertEquals(productosAntes + 2499, jdbcTemplate.queryForObject("SELECT count(*) FROM productos", Integer.class));
+        // El catálogo ya tiene las altas al terminar: se actualiza en el hilo escritor tras cada commit
+        assertEquals(productosAntes + 2499, productoService.contarProductosConSecuencia().total());
+        assertEquals("Producto 2500", productoService.obtenerPorReferencia("IMP-2500").getDescripcion());
+        // Un aviso por lote, no uno por fila: la vista no recibe miles de cambios
+        assertEquals(Collections.nCopies(3, CatalogoEnMemoria.TipoCambio.RESINCRONIZAR), cambios);
+
+        AlertasStockService.Alerta alerta = alertas.poll(10, TimeUnit.SECONDS);
+        assertNotNull(alerta);
+        assertEquals(AlertasStockService.TipoAlerta.ESTADO, alerta.tipo());
+        assertEquals("IMP-2222", alerta.referencia());
+    }
+
+    @Test
+    void unLoteChicoPublicaUnCambioPorAlta() throws Exception {
+        List<CatalogoEnMemoria.Cambio> cambios = new CopyOnWriteArrayList<>();
+        productoService.agregarOyenteCambios(cambios::add);
+        Path archivo = carpeta.resolve("pocos.csv");
+        Files.write(archivo, List.of("referencia;descripcion;cantidad", "CHI-1;Uno;1", "CHI-2;Dos;2"));
+
+        assertEquals(2, importacionService.importarCsv(archivo, progreso -> { }).insertados());
+        assertEquals(List.of("CHI-1", "CHI-2"), cambios.stream().map(cambio -> cambio.producto().getReferencia()).toList());
+        cambios.forEach(cambio -> assertEquals(CatalogoEnMemoria.TipoCambio.INSERTADO, cambio.tipo()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.FiltroProductos;
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.model.ProductoResumen;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Búsquedas y filtros de ProductoService sobre una DB temporal.
+ */
+class ProductoServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoService productoService;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void iniciar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+        productoService = contexto.getBean(ProductoService.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    // --- Búsqueda de texto ---
+
+    @Test
+    void unTextoDeMenosDeTresCaracteresBuscaSinElIndiceDeTrigramas() {
+        guardar("TAB-1", "Tablet");
+        guardar("ab-2", "Cable");
+        guardar("A_3", "Adaptador");
+        guardar("XY-4", "Mouse");
+        // El tokenizador trigram no encuentra nada con dos letras: por el índice, el resultado quedaría vacío
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos_fts WHERE productos_fts MATCH 'referencia : \"ab\"'", Integer.class));
+
+        assertEquals(List.of("TAB-1", "ab-2"), referencias(productoService.filtrarProductos("referencia", "Ab")));
+        assertEquals(List.of("Tablet", "Cable"), descripciones(productoService.filtrarProductos("Descripción", "bl")));
+        // Lo mismo en el filtro combinado, que lo resuelve la DB con LIKE: '_' es literal, no un comodín
+        assertEquals(List.of("TAB-1", "ab-2"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("ab", null, null, null, null, null, false, 50))));
+        assertEquals(List.of("A_3"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("_", null, null, null, null, null, false, 50))));
+    }
+
+    @Test
+    void unTextoLargoUsaElIndicePrimeroLaCoincidenciaExactaYLuegoElPrefijo() {
+        guardar("ATOR", "Con tor en el medio");
+        guardar("TORNILLO", "Empieza con tor");
+        guardar("TOR", "Exacta");
+
+        assertEquals(List.of("TOR", "TORNILLO", "ATOR"), referencias(productoService.filtrarProductos("referencia", "tor")));
+    }
+
+    // --- Filtro combinado ---
+
+    @Test
+    void elFiltroCombinadoCumpleTodasLasCondicionesALaVez() {
+        guardar("CAB-1", "Cable HDMI", 2, "Disponible");
+        guardar("CAB-2", "Cable VGA", 8, "Prestado");
+        guardar("CAB-3", "Cable de red", 5, "Roto");
+        guardar("CAB-4", "Cable USB", 20, "Disponible");
+        guardar("PRO-1", "Proyector", 3, "Disponible");
+
+        assertEquals(List.of("CAB-1", "CAB-2"), referencias(productoService.filtrarProductos(
+                new FiltroProductos(null, "cable", Set.of("Disponible", "Prestado"), null, 10, null, false, 50))));
+        assertEquals(List.of("CAB-2", "CAB-3"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("cab", null, null, 5, 10, null, false, 50))));
+        // Solo con el máximo también entran los productos sin stock
+        guardar("CAB-5", "Cable agotado", 0, "Disponible");
+        assertEquals(List.of("CAB-1", "PRO-1", "CAB-5"), referencias(productoService.filtrarProductos(
+                new FiltroProductos(null, null, Set.of("Disponible"), null, 3, null, false, 50))));
+    }
+
+    @Test
+    void elFiltroCombinadoOrdenaDesempataPorIdYRespetaElLimite() {
+        guardar("ORD-1", "B", 5, "Disponible");
+        guardar("ORD-2", "A", 5, "Disponible");
+        guardar("ORD-3", "C", 1, "Disponible");
+        guardar("ORD-4", "A", 9, "Disponible");
+
+        assertEquals(List.of("ORD-4", "ORD-1", "ORD-2", "ORD-3"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("ord", null, null, null, null, FiltroProductos.Orden.CANTIDAD, true, 50))));
+        assertEquals(List.of("ORD-2", "ORD-4"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("ord", null, null, null, null, FiltroProductos.Orden.DESCRIPCION, false, 2))));
+        assertEquals(List.of("ORD-4", "ORD-3"), referencias(productoService.filtrarProductos(
+                new FiltroProductos("ord", null, null, null, null, null, true, 2))));
+    }
+
+    @Test
+    void unFiltroInvalidoSeRechazaAlCrearlo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new FiltroProductos(null, null, null, 10, 5, null, false, 50));
+        assertThrows(IllegalArgumentException.class,
+                () -> new FiltroProductos(null, null, null, null, null, null, false, 0));
+        // Los textos en blanco no son condiciones
+        assertTrue(new FiltroProductos("  ", "", null, null, null, null, false, 50).sinCondiciones());
+    }
+
+    private void guardar(String referencia, String descripcion) {
+        guardar(referencia, descripcion, 1, "Disponible");
+    }
+
+    private void guardar(String referencia, String descripcion, int cantidad, String estado) {
+        productoService.guardarProducto(new Producto(referencia, descripcion, cantidad, estado, null)).join();
+    }
+
+    private static List<String> referencias(List<ProductoResumen> productos) {
+        return productos.stream().map(ProductoResumen::getReferencia).toList();
+    }
+
+    private static List<String> descripciones(List<ProductoResumen> productos) {
+        return productos.stream().map(ProductoResumen::getDescripcion).toList();
+    }
+}
@@ -0,0 +1,159 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Regeneración de QR: retoma desde 'qr_regeneracion.ultimo_id' y no pisa el QR de un producto
+ * que se editó mientras se dibujaba su lote.
+ */
+class RegeneracionQrServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void alArrancarRetomaDesdeElUltimoIdGuardado() {
+        arrancar();
+        List<Long> ids = insertarSinQr(1200);
+        long ultimoId = ids.get(699);
+        // Lo que deja una regeneración que se cortó después de guardar los primeros 700
+        enviar("INSERT OR REPLACE INTO qr_regeneracion (id, solo_faltantes, ultimo_id, procesados, terminado) "
+                + "VALUES (1, 0, ?, 700, 0)", ultimoId);
+
+        contexto.close();
+        arrancar();
+        esperarTerminada();
+
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        // Los anteriores al corte no se vuelven a tocar; los siguientes tienen su QR
+        assertEquals(700, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos WHERE codigo_qr IS NULL AND id <= ?", Integer.class, ultimoId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos WHERE codigo_qr IS NULL AND id > ?", Integer.class, ultimoId));
+        assertEquals(List.of(ids.get(ids.size() - 1), 1200L), jdbcTemplate.queryForObject(
+                "SELECT ultimo_id, procesados FROM qr_regeneracion WHERE id = 1",
+                (rs, rowNum) -> List.of(rs.getLong(1), rs.getLong(2))));
+    }
+
+    @Test
+    void noPisaElQrDeUnProductoEditadoDuranteElLote() throws Exception {
+        arrancar();
+        List<Long> ids = insertarSinQr(10);
+        long editado = ids.get(4);
+        enviar("INSERT OR REPLACE INTO qr_regeneracion (id, solo_faltantes, ultimo_id, procesados, terminado) "
+                + "VALUES (1, 0, 0, 0, 0)");
+
+        // La edición queda en el escritor, retenida hasta que la regeneración leyó y dibujó el lote
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        CodigoQrService codigoQrService = contexto.getBean(CodigoQrService.class);
+        byte[] qrDeLaEdicion = codigoQrService.codificar(ContenidoQr.generar("REG-5", "Editado", 5, "Disponible"));
+        CountDownLatch loteEnCola = new CountDownLatch(1);
+        CompletableFuture<Integer> edicion = contexto.getBean(EscritorSerializado.class).enviar(() -> {
+            try {
+                loteEnCola.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return jdbcTemplate.update("UPDATE productos SET descripcion = 'Editado', codigo_qr = ?, version = version + 1 "
+                    + "WHERE id = ?", qrDeLaEdicion, editado);
+        });
+
+        contexto.getBean(RegeneracionQrService.class).reanudarPendiente();
+        esperarAlEscritorDesdeLaRegeneracion();
+        loteEnCola.countDown();
+        assertEquals(1, edicion.join());
+        esperarTerminada();
+
+        // El UPDATE del lote es de la versión anterior: ese producto conserva el QR de su edición
+        assertArrayEquals(qrDeLaEdicion, jdbcTemplate.queryForObject(
+                "SELECT codigo_qr FROM productos WHERE id = ?", byte[].class, editado));
+        for (long id : ids) {
+            assertNotNull(jdbcTemplate.queryForObject("SELECT codigo_qr FROM productos WHERE id = ?", byte[].class, id));
+        }
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT version FROM productos WHERE id = ?", Integer.class, editado));
+    }
+
+    private void arrancar() {
+        contexto = AplicacionDePrueba.iniciar(carpeta);
+    }
+
+    private List<Long> insertarSinQr(int cantidad) {
+        List<Object[]> filas = new ArrayList<>(cantidad);
+        for (int i = 1; i <= cantidad; i++) {
+            filas.add(new Object[]{"REG-" + i, "Producto " + i, i});
+        }
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        contexto.getBean(EscritorSerializado.class).enviar(() -> jdbcTemplate.batchUpdate(
+                "INSERT INTO productos (referencia, descripcion, cantidad, estado) VALUES (?, ?, ?, 'Disponible')",
+                filas)).join();
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM productos ORDER BY id", Long.class);
+        assertEquals(cantidad, ids.size());
+        assertNull(jdbcTemplate.queryForObject("SELECT max(codigo_qr) FROM productos", byte[].class));
+        return ids;
+    }
+
+    private void enviar(String sql, Object... parametros) {
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        contexto.getBean(EscritorSerializado.class).enviar(() -> jdbcTemplate.update(sql, parametros)).join();
+    }
+
+    private void esperarTerminada() {
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (jdbcTemplate.queryForObject("SELECT terminado FROM qr_regeneracion WHERE id = 1", Integer.class) != 1) {
+            if (System.nanoTime() > limite) {
+                fail("La regeneración no terminó");
+            }
+            pausa();
+        }
+    }
+
+    // El hilo de la regeneración espera al escritor: ya leyó y dibujó el lote, y su UPDATE está en la cola
+    private static void esperarAlEscritorDesdeLaRegeneracion() {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (Thread.getAllStackTraces().entrySet().stream()
+                .filter(hilo -> hilo.getKey().getName().equals("regeneracion-qr"))
+                .noneMatch(hilo -> Arrays.stream(hilo.getValue()).anyMatch(marco ->
+                        marco.getClassName().equals(CompletableFuture.class.getName())
+                                && marco.getMethodName().equals("join")))) {
+            if (System.nanoTime() > limite) {
+                fail("La regeneración no llegó a encolar el lote");
+            }
+            pausa();
+        }
+    }
+
+    private static void pausa() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.chebot.stock_manager.service;
+
+import com.chebot.stock_manager.AplicacionDePrueba;
+import com.chebot.stock_manager.model.Producto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Respaldo completo más incremental, restaurado en otro archivo: tiene que quedar la DB tal como estaba
+ * al hacer el incremental, también las bajas.
+ */
+class RespaldoServiceTest {
+
+    @TempDir
+    Path carpeta;
+
+    private ConfigurableApplicationContext contexto;
+    private RespaldoService respaldoService;
+    private ProductoService productoService;
+
+    @BeforeEach
+    void iniciar() {
+        // Los respaldos manuales del test van a la carpeta temporal
+        contexto = AplicacionDePrueba.iniciar(carpeta, "--stock.respaldo.carpeta=" + carpeta.resolve("respaldos"));
+        respaldoService = contexto.getBean(RespaldoService.class);
+        productoService = contexto.getBean(ProductoService.class);
+    }
+
+    @AfterEach
+    void cerrar() {
+        contexto.close();
+    }
+
+    @Test
+    void elIncrementalRestauraAltasEdicionesYBajas() throws Exception {
+        Producto borrado = productoService.guardarProducto(new Producto("RES-1", "Proyector", 2, "Disponible", null)).join();
+        Producto movido = productoService.guardarProducto(new Producto("RES-2", "Pizarra", 5, "Disponible", null)).join();
+        assertEquals(RespaldoService.Tipo.COMPLETO, respaldoService.respaldarCompleto().tipo());
+
+        // Después del completo: una baja, un movimiento y un alta
+        productoService.eliminarProducto(borrado.getId()).join();
+        productoService.registrarMovimiento(movido.getId(), -3, "Préstamo").join();
+        productoService.guardarProducto(new Producto("RES-3", "Parlante", 1, "Disponible", null)).join();
+        RespaldoService.ResultadoRespaldo incremental = respaldoService.respaldarIncremental();
+        assertNotNull(incremental);
+        assertEquals(RespaldoService.Tipo.INCREMENTAL, incremental.tipo());
+
+        Path restaurada = carpeta.resolve("restaurada.db");
+        assertEquals(2, respaldoService.restaurar(restaurada));
+
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + restaurada, true);
+        try {
+            JdbcTemplate restaurado = new JdbcTemplate(dataSource);
+            assertEquals(List.of("RES-2", "RES-3"),
+                    restaurado.queryForList("SELECT referencia FROM productos ORDER BY id", String.class));
+            assertEquals(2, restaurado.queryForObject(
+                    "SELECT cantidad FROM productos WHERE referencia = 'RES-2'", Integer.class));
+            assertEquals(0, restaurado.queryForObject(
+                    "SELECT count(*) FROM productos_fts WHERE productos_fts MATCH 'Proyector'", Integer.class));
+            assertEquals(1, restaurado.queryForObject(
+                    "SELECT count(*) FROM productos_fts WHERE productos_fts MATCH 'Parlante'", Integer.class));
+            // El libro de movimientos también: la baja y el préstamo
+            assertEquals(List.of("Préstamo"), restaurado.queryForList(
+                    "SELECT motivo FROM movimientos_stock WHERE producto_id = ? AND delta = -3", String.class, movido.getId()));
+            assertEquals(1, restaurado.queryForObject(
+                    "SELECT count(*) FROM movimientos_stock WHERE producto_id = ? AND cantidad_resultante = 0",
+                    Integer.class, borrado.getId()));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+}
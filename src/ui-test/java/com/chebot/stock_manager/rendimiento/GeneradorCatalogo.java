@@ -0,0 +1,165 @@
+package com.chebot.stock_manager.rendimiento;
+
+import com.chebot.stock_manager.model.Producto;
+import com.chebot.stock_manager.service.CodigoQrAlmacenado;
+import com.chebot.stock_manager.service.ContenidoQr;
+import com.chebot.stock_manager.service.QrCodeGenerator;
+import com.google.zxing.WriterException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Genera un catálogo sintético en la tabla 'productos' (ya migrada): cantidad de filas, forma de las
+ * descripciones y proporción de productos con QR configurables. Con la misma semilla genera
+ * siempre los mismos datos, así dos corridas del arnés se pueden comparar.
+ * <p>
+ * Los QR se guardan en formato MATRIZ (el de stock.qr.almacenamiento por defecto).
+ */
+public final class GeneradorCatalogo {
+
+    /**
+     * Cómo se reparten las palabras de las descripciones.
+     */
+    public enum DistribucionTexto {
+        /** Pocas palabras, todas con la misma frecuencia. */
+        UNIFORME,
+        /** Pocas palabras, con frecuencias de Zipf: unas pocas muy repetidas y muchas raras (como un inventario real). */
+        ZIPF,
+        /** Descripciones de 20 a 40 palabras: prueba el recorte de las celdas y el índice de texto. */
+        LARGA
+    }
+
+    public record Configuracion(int filas, DistribucionTexto texto, double proporcionConQr, long semilla) {
+
+        public Configuracion {
+            if (filas < 0) {
+                throw new IllegalArgumentException("La cantidad de filas no puede ser negativa.");
+            }
+            if (texto == null) {
+                throw new IllegalArgumentException("Falta la distribución del texto.");
+            }
+            if (proporcionConQr < 0 || proporcionConQr > 1) {
+                throw new IllegalArgumentException("La proporción con QR debe estar entre 0 y 1.");
+            }
+        }
+    }
+
+    private static final int TAMANO_LOTE = 2000;
+    private static final String[] PALABRAS = {"Proyector", "Notebook", "Cable", "Teclado", "Mouse", "Monitor",
+            "Parlante", "Router", "Impresora", "Tablet", "Cargador", "Auriculares", "Cañón", "Lámpara", "Micrófono",
+            "Pizarrón", "Extensión", "Adaptador", "Switch", "Cámara", "Escáner", "Batería", "Estabilizador", "Pendrive"};
+    private static final String[] CALIFICATIVOS = {"HDMI", "USB", "inalámbrico", "negro", "blanco", "grande", "chico",
+            "de repuesto", "aula 3", "laboratorio", "biblioteca", "dirección", "2 m", "5 m", "con funda", "sin caja"};
+
+    // Probabilidad acumulada de cada palabra con Zipf (s = 1)
+    private static final double[] ZIPF_ACUMULADA = new double[PALABRAS.length];
+
+    static {
+        double total = 0;
+        for (int i = 0; i < PALABRAS.length; i++) {
+            total += 1.0 / (i + 1);
+            ZIPF_ACUMULADA[i] = total;
+        }
+        for (int i = 0; i < PALABRAS.length; i++) {
+            ZIPF_ACUMULADA[i] /= total;
+        }
+    }
+
+    private GeneradorCatalogo() {
+    }
+
+    /**
+     * Inserta los productos por lotes (el índice de texto se completa con sus triggers). No pasa por
+     * ProductoService: después hay que recargar el catálogo en memoria.
+     * @return Cantidad de productos generados con QR.
+     */
+    public static int generar(JdbcTemplate jdbcTemplate, Configuracion configuracion) {
+        Random azar = new Random(configuracion.semilla());
+        int conQr = 0;
+        List<Object[]> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 1; i <= configuracion.filas(); i++) {
+            String referencia = String.format("%s-%07d", prefijo(azar), i);
+            String descripcion = descripcion(azar, configuracion.texto());
+            int cantidad = cantidad(azar);
+            String estado = estado(azar);
+            boolean llevaQr = azar.nextDouble() < configuracion.proporcionConQr();
+            // El QR se completa después, en paralelo para todo el lote
+            lote.add(new Object[]{referencia, descripcion, cantidad, estado, llevaQr ? Boolean.TRUE : null});
+            if (lote.size() == TAMANO_LOTE || i == configuracion.filas()) {
+                conQr += completarQr(lote);
+                jdbcTemplate.batchUpdate("INSERT INTO productos (referencia, descripcion, cantidad, estado, codigo_qr) "
+                        + "VALUES (?, ?, ?, ?, ?)", lote);
+                lote.clear();
+            }
+        }
+        return conQr;
+    }
+
+    // --- Contenido de cada fila ---
+
+    private static String prefijo(Random azar) {
+        return switch (azar.nextInt(4)) {
+            case 0 -> "INF";
+            case 1 -> "AUD";
+            case 2 -> "MOB";
+            default -> "LAB";
+        };
+    }
+
+    private static String descripcion(Random azar, DistribucionTexto distribucion) {
+        return switch (distribucion) {
+            case UNIFORME -> PALABRAS[azar.nextInt(PALABRAS.length)] + " modelo " + azar.nextInt(1000);
+            case ZIPF -> palabraZipf(azar) + " " + CALIFICATIVOS[azar.nextInt(CALIFICATIVOS.length)]
+                    + " modelo " + azar.nextInt(1000);
+            case LARGA -> {
+                int palabras = 20 + azar.nextInt(21);
+                StringBuilder texto = new StringBuilder(palabraZipf(azar));
+                for (int i = 1; i < palabras; i++) {
+                    texto.append(' ').append(i % 3 == 0 ? palabraZipf(azar) : CALIFICATIVOS[azar.nextInt(CALIFICATIVOS.length)]);
+                }
+                yield texto.toString();
+            }
+        };
+    }
+
+    private static String palabraZipf(Random azar) {
+        double valor = azar.nextDouble();
+        for (int i = 0; i < ZIPF_ACUMULADA.length; i++) {
+            if (valor <= ZIPF_ACUMULADA[i]) {
+                return PALABRAS[i];
+            }
+        }
+        return PALABRAS[PALABRAS.length - 1];
+    }
+
+    // Muchos productos con pocas unidades y algunos agotados
+    private static int cantidad(Random azar) {
+        return azar.nextInt(10) == 0 ? 0 : (int) Math.min(500, Math.round(-20 * Math.log(1 - azar.nextDouble())));
+    }
+
+    // La mayoría disponibles
+    private static String estado(Random azar) {
+        int valor = azar.nextInt(100);
+        return valor < 80 ? Producto.ESTADOS.get(0) : valor < 92 ? Producto.ESTADOS.get(1) : Producto.ESTADOS.get(2);
+    }
+
+    // Codificar el QR es la parte cara: se reparte entre los núcleos
+    private static int completarQr(List<Object[]> lote) {
+        int[] conQr = IntStream.range(0, lote.size()).filter(i -> lote.get(i)[4] != null).toArray();
+        Arrays.stream(conQr).parallel().forEach(i -> {
+            Object[] fila = lote.get(i);
+            try {
+                fila[4] = CodigoQrAlmacenado.empaquetar(QrCodeGenerator.generarModulos(
+                        ContenidoQr.generar((String) fila[0], (String) fila[1], (Integer) fila[2], (String) fila[3])));
+            } catch (WriterException e) {
+                throw new IllegalStateException("No se pudo generar el QR de " + fila[0], e);
+            }
+        });
+        return conQr.length;
+    }
+}
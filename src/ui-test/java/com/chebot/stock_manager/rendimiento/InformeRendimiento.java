@@ -0,0 +1,100 @@
+package com.chebot.stock_manager.rendimiento;
+
+import com.chebot.stock_manager.service.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resultados de los escenarios de una corrida del arnés: se escriben en JSON (para comparar corridas)
+ * y se comparan con los límites que debe cumplir una versión para publicarse.
+ */
+public final class InformeRendimiento {
+
+    /**
+     * Límites por escenario; una versión que supere alguno no se publica.
+     */
+    public record Limites(double cuadroP95Ms, long bloqueoMaxMs, long heapPicoMb) {
+    }
+
+    private final GeneradorCatalogo.Configuracion catalogo;
+    private final List<MedidorFx.Resultado> resultados = new ArrayList<>();
+
+    public InformeRendimiento(GeneradorCatalogo.Configuracion catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    public void agregar(MedidorFx.Resultado resultado) {
+        resultados.add(resultado);
+        System.out.println(String.format(Locale.ROOT,
+                "%-22s %7d ms  cuadros %5d  p50 %6.1f  p95 %6.1f  p99 %6.1f  máx %7.1f ms  lentos %4d  "
+                        + "bloqueo %6d ms (máx %5d)  heap %4d/%4d/%4d MB",
+                resultado.escenario(), resultado.duracionMs(), resultado.cuadros(), resultado.cuadroP50Ms(),
+                resultado.cuadroP95Ms(), resultado.cuadroP99Ms(), resultado.cuadroMaxMs(), resultado.cuadrosLentos(),
+                resultado.bloqueoTotalMs(), resultado.bloqueoMaxMs(), resultado.heapAntesMb(), resultado.heapPicoMb(),
+                resultado.heapDespuesMb()));
+    }
+
+    /**
+     * @return Un texto por cada límite superado (vacía si la corrida pasa).
+     */
+    public List<String> incumplimientos(Limites limites) {
+        List<String> incumplimientos = new ArrayList<>();
+        for (MedidorFx.Resultado resultado : resultados) {
+            if (resultado.cuadroP95Ms() > limites.cuadroP95Ms()) {
+                incumplimientos.add(String.format(Locale.ROOT, "%s: p95 de cuadro %.1f ms (límite %.1f ms)",
+                        resultado.escenario(), resultado.cuadroP95Ms(), limites.cuadroP95Ms()));
+            }
+            if (resultado.bloqueoMaxMs() > limites.bloqueoMaxMs()) {
+                incumplimientos.add(resultado.escenario() + ": bloqueo del hilo de JavaFX de " + resultado.bloqueoMaxMs()
+                        + " ms (límite " + limites.bloqueoMaxMs() + " ms)");
+            }
+            if (resultado.heapPicoMb() > limites.heapPicoMb()) {
+                incumplimientos.add(resultado.escenario() + ": pico de heap de " + resultado.heapPicoMb()
+                        + " MB (límite " + limites.heapPicoMb() + " MB)");
+            }
+        }
+        return incumplimientos;
+    }
+
+    public void escribir(Path archivo, Limites limites) throws IOException {
+        StringBuilder json = new StringBuilder("{\n")
+                .append("  \"fecha\": ").append(Json.texto(Instant.now().toString())).append(",\n")
+                .append("  \"java\": ").append(Json.texto(System.getProperty("java.version"))).append(",\n")
+                .append("  \"catalogo\": {\"filas\": ").append(catalogo.filas())
+                .append(", \"texto\": ").append(Json.texto(catalogo.texto().name()))
+                .append(", \"proporcionConQr\": ").append(catalogo.proporcionConQr())
+                .append(", \"semilla\": ").append(catalogo.semilla()).append("},\n")
+                .append("  \"limites\": {\"cuadroP95Ms\": ").append(limites.cuadroP95Ms())
+                .append(", \"bloqueoMaxMs\": ").append(limites.bloqueoMaxMs())
+                .append(", \"heapPicoMb\": ").append(limites.heapPicoMb()).append("},\n")
+                .append("  \"escenarios\": [");
+        for (int i = 0; i < resultados.size(); i++) {
+            MedidorFx.Resultado resultado = resultados.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                    "    {\"escenario\": %s, \"duracionMs\": %d, \"cuadros\": %d, \"cuadroP50Ms\": %.2f, "
+                            + "\"cuadroP95Ms\": %.2f, \"cuadroP99Ms\": %.2f, \"cuadroMaxMs\": %.2f, \"cuadrosLentos\": %d, "
+                            + "\"bloqueoTotalMs\": %d, \"bloqueoMaxMs\": %d, \"heapAntesMb\": %d, \"heapPicoMb\": %d, "
+                            + "\"heapDespuesMb\": %d}",
+                    Json.texto(resultado.escenario()), resultado.duracionMs(), resultado.cuadros(), resultado.cuadroP50Ms(),
+                    resultado.cuadroP95Ms(), resultado.cuadroP99Ms(), resultado.cuadroMaxMs(), resultado.cuadrosLentos(),
+                    resultado.bloqueoTotalMs(), resultado.bloqueoMaxMs(), resultado.heapAntesMb(), resultado.heapPicoMb(),
+                    resultado.heapDespuesMb()));
+        }
+        json.append("\n  ],\n  \"incumplimientos\": [");
+        List<String> incumplimientos = incumplimientos(limites);
+        for (int i = 0; i < incumplimientos.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(Json.texto(incumplimientos.get(i)));
+        }
+        json.append("]\n}\n");
+
+        Files.createDirectories(archivo.toAbsolutePath().getParent());
+        Files.writeString(archivo, json, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,179 @@
+package com.chebot.stock_manager.rendimiento;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mide un escenario de la interfaz mientras se ejecuta:
+ * <ul>
+ *   <li>Tiempo entre cuadros: un AnimationTimer pide un pulso por cuadro; si el hilo de JavaFX está
+ *       ocupado, el cuadro siguiente llega tarde.</li>
+ *   <li>Bloqueo del hilo de JavaFX: como VigilanteHiloFx, pero cada 5 ms y sin umbral de reporte.
+ *       Cuenta el tiempo de las esperas más largas que un cuadro.</li>
+ *   <li>Heap: usado antes y después (tras un GC) y pico durante el escenario.</li>
+ * </ul>
+ */
+public final class MedidorFx {
+
+    // Un cuadro a 60 Hz
+    private static final long CUADRO_NANOS = TimeUnit.MICROSECONDS.toNanos(16_667);
+    private static final long INTERVALO_LATIDO_MS = 5;
+    private static final long MB = 1024 * 1024;
+
+    @FunctionalInterface
+    public interface Escenario {
+        void ejecutar() throws Exception;
+    }
+
+    /**
+     * @param cuadrosLentos Cuadros que tardaron más del doble de lo previsto (se perdió al menos uno).
+     * @param bloqueoTotalMs Suma de las esperas del hilo de JavaFX de más de un cuadro.
+     */
+    public record Resultado(String escenario, long duracionMs, int cuadros, double cuadroP50Ms, double cuadroP95Ms,
+                            double cuadroP99Ms, double cuadroMaxMs, int cuadrosLentos, long bloqueoTotalMs,
+                            long bloqueoMaxMs, long heapAntesMb, long heapPicoMb, long heapDespuesMb) {
+    }
+
+    public Resultado medir(String nombre, Escenario escenario) throws Exception {
+        // 1. Heap de partida (sin basura de los escenarios anteriores)
+        System.gc();
+        long heapAntes = heapUsado();
+        for (MemoryPoolMXBean area : areasHeap()) {
+            area.resetPeakUsage();
+        }
+
+        // 2. Empiezan los cuadros y los latidos
+        Cuadros cuadros = new Cuadros();
+        enFx(cuadros::start);
+        Latidos latidos = new Latidos();
+        latidos.start();
+
+        // 3. El escenario corre en el hilo de la prueba, como un usuario
+        long inicio = System.nanoTime();
+        try {
+            escenario.ejecutar();
+        } finally {
+            latidos.interrupt();
+            latidos.join();
+            enFx(cuadros::stop);
+        }
+        long duracion = System.nanoTime() - inicio;
+
+        // 4. Heap: pico durante el escenario y lo que quedó retenido
+        long heapPico = 0;
+        for (MemoryPoolMXBean area : areasHeap()) {
+            heapPico += area.getPeakUsage().getUsed();
+        }
+        System.gc();
+        long heapDespues = heapUsado();
+
+        long[] intervalos = cuadros.intervalos();
+        Arrays.sort(intervalos);
+        int lentos = 0;
+        for (long intervalo : intervalos) {
+            if (intervalo > 2 * CUADRO_NANOS) {
+                lentos++;
+            }
+        }
+        return new Resultado(nombre, TimeUnit.NANOSECONDS.toMillis(duracion), intervalos.length,
+                percentilMs(intervalos, 0.50), percentilMs(intervalos, 0.95), percentilMs(intervalos, 0.99),
+                percentilMs(intervalos, 1.0), lentos,
+                TimeUnit.NANOSECONDS.toMillis(latidos.bloqueoTotal.get()), TimeUnit.NANOSECONDS.toMillis(latidos.bloqueoMaximo.get()),
+                heapAntes / MB, heapPico / MB, heapDespues / MB);
+    }
+
+    private static double percentilMs(long[] ordenados, double percentil) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(percentil * ordenados.length) - 1;
+        return ordenados[Math.max(0, indice)] / 1_000_000.0;
+    }
+
+    private static long heapUsado() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static Iterable<MemoryPoolMXBean> areasHeap() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(area -> area.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    // Ejecuta en el hilo de JavaFX y espera a que termine
+    private static void enFx(Runnable accion) throws InterruptedException {
+        CountDownLatch listo = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                accion.run();
+            } finally {
+                listo.countDown();
+            }
+        });
+        listo.await();
+    }
+
+    // --- Mediciones ---
+
+    // Solo se usa desde el hilo de JavaFX
+    private static final class Cuadros extends AnimationTimer {
+
+        private long[] intervalos = new long[1024];
+        private int cantidad = 0;
+        private long anterior = 0;
+
+        @Override
+        public void handle(long ahora) {
+            if (anterior != 0) {
+                if (cantidad == intervalos.length) {
+                    intervalos = Arrays.copyOf(intervalos, cantidad * 2);
+                }
+                intervalos[cantidad++] = ahora - anterior;
+            }
+            anterior = ahora;
+        }
+
+        long[] intervalos() {
+            return Arrays.copyOf(intervalos, cantidad);
+        }
+    }
+
+    private static final class Latidos extends Thread {
+
+        private final AtomicLong bloqueoTotal = new AtomicLong();
+        private final AtomicLong bloqueoMaximo = new AtomicLong();
+
+        Latidos() {
+            super("medidor-latidos-fx");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    long enviado = System.nanoTime();
+                    CountDownLatch atendido = new CountDownLatch(1);
+                    Platform.runLater(atendido::countDown);
+                    atendido.await();
+                    long espera = System.nanoTime() - enviado;
+                    if (espera > CUADRO_NANOS) {
+                        bloqueoTotal.addAndGet(espera);
+                        bloqueoMaximo.accumulateAndGet(espera, Math::max);
+                    }
+                    Thread.sleep(INTERVALO_LATIDO_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
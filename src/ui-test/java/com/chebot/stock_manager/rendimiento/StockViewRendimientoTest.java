@@ -0,0 +1,276 @@
+package com.chebot.stock_manager.rendimiento;
+
+import com.chebot.stock_manager.StockManagerApplication;
+import com.chebot.stock_manager.controller.ListaProductosPaginada;
+import com.chebot.stock_manager.model.FiltroProductos;
+import com.chebot.stock_manager.model.ProductoResumen;
+import com.chebot.stock_manager.service.CatalogoEnMemoria;
+import com.chebot.stock_manager.service.ProductoService;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.VerticalDirection;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testfx.api.FxRobot;
+import org.testfx.api.FxToolkit;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Arnés de rendimiento de la ventana principal (perfil 'rendimiento-ui', sin pantalla con Monocle).
+ * Genera un catálogo sintético, abre stock_view.fxml con StockController y lo usa como un usuario con
+ * TestFX: carga, desplazamiento, filtros, selección de filas (cada una muestra su QR) y edición.
+ * Cada escenario se mide con {@link MedidorFx}; el informe queda en target/rendimiento-ui/informe.json
+ * y la prueba falla si algún escenario supera los límites.
+ * <p>
+ * Se configura con -D: rendimiento.ui.filas, rendimiento.ui.texto (UNIFORME, ZIPF o LARGA),
+ * rendimiento.ui.proporcion-qr, rendimiento.ui.semilla y los límites rendimiento.ui.limite.cuadro-p95-ms,
+ * rendimiento.ui.limite.bloqueo-max-ms y rendimiento.ui.limite.heap-pico-mb.
+ */
+class StockViewRendimientoTest {
+
+    private static final long ESPERA_MAXIMA_S = 60;
+    private static final int SELECCIONES = 200;
+    private static final int EDICIONES = 20;
+
+    private static Path carpeta;
+    private static ConfigurableApplicationContext contexto;
+    private static GeneradorCatalogo.Configuracion catalogo;
+
+    private final FxRobot robot = new FxRobot();
+
+    @BeforeAll
+    static void preparar() throws Exception {
+        catalogo = new GeneradorCatalogo.Configuracion(
+                Integer.getInteger("rendimiento.ui.filas", 100_000),
+                GeneradorCatalogo.DistribucionTexto.valueOf(System.getProperty("rendimiento.ui.texto", "ZIPF")),
+                Double.parseDouble(System.getProperty("rendimiento.ui.proporcion-qr", "0.3")),
+                Long.getLong("rendimiento.ui.semilla", 42L));
+
+        // 1. JavaFX (las propiedades del perfil eligen Monocle sin pantalla)
+        FxToolkit.registerPrimaryStage();
+
+        // 2. La aplicación sobre una DB temporal (argumentos: tienen prioridad sobre application.properties)
+        carpeta = Files.createTempDirectory("stock-rendimiento-ui");
+        contexto = new SpringApplicationBuilder(StockManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:sqlite:" + carpeta.resolve("stock.db")
+                                + "?journal_mode=WAL&synchronous=FULL&busy_timeout=5000",
+                        "--stock.respaldo.habilitado=false",
+                        "--stock.metricas.archivo=" + carpeta.resolve("metricas-stock.txt"),
+                        "--logging.level.root=WARN");
+
+        // 3. Catálogo sintético; el catálogo en memoria se cargó vacío al arrancar
+        long inicio = System.currentTimeMillis();
+        int conQr = GeneradorCatalogo.generar(contexto.getBean(JdbcTemplate.class), catalogo);
+        contexto.getBean(CatalogoEnMemoria.class).recargar().join();
+        System.out.println("Catálogo sintético: " + catalogo.filas() + " productos (" + conQr + " con QR) en "
+                + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    @AfterAll
+    static void cerrar() throws Exception {
+        FxToolkit.cleanupStages();
+        if (contexto != null) {
+            contexto.close();
+        }
+        try (var archivos = Files.list(carpeta)) {
+            for (Path archivo : archivos.toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+        Files.deleteIfExists(carpeta);
+    }
+
+    @Test
+    void escenariosDeLaVentanaPrincipal() throws Exception {
+        MedidorFx medidor = new MedidorFx();
+        InformeRendimiento informe = new InformeRendimiento(catalogo);
+        ProductoService productoService = contexto.getBean(ProductoService.class);
+
+        informe.agregar(medidor.medir("carga", this::abrirVentana));
+        TableView<ProductoResumen> tabla = robot.lookup("#tblStock").queryTableView();
+
+        informe.agregar(medidor.medir("desplazamiento-rueda", () -> {
+            robot.moveTo(tabla);
+            for (int i = 0; i < 200; i++) {
+                robot.scroll(5, VerticalDirection.DOWN);
+            }
+            WaitForAsyncUtils.waitForFxEvents();
+        }));
+
+        informe.agregar(medidor.medir("desplazamiento-saltos", () -> {
+            // Posiciones repartidas por toda la lista: cada una trae páginas nuevas
+            for (int i = 0; i < 50; i++) {
+                int posicion = (int) ((long) i * (catalogo.filas() - 1) / 49);
+                robot.interact(() -> tabla.scrollTo(posicion));
+                esperar(() -> enFx(() -> tabla.getItems().get(posicion) != null));
+            }
+        }));
+
+        informe.agregar(medidor.medir("filtrado", () -> {
+            ComboBox<String> criterio = robot.lookup("#cmbFiltroCriterio").queryComboBox();
+            robot.interact(() -> criterio.setValue("Descripción"));
+            for (String texto : List.of("Proyector", "Cable HDMI", "modelo 42")) {
+                filtrarYEsperar(tabla, texto, productoService.filtrarProductos("Descripción", texto).size(),
+                        ProductoResumen::getDescripcion);
+            }
+            robot.interact(() -> criterio.setValue("Referencia"));
+            filtrarYEsperar(tabla, "INF-00001", productoService.filtrarProductos("Referencia", "INF-00001").size(),
+                    ProductoResumen::getReferencia);
+
+            // Combinado: descripción y cantidad hasta
+            robot.interact(() -> criterio.setValue("Combinado"));
+            Spinner<?> limite = robot.lookup("#spinnerFiltroLimite").queryAs(Spinner.class);
+            int maximo = enFx(() -> (Integer) limite.getValue());
+            int esperados = productoService.filtrarProductos(new FiltroProductos(null, "Cable", Set.of(), null, 5,
+                    FiltroProductos.Orden.ID, false, maximo)).size();
+            robot.clickOn("#txtFiltroDescripcion").write("Cable");
+            robot.clickOn("#txtFiltroCantidadMaxima").write("5");
+            esperar(() -> enFx(() -> !(tabla.getItems() instanceof ListaProductosPaginada)
+                    && tabla.getItems().size() == esperados));
+
+            // Vuelta al listado completo (sin valores que repitan un filtro)
+            robot.interact(() -> {
+                for (String campo : List.of("#txtFiltroDescripcion", "#txtFiltroCantidadMaxima", "#txtFiltroValor")) {
+                    robot.lookup(campo).queryAs(TextField.class).clear();
+                }
+                criterio.setValue("Referencia");
+            });
+            robot.clickOn("Todos");
+            esperar(() -> enFx(() -> tabla.getItems() instanceof ListaProductosPaginada));
+        }));
+
+        ImageView qr = robot.lookup("#imgQrCode").queryAs(ImageView.class);
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        informe.agregar(medidor.medir("seleccion-qr", () -> {
+            // Cada fila seleccionada decodifica su QR en segundo plano y lo muestra
+            robot.interact(() -> tabla.scrollTo(0));
+            esperar(() -> enFx(() -> tabla.getItems().get(0) != null));
+            robot.interact(() -> {
+                tabla.requestFocus();
+                tabla.getSelectionModel().clearAndSelect(0);
+                tabla.getFocusModel().focus(0);
+            });
+            for (int i = 1; i <= SELECCIONES; i++) {
+                // La fila siguiente ya tiene que estar leída: si no, la selección queda vacía
+                int fila = i;
+                esperar(() -> enFx(() -> tabla.getItems().get(fila) != null));
+                Image anterior = enFx(qr::getImage);
+                robot.type(KeyCode.DOWN);
+                esperar(() -> enFx(() -> tabla.getSelectionModel().getSelectedIndex() == fila));
+                long id = enFx(() -> tabla.getSelectionModel().getSelectedItem().getId());
+                boolean tieneQr = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "SELECT codigo_qr IS NOT NULL FROM productos WHERE id = ?", Boolean.class, id));
+                esperar(() -> enFx(() -> tieneQr ? qr.getImage() != null && qr.getImage() != anterior : qr.getImage() == null));
+            }
+        }));
+
+        informe.agregar(medidor.medir("edicion", () -> {
+            for (int i = 0; i < EDICIONES; i++) {
+                int indice = enFx(() -> tabla.getSelectionModel().getSelectedIndex());
+                ProductoResumen seleccionado = enFx(() -> tabla.getSelectionModel().getSelectedItem());
+                robot.clickOn("Editar Seleccionado");
+                TextField referencia = robot.lookup("#txtReferencia").queryAs(TextField.class);
+                esperar(() -> enFx(() -> seleccionado.getReferencia().equals(referencia.getText())));
+
+                robot.clickOn("#txtDescripcion").type(KeyCode.END).write(" *");
+                robot.clickOn(robot.lookup("#spinnerCantidad .increment-arrow-button").query());
+                robot.clickOn("GUARDAR PRODUCTO");
+                // El guardado avisa con un diálogo
+                esperar(() -> robot.lookup(".dialog-pane").tryQuery().isPresent());
+                robot.clickOn(robot.lookup(".dialog-pane .button").queryButton());
+
+                // La fila de la tabla se actualiza con el aviso de cambios
+                String descripcion = seleccionado.getDescripcion() + " *";
+                esperar(() -> enFx(() -> {
+                    ProductoResumen fila = tabla.getItems().get(indice);
+                    return fila != null && fila.getId() == seleccionado.getId() && descripcion.equals(fila.getDescripcion());
+                }));
+
+                // Siguiente fila (el foco quedó en el formulario)
+                esperar(() -> enFx(() -> tabla.getItems().get(indice + 1) != null));
+                robot.interact(() -> tabla.getSelectionModel().clearAndSelect(indice + 1));
+            }
+        }));
+
+        // Informe y límites para publicar una versión
+        InformeRendimiento.Limites limites = new InformeRendimiento.Limites(
+                Double.parseDouble(System.getProperty("rendimiento.ui.limite.cuadro-p95-ms", "50")),
+                Long.getLong("rendimiento.ui.limite.bloqueo-max-ms", 250L),
+                Long.getLong("rendimiento.ui.limite.heap-pico-mb", 768L));
+        Path archivo = Path.of(System.getProperty("rendimiento.ui.informe", "target/rendimiento-ui/informe.json"));
+        informe.escribir(archivo, limites);
+        System.out.println("Informe de rendimiento: " + archivo.toAbsolutePath());
+
+        List<String> incumplimientos = informe.incumplimientos(limites);
+        assertTrue(incumplimientos.isEmpty(), "Límites superados:\n" + String.join("\n", incumplimientos));
+    }
+
+    // --- Escenarios y esperas ---
+
+    // Abre la ventana como StockManagerFXApplication y espera a que la tabla tenga todas las filas
+    private void abrirVentana() throws Exception {
+        FxToolkit.setupStage(stage -> {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/stock_view.fxml"));
+            loader.setControllerFactory(contexto::getBean);
+            try {
+                Parent root = loader.load();
+                Scene scene = new Scene(root, 1280, 800);
+                scene.getStylesheets().add(getClass().getResource("/style.css").toExternalForm());
+                stage.setScene(scene);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        FxToolkit.showStage();
+        TableView<ProductoResumen> tabla = robot.lookup("#tblStock").queryTableView();
+        esperar(() -> enFx(() -> tabla.getItems().size() == catalogo.filas()));
+    }
+
+    // Escribe el valor del filtro (la búsqueda sale sola tras la espera del debounce)
+    // (y que las filas sean las de este texto y no las de la búsqueda anterior)
+    private void filtrarYEsperar(TableView<ProductoResumen> tabla, String texto, int esperados,
+                                 Function<ProductoResumen, String> campo) throws Exception {
+        TextField valor = robot.lookup("#txtFiltroValor").queryAs(TextField.class);
+        robot.interact(valor::clear);
+        robot.clickOn(valor).write(texto);
+        String buscado = texto.toLowerCase(Locale.ROOT);
+        esperar(() -> enFx(() -> !(tabla.getItems() instanceof ListaProductosPaginada)
+                && tabla.getItems().size() == esperados
+                && tabla.getItems().stream().allMatch(fila -> campo.apply(fila).toLowerCase(Locale.ROOT).contains(buscado))));
+    }
+
+    private static void esperar(Callable<Boolean> condicion) throws Exception {
+        WaitForAsyncUtils.waitFor(ESPERA_MAXIMA_S, TimeUnit.SECONDS, condicion);
+    }
+
+    private static <T> T enFx(Callable<T> consulta) throws Exception {
+        return WaitForAsyncUtils.asyncFx(consulta).get();
+    }
+}